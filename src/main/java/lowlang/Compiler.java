@@ -4,21 +4,43 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.File;
+import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.ArrayList;
 
+import lowlang.tokenizer.Token;
 import lowlang.tokenizer.Tokenizer;
 import lowlang.tokenizer.TokenizerException;
 import lowlang.parser.Parser;
 import lowlang.parser.Program;
+import lowlang.parser.NodeCounter;
 import lowlang.parser.ParseException;
 import lowlang.typechecker.Typechecker;
 import lowlang.typechecker.TypeErrorException;
+import lowlang.typechecker.Diagnostics;
+import lowlang.typechecker.SymbolTable;
 import lowlang.codegen.MIPSCodeGenerator;
+import lowlang.codegen.MIPSEntry;
+import lowlang.codegen.InstructionSelector;
+import lowlang.codegen.peephole.PeepholeOptimizer;
+import lowlang.ir.IRLowering;
+import lowlang.ir.IRProgram;
+import lowlang.ir.IROptimizer;
+import lowlang.optimizer.UnreachableFunctionElimination;
+import lowlang.optimizer.Devirtualizer;
+import lowlang.optimizer.Inliner;
+import lowlang.optimizer.ConstantFolder;
+import lowlang.optimizer.DeadStoreEliminator;
 
 public class Compiler {
     public static void printUsage() {
         System.out.println("Takes the following params:");
         System.out.println("-Input filename (.ll)");
         System.out.println("-Output filename (.asm)");
+        System.out.println("These may be preceded by any of the following flags:");
+        CompilerOptions.printFlags();
     }
 
     public static String fileContentsAsString(final String inputFilename) throws IOException {
@@ -42,10 +64,216 @@ public class Compiler {
                TokenizerException,
                ParseException,
                TypeErrorException {
+        compile(inputFilename, outputFilename, new CompilerOptions());
+    }
+
+    public static void compile(final String inputFilename,
+                               final String outputFilename,
+                               final CompilerOptions options)
+        throws IOException,
+               TokenizerException,
+               ParseException,
+               TypeErrorException {
+        final PhaseProfile profile = new PhaseProfile(options.isProfiling());
         final String input = fileContentsAsString(inputFilename);
-        final Program program = Parser.parse(Tokenizer.tokenize(input));
-        Typechecker.typecheckProgramExternalEntry(program);
-        MIPSCodeGenerator.compile(program, new File(outputFilename));
+
+        profile.start("tokenize");
+        final Token[] tokens = Tokenizer.tokenize(input);
+        profile.stop();
+        profile.setCount("tokens", tokens.length);
+
+        profile.start("parse");
+        Program program = Parser.parse(tokens);
+        profile.stop();
+        // counted outside the phase so the count isn't part of its cost
+        final int numNodes = profile.isEnabled() ? NodeCounter.countNodes(program) : 0;
+        profile.setCount("nodes", numNodes);
+
+        profile.start("typecheck");
+        SymbolTable symbols = typecheck(program, options);
+        profile.stop();
+
+        if (options.devirtualize) {
+            final Devirtualizer devirtualizer = new Devirtualizer();
+            profile.start("devirtualize");
+            program = devirtualizer.devirtualize(program);
+            // the direct calls have no resolutions yet
+            symbols = Typechecker.typecheckProgramExternalEntry(program);
+            profile.stop();
+            profile.setCount("devirtualized", devirtualizer.numDevirtualized());
+            if (options.printDevirtualizeReport) {
+                System.out.print(devirtualizer.reportToString());
+            }
+        }
+
+        if (options.inline) {
+            final Inliner inliner = new Inliner(options.inlineMaxSize,
+                                                options.inlineMaxSingleCallSize,
+                                                Inliner.DEFAULT_MAX_ROUNDS);
+            profile.start("inline");
+            program = inliner.inline(program);
+            // the inlined code has no resolutions yet
+            symbols = Typechecker.typecheckProgramExternalEntry(program);
+            profile.stop();
+            profile.setCount("inlined", inliner.numInlined());
+            if (options.printInlineReport) {
+                System.out.print(inliner.reportToString());
+            }
+        }
+
+        if (options.foldConstants) {
+            final ConstantFolder folder = new ConstantFolder(symbols);
+            profile.start("fold");
+            program = folder.fold(program);
+            // the folded code has no resolutions yet
+            symbols = Typechecker.typecheckProgramExternalEntry(program);
+            profile.stop();
+            profile.setCount("folded", folder.numFolded());
+        }
+
+        if (options.eliminateDeadStores) {
+            final DeadStoreEliminator eliminator = new DeadStoreEliminator();
+            profile.start("dead-stores");
+            program = eliminator.eliminate(program);
+            // what's left of removed stores has no types yet
+            symbols = Typechecker.typecheckProgramExternalEntry(program);
+            profile.stop();
+            profile.setCount("removed", eliminator.numRemoved());
+        }
+
+        profile.start("optimize");
+        final Program optimized = optimize(program, options);
+        profile.stop();
+        profile.setCount("functions", optimized.functionDefs.size());
+
+        final File outputFile = new File(outputFilename);
+        codegen(optimized, symbols, options, profile, outputFile);
+        profile.setCount("bytes", outputFile.length());
+
+        reportProfile(profile, options);
+    }
+
+    // The one code generation pipeline, through the IR or not, for both
+    // the command line and the tests.  Assumes the program has undergone
+    // typechecking with symbols.
+    public static void codegen(final Program program,
+                               final SymbolTable symbols,
+                               final CompilerOptions options,
+                               final PhaseProfile profile,
+                               final File outputFile) throws IOException {
+        final List<MIPSEntry> entries = generate(program, symbols, options, profile);
+        profile.start("write");
+        MIPSCodeGenerator.writeCompleteFile(entries, outputFile);
+        profile.stop();
+    }
+
+    // everything codegen writes to the file, for tests which look at the
+    // code itself
+    public static List<MIPSEntry> generate(final Program program,
+                                           final SymbolTable symbols,
+                                           final CompilerOptions options,
+                                           final PhaseProfile profile) {
+        if (options.codegen.useIR) {
+            return generateThroughIR(program, symbols, options, profile);
+        } else {
+            profile.start("codegen");
+            final MIPSCodeGenerator generator = new MIPSCodeGenerator(program, symbols, options.codegen);
+            generator.compileProgram();
+            profile.stop();
+            profile.setCount("instructions", generator.numInstructions());
+            if (options.printCopySavings) {
+                System.out.print(generator.copySavingsToString());
+            }
+
+            if (options.codegen.peephole) {
+                final PeepholeOptimizer peephole = new PeepholeOptimizer(options.codegen.peepholeWindow);
+                profile.start("peephole");
+                generator.peephole(peephole);
+                profile.stop();
+                profile.setCount("instructions", generator.numInstructions());
+                reportPeephole(peephole, options);
+            }
+            return generator.completeEntries();
+        }
+    }
+
+    public static List<MIPSEntry> generateThroughIR(final Program program,
+                                                    final SymbolTable symbols,
+                                                    final CompilerOptions options,
+                                                    final PhaseProfile profile) {
+        profile.start("lower");
+        final IRProgram ir = IRLowering.lower(program, symbols, options.codegen.scalarReplacement);
+        profile.stop();
+        profile.setCount("instructions", ir.numInstructions());
+        if (options.codegen.optimizeIR) {
+            profile.start("optimize-ir");
+            IROptimizer.optimize(ir);
+            profile.stop();
+            profile.setCount("instructions", ir.numInstructions());
+        }
+        if (options.dumpIR) {
+            System.out.print(ir.toString());
+        }
+
+        profile.start("codegen");
+        List<MIPSEntry> entries = InstructionSelector.select(ir, options.codegen);
+        profile.stop();
+        profile.setCount("instructions", MIPSCodeGenerator.numInstructions(entries, 0));
+
+        if (options.codegen.peephole) {
+            final PeepholeOptimizer peephole = new PeepholeOptimizer(options.codegen.peepholeWindow);
+            profile.start("peephole");
+            entries = peephole.optimize(entries);
+            profile.stop();
+            profile.setCount("instructions", MIPSCodeGenerator.numInstructions(entries, 0));
+            reportPeephole(peephole, options);
+        }
+        return entries;
+    }
+
+    public static void reportPeephole(final PeepholeOptimizer peephole,
+                                      final CompilerOptions options) {
+        if (options.printPeepholeHits) {
+            System.out.print(peephole.hitsToString());
+        }
+    }
+
+    public static void reportProfile(final PhaseProfile profile,
+                                     final CompilerOptions options) throws IOException {
+        if (options.printProfile) {
+            System.out.print(profile.toTable());
+        }
+        if (options.profileJsonFile.isPresent()) {
+            final PrintWriter output =
+                new PrintWriter(new BufferedWriter(new FileWriter(options.profileJsonFile.get())));
+            try {
+                output.println(profile.toJson());
+            } finally {
+                output.close();
+            }
+        }
+    }
+
+    // assumes the program has undergone typechecking
+    public static Program optimize(Program program,
+                                   final CompilerOptions options) {
+        if (options.eliminateUnreachableFunctions) {
+            program = UnreachableFunctionElimination.eliminate(program);
+        }
+        return program;
+    }
+
+    // returns the ids the program's resolutions refer to
+    public static SymbolTable typecheck(final Program program,
+                                        final CompilerOptions options) throws TypeErrorException {
+        if (options.collectAllTypeErrors) {
+            final Diagnostics diagnostics = new Diagnostics();
+            Typechecker.typecheckProgramExternalEntry(program, diagnostics);
+            diagnostics.throwIfErrors();
+            return SymbolTable.fromProgram(program);
+        } else {
+            return Typechecker.typecheckProgramExternalEntry(program);
+        }
     }
 
     public static void main(final String[] args)
@@ -53,10 +281,22 @@ public class Compiler {
                TokenizerException,
                ParseException,
                TypeErrorException {
-        if (args.length != 2) {
+        final CompilerOptions options = new CompilerOptions();
+        final List<String> filenames = new ArrayList<String>();
+        for (final String arg : args) {
+            if (!arg.startsWith("-")) {
+                filenames.add(arg);
+            } else if (!options.setFlag(arg)) {
+                System.out.println("Unrecognized flag: " + arg);
+                printUsage();
+                return;
+            }
+        }
+
+        if (filenames.size() != 2) {
             printUsage();
         } else {
-            compile(args[0], args[1]);
+            compile(filenames.get(0), filenames.get(1), options);
         }
     }
 }
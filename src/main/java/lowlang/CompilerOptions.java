@@ -0,0 +1,285 @@
+package lowlang;
+
+import java.util.Optional;
+
+import lowlang.codegen.CodegenOptions;
+import lowlang.codegen.MIPSCodeGenerator;
+import lowlang.optimizer.Inliner;
+
+public class CompilerOptions {
+    public static final String PROFILE_JSON_FLAG = "-profile-json=";
+    public static final String PEEPHOLE_WINDOW_FLAG = "-peephole-window=";
+    public static final String INLINE_SIZE_FLAG = "-inline-size=";
+    public static final String INLINE_ONCE_SIZE_FLAG = "-inline-once-size=";
+    public static final String COPY_LOOP_WORDS_FLAG = "-copy-loop-words=";
+    public static final String REFERENCE_WORDS_FLAG = "-reference-words=";
+
+    // report every type error in the program, instead of stopping at the first
+    public boolean collectAllTypeErrors;
+
+    // drop functions which can never be called from main before codegen
+    public boolean eliminateUnreachableFunctions;
+
+    // call functions directly through pointers which can only hold them,
+    // before any inlining
+    public boolean devirtualize;
+
+    // print which calls were devirtualized
+    public boolean printDevirtualizeReport;
+
+    // inline calls to small functions after typechecking
+    public boolean inline;
+
+    // the most AST nodes a function can have and still be inlined
+    public int inlineMaxSize;
+
+    // the same, for functions with only one call site
+    public int inlineMaxSingleCallSize;
+
+    // print which calls were inlined
+    public boolean printInlineReport;
+
+    // evaluate constant expressions and branches at compile time, after
+    // any inlining
+    public boolean foldConstants;
+
+    // remove stores to variables which are never read afterwards, and
+    // variables which are never read at all, after any folding
+    public boolean eliminateDeadStores;
+
+    // print the time, CPU time, and allocation of each compiler phase
+    public boolean printProfile;
+
+    // write the same per-phase profile to this file as JSON
+    public Optional<String> profileJsonFile;
+
+    // print the IR of every function, when compiling through the IR
+    public boolean dumpIR;
+
+    // print how often each peephole rule fired
+    public boolean printPeepholeHits;
+
+    // print how many instructions copy loops saved in each function
+    public boolean printCopySavings;
+
+    public final CodegenOptions codegen;
+
+    public CompilerOptions() {
+        this(new CodegenOptions());
+    }
+
+    public CompilerOptions(final CodegenOptions codegen) {
+        collectAllTypeErrors = false;
+        eliminateUnreachableFunctions = true;
+        devirtualize = false;
+        printDevirtualizeReport = false;
+        inline = false;
+        inlineMaxSize = Inliner.DEFAULT_MAX_SIZE;
+        inlineMaxSingleCallSize = Inliner.DEFAULT_MAX_SINGLE_CALL_SIZE;
+        printInlineReport = false;
+        foldConstants = false;
+        eliminateDeadStores = false;
+        printProfile = false;
+        profileJsonFile = Optional.empty();
+        dumpIR = false;
+        printPeepholeHits = false;
+        printCopySavings = false;
+        this.codegen = codegen;
+    }
+
+    public boolean isProfiling() {
+        return printProfile || profileJsonFile.isPresent();
+    }
+
+    public static void printFlags() {
+        System.out.println("-all-errors: report every type error, not just the first");
+        System.out.println("-keep-unreachable: emit code for functions never reachable from main");
+        System.out.println("-devirtualize: call functions directly through pointers known to hold them");
+        System.out.println("-devirtualize-report: print which calls were devirtualized (implies -devirtualize)");
+        System.out.println("-inline: inline calls to small non-recursive functions");
+        System.out.println("-inline-size=<n>: inline functions of up to n AST nodes (implies -inline)");
+        System.out.println("-inline-once-size=<n>: inline functions called once of up to n AST nodes (implies -inline)");
+        System.out.println("-inline-report: print which calls were inlined (implies -inline)");
+        System.out.println("-fold-constants: evaluate constant expressions and if/while guards at compile time");
+        System.out.println("-dead-stores: remove stores to variables which are never read afterwards");
+        System.out.println("-register-temps: evaluate expressions in registers instead of on the stack");
+        System.out.println("-fused-branches: branch on comparisons in if/while guards directly");
+        System.out.println("-fixed-frames: allocate each function's locals once and address them from $fp");
+        System.out.println("-register-calls: pass word arguments in $a0-$a3 and return words in $v0");
+        System.out.println("-leaf-functions: don't save $ra in functions which make no calls");
+        System.out.println("-tail-calls: turn direct calls in return statements into jumps");
+        System.out.println("-copy-loops: copy structures of more than " +
+                           MIPSCodeGenerator.DEFAULT_COPY_LOOP_WORDS +
+                           " words with a loop");
+        System.out.println("-copy-loop-words=<n>: copy structures of more than n words with a loop");
+        System.out.println("-copy-stats: print the instructions copy loops saved in each function (implies -copy-loops)");
+        System.out.println("-reference-structs: pass and return structures of more than " +
+                           MIPSCodeGenerator.DEFAULT_REFERENCE_WORDS +
+                           " words by reference");
+        System.out.println("-reference-words=<n>: pass and return structures of more than n words by reference");
+        System.out.println("-strength-reduce: multiply and divide by constants with shifts and adds");
+        System.out.println("-immediates: add, subtract, and compare against small constants with immediate operands");
+        System.out.println("-ir: compile through the three-address IR");
+        System.out.println("-O: optimize the IR in SSA form (implies -ir)");
+        System.out.println("-dump-ir: print the IR of every function (implies -ir)");
+        System.out.println("-scalar-replace: keep structures whose address is never taken in IR registers (implies -ir)");
+        System.out.println("-peephole: clean up the generated code with peephole rules");
+        System.out.println("-peephole-window=<n>: let peephole rules see n instructions at once (implies -peephole)");
+        System.out.println("-peephole-stats: print how often each peephole rule fired (implies -peephole)");
+        System.out.println("-profile: print time and allocation for each compiler phase");
+        System.out.println("-profile-json=<file>: write time and allocation for each compiler phase as JSON");
+    }
+
+    // leaves an explicit -copy-loop-words alone
+    private void setDefaultCopyLoopWords() {
+        if (codegen.copyLoopWords <= 0) {
+            codegen.copyLoopWords = MIPSCodeGenerator.DEFAULT_COPY_LOOP_WORDS;
+        }
+    }
+
+    // returns false if the flag is not recognized
+    public boolean setFlag(final String flag) {
+        if (flag.equals("-all-errors")) {
+            collectAllTypeErrors = true;
+            return true;
+        } else if (flag.equals("-keep-unreachable")) {
+            eliminateUnreachableFunctions = false;
+            return true;
+        } else if (flag.equals("-devirtualize")) {
+            devirtualize = true;
+            return true;
+        } else if (flag.equals("-devirtualize-report")) {
+            devirtualize = true;
+            printDevirtualizeReport = true;
+            return true;
+        } else if (flag.equals("-inline")) {
+            inline = true;
+            return true;
+        } else if (flag.equals("-inline-report")) {
+            inline = true;
+            printInlineReport = true;
+            return true;
+        } else if (flag.startsWith(INLINE_SIZE_FLAG)) {
+            try {
+                final int size = Integer.parseInt(flag.substring(INLINE_SIZE_FLAG.length()));
+                if (size >= 0) {
+                    inline = true;
+                    inlineMaxSize = size;
+                    return true;
+                }
+            } catch (final NumberFormatException e) {}
+            return false;
+        } else if (flag.startsWith(INLINE_ONCE_SIZE_FLAG)) {
+            try {
+                final int size = Integer.parseInt(flag.substring(INLINE_ONCE_SIZE_FLAG.length()));
+                if (size >= 0) {
+                    inline = true;
+                    inlineMaxSingleCallSize = size;
+                    return true;
+                }
+            } catch (final NumberFormatException e) {}
+            return false;
+        } else if (flag.equals("-fold-constants")) {
+            foldConstants = true;
+            return true;
+        } else if (flag.equals("-dead-stores")) {
+            eliminateDeadStores = true;
+            return true;
+        } else if (flag.equals("-register-temps")) {
+            codegen.registerExpressions = true;
+            return true;
+        } else if (flag.equals("-fused-branches")) {
+            codegen.fusedBranches = true;
+            return true;
+        } else if (flag.equals("-fixed-frames")) {
+            codegen.fixedFrames = true;
+            return true;
+        } else if (flag.equals("-register-calls")) {
+            codegen.registerCalls = true;
+            return true;
+        } else if (flag.equals("-leaf-functions")) {
+            codegen.leafFunctions = true;
+            return true;
+        } else if (flag.equals("-tail-calls")) {
+            codegen.tailCalls = true;
+            return true;
+        } else if (flag.equals("-copy-loops")) {
+            setDefaultCopyLoopWords();
+            return true;
+        } else if (flag.equals("-copy-stats")) {
+            setDefaultCopyLoopWords();
+            printCopySavings = true;
+            return true;
+        } else if (flag.startsWith(COPY_LOOP_WORDS_FLAG)) {
+            try {
+                final int words = Integer.parseInt(flag.substring(COPY_LOOP_WORDS_FLAG.length()));
+                if (words > 0) {
+                    codegen.copyLoopWords = words;
+                    return true;
+                }
+            } catch (final NumberFormatException e) {}
+            return false;
+        } else if (flag.equals("-reference-structs")) {
+            if (codegen.referenceWords <= 0) {
+                codegen.referenceWords = MIPSCodeGenerator.DEFAULT_REFERENCE_WORDS;
+            }
+            return true;
+        } else if (flag.startsWith(REFERENCE_WORDS_FLAG)) {
+            try {
+                final int words = Integer.parseInt(flag.substring(REFERENCE_WORDS_FLAG.length()));
+                if (words > 0) {
+                    codegen.referenceWords = words;
+                    return true;
+                }
+            } catch (final NumberFormatException e) {}
+            return false;
+        } else if (flag.equals("-strength-reduce")) {
+            codegen.strengthReduction = true;
+            return true;
+        } else if (flag.equals("-immediates")) {
+            codegen.immediateOperands = true;
+            return true;
+        } else if (flag.equals("-ir")) {
+            codegen.useIR = true;
+            return true;
+        } else if (flag.equals("-O")) {
+            codegen.useIR = true;
+            codegen.optimizeIR = true;
+            return true;
+        } else if (flag.equals("-scalar-replace")) {
+            codegen.useIR = true;
+            codegen.scalarReplacement = true;
+            return true;
+        } else if (flag.equals("-dump-ir")) {
+            codegen.useIR = true;
+            dumpIR = true;
+            return true;
+        } else if (flag.equals("-peephole")) {
+            codegen.peephole = true;
+            return true;
+        } else if (flag.equals("-peephole-stats")) {
+            codegen.peephole = true;
+            printPeepholeHits = true;
+            return true;
+        } else if (flag.startsWith(PEEPHOLE_WINDOW_FLAG)) {
+            try {
+                final int window = Integer.parseInt(flag.substring(PEEPHOLE_WINDOW_FLAG.length()));
+                if (window > 0) {
+                    codegen.peephole = true;
+                    codegen.peepholeWindow = window;
+                    return true;
+                }
+            } catch (final NumberFormatException e) {}
+            return false;
+        } else if (flag.equals("-profile")) {
+            printProfile = true;
+            return true;
+        } else if (flag.startsWith(PROFILE_JSON_FLAG) &&
+                   flag.length() > PROFILE_JSON_FLAG.length()) {
+            profileJsonFile = Optional.of(flag.substring(PROFILE_JSON_FLAG.length()));
+            return true;
+        } else {
+            return false;
+        }
+    }
+} // CompilerOptions
@@ -0,0 +1,212 @@
+package lowlang;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+
+// Wall time, CPU time, and bytes allocated for each phase of a compile, all
+// measured on the compiling thread.  Each phase can also carry a count of
+// whatever it produced (tokens, nodes, instructions, ...), so growth in
+// input size can be told apart from a regression in a phase.
+//
+// CPU time and allocation come from the thread MX bean; either is reported
+// as NOT_AVAILABLE if the JVM doesn't support it.
+public class PhaseProfile {
+    public static final long NOT_AVAILABLE = -1;
+
+    public static class Phase {
+        public final String name;
+        public final long wallNanos;
+        public final long cpuNanos;
+        public final long allocatedBytes;
+        private String countUnit;
+        private long count;
+
+        public Phase(final String name,
+                     final long wallNanos,
+                     final long cpuNanos,
+                     final long allocatedBytes) {
+            this.name = name;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+            countUnit = null;
+            count = NOT_AVAILABLE;
+        }
+
+        public boolean hasCount() {
+            return countUnit != null;
+        }
+
+        public String getCountUnit() {
+            return countUnit;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    } // Phase
+
+    private final boolean enabled;
+    private final ThreadMXBean threads;
+    private final List<Phase> phases;
+
+    // for the phase currently running
+    private String currentName;
+    private long startWall;
+    private long startCpu;
+    private long startAllocated;
+
+    public PhaseProfile(final boolean enabled) {
+        this.enabled = enabled;
+        threads = ManagementFactory.getThreadMXBean();
+        phases = new ArrayList<Phase>();
+        currentName = null;
+    }
+
+    // false if nothing should be measured; start and stop do nothing
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private long cpuTime() {
+        if (threads.isCurrentThreadCpuTimeSupported()) {
+            return threads.getCurrentThreadCpuTime();
+        } else {
+            return NOT_AVAILABLE;
+        }
+    }
+
+    private long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean asSun = (com.sun.management.ThreadMXBean)threads;
+            if (asSun.isThreadAllocatedMemorySupported() &&
+                asSun.isThreadAllocatedMemoryEnabled()) {
+                return asSun.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return NOT_AVAILABLE;
+    }
+
+    private static long difference(final long start, final long end) {
+        if (start == NOT_AVAILABLE || end == NOT_AVAILABLE) {
+            return NOT_AVAILABLE;
+        } else {
+            return end - start;
+        }
+    }
+
+    public void start(final String name) {
+        if (enabled) {
+            assert currentName == null : "Phase still running: " + currentName;
+            currentName = name;
+            startAllocated = allocatedBytes();
+            startCpu = cpuTime();
+            startWall = System.nanoTime();
+        }
+    }
+
+    public void stop() {
+        if (enabled) {
+            final long endWall = System.nanoTime();
+            final long endCpu = cpuTime();
+            final long endAllocated = allocatedBytes();
+            assert currentName != null : "No phase running";
+            phases.add(new Phase(currentName,
+                                 endWall - startWall,
+                                 difference(startCpu, endCpu),
+                                 difference(startAllocated, endAllocated)));
+            currentName = null;
+        }
+    }
+
+    // sets the count on the most recently stopped phase
+    public void setCount(final String countUnit, final long count) {
+        if (enabled) {
+            assert !phases.isEmpty();
+            final Phase phase = phases.get(phases.size() - 1);
+            phase.countUnit = countUnit;
+            phase.count = count;
+        }
+    }
+
+    public List<Phase> getPhases() {
+        return Collections.unmodifiableList(phases);
+    }
+
+    private static String millis(final long nanos) {
+        if (nanos == NOT_AVAILABLE) {
+            return "n/a";
+        } else {
+            return String.format("%.3f", nanos / 1000000.0);
+        }
+    }
+
+    private static String kilobytes(final long bytes) {
+        if (bytes == NOT_AVAILABLE) {
+            return "n/a";
+        } else {
+            return String.format("%.1f", bytes / 1024.0);
+        }
+    }
+
+    private static long total(final long soFar, final long value) {
+        if (soFar == NOT_AVAILABLE || value == NOT_AVAILABLE) {
+            return NOT_AVAILABLE;
+        } else {
+            return soFar + value;
+        }
+    }
+
+    public String toTable() {
+        final StringBuilder builder = new StringBuilder();
+        final String format = "%-10s %12s %12s %14s  %s%n";
+        builder.append(String.format(format, "phase", "wall ms", "cpu ms", "allocated KB", "count"));
+        long wall = 0;
+        long cpu = 0;
+        long allocated = 0;
+        for (final Phase phase : phases) {
+            builder.append(String.format(format,
+                                         phase.name,
+                                         millis(phase.wallNanos),
+                                         millis(phase.cpuNanos),
+                                         kilobytes(phase.allocatedBytes),
+                                         phase.hasCount() ? phase.count + " " + phase.countUnit : ""));
+            wall = total(wall, phase.wallNanos);
+            cpu = total(cpu, phase.cpuNanos);
+            allocated = total(allocated, phase.allocatedBytes);
+        }
+        builder.append(String.format(format, "total", millis(wall), millis(cpu), kilobytes(allocated), ""));
+        return builder.toString();
+    }
+
+    // Unavailable measurements are written as null.  Phase names and count
+    // units are fixed identifiers, so they need no escaping.
+    public String toJson() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("{\"phases\": [");
+        for (int index = 0; index < phases.size(); index++) {
+            final Phase phase = phases.get(index);
+            if (index > 0) {
+                builder.append(", ");
+            }
+            builder.append("{\"name\": \"" + phase.name + "\"");
+            builder.append(", \"wallNanos\": " + jsonValue(phase.wallNanos));
+            builder.append(", \"cpuNanos\": " + jsonValue(phase.cpuNanos));
+            builder.append(", \"allocatedBytes\": " + jsonValue(phase.allocatedBytes));
+            if (phase.hasCount()) {
+                builder.append(", \"count\": " + phase.count);
+                builder.append(", \"countUnit\": \"" + phase.countUnit + "\"");
+            }
+            builder.append("}");
+        }
+        builder.append("]}");
+        return builder.toString();
+    }
+
+    private static String jsonValue(final long value) {
+        return (value == NOT_AVAILABLE) ? "null" : Long.toString(value);
+    }
+} // PhaseProfile
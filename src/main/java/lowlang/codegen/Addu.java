@@ -0,0 +1,10 @@
+package lowlang.codegen;
+
+// like add, but wraps around instead of trapping on overflow
+public class Addu extends ThreeRegisterInstruction {
+    public Addu(final MIPSRegister rd,
+                final MIPSRegister rs,
+                final MIPSRegister rt) {
+        super("addu", rd, rs, rt);
+    }
+} // Addu
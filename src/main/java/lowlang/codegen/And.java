@@ -0,0 +1,9 @@
+package lowlang.codegen;
+
+public class And extends ThreeRegisterInstruction {
+    public And(final MIPSRegister rd,
+               final MIPSRegister rs,
+               final MIPSRegister rt) {
+        super("and", rd, rs, rt);
+    }
+} // And
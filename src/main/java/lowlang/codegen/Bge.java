@@ -0,0 +1,10 @@
+package lowlang.codegen;
+
+// pseudoinstruction; slt into $at, then beq $at, $zero
+public class Bge extends TwoRegisterBranchInstruction {
+    public Bge(final MIPSRegister rs,
+               final MIPSRegister rt,
+               final MIPSLabel jumpTo) {
+        super("bge", rs, rt, jumpTo);
+    }
+} // Bge
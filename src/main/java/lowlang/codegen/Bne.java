@@ -0,0 +1,9 @@
+package lowlang.codegen;
+
+public class Bne extends TwoRegisterBranchInstruction {
+    public Bne(final MIPSRegister rs,
+               final MIPSRegister rt,
+               final MIPSLabel jumpTo) {
+        super("bne", rs, rt, jumpTo);
+    }
+} // Bne
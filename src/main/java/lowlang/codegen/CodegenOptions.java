@@ -0,0 +1,73 @@
+package lowlang.codegen;
+
+import lowlang.codegen.peephole.PeepholeOptimizer;
+
+// Switches for optional code generation strategies.  The defaults give the
+// plain stack machine.
+public class CodegenOptions {
+    // evaluate word-sized expressions in $t0-$t9 instead of on the stack
+    public boolean registerExpressions;
+
+    // branch on the operands of == and < guards, rather than their 0/1 value
+    public boolean fusedBranches;
+
+    // pass word arguments in $a0-$a3 and return words in $v0
+    public boolean registerCalls;
+
+    // don't save $ra in functions which make no calls
+    public boolean leafFunctions;
+
+    // compile return f(...) as a jump that reuses the current frame
+    public boolean tailCalls;
+
+    // give every local a fixed $fp-relative slot, allocated in the prologue
+    public boolean fixedFrames;
+
+    // copy structures of more than this many words with a loop; 0 unrolls
+    // every copy
+    public int copyLoopWords;
+
+    // pass and return structures of more than this many words through
+    // pointers; 0 copies every structure onto the stack
+    public int referenceWords;
+
+    // compile multiplication and division by constants to shifts and adds
+    public boolean strengthReduction;
+
+    // put constants which fit in 16 bits straight into addi and slti
+    public boolean immediateOperands;
+
+    // lower to the three-address IR and select instructions from that
+    public boolean useIR;
+
+    // run the SSA optimizations over the IR; only used along with useIR
+    public boolean optimizeIR;
+
+    // keep structures whose address is never taken in IR registers, a word
+    // each, instead of stack slots; only used along with useIR
+    public boolean scalarReplacement;
+
+    // clean up the emitted code with the peephole rules before writing it
+    public boolean peephole;
+
+    // how many consecutive entries the peephole rules may look at
+    public int peepholeWindow;
+
+    public CodegenOptions() {
+        registerExpressions = false;
+        fusedBranches = false;
+        fixedFrames = false;
+        registerCalls = false;
+        leafFunctions = false;
+        tailCalls = false;
+        copyLoopWords = 0;
+        referenceWords = 0;
+        strengthReduction = false;
+        immediateOperands = false;
+        useIR = false;
+        optimizeIR = false;
+        scalarReplacement = false;
+        peephole = false;
+        peepholeWindow = PeepholeOptimizer.DEFAULT_WINDOW_SIZE;
+    }
+} // CodegenOptions
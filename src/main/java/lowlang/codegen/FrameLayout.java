@@ -0,0 +1,216 @@
+package lowlang.codegen;
+
+import lowlang.parser.*;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+
+// Fixed homes for one function's parameters and locals, as offsets from $fp.
+// The whole local area is sized before any code is emitted, so the
+// prologue allocates it at once and neither declarations nor scope exits
+// need to move $sp.  Locals in disjoint scopes share space.  The frame
+// looks like the following, with $fp pointing at the bottom:
+//
+// before_call
+// argument1
+// ...
+// argumentN
+// return_address
+// saved_fp
+// local area
+//
+// Parameters passed in registers don't come on the stack, so they get
+// their homes at the start of the local area instead, unless they stay in
+// their registers.  Leaf functions don't save the return address, and
+// if there's nothing else to keep in the frame either, there's no frame.
+// Parameters passed by reference have a word holding the pointer.
+public class FrameLayout {
+    // a local can shadow another in an enclosing scope, which comes back
+    // into view once the inner one goes out of scope
+    private static class Slot {
+        public final int offset;
+        public final int size;
+        public final boolean isReference;
+        public final Slot shadowed;
+
+        public Slot(final int offset,
+                    final int size,
+                    final boolean isReference,
+                    final Slot shadowed) {
+            this.offset = offset;
+            this.size = size;
+            this.isReference = isReference;
+            this.shadowed = shadowed;
+        }
+    } // Slot
+
+    private final Layout layout;
+    private final Map<Variable, Slot> slots;
+    // locals currently in scope, in declaration order
+    private final List<Variable> locals;
+    private final int localsSize;
+    private final int parametersSize;
+    private final boolean savesReturnAddress;
+    private final boolean frameless;
+    private int nextFree;
+
+    // argumentRegisters says which register each parameter came in, or -1
+    // if it came on the stack; references are the parameters passed by
+    // reference, whose types in def are already pointers
+    public FrameLayout(final FunctionDefinition def,
+                       final Layout layout,
+                       final int[] argumentRegisters,
+                       final Set<Variable> references,
+                       final boolean keepsRegisterParameters,
+                       final boolean savesReturnAddress) {
+        this.layout = layout;
+        this.savesReturnAddress = savesReturnAddress;
+        slots = new HashMap<Variable, Slot>();
+        locals = new ArrayList<Variable>();
+
+        int registerParametersSize = 0;
+        for (int index = 0; index < def.parameters.size(); index++) {
+            if (argumentRegisters[index] >= 0 && !keepsRegisterParameters) {
+                final VariableDeclaration param = def.parameters.get(index);
+                final int size = layout.sizeof(param.type);
+                slots.put(param.variable,
+                          new Slot(registerParametersSize,
+                                   size,
+                                   references.contains(param.variable),
+                                   null));
+                registerParametersSize += size;
+            }
+        }
+        localsSize = extent(def.body, registerParametersSize);
+        nextFree = registerParametersSize;
+
+        // the last parameter is pushed last, so it's closest to the saved registers
+        int offset = localsSize + savedRegistersSize();
+        for (int index = def.parameters.size() - 1; index >= 0; index--) {
+            if (argumentRegisters[index] < 0) {
+                final VariableDeclaration param = def.parameters.get(index);
+                final int size = layout.sizeof(param.type);
+                slots.put(param.variable,
+                          new Slot(offset, size, references.contains(param.variable), null));
+                offset += size;
+            }
+        }
+        parametersSize = offset - (localsSize + savedRegistersSize());
+        frameless = !savesReturnAddress && slots.isEmpty() && localsSize == 0;
+    }
+
+    // how far the local area reaches, when the statements start at base
+    private int extent(final List<Stmt> stmts, final int base) {
+        int current = base;
+        int max = base;
+        for (final Stmt stmt : stmts) {
+            if (stmt instanceof VariableDeclarationInitializationStmt) {
+                current += layout.sizeof(((VariableDeclarationInitializationStmt)stmt).varDec.type);
+                max = Math.max(max, current);
+            } else {
+                max = Math.max(max, extent(stmt, current));
+            }
+        }
+        return max;
+    }
+
+    // stmt is in a scope of its own
+    private int extent(final Stmt stmt, final int base) {
+        if (stmt instanceof VariableDeclarationInitializationStmt) {
+            return base + layout.sizeof(((VariableDeclarationInitializationStmt)stmt).varDec.type);
+        } else if (stmt instanceof BlockStmt) {
+            return extent(((BlockStmt)stmt).stmts, base);
+        } else if (stmt instanceof IfStmt) {
+            final IfStmt asIf = (IfStmt)stmt;
+            final int ifTrue = extent(asIf.ifTrue, base);
+            if (asIf.ifFalse.isPresent()) {
+                return Math.max(ifTrue, extent(asIf.ifFalse.get(), base));
+            } else {
+                return ifTrue;
+            }
+        } else if (stmt instanceof WhileStmt) {
+            return extent(((WhileStmt)stmt).body, base);
+        } else {
+            return base;
+        }
+    }
+
+    public int localsSize() {
+        return localsSize;
+    }
+
+    public boolean isFrameless() {
+        return frameless;
+    }
+
+    public boolean savesReturnAddress() {
+        return savesReturnAddress;
+    }
+
+    // $fp, and $ra if it's saved
+    public int savedRegistersSize() {
+        return (savesReturnAddress) ? 8 : 4;
+    }
+
+    public int savedFpOffset() {
+        return localsSize;
+    }
+
+    public int returnAddressOffset() {
+        assert(savesReturnAddress);
+        return localsSize + 4;
+    }
+
+    // where $sp was just before the call
+    public int callerSpOffset() {
+        return localsSize + savedRegistersSize() + parametersSize;
+    }
+
+    // returns the new local's offset
+    public int declare(final Variable variable, final int size) {
+        final int offset = nextFree;
+        nextFree += size;
+        assert(nextFree <= localsSize);
+        slots.put(variable, new Slot(offset, size, false, slots.get(variable)));
+        locals.add(variable);
+        return offset;
+    }
+
+    public VariableTableResetPoint makeResetPoint() {
+        return new VariableTableResetPoint(locals.size());
+    }
+
+    // takes every local declared since the reset point out of scope
+    public void resetTo(final VariableTableResetPoint resetPoint) {
+        assert(resetPoint.resetTo <= locals.size());
+        while (locals.size() > resetPoint.resetTo) {
+            final Variable variable = locals.remove(locals.size() - 1);
+            final Slot slot = slots.remove(variable);
+            nextFree = slot.offset;
+            if (slot.shadowed != null) {
+                slots.put(variable, slot.shadowed);
+            }
+        }
+    }
+
+    public int variableOffset(final Variable variable) {
+        final Slot slot = slots.get(variable);
+        assert(slot != null);
+        return slot.offset;
+    }
+
+    public boolean isReference(final Variable variable) {
+        final Slot slot = slots.get(variable);
+        assert(slot != null);
+        return slot.isReference;
+    }
+
+    public int variableSize(final Variable variable) {
+        final Slot slot = slots.get(variable);
+        assert(slot != null);
+        return slot.size;
+    }
+} // FrameLayout
@@ -0,0 +1,42 @@
+package lowlang.codegen;
+
+import java.util.List;
+import java.util.ArrayList;
+
+// Operations on a constant which fits in the 16-bit immediate field of
+// addi or slti, so it never needs a register of its own.  Each method
+// leaves the result of source op constant in dest, or returns null if the
+// constant doesn't fit.
+public class ImmediateOperands {
+    public static final int MIN_IMMEDIATE = -32768;
+    public static final int MAX_IMMEDIATE = 32767;
+
+    public static boolean fits(final int constant) {
+        return constant >= MIN_IMMEDIATE && constant <= MAX_IMMEDIATE;
+    }
+
+    private static List<MIPSInstruction> just(final MIPSInstruction instruction) {
+        final List<MIPSInstruction> result = new ArrayList<MIPSInstruction>();
+        result.add(instruction);
+        return result;
+    }
+
+    public static List<MIPSInstruction> add(final MIPSRegister dest,
+                                            final MIPSRegister source,
+                                            final int constant) {
+        return (fits(constant)) ? just(new Addi(dest, source, constant)) : null;
+    }
+
+    // -Integer.MIN_VALUE overflows
+    public static List<MIPSInstruction> subtract(final MIPSRegister dest,
+                                                 final MIPSRegister source,
+                                                 final int constant) {
+        return (constant != Integer.MIN_VALUE) ? add(dest, source, -constant) : null;
+    }
+
+    public static List<MIPSInstruction> lessThan(final MIPSRegister dest,
+                                                 final MIPSRegister source,
+                                                 final int constant) {
+        return (fits(constant)) ? just(new Slti(dest, source, constant)) : null;
+    }
+} // ImmediateOperands
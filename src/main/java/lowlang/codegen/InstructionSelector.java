@@ -0,0 +1,463 @@
+package lowlang.codegen;
+
+import lowlang.ir.*;
+import lowlang.parser.FunctionName;
+import lowlang.events.FunctionCodegenEvent;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.io.File;
+import java.io.IOException;
+
+// Translates IR into MIPS.  Every virtual register in use gets its own word
+// in the stack frame, and instructions go through $t0-$t2.  Calls use the
+// same stack-based convention as MIPSCodeGenerator: the caller pushes
+// arguments in order, and the callee leaves its return value where the
+// arguments started.
+//
+// The frame, from $sp upwards, looks like the following:
+//
+// vreg_0
+// ...
+// vreg_N
+// slot_0
+// ...
+// slot_M
+// padding, if the return value is bigger than the arguments
+// return_address
+// argumentN
+// ...
+// argument1
+// before_call
+public class InstructionSelector {
+    private static final MIPSRegister T0 = MIPSRegister.T0;
+    private static final MIPSRegister T1 = MIPSRegister.T1;
+    private static final MIPSRegister T2 = MIPSRegister.T2;
+    private static final MIPSRegister SP = MIPSRegister.SP;
+
+    private final List<MIPSEntry> entries;
+    // only strengthReduction and immediateOperands apply here
+    private final CodegenOptions options;
+
+    // ---BEGIN PER-FUNCTION STATE---
+    private IRFunction function;
+    private Map<VReg, Integer> registerOffsets;
+    private Map<Slot, Integer> slotOffsets;
+    // registers whose only definition is a constant
+    private Map<VReg, Integer> constants;
+    // offset of the return address from $sp
+    private int returnAddressOffset;
+    private int argumentBytes;
+    // how far $sp currently is below where it was after the prologue
+    private int spAdjustment;
+    // ---END PER-FUNCTION STATE---
+
+    public InstructionSelector() {
+        this(new CodegenOptions());
+    }
+
+    public InstructionSelector(final CodegenOptions options) {
+        entries = new ArrayList<MIPSEntry>();
+        this.options = options;
+    }
+
+    public List<MIPSEntry> getEntries() {
+        return entries;
+    }
+
+    private void add(final MIPSEntry entry) {
+        entries.add(entry);
+    }
+
+    public static MIPSLabel blockLabel(final FunctionName function,
+                                       final BasicBlock block) {
+        return new MIPSLabel(function.name + "_block_", block.id);
+    }
+
+    // ---BEGIN FRAME---
+    private int offsetOf(final VReg register) {
+        final Integer offset = registerOffsets.get(register);
+        assert offset != null : "Register not in frame: " + register.toString();
+        return spAdjustment + offset.intValue();
+    }
+
+    private void addToFrame(final VReg register) {
+        if (!registerOffsets.containsKey(register)) {
+            registerOffsets.put(register, Integer.valueOf(4 * registerOffsets.size()));
+        }
+    }
+
+    private void load(final MIPSRegister destination, final VReg register) {
+        add(new Lw(destination, offsetOf(register), SP));
+    }
+
+    private void store(final MIPSRegister source, final VReg register) {
+        add(new Sw(source, offsetOf(register), SP));
+    }
+
+    private void adjustSp(final int amount) {
+        if (amount != 0) {
+            add(new Addi(SP, SP, amount));
+        }
+    }
+
+    private static int totalWords(final List<Integer> words) {
+        int total = 0;
+        for (final Integer numWords : words) {
+            total += numWords.intValue();
+        }
+        return total;
+    }
+
+    private void layoutFrame() {
+        // only registers still in use take space; optimizations leave gaps
+        registerOffsets = new HashMap<VReg, Integer>();
+        for (final VReg parameter : function.parameters) {
+            addToFrame(parameter);
+        }
+        for (final BasicBlock block : function.getBlocks()) {
+            for (final Instruction instruction : block.instructions) {
+                for (final VReg use : instruction.uses()) {
+                    addToFrame(use);
+                }
+                for (final VReg def : instruction.defs()) {
+                    addToFrame(def);
+                }
+            }
+            for (final VReg use : block.getTerminator().uses()) {
+                addToFrame(use);
+            }
+        }
+
+        slotOffsets = new HashMap<Slot, Integer>();
+        int offset = 4 * registerOffsets.size();
+        for (final Slot slot : function.getSlots()) {
+            slotOffsets.put(slot, Integer.valueOf(offset));
+            offset += slot.size;
+        }
+        argumentBytes = 4 * totalWords(function.parameterWords);
+        // the return value gets copied over the top of the frame, so it
+        // must not reach any virtual registers
+        returnAddressOffset =
+            offset + Math.max(0, 4 * function.returnWords - argumentBytes);
+        spAdjustment = 0;
+    }
+
+    // the first argument is deepest in the caller's frame; words within an
+    // argument ascend in memory
+    private static List<Integer> argumentWordOffsets(final List<Integer> argumentWords,
+                                                     final int base) {
+        final int totalBytes = 4 * totalWords(argumentWords);
+        final List<Integer> result = new ArrayList<Integer>();
+        int prefix = 0;
+        for (final Integer numWords : argumentWords) {
+            prefix += 4 * numWords.intValue();
+            for (int word = 0; word < numWords.intValue(); word++) {
+                result.add(Integer.valueOf(base + totalBytes - prefix + 4 * word));
+            }
+        }
+        return result;
+    }
+    // ---END FRAME---
+
+    public void selectFunction(final IRFunction function) {
+        final FunctionCodegenEvent event = new FunctionCodegenEvent();
+        event.begin();
+        final int firstEntry = entries.size();
+
+        this.function = function;
+        layoutFrame();
+        findConstants();
+        add(MIPSCodeGenerator.functionNameToLabel(function.name));
+        add(new Addi(SP, SP, -(returnAddressOffset + 4)));
+        add(new Sw(MIPSRegister.RA, returnAddressOffset, SP));
+
+        // parameters start in the caller's frame
+        final List<Integer> parameterOffsets =
+            argumentWordOffsets(function.parameterWords, returnAddressOffset + 4);
+        for (int index = 0; index < function.parameters.size(); index++) {
+            add(new Lw(T0, parameterOffsets.get(index).intValue(), SP));
+            store(T0, function.parameters.get(index));
+        }
+
+        final List<BasicBlock> blocks = function.getBlocks();
+        for (int index = 0; index < blocks.size(); index++) {
+            final BasicBlock block = blocks.get(index);
+            final BasicBlock next =
+                (index + 1 < blocks.size()) ? blocks.get(index + 1) : null;
+            add(blockLabel(function.name, block));
+            for (final Instruction instruction : block.instructions) {
+                selectInstruction(instruction);
+            }
+            selectTerminator(block.getTerminator(), next);
+        }
+        this.function = null;
+
+        event.end();
+        if (event.shouldCommit()) {
+            // there's no AST to count nodes of
+            event.finish(function.name.name,
+                         0,
+                         MIPSCodeGenerator.numInstructions(entries, firstEntry));
+        }
+    }
+
+    private void selectInstruction(final Instruction instruction) {
+        if (instruction instanceof Const) {
+            final Const asConst = (Const)instruction;
+            add(new Li(T0, asConst.value));
+            store(T0, asConst.dest);
+        } else if (instruction instanceof Copy) {
+            final Copy asCopy = (Copy)instruction;
+            load(T0, asCopy.source);
+            store(T0, asCopy.dest);
+        } else if (instruction instanceof BinaryOperation) {
+            selectBinaryOperation((BinaryOperation)instruction);
+        } else if (instruction instanceof Load) {
+            final Load asLoad = (Load)instruction;
+            load(T1, asLoad.address);
+            add(new Lw(T0, asLoad.offset, T1));
+            store(T0, asLoad.dest);
+        } else if (instruction instanceof Store) {
+            final Store asStore = (Store)instruction;
+            load(T0, asStore.value);
+            load(T1, asStore.address);
+            add(new Sw(T0, asStore.offset, T1));
+        } else if (instruction instanceof SlotAddress) {
+            final SlotAddress asSlot = (SlotAddress)instruction;
+            add(new Addi(T0, SP, spAdjustment + slotOffsets.get(asSlot.slot).intValue()));
+            store(T0, asSlot.dest);
+        } else if (instruction instanceof FunctionAddress) {
+            final FunctionAddress asFunction = (FunctionAddress)instruction;
+            add(new La(T0, MIPSCodeGenerator.functionNameToLabel(asFunction.function)));
+            store(T0, asFunction.dest);
+        } else if (instruction instanceof Malloc) {
+            final Malloc asMalloc = (Malloc)instruction;
+            load(MIPSRegister.A0, asMalloc.amount);
+            add(new Li(MIPSRegister.V0, 9));
+            add(new Syscall());
+            store(MIPSRegister.V0, asMalloc.dest);
+        } else if (instruction instanceof Print) {
+            load(MIPSRegister.A0, ((Print)instruction).value);
+            add(new Li(MIPSRegister.V0, 1));
+            add(new Syscall());
+            add(new Li(MIPSRegister.V0, 4));
+            add(new La(MIPSRegister.A0, "newline"));
+            add(new Syscall());
+        } else if (instruction instanceof Call) {
+            final Call asCall = (Call)instruction;
+            selectCall(null, asCall.results, asCall.arguments, asCall.argumentWords,
+                       MIPSCodeGenerator.functionNameToLabel(asCall.function));
+        } else if (instruction instanceof IndirectCall) {
+            final IndirectCall asCall = (IndirectCall)instruction;
+            selectCall(asCall.target, asCall.results, asCall.arguments,
+                       asCall.argumentWords, null);
+        } else {
+            assert false : "Unknown instruction: " + instruction.toString();
+        }
+    }
+
+    private void findConstants() {
+        final Set<VReg> defined = new HashSet<VReg>();
+        final Set<VReg> redefined = new HashSet<VReg>();
+        constants = new HashMap<VReg, Integer>();
+        for (final BasicBlock block : function.getBlocks()) {
+            for (final Instruction instruction : block.instructions) {
+                for (final VReg def : instruction.defs()) {
+                    if (!defined.add(def)) {
+                        redefined.add(def);
+                    }
+                }
+                if (instruction instanceof Const) {
+                    final Const asConst = (Const)instruction;
+                    constants.put(asConst.dest, Integer.valueOf(asConst.value));
+                }
+            }
+        }
+        for (final VReg register : redefined) {
+            constants.remove(register);
+        }
+    }
+
+    // Like MIPSCodeGenerator.withConstantOperand, with constants being
+    // registers only ever set to one.  Returns false if the operation needs
+    // both operands in registers after all.
+    private boolean selectWithConstantOperand(final BinaryOperation operation) {
+        final Integer right = constants.get(operation.right);
+        final Integer constant = (right != null) ? right : constants.get(operation.left);
+        if (constant == null) {
+            return false;
+        }
+        final boolean onRight = (right != null);
+        final int value = constant.intValue();
+        List<MIPSInstruction> result = null;
+        if (options.strengthReduction && operation.op == BinaryOperator.MUL) {
+            result = StrengthReduction.multiply(T0, T1, value, T2);
+        } else if (options.strengthReduction && operation.op == BinaryOperator.DIV && onRight) {
+            result = StrengthReduction.divide(T0, T1, value, T2);
+        }
+        if (result == null && options.immediateOperands) {
+            if (operation.op == BinaryOperator.ADD) {
+                result = ImmediateOperands.add(T0, T1, value);
+            } else if (operation.op == BinaryOperator.SUB && onRight) {
+                result = ImmediateOperands.subtract(T0, T1, value);
+            } else if (operation.op == BinaryOperator.LT && onRight) {
+                result = ImmediateOperands.lessThan(T0, T1, value);
+            }
+        }
+        if (result == null) {
+            return false;
+        }
+        load(T1, (onRight) ? operation.left : operation.right);
+        for (final MIPSInstruction instruction : result) {
+            add(instruction);
+        }
+        store(T0, operation.dest);
+        return true;
+    }
+
+    private void selectBinaryOperation(final BinaryOperation operation) {
+        if (selectWithConstantOperand(operation)) {
+            return;
+        }
+        load(T1, operation.left);
+        load(T2, operation.right);
+        switch (operation.op) {
+        case ADD:
+            add(new Add(T0, T1, T2));
+            break;
+        case SUB:
+            add(new Sub(T0, T1, T2));
+            break;
+        case MUL:
+            add(new Mult(T1, T2));
+            add(new Mflo(T0));
+            break;
+        case DIV:
+            add(new Div(T1, T2));
+            add(new Mflo(T0));
+            break;
+        case EQ:
+            add(new Seq(T0, T1, T2));
+            break;
+        case LT:
+            add(new Slt(T0, T1, T2));
+            break;
+        }
+        store(T0, operation.dest);
+    }
+
+    // exactly one of target and label is present
+    private void selectCall(final VReg target,
+                            final List<VReg> results,
+                            final List<VReg> arguments,
+                            final List<Integer> argumentWords,
+                            final MIPSLabel label) {
+        if (target != null) {
+            load(T2, target);
+        }
+        final int callArgumentBytes = 4 * arguments.size();
+        adjustSp(-callArgumentBytes);
+        spAdjustment += callArgumentBytes;
+        final List<Integer> offsets = argumentWordOffsets(argumentWords, 0);
+        for (int index = 0; index < arguments.size(); index++) {
+            load(T0, arguments.get(index));
+            add(new Sw(T0, offsets.get(index).intValue(), SP));
+        }
+
+        if (target != null) {
+            add(new Jalr(T2));
+        } else {
+            add(new Jal(label));
+        }
+
+        // the arguments have been replaced with the return value
+        final int resultBytes = 4 * results.size();
+        spAdjustment += resultBytes - callArgumentBytes;
+        for (int index = 0; index < results.size(); index++) {
+            add(new Lw(T0, 4 * index, SP));
+            store(T0, results.get(index));
+        }
+        adjustSp(resultBytes);
+        spAdjustment -= resultBytes;
+        assert(spAdjustment == 0);
+    }
+
+    private void selectTerminator(final Terminator terminator,
+                                  final BasicBlock next) {
+        if (terminator instanceof Jump) {
+            final BasicBlock target = ((Jump)terminator).target;
+            if (target != next) {
+                add(new J(blockLabel(function.name, target)));
+            }
+        } else if (terminator instanceof Branch) {
+            final Branch asBranch = (Branch)terminator;
+            load(T0, asBranch.condition);
+            add(new Beq(T0, MIPSRegister.ZERO, blockLabel(function.name, asBranch.ifFalse)));
+            if (asBranch.ifTrue != next) {
+                add(new J(blockLabel(function.name, asBranch.ifTrue)));
+            }
+        } else if (terminator instanceof Return) {
+            selectReturn((Return)terminator);
+        } else {
+            assert false : "Unknown terminator: " + terminator.toString();
+        }
+    }
+
+    private void selectReturn(final Return ret) {
+        // the return value may overwrite the return address
+        add(new Lw(MIPSRegister.RA, returnAddressOffset, SP));
+        final int returnBytes = 4 * ret.values.size();
+        final int returnValueOffset = returnAddressOffset + 4 + argumentBytes - returnBytes;
+        for (int index = 0; index < ret.values.size(); index++) {
+            load(T0, ret.values.get(index));
+            add(new Sw(T0, returnValueOffset + 4 * index, SP));
+        }
+        add(new Addi(SP, SP, returnValueOffset));
+        add(new Jr(MIPSRegister.RA));
+    }
+
+    private static boolean hasPhis(final IRFunction function) {
+        for (final BasicBlock block : function.getBlocks()) {
+            for (final Instruction instruction : block.instructions) {
+                if (instruction instanceof Phi) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // main needs to be first, so we can fall into it
+    public void selectProgram(final IRProgram program) {
+        final FunctionName mainName = new FunctionName("main");
+        add(MIPSCodeGenerator.functionNameToLabel(MIPSCodeGenerator.REAL_MAIN));
+        add(new Jal(MIPSCodeGenerator.functionNameToLabel(mainName)));
+        add(new Li(MIPSRegister.V0, 10));
+        add(new Syscall());
+        for (final IRFunction function : program.functions) {
+            assert !hasPhis(function) : "Phis must be removed before selection";
+            selectFunction(function);
+        }
+    }
+
+    public static List<MIPSEntry> select(final IRProgram program) {
+        return select(program, new CodegenOptions());
+    }
+
+    public static List<MIPSEntry> select(final IRProgram program,
+                                         final CodegenOptions options) {
+        final InstructionSelector selector = new InstructionSelector(options);
+        selector.selectProgram(program);
+        return selector.getEntries();
+    }
+
+    public static void compile(final IRProgram program,
+                               final File outputFile) throws IOException {
+        MIPSCodeGenerator.writeCompleteFile(select(program), outputFile);
+    }
+} // InstructionSelector
@@ -0,0 +1,98 @@
+package lowlang.codegen;
+
+import lowlang.parser.*;
+import lowlang.typechecker.SymbolTable;
+
+// Sizes and field offsets for every type in a program, computed once up
+// front and indexed by the typechecker's structure and function ids.
+//
+// For simplicity, bools and chars are 4 bytes.  Within a structure, the
+// last field has offset zero, and earlier fields are at higher addresses.
+public class Layout {
+    private final SymbolTable symbols;
+    // indexed by structure id and then field id
+    private final int[] structureSizes;
+    private final int[][] fieldOffsets;
+    private final int[][] fieldSizes;
+    // indexed by function id
+    private final int[] returnSizes;
+
+    public Layout(final SymbolTable symbols) {
+        this.symbols = symbols;
+        structureSizes = new int[symbols.numStructures()];
+        fieldOffsets = new int[symbols.numStructures()][];
+        fieldSizes = new int[symbols.numStructures()][];
+        returnSizes = new int[symbols.numFunctions()];
+        for (int structureId = 0; structureId < structureSizes.length; structureId++) {
+            computeLayout(structureId);
+        }
+        for (int functionId = 0; functionId < returnSizes.length; functionId++) {
+            returnSizes[functionId] = sizeof(symbols.returnType(functionId));
+        }
+    }
+
+    // Structures can contain other structures, so these are computed on
+    // demand; the typechecker guarantees there are no cycles.
+    private void computeLayout(final int structureId) {
+        if (fieldOffsets[structureId] != null) {
+            return;
+        }
+        final int numFields = symbols.numFields(structureId);
+        final int[] offsets = new int[numFields];
+        final int[] sizes = new int[numFields];
+
+        // last value has offset zero
+        int offset = 0;
+        for (int fieldId = numFields - 1; fieldId >= 0; fieldId--) {
+            sizes[fieldId] = sizeof(symbols.fieldType(structureId, fieldId));
+            offsets[fieldId] = offset;
+            offset += sizes[fieldId];
+        }
+        assert(offset >= 0);
+        assert(offset % 4 == 0);
+        
+        structureSizes[structureId] = offset;
+        fieldSizes[structureId] = sizes;
+        fieldOffsets[structureId] = offsets;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public int sizeof(final Type type) {
+        if (type instanceof VoidType) {
+            return 0;
+        } else if (type instanceof IntType ||
+                   type instanceof BoolType ||
+                   type instanceof PointerType ||
+                   type instanceof FunctionPointerType) { // 32-bit word
+            return 4;
+        } else if (type instanceof StructureType) {
+            final StructureName name = ((StructureType)type).name;
+            final int structureId = symbols.structureId(name);
+            assert structureId != SymbolTable.NOT_FOUND : "No such structure: " + name.toString();
+            computeLayout(structureId);
+            return structureSizes[structureId];
+        } else {
+            assert false : "Unexpected type : " + type.toString();
+            return 0;
+        }
+    } // sizeof
+
+    public int structureSize(final int structureId) {
+        return structureSizes[structureId];
+    }
+
+    public int fieldOffset(final int structureId, final int fieldId) {
+        return fieldOffsets[structureId][fieldId];
+    }
+
+    public int fieldSize(final int structureId, final int fieldId) {
+        return fieldSizes[structureId][fieldId];
+    }
+
+    public int returnSize(final int functionId) {
+        return returnSizes[functionId];
+    }
+} // Layout
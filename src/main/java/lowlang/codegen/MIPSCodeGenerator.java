@@ -1,13 +1,20 @@
 package lowlang.codegen;
 
 import lowlang.parser.*;
+import lowlang.typechecker.SymbolTable;
+import lowlang.codegen.peephole.PeepholeOptimizer;
+import lowlang.optimizer.CallGraph;
+import lowlang.optimizer.Purity;
+import lowlang.events.FunctionCodegenEvent;
+import lowlang.events.WriteAssemblyEvent;
 
+import java.util.List;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Set;
+import java.util.HashSet;
 
 import java.io.File;
 import java.io.FileWriter;
@@ -27,67 +34,119 @@ public class MIPSCodeGenerator {
     // placeholder variable for return addresses
     public static final Variable RA_VARIABLE = new Variable("$ra");
     public static final FunctionName REAL_MAIN = new FunctionName("$REAL_MAIN");
+    // used in order for expression temporaries
+    public static final MIPSRegister[] TEMPORARIES = new MIPSRegister[] {
+        MIPSRegister.T0, MIPSRegister.T1, MIPSRegister.T2, MIPSRegister.T3, MIPSRegister.T4,
+        MIPSRegister.T5, MIPSRegister.T6, MIPSRegister.T7, MIPSRegister.T8, MIPSRegister.T9
+    };
+    // holds a spilled temporary while it's used; never live across anything else
+    public static final MIPSRegister SPILL_RELOAD = MIPSRegister.V1;
+    // walk a copy loop, under options.copyLoopWords; free whenever a
+    // structure is being copied
+    public static final MIPSRegister COPY_FROM = MIPSRegister.T8;
+    public static final MIPSRegister COPY_TO = MIPSRegister.T9;
+    public static final MIPSRegister COPY_END = MIPSRegister.T7;
+    // the default for options.copyLoopWords, when copy loops are on
+    public static final int DEFAULT_COPY_LOOP_WORDS = 8;
+    public static final int COPY_LOOP_INSTRUCTIONS = 8;
+    // word arguments, in order, under options.registerCalls
+    public static final MIPSRegister[] ARGUMENT_REGISTERS = new MIPSRegister[] {
+        MIPSRegister.A0, MIPSRegister.A1, MIPSRegister.A2, MIPSRegister.A3
+    };
+    // hidden parameter pointing to where a structure returned by reference goes
+    public static final Variable RESULT_VARIABLE = new Variable("$result");
+    // in place of a result mark: no result pointer, or pass on our own
+    public static final int NO_RESULT_POINTER = -1;
+    public static final int FORWARD_RESULT_POINTER = -2;
+    // the default for options.referenceWords, when passing by reference is on
+    public static final int DEFAULT_REFERENCE_WORDS = 4;
     // ---END CONSTANTS
 
     // ---BEGIN INSTANCE VARIABLES---
-    private final Map<StructureName, LinkedHashMap<FieldName, Type>> structDecs;
-    private final Map<FunctionName, FunctionDefinition> functionDefs;
+    private final SymbolTable symbols;
+    private final CodegenOptions options;
+    private final List<FunctionDefinition> functionDefs;
+    private final Layout layout;
     private final List<MIPSEntry> entries;
     private final VariableTable variables;
+    // only built with options.leafFunctions
+    private final CallGraph callGraph;
+    // leaf function parameters which stay in the registers they came in
+    private final Map<Variable, MIPSRegister> registerParameters;
+    // under options.referenceWords
+    private final Map<FunctionName, FunctionDefinition> definitions;
+    private final Map<FunctionName, boolean[]> readOnlyParameters;
+    // value sizes of the current function's parameters passed by reference
+    private final Map<Variable, Integer> referenceSizes;
+    // the current function's locals and parameters whose address is taken,
+    // when passing by reference or making tail calls
+    private Set<Variable> currentAddressTaken;
+    private boolean currentReturnsByReference;
+    // only set while compiling a function with a fixed frame
+    private FrameLayout frame;
     private FunctionName currentFunction;
+    private boolean currentReturnInRegister;
+    private boolean currentIsLeaf;
     private int expressionOffset;
     private int ifCounter;
     private int whileCounter;
+    private int copyCounter;
+    // instructions saved by copy loops, by function
+    private final Map<String, Integer> copySavings;
     private MIPSLabel currentWhileStart;
     private MIPSLabel currentWhileEnd;
     private VariableTableResetPoint currentWhileReset;
     // ---END INSTANCE VARIABLES
 
-    public static Map<StructureName, LinkedHashMap<FieldName, Type>> makeStructDecs(final List<StructureDeclaration> structs) {
-        final Map<StructureName, LinkedHashMap<FieldName, Type>> retval = new HashMap<StructureName, LinkedHashMap<FieldName, Type>>();
-        for (final StructureDeclaration struct : structs) {
-            assert !retval.containsKey(struct.name) : "Typechecker didn't detect duplicate struct: " + struct.name.toString();
-            final LinkedHashMap<FieldName, Type> fields = new LinkedHashMap<FieldName, Type>();
-            for (final VariableDeclaration vardec : struct.fields) {
-                final FieldName fieldName = new FieldName(vardec.variable.name);
-                assert !fields.containsKey(fieldName) : "Typechecker didn't detect duplicate field: " + fieldName.toString();
-                fields.put(fieldName, vardec.type);
-            }
-            retval.put(struct.name, fields);
-        }
-        return retval;
-    }
-
-    public static Map<FunctionName, FunctionDefinition> makeFunctionDefs(final List<FunctionDefinition> functions) {
-        final Map<FunctionName, FunctionDefinition> retval = new HashMap<FunctionName, FunctionDefinition>();
-        for (final FunctionDefinition function : functions) {
-            assert !retval.containsKey(function.name) : "Typechecker didn't detect duplicate function name: " + function.name.toString();
-            retval.put(function.name, function);
-        }
-        return retval;
-    }
-    
     // assumes the program has undergone typechecking
     public MIPSCodeGenerator(final Program program) {
-        this(makeStructDecs(program.structDecs),
-             makeFunctionDefs(program.functionDefs));
+        this(program, SymbolTable.fromProgram(program), new CodegenOptions());
     }
-    
-    public MIPSCodeGenerator(final Map<StructureName, LinkedHashMap<FieldName, Type>> structDecs,
-                             final Map<FunctionName, FunctionDefinition> functionDefs) {
-        this.structDecs = structDecs;
-        this.functionDefs = functionDefs;
+
+    // symbols must be the table the program was typechecked with
+    public MIPSCodeGenerator(final Program program,
+                             final SymbolTable symbols,
+                             final CodegenOptions options) {
+        this.symbols = symbols;
+        this.options = options;
+        this.functionDefs = program.functionDefs;
+        layout = new Layout(symbols);
         entries = new ArrayList<MIPSEntry>();
         variables = new VariableTable();
+        callGraph = (options.leafFunctions) ? new CallGraph(program) : null;
+        registerParameters = new HashMap<Variable, MIPSRegister>();
+        definitions = new HashMap<FunctionName, FunctionDefinition>();
+        for (final FunctionDefinition def : functionDefs) {
+            definitions.put(def.name, def);
+        }
+        readOnlyParameters = new HashMap<FunctionName, boolean[]>();
+        referenceSizes = new HashMap<Variable, Integer>();
+        currentAddressTaken = new HashSet<Variable>();
+        currentReturnsByReference = false;
+        frame = null;
         expressionOffset = 0;
         currentFunction = null;
+        currentReturnInRegister = false;
+        currentIsLeaf = false;
         ifCounter = 0;
         whileCounter = 0;
+        copyCounter = 0;
+        copySavings = new LinkedHashMap<String, Integer>();
         currentWhileStart = null;
         currentWhileEnd = null;
         currentWhileReset = null;
     }
 
+    // ---BEGIN LAYOUTS---
+    public int fieldOffset(final int structureId, final int fieldId) {
+        return layout.fieldOffset(structureId, fieldId);
+    }
+
+    public int fieldSize(final int structureId, final int fieldId) {
+        return layout.fieldSize(structureId, fieldId);
+    }
+    // ---END LAYOUTS---
+
     // specifically used in statement contexts, when a statement finishes evaluating an
     // expression inside
     private void resetExpressionOffset() {
@@ -133,6 +192,11 @@ public class MIPSCodeGenerator {
     }
 
     private void doReturn() {
+        if (frame != null) {
+            doFixedFrameReturn();
+            return;
+        }
+
         // the stack looks like the following at this point:
         //
         // before_call
@@ -158,25 +222,22 @@ public class MIPSCodeGenerator {
         //
 
         
-        // save return value in a register
-        final int raOffset = variables.variableOffset(RA_VARIABLE) + expressionOffset;
+        // save return value in a register; a leaf never changed it
         final MIPSRegister sp = MIPSRegister.SP;
         final MIPSRegister ra = MIPSRegister.RA;
-        add(new Lw(ra, raOffset, sp));
+        if (!currentIsLeaf) {
+            final int raOffset = variables.variableOffset(RA_VARIABLE) + expressionOffset;
+            add(new Lw(ra, raOffset, sp));
+        }
 
         // copy return value to correct place
         final int sizeOfAllVariables = variables.totalSizeOfAllVariables();
         final int copyReturnValueToOffset =
             sizeOfAllVariables + expressionOffset;
-        int copyFrom = expressionOffset - 4;
-        int copyTo = copyReturnValueToOffset - 4;
-        while (copyFrom >= 0) {
-            final MIPSRegister t0 = MIPSRegister.T0;
-            add(new Lw(t0, copyFrom, sp));
-            add(new Sw(t0, copyTo, sp));
-            copyFrom -= 4;
-            copyTo -= 4;
-        }
+        copyWords(MIPSRegister.T0,
+                  sp, 0,
+                  sp, copyReturnValueToOffset - expressionOffset,
+                  expressionOffset);
 
         // Put sp at final position
         add(new Addi(sp, sp, sizeOfAllVariables));
@@ -185,6 +246,32 @@ public class MIPSCodeGenerator {
         add(new Jr(ra));
     }
 
+    private void doFixedFrameReturn() {
+        // the return value is on top of the stack, just below $fp, and goes
+        // just below where $sp was before the call.  It may overlap the saved
+        // registers, so those are read first.
+        final MIPSRegister fp = MIPSRegister.FP;
+        final MIPSRegister ra = MIPSRegister.RA;
+        final MIPSRegister t0 = MIPSRegister.T0;
+        final MIPSRegister t1 = MIPSRegister.T1;
+        if (frame.isFrameless()) {
+            // without any parameters, the return value is already in place
+            add(new Jr(ra));
+            return;
+        }
+        if (frame.savesReturnAddress()) {
+            add(new Lw(ra, frame.returnAddressOffset(), fp));
+        }
+        add(new Lw(t1, frame.savedFpOffset(), fp));
+
+        final int finalSp = frame.callerSpOffset() - expressionOffset;
+        copyWords(t0, fp, -expressionOffset, fp, finalSp, expressionOffset);
+
+        add(new Addi(MIPSRegister.SP, fp, finalSp));
+        add(new Move(fp, t1));
+        add(new Jr(ra));
+    }
+
     // will create a wrapper that calls this function and then exits
     public void compileMainFunctionDefinition(final FunctionDefinition def) {
         assert(def.returnType.equals(new VoidType()));
@@ -193,7 +280,8 @@ public class MIPSCodeGenerator {
 
         // call into the user's main and then exit
         add(functionNameToLabel(REAL_MAIN));
-        compileDirectCall(def.name, new ArrayList<Exp>());
+        compileDirectCall(new DirectCallResolved(def.name, symbols.functionId(def.name)),
+                          new ArrayList<Exp>());
         mainEnd();
         
         compileFunctionDefinition(def);
@@ -204,21 +292,75 @@ public class MIPSCodeGenerator {
         assert(variables.isEmpty());
         assert(currentFunction == null);
 
+        final FunctionCodegenEvent event = new FunctionCodegenEvent();
+        event.begin();
+        final int firstEntry = entries.size();
+
         currentFunction = def.name;
-        add(functionNameToLabel(def.name));
-        
+        currentReturnInRegister = returnsInRegister(sizeof(def.returnType));
+        currentIsLeaf = options.leafFunctions && callGraph.isLeaf(def.name);
+        currentReturnsByReference = byReference(sizeof(def.returnType));
         for (final VariableDeclaration param : def.parameters) {
-            variables.pushVariable(param.variable,
-                                   param.type,
-                                   sizeof(param.type));
+            final int size = sizeof(param.type);
+            if (byReference(size)) {
+                referenceSizes.put(param.variable, Integer.valueOf(size));
+            }
+        }
+        if (options.referenceWords > 0 || options.tailCalls) {
+            currentAddressTaken = ReferenceParameters.addressTaken(def);
+        }
+        add(functionNameToLabel(def.name));
+
+        if (options.fixedFrames) {
+            compileFixedFrameFunctionBody(def);
+        } else {
+            compileFunctionBody(def);
+        }
+        currentFunction = null;
+        currentReturnsByReference = false;
+        referenceSizes.clear();
+        currentAddressTaken.clear();
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.finish(def.name.name,
+                         NodeCounter.countNodes(def),
+                         numInstructions(entries, firstEntry));
+        }
+    }
+
+    private void compileFunctionBody(final FunctionDefinition def) {
+        final List<VariableDeclaration> parameters = loweredParameters(def);
+        final int[] argumentRegisters = parameterRegisters(parameters);
+        for (int index = 0; index < parameters.size(); index++) {
+            if (argumentRegisters[index] < 0) {
+                pushParameter(parameters.get(index));
+            }
         }
 
-        // return address always follows parameters
+        // parameters passed in registers get stored just after the others
+        final boolean keepRegisterParameters = keepsRegisterParameters(def);
+        for (int index = 0; index < parameters.size(); index++) {
+            if (argumentRegisters[index] >= 0) {
+                final VariableDeclaration param = parameters.get(index);
+                final MIPSRegister register = ARGUMENT_REGISTERS[argumentRegisters[index]];
+                if (keepRegisterParameters) {
+                    registerParameters.put(param.variable, register);
+                } else {
+                    push(register);
+                    pushParameter(param);
+                }
+            }
+        }
+
+        // return address always follows parameters, unless this is a leaf
         // we treat this like a special variable
-        push(MIPSRegister.RA);
-        variables.pushVariable(RA_VARIABLE,
-                               new PointerType(new VoidType()), // meaningless
-                               4);
+        if (!currentIsLeaf) {
+            push(MIPSRegister.RA);
+            variables.pushVariable(RA_VARIABLE,
+                                   new PointerType(new VoidType()), // meaningless
+                                   4);
+        }
         resetExpressionOffset();
         compileBlockStmt(new BlockStmt(def.body));
         assert(expressionOffset == 0);
@@ -229,7 +371,73 @@ public class MIPSCodeGenerator {
             doReturn();
         }
         variables.clear();
-        currentFunction = null;
+        registerParameters.clear();
+    }
+
+    // the parameter's value is already on the stack
+    private void pushParameter(final VariableDeclaration param) {
+        if (referenceSizes.containsKey(param.variable)) {
+            variables.pushReference(param.variable, param.type);
+        } else {
+            variables.pushVariable(param.variable,
+                                   param.type,
+                                   sizeof(param.type));
+        }
+    }
+
+    // a pointer passed in place of a structure needs a home
+    private boolean keepsRegisterParameters(final FunctionDefinition def) {
+        return (currentIsLeaf &&
+                referenceSizes.isEmpty() &&
+                !currentReturnsByReference &&
+                RegisterParameters.canStayInRegisters(def));
+    }
+
+    private void compileFixedFrameFunctionBody(final FunctionDefinition def) {
+        final List<VariableDeclaration> parameters = loweredParameters(def);
+        final int[] argumentRegisters = parameterRegisters(parameters);
+        final boolean keepRegisterParameters = keepsRegisterParameters(def);
+        frame = new FrameLayout(new FunctionDefinition(def.returnType,
+                                                       def.name,
+                                                       parameters,
+                                                       def.body),
+                                layout,
+                                argumentRegisters,
+                                referenceSizes.keySet(),
+                                keepRegisterParameters,
+                                !currentIsLeaf);
+
+        // save the return address and caller's $fp, and allocate every
+        // local, with a single adjustment
+        final MIPSRegister sp = MIPSRegister.SP;
+        final MIPSRegister fp = MIPSRegister.FP;
+        if (!frame.isFrameless()) {
+            add(new Addi(sp, sp, -(frame.localsSize() + frame.savedRegistersSize())));
+            if (frame.savesReturnAddress()) {
+                add(new Sw(MIPSRegister.RA, frame.returnAddressOffset(), sp));
+            }
+            add(new Sw(fp, frame.savedFpOffset(), sp));
+            add(new Move(fp, sp));
+        }
+        for (int index = 0; index < parameters.size(); index++) {
+            if (argumentRegisters[index] >= 0) {
+                final VariableDeclaration param = parameters.get(index);
+                final MIPSRegister register = ARGUMENT_REGISTERS[argumentRegisters[index]];
+                if (keepRegisterParameters) {
+                    registerParameters.put(param.variable, register);
+                } else {
+                    add(new Sw(register, frame.variableOffset(param.variable), fp));
+                }
+            }
+        }
+
+        compileBlockStmt(new BlockStmt(def.body));
+        assert(expressionOffset == 0);
+        if (!containsReturn(def.body)) {
+            doReturn();
+        }
+        frame = null;
+        registerParameters.clear();
     }
 
     private MIPSLabel freshIfLabel(final String baseName) {
@@ -241,20 +449,13 @@ public class MIPSCodeGenerator {
     }
     
     public void compileIfStmt(final IfStmt stmt) {
-        compileExpression(stmt.guard);
-
         // Guaranteed that guard is a boolean, from the typechecker.
-        // Put it in t0.
-        assert(expressionOffset == 4);
-        final MIPSRegister t0 = MIPSRegister.T0;
-        pop(t0);
-
         if (stmt.ifFalse.isPresent()) {
             // If it's false, make a jump.  If it's true, fall through to true branch.
             // True branch needs to jump to after the false, which ends the if/else
             final MIPSLabel falseStart = freshIfLabel("false_start");
             final MIPSLabel falseEnd = freshIfLabel("false_end");
-            add(new Beq(t0, MIPSRegister.ZERO, falseStart));
+            compileBranchIfFalse(stmt.guard, falseStart);
 
             compileStatementInNestedScope(false, stmt.ifTrue);
             add(new J(falseEnd));
@@ -268,7 +469,7 @@ public class MIPSCodeGenerator {
             //   ifTrue
             // true_end:
             final MIPSLabel trueEnd = freshIfLabel("true_end");
-            add(new Beq(t0, MIPSRegister.ZERO, trueEnd));
+            compileBranchIfFalse(stmt.guard, trueEnd);
             compileStatementInNestedScope(false, stmt.ifTrue);
             add(trueEnd);
         }
@@ -282,20 +483,37 @@ public class MIPSCodeGenerator {
         }
     }
     
+    private VariableTableResetPoint makeResetPoint() {
+        return (frame != null) ? frame.makeResetPoint() : variables.makeResetPoint();
+    }
+
+    // locals in a fixed frame already have their space, so nothing is freed
+    private void resetTo(final VariableTableResetPoint reset) {
+        if (frame != null) {
+            frame.resetTo(reset);
+        } else {
+            freeSizeForVariables(variables.resetTo(reset));
+        }
+    }
+
     private void compileStatementInNestedScope(final boolean isWhile, final Stmt stmt) {
         final VariableTableResetPoint oldWhileReset = currentWhileReset;
-        final VariableTableResetPoint reset = variables.makeResetPoint();
+        final VariableTableResetPoint reset = makeResetPoint();
         if (isWhile) {
             currentWhileReset = reset;
         }
         compileStatement(stmt);
-        freeSizeForVariables(variables.resetTo(reset));
+        resetTo(reset);
         if (isWhile) {
             currentWhileReset = oldWhileReset;
         }
     }
     
     public void compileVariableDeclarationInitializationStmt(final VariableDeclarationInitializationStmt stmt) {
+        if (frame != null) {
+            compileFixedFrameDeclaration(stmt);
+            return;
+        }
         compileExpression(stmt.exp);
         resetExpressionOffset();
         final VariableDeclaration dec = stmt.varDec;
@@ -305,33 +523,86 @@ public class MIPSCodeGenerator {
                                sizeof(dec.type));
     }
 
+    // the value goes straight into the local's slot in the frame
+    private void compileFixedFrameDeclaration(final VariableDeclarationInitializationStmt stmt) {
+        final VariableDeclaration dec = stmt.varDec;
+        final int size = sizeof(dec.type);
+        final MIPSRegister fp = MIPSRegister.FP;
+        if (inRegisters(stmt.exp)) {
+            compileToRegister(stmt.exp, 0);
+            add(new Sw(TEMPORARIES[0], frame.declare(dec.variable, size), fp));
+            return;
+        }
+
+        compileExpression(stmt.exp);
+        resetExpressionOffset();
+        final int offset = frame.declare(dec.variable, size);
+        final MIPSRegister sp = MIPSRegister.SP;
+        copyWords(MIPSRegister.T0, sp, 0, fp, offset, size);
+        add(new Addi(sp, sp, size));
+    }
+
     public void compileBlockStmt(final BlockStmt stmt) {
-        final VariableTableResetPoint reset = variables.makeResetPoint();
+        final VariableTableResetPoint reset = makeResetPoint();
         for (final Stmt curStmt : stmt.stmts) {
             compileStatement(curStmt);
         }
-        freeSizeForVariables(variables.resetTo(reset));
+        resetTo(reset);
     }
 
+    // offset from variableBase()
     public int variableOffset(final Variable variable) {
-        return variables.variableOffset(variable) + expressionOffset;
+        if (frame != null) {
+            return frame.variableOffset(variable);
+        } else {
+            return variables.variableOffset(variable) + expressionOffset;
+        }
+    }
+
+    public MIPSRegister variableBase() {
+        return (frame != null) ? MIPSRegister.FP : MIPSRegister.SP;
+    }
+
+    // for a reference, the size of the value it points to
+    public int variableSize(final Variable variable) {
+        if (registerParameters.containsKey(variable)) {
+            return 4;
+        } else if (isReference(variable)) {
+            return referenceSizes.get(variable).intValue();
+        } else if (frame != null) {
+            return frame.variableSize(variable);
+        } else {
+            return variables.variableSize(variable);
+        }
     }
 
     public void putLhsAddressIntoRegister(final MIPSRegister destination,
                                           final Lhs lhs) {
         if (lhs instanceof VariableLhs) {
-            final int offset = variableOffset(((VariableLhs)lhs).variable);
-            add(new Addi(destination, MIPSRegister.SP, offset));
+            final Variable variable = ((VariableLhs)lhs).variable;
+            final int offset = variableOffset(variable);
+            if (isReference(variable)) {
+                add(new Lw(destination, offset, variableBase()));
+            } else {
+                add(new Addi(destination, variableBase(), offset));
+            }
         } else if (lhs instanceof FieldAccessLhs) {
             final FieldAccessLhs asField = (FieldAccessLhs)lhs;
-            final int offsetFromField = fieldOffset(asField.lhsStructure.get(),
-                                                    asField.field);
+            final int offsetFromField = fieldOffset(asField.structureId,
+                                                    asField.fieldId);
             putLhsAddressIntoRegister(destination, asField.lhs);
             add(new Addi(destination, destination, offsetFromField));
         } else if (lhs instanceof DereferenceLhs) {
             final DereferenceLhs asDeref = (DereferenceLhs)lhs;
-            putLhsAddressIntoRegister(destination, asDeref.lhs);
-            add(new Lw(destination, 0, destination));
+            if (asDeref.lhs instanceof VariableLhs &&
+                registerParameters.containsKey(((VariableLhs)asDeref.lhs).variable)) {
+                // the pointer is already in a register
+                add(new Move(destination,
+                             registerParameters.get(((VariableLhs)asDeref.lhs).variable)));
+            } else {
+                putLhsAddressIntoRegister(destination, asDeref.lhs);
+                add(new Lw(destination, 0, destination));
+            }
         } else {
             assert false : "Unexpected lhs: " + lhs.toString();
         }
@@ -339,10 +610,10 @@ public class MIPSCodeGenerator {
 
     public int lhsSize(final Lhs lhs) {
         if (lhs instanceof VariableLhs) {
-            return variables.variableSize(((VariableLhs)lhs).variable);
+            return variableSize(((VariableLhs)lhs).variable);
         } else if (lhs instanceof FieldAccessLhs) {
             final FieldAccessLhs asField = (FieldAccessLhs)lhs;
-            return sizeof(structDecs.get(asField.lhsStructure.get()).get(asField.field));
+            return fieldSize(asField.structureId, asField.fieldId);
         } else if (lhs instanceof DereferenceLhs) {
             final DereferenceLhs asDereference = (DereferenceLhs)lhs;
             return sizeof(asDereference.typeAfterDereference.get());
@@ -353,6 +624,11 @@ public class MIPSCodeGenerator {
     }
     
     public void compileAssignmentStmt(final AssignmentStmt stmt) {        
+        if (inRegisters(stmt.exp)) {
+            compileWordAssignment(stmt);
+            return;
+        }
+
         // determine new value
         compileExpression(stmt.exp);
 
@@ -372,16 +648,21 @@ public class MIPSCodeGenerator {
 
         // copy this value into the variable
         final MIPSRegister sp = MIPSRegister.SP;
-        for (int base = 0; base < size; base += 4) {
-            final MIPSRegister t1 = MIPSRegister.T1;
-            add(new MIPSComment("transfer byte of rhs to " + stmt.lhs.toString()));
-            add(new Lw(t1, base, sp));
-            add(new Sw(t1, base, t0));
-        }
+        add(new MIPSComment("transfer rhs to " + stmt.lhs.toString()));
+        copyWords(MIPSRegister.T1, sp, 0, t0, 0, size);
 
         add(new Addi(sp, sp, size));
     }
 
+    // value in $t0, address in $t1
+    private void compileWordAssignment(final AssignmentStmt stmt) {
+        final MIPSRegister t0 = TEMPORARIES[0];
+        final MIPSRegister t1 = TEMPORARIES[1];
+        compileToRegister(stmt.exp, 0);
+        putLhsAddressIntoRegister(t1, stmt.lhs);
+        add(new Sw(t0, 0, t1));
+    }
+
     public void printA0() {
         add(new Li(MIPSRegister.V0, 1));
         add(new Syscall());
@@ -393,14 +674,36 @@ public class MIPSCodeGenerator {
     }
     
     public void compilePrintStmt(final PrintStmt stmt) {
-        compileExpression(stmt.exp);
-        assert(expressionOffset == 4);
-        pop(MIPSRegister.A0);
+        if (inRegisters(stmt.exp)) {
+            compileToRegister(stmt.exp, 0);
+            add(new Move(MIPSRegister.A0, TEMPORARIES[0]));
+        } else {
+            compileExpression(stmt.exp);
+            assert(expressionOffset == 4);
+            pop(MIPSRegister.A0);
+        }
         printA0();
     }
 
     public void compileReturnStmt(final ReturnStmt stmt) {
-        if (stmt.exp.isPresent()) {
+        if (stmt.exp.isPresent() && isTailCall(stmt.exp.get())) {
+            final CallLikeExp call = (CallLikeExp)stmt.exp.get();
+            compileTailCall((DirectCallResolved)call.resolution.get(), call.params);
+        } else if (stmt.exp.isPresent() && currentReturnInRegister) {
+            // nothing is left on the stack to copy
+            final Exp exp = stmt.exp.get();
+            if (returnsInV0(exp)) {
+                compileCallLikeExp((CallLikeExp)exp, false);
+            } else {
+                compileWordIntoT0(exp);
+                add(new Move(MIPSRegister.V0, TEMPORARIES[0]));
+            }
+            doReturn();
+        } else if (stmt.exp.isPresent() && currentReturnsByReference) {
+            // nothing is left on the stack to copy
+            compileStructureInto(stmt.exp.get(), FORWARD_RESULT_POINTER);
+            doReturn();
+        } else if (stmt.exp.isPresent()) {
             compileExpression(stmt.exp.get());
             doReturn();
             resetExpressionOffset();
@@ -419,17 +722,11 @@ public class MIPSCodeGenerator {
         currentWhileEnd = freshWhileLabel("end");
 
         add(currentWhileStart);
-        compileExpression(stmt.guard);
 
         // Guaranteed that guard is a boolean, from the typechecker.
-        // Put it in t0.
-        assert(expressionOffset == 4);
-        final MIPSRegister t0 = MIPSRegister.T0;
-        pop(t0);
-
         // If the guard is false, go to the end.  Otherwise, fall
         // through to body.
-        add(new Beq(t0, MIPSRegister.ZERO, currentWhileEnd));
+        compileBranchIfFalse(stmt.guard, currentWhileEnd);
 
         compileStatementInNestedScope(true, stmt.body);
         add(new J(currentWhileStart));
@@ -444,7 +741,9 @@ public class MIPSCodeGenerator {
         assert(currentWhileStart != null);
         assert(currentWhileEnd != null);
         assert(currentWhileReset != null);
-        freeSizeForVariables(variables.sizeAllocatedSinceResetPoint(currentWhileReset));
+        if (frame == null) {
+            freeSizeForVariables(variables.sizeAllocatedSinceResetPoint(currentWhileReset));
+        }
         add(new J(currentWhileEnd));
     }
 
@@ -452,7 +751,9 @@ public class MIPSCodeGenerator {
         assert(currentWhileStart != null);
         assert(currentWhileEnd != null);
         assert(currentWhileReset != null);
-        freeSizeForVariables(variables.sizeAllocatedSinceResetPoint(currentWhileReset));
+        if (frame == null) {
+            freeSizeForVariables(variables.sizeAllocatedSinceResetPoint(currentWhileReset));
+        }
         add(new J(currentWhileStart));
     }
     
@@ -482,29 +783,8 @@ public class MIPSCodeGenerator {
         }
     }
     
-    // for simplicity, bools and chars are 4 bytes
     public int sizeof(final Type type) {
-        if (type instanceof VoidType) {
-            return 0;
-        } else if (type instanceof IntType ||
-                   type instanceof BoolType ||
-                   type instanceof PointerType ||
-                   type instanceof FunctionPointerType) { // 32-bit word
-            return 4;
-        } else if (type instanceof StructureType) {
-            final LinkedHashMap<FieldName, Type> fields =
-                structDecs.get(((StructureType)type).name);
-            int sum = 0;
-            for (final Type fieldType : fields.values()) {
-                sum += sizeof(fieldType);
-            }
-            assert(sum >= 0);
-            assert(sum % 4 == 0);
-            return sum;
-        } else {
-            assert false : "Unexpected type : " + type.toString();
-            return 0;
-        }
+        return layout.sizeof(type);
     } // sizeof
 
     public void add(final MIPSEntry i) {
@@ -587,55 +867,110 @@ public class MIPSCodeGenerator {
         final MIPSRegister t0 = MIPSRegister.T0;
         pop(t0);
 
-        // Allocate space on the stack for everything.
-        final MIPSRegister sp = MIPSRegister.SP;        
-        add(new Addi(sp, sp, -loadSize));
+        // load in from this address, using $t1 to read in / write out words
+        pushMemory(t0, 0, loadSize);
+    } // compileDereferenceExp
 
-        // load in from this address, one word at a time.
-        // $t1 is used to read in / write out words.
-        // first value of structure will be at offset N, next at N - 4, ... until 0
-        final MIPSRegister t1 = MIPSRegister.T1;
-        for (int offset = loadSize - 4; offset >= 0; offset -= 4) {
-            add(new Lw(t1, offset, t0));
-            add(new Sw(t1, offset, sp));
+    // ---BEGIN COPIES---
+    // Copies size bytes from fromOffset(from) to toOffset(to), using temp for
+    // each word.  The highest word goes first, so the destination may
+    // overlap the source as long as it's higher up.  With
+    // options.copyLoopWords, bigger copies are done with a loop, which
+    // uses COPY_FROM, COPY_TO, and COPY_END too.
+    private void copyWords(final MIPSRegister temp,
+                           final MIPSRegister from,
+                           final int fromOffset,
+                           final MIPSRegister to,
+                           final int toOffset,
+                           final int size) {
+        assert(size % 4 == 0);
+        final int words = size / 4;
+        if (options.copyLoopWords <= 0 || words <= options.copyLoopWords) {
+            for (int base = size - 4; base >= 0; base -= 4) {
+                add(new Lw(temp, fromOffset + base, from));
+                add(new Sw(temp, toOffset + base, to));
+            }
+            return;
         }
 
-        expressionOffset += loadSize;
-    } // compileDereferenceExp
+        // COPY_FROM walks down until it reaches COPY_END, a word below the start
+        final MIPSLabel loop = new MIPSLabel(currentFunction.name + "_copy_", copyCounter++);
+        add(new Addi(COPY_END, from, fromOffset - 4));
+        add(new Addi(COPY_FROM, from, fromOffset + size - 4));
+        add(new Addi(COPY_TO, to, toOffset + size - 4));
+        add(loop);
+        add(new Lw(temp, 0, COPY_FROM));
+        add(new Sw(temp, 0, COPY_TO));
+        add(new Addi(COPY_FROM, COPY_FROM, -4));
+        add(new Addi(COPY_TO, COPY_TO, -4));
+        add(new Bne(COPY_FROM, COPY_END, loop));
+
+        final int saved = 2 * words - COPY_LOOP_INSTRUCTIONS;
+        final Integer soFar = copySavings.get(currentFunction.name);
+        copySavings.put(currentFunction.name,
+                        Integer.valueOf((soFar == null) ? saved : soFar.intValue() + saved));
+    }
 
-    public List<Map.Entry<FieldName, Type>> reverseFieldsFor(final StructureName structName) {
-        final LinkedHashMap<FieldName, Type> fields = structDecs.get(structName);
-        assert(fields != null);
+    // how many instructions copy loops saved in each function which has any
+    public Map<String, Integer> getCopySavings() {
+        return copySavings;
+    }
 
-        final List<Map.Entry<FieldName, Type>> asList =
-            new ArrayList<Map.Entry<FieldName, Type>>(fields.entrySet());
-        Collections.reverse(asList);
-        return asList;
+    public String copySavingsToString() {
+        final StringBuilder builder = new StringBuilder();
+        int total = 0;
+        for (final Map.Entry<String, Integer> entry : copySavings.entrySet()) {
+            builder.append(String.format("%-16s %8d%n", entry.getKey(), entry.getValue()));
+            total += entry.getValue().intValue();
+        }
+        builder.append(String.format("%-16s %8d%n", "total", total));
+        return builder.toString();
     }
-    
-    public int fieldOffset(final StructureName structureName,
-                           final FieldName fieldName) {
-        int offset = 0;
-        // last value has offset zero
-        for (final Map.Entry<FieldName, Type> entry : reverseFieldsFor(structureName)) {
-            if (entry.getKey().equals(fieldName)) {
-                return offset;
+
+    // copies size bytes starting at offset(base) onto the stack
+    private void pushMemory(final MIPSRegister base, final int offset, final int size) {
+        assert(size % 4 == 0);
+        final MIPSRegister sp = MIPSRegister.SP;
+        copyWords(MIPSRegister.T1, base, offset, sp, -size, size);
+        add(new Addi(sp, sp, -size));
+        expressionOffset += size;
+    }
+    // ---END COPIES---
+
+    public void compileFieldAccessExp(final FieldAccessExp exp) {
+        // Fields of variables and dereferenced pointers are copied straight
+        // out of memory, without the rest of the structure.
+        final Exp root = fieldRoot(exp);
+        final int accessSize = fieldSize(exp.structureId, exp.fieldId);
+        if (root instanceof VariableExp) {
+            final Variable variable = ((VariableExp)root).variable;
+            if (registerParameters.containsKey(variable)) {
+                // a one-word structure, so this is its only field
+                push(registerParameters.get(variable));
+                return;
+            } else if (isReference(variable)) {
+                final MIPSRegister t0 = MIPSRegister.T0;
+                add(new Lw(t0, variableOffset(variable), variableBase()));
+                pushMemory(t0, offsetFromFieldRoot(exp), accessSize);
+                return;
             }
-            offset += sizeof(entry.getValue());
+            pushMemory(variableBase(),
+                       variableOffset(variable) + offsetFromFieldRoot(exp),
+                       accessSize);
+            return;
+        } else if (root instanceof DereferenceExp) {
+            final MIPSRegister t0 = MIPSRegister.T0;
+            compileExpression(((DereferenceExp)root).exp);
+            pop(t0);
+            pushMemory(t0, offsetFromFieldRoot(exp), accessSize);
+            return;
         }
 
-        assert false : "Field " + fieldName.toString() + " not on structure " + structureName.toString();
-        return 0;
-    } // fieldOffset
-            
-    public void compileFieldAccessExp(final FieldAccessExp exp) {
         // access a given field of a structure
         // will consume the entire structure on the stack
-        final StructureName structName = exp.expStructure.get();
-        final int wholeStructureSize = sizeof(new StructureType(structName));
-        final int offset = fieldOffset(structName, exp.field);
-        final int accessSize = sizeof(structDecs.get(structName).get(exp.field));
-        
+        final int wholeStructureSize = layout.structureSize(exp.structureId);
+        final int offset = fieldOffset(exp.structureId, exp.fieldId);
+
         // structure will be on the stack afterward
         compileExpression(exp.exp);
 
@@ -648,12 +983,7 @@ public class MIPSCodeGenerator {
         assert(expressionOffset >= 0);
         
         final MIPSRegister sp = MIPSRegister.SP;
-        final MIPSRegister t0 = MIPSRegister.T0;
-        for (int addAmount = accessSize - 4; addAmount >= 0; addAmount -= 4) {
-            add(new Lw(t0, offset + addAmount, sp));
-            add(new Sw(t0, finalSpMove + addAmount, sp));
-        }
-
+        copyWords(MIPSRegister.T0, sp, offset, sp, finalSpMove, accessSize);
         add(new Addi(sp, sp, finalSpMove));
     } // compileFieldAccessExp        
         
@@ -684,10 +1014,18 @@ public class MIPSCodeGenerator {
     // compile right, which pushed onto stack
     // pop both, do the operation, then push result onto stack
     public void compileBinopExp(final BinopExp exp) {
-        compileExpression(exp.left);
-        compileExpression(exp.right);
         final MIPSRegister t0 = MIPSRegister.T0;
         final MIPSRegister t1 = MIPSRegister.T1;
+        final List<MIPSInstruction> constantOperation = withConstantOperand(exp, t0, t0, t1);
+        if (constantOperation != null) {
+            compileExpression(variableOperand(exp));
+            pop(t0);
+            addAll(constantOperation);
+            push(t0);
+            return;
+        }
+        compileExpression(exp.left);
+        compileExpression(exp.right);
         pop(t1); // right is on top of the stack...
         pop(t0); // followed by left
         compileOp(t0, t0, exp.op, t1);
@@ -695,19 +1033,20 @@ public class MIPSCodeGenerator {
     } // compileBinopExp
 
     public void compileVariableExp(final VariableExp exp) {
-        // copy variable's value to top of stack
-        final int size = variables.variableSize(exp.variable);
-        assert(size % 4 == 0);
-        final int copyFromOffset = variableOffset(exp.variable);
-        
-        final MIPSRegister sp = MIPSRegister.SP;
-        for (int base = 0; base < size; base += 4) {
+        if (registerParameters.containsKey(exp.variable)) {
+            push(registerParameters.get(exp.variable));
+            return;
+        } else if (isReference(exp.variable)) {
             final MIPSRegister t0 = MIPSRegister.T0;
-            add(new Lw(t0, copyFromOffset + base, sp));
-            add(new Sw(t0, -(size - base), sp));
+            add(new Lw(t0, variableOffset(exp.variable), variableBase()));
+            pushMemory(t0, 0, variableSize(exp.variable));
+            return;
         }
-        add(new Addi(sp, sp, -size));
-        expressionOffset += size;
+
+        // copy variable's value to top of stack
+        pushMemory(variableBase(),
+                   variableOffset(exp.variable),
+                   variableSize(exp.variable));
     }
 
     public void compileAddressOfExp(final AddressOfExp exp) {
@@ -736,18 +1075,27 @@ public class MIPSCodeGenerator {
         assert(expressionOffset >= 0);
     }
 
-    // TODO: calls do not conform to the typical MIPS calling convention;
+    // By default, calls do not conform to the typical MIPS calling convention;
     // we put all arguments on the stack, and return on the stack, ignoring
-    // the $a* and $v* registers
+    // the $a* and $v* registers.  options.registerCalls uses them for words.
     public void compileCallLikeExp(final CallLikeExp exp) {
+        compileCallLikeExp(exp, true);
+    }
+
+    // Without pushResult, a call returning in $v0 leaves its result there.
+    private void compileCallLikeExp(final CallLikeExp exp, final boolean pushResult) {
         final CallLikeResolved resolution = exp.resolution.get();
         if (resolution instanceof DirectCallResolved) {
-            compileDirectCall(((DirectCallResolved)resolution).functionName,
-                              exp.params);
+            compileDirectCall((DirectCallResolved)resolution,
+                              exp.params,
+                              pushResult,
+                              NO_RESULT_POINTER);
         } else if (resolution instanceof IndirectCallResolved) {
             compileIndirectCall(((IndirectCallResolved)resolution).functionPointer,
                                 exp.base,
-                                exp.params);
+                                exp.params,
+                                pushResult,
+                                NO_RESULT_POINTER);
         } else if (resolution instanceof MakeStructureResolved) {
             compileMakeStructure(exp.params);
         } else {
@@ -764,40 +1112,57 @@ public class MIPSCodeGenerator {
         }
     } // compileMakeStructureExp
         
-    public void compileDirectCall(final FunctionName functionName,
+    public void compileDirectCall(final DirectCallResolved call,
                                   final List<Exp> params) {
+        compileDirectCall(call, params, true, NO_RESULT_POINTER);
+    }
+
+    // A structure returned by reference goes where resultMark says, or on
+    // the stack if there's no mark.
+    private void compileDirectCall(final DirectCallResolved call,
+                                   final List<Exp> params,
+                                   final boolean pushResult,
+                                   final int resultMark) {
+        final int returnTypeSize = layout.returnSize(call.functionId);
+        final int mark = reserveResult(returnTypeSize, resultMark);
         final int originalExpressionOffset = expressionOffset;
 
         // last argument will be on top of the stack
-        for (final Exp parameter : params) {
-            compileExpression(parameter);
-        }
+        final int copyArea = compileArguments(params,
+                                              readOnlyParameters(call.functionName),
+                                              mark);
 
-        add(new Jal(functionNameToLabel(functionName)));
+        add(new Jal(functionNameToLabel(call.functionName)));
 
-        // return value is on stack
-        final int returnTypeSize = sizeof(functionDefs.get(functionName).returnType);
-        expressionOffset = originalExpressionOffset + returnTypeSize;
+        // return value is on stack, below any copies
+        expressionOffset = originalExpressionOffset + copyArea;
+        finishCall(returnTypeSize, copyArea, pushResult);
     }
 
     public void compileIndirectCall(final FunctionPointerType functionType,
                                     final Exp base,
                                     final List<Exp> params) {
+        compileIndirectCall(functionType, base, params, true, NO_RESULT_POINTER);
+    }
+
+    private void compileIndirectCall(final FunctionPointerType functionType,
+                                     final Exp base,
+                                     final List<Exp> params,
+                                     final boolean pushResult,
+                                     final int resultMark) {
+        final int returnTypeSize = sizeof(functionType.returnType);
+        final int mark = reserveResult(returnTypeSize, resultMark);
+
         // problem: base has to be computed first, based on order of operations
         // this means we need to save it on the stack
-        final int originalExpressionOffset = expressionOffset;
         compileExpression(base);
         assert(expressionOffset >= 4);
+        final int baseExpressionOffset = expressionOffset;
         
-        for (final Exp parameter : params) {
-            compileExpression(parameter);
-        }
+        final int copyArea = compileArguments(params, null, mark);
 
         // put base into a register
-        int offset = 0;
-        for (final Type paramType : functionType.paramTypes) {
-            offset += sizeof(paramType);
-        }
+        final int offset = expressionOffset - baseExpressionOffset;
         final MIPSRegister sp = MIPSRegister.SP;
         final MIPSRegister t0 = MIPSRegister.T0;
         // stack:
@@ -805,6 +1170,7 @@ public class MIPSCodeGenerator {
         // - ...
         // - param1
         // - param0
+        // - copies of structures passed by reference
         // - base
         // - stack beforehand - high address
         add(new Lw(t0, offset, sp));
@@ -812,30 +1178,60 @@ public class MIPSCodeGenerator {
 
         // stack:
         // - return value - low address ($sp)
+        // - copies
         // - base
         // - stack beforehand - high address
         //
         // wanted stack:
         // - return value - low address ($sp)
         // - stack beforehand - high address
-        //
-        // Shift the return value down over the base.  We start at the
-        // word at the highest address of the return value, and copy
-        // it over one word ahead in memory.
-        final int returnTypeSize = sizeof(functionType.returnType);
-        for (int difference = returnTypeSize; difference > 0; difference -= 4) {
-            add(new Lw(t0, difference - 4, sp));
-            add(new Sw(t0, difference, sp));
-        }
-
-        // base has been removed from the stack
-        add(new Addi(sp, sp, 4));
+        expressionOffset = baseExpressionOffset + copyArea;
+        finishCall(returnTypeSize, copyArea + 4, pushResult);
+    }
 
-        // return value is on stack
-        expressionOffset = originalExpressionOffset + returnTypeSize;
+    // Drops the drop bytes just above the return value, which a call leaves
+    // on the stack, or in $v0, or wherever its result pointer said.  Without
+    // pushResult, a result in $v0 stays there.
+    private void finishCall(final int returnTypeSize,
+                            final int drop,
+                            final boolean pushResult) {
+        final MIPSRegister sp = MIPSRegister.SP;
+        if (returnsInRegister(returnTypeSize)) {
+            if (pushResult && drop >= 4) {
+                // the return value just takes the top dropped word's place
+                add(new Sw(MIPSRegister.V0, drop - 4, sp));
+                discard(drop - 4);
+            } else {
+                discard(drop);
+                if (pushResult) {
+                    push(MIPSRegister.V0);
+                }
+            }
+        } else if (byReference(returnTypeSize)) {
+            discard(drop);
+        } else {
+            // Shift the return value up over the dropped bytes.  We start
+            // at the word at the highest address of the return value, so
+            // it doesn't overwrite itself.
+            expressionOffset += returnTypeSize;
+            if (drop > 0) {
+                copyWords(MIPSRegister.T0, sp, 0, sp, drop, returnTypeSize);
+                discard(drop);
+            }
+        }
     }
 
     public void compileExpression(final Exp exp) {
+        if (inRegisters(exp)) {
+            // the register path always starts with every temporary free
+            compileToRegister(exp, 0);
+            push(TEMPORARIES[0]);
+        } else {
+            compileExpressionOnStack(exp);
+        }
+    } // compileExpression
+
+    private void compileExpressionOnStack(final Exp exp) {
         if (exp instanceof IntegerLiteralExp) {
             compileIntegerLiteralExp((IntegerLiteralExp)exp);
         } else if (exp instanceof BooleanLiteralExp) {
@@ -861,10 +1257,779 @@ public class MIPSCodeGenerator {
         } else {
             assert false : "Unknown exp: " + exp.toString();
         }
-    } // compileExpression
+    } // compileExpressionOnStack
+
+    // ---BEGIN REGISTER EXPRESSIONS---
+    // With options.registerExpressions, word-sized expressions are evaluated
+    // into TEMPORARIES rather than on the stack.  compileToRegister(exp, k)
+    // leaves the value in TEMPORARIES[k], and may freely use the temporaries
+    // after it; those before it hold live values.  Operands are ordered by
+    // Sethi-Ullman numbering where it can't change behavior, and a value is
+    // spilled to the stack only when the temporaries run out.
+    //
+    // Anything else (calls, multi-word values) still goes through the stack.
+    // Calls can clobber every temporary, so the live ones are saved around
+    // them.
+
+    public int expressionSize(final Exp exp) {
+        if (exp instanceof IntegerLiteralExp ||
+            exp instanceof BooleanLiteralExp ||
+            exp instanceof SizeofExp ||
+            exp instanceof MallocExp ||
+            exp instanceof BinopExp ||
+            exp instanceof AddressOfExp) {
+            return 4;
+        } else if (exp instanceof VariableExp) {
+            return variableSize(((VariableExp)exp).variable);
+        } else if (exp instanceof CastExp) {
+            return sizeof(((CastExp)exp).type);
+        } else if (exp instanceof DereferenceExp) {
+            return sizeof(((DereferenceExp)exp).typeAfterDereference.get());
+        } else if (exp instanceof FieldAccessExp) {
+            final FieldAccessExp asField = (FieldAccessExp)exp;
+            return fieldSize(asField.structureId, asField.fieldId);
+        } else if (exp instanceof CallLikeExp) {
+            final CallLikeResolved resolution = ((CallLikeExp)exp).resolution.get();
+            if (resolution instanceof DirectCallResolved) {
+                return layout.returnSize(((DirectCallResolved)resolution).functionId);
+            } else if (resolution instanceof IndirectCallResolved) {
+                return sizeof(((IndirectCallResolved)resolution).functionPointer.returnType);
+            } else {
+                return layout.structureSize(((MakeStructureResolved)resolution).structureId);
+            }
+        } else {
+            assert false : "Unknown exp: " + exp.toString();
+            return 0;
+        }
+    } // expressionSize
+
+    // true if this expression's value can be computed in a register
+    private boolean inRegisters(final Exp exp) {
+        return (options.registerExpressions &&
+                expressionSize(exp) == 4 &&
+                !needsStack(exp));
+    }
+
+    // true if this expression must be evaluated on the stack, even if
+    // its value is a single word
+    private static boolean needsStack(final Exp exp) {
+        if (exp instanceof CallLikeExp) {
+            return true;
+        } else if (exp instanceof FieldAccessExp) {
+            // Fields of variables and dereferenced pointers are read straight
+            // out of memory; anything else needs the whole structure copied
+            // onto the stack.
+            final Exp root = fieldRoot((FieldAccessExp)exp);
+            return !(root instanceof VariableExp ||
+                     root instanceof DereferenceExp);
+        } else {
+            return false;
+        }
+    }
+
+    // the structure a (possibly nested) field access starts from
+    private static Exp fieldRoot(final FieldAccessExp exp) {
+        if (exp.exp instanceof FieldAccessExp) {
+            return fieldRoot((FieldAccessExp)exp.exp);
+        } else {
+            return exp.exp;
+        }
+    }
+
+    // offset of a (possibly nested) field from the start of fieldRoot
+    private int offsetFromFieldRoot(final FieldAccessExp exp) {
+        final int offset = fieldOffset(exp.structureId, exp.fieldId);
+        if (exp.exp instanceof FieldAccessExp) {
+            return offset + offsetFromFieldRoot((FieldAccessExp)exp.exp);
+        } else {
+            return offset;
+        }
+    }
+
+    // Sethi-Ullman number: how many temporaries it takes to evaluate this
+    // without spilling.  Anything on the stack path ends up in just one.
+    private int registersNeeded(final Exp exp) {
+        if (!inRegisters(exp)) {
+            return 1;
+        } else if (exp instanceof BinopExp) {
+            final BinopExp asBinop = (BinopExp)exp;
+            if (hasConstantOperand(asBinop)) {
+                return registersNeeded(variableOperand(asBinop));
+            }
+            final int left = registersNeeded(asBinop.left);
+            final int right = registersNeeded(asBinop.right);
+            if (canReorder(asBinop)) {
+                return (left == right) ? left + 1 : Math.max(left, right);
+            } else {
+                return Math.max(left, right + 1);
+            }
+        } else if (exp instanceof CastExp) {
+            return registersNeeded(((CastExp)exp).exp);
+        } else if (exp instanceof DereferenceExp) {
+            return registersNeeded(((DereferenceExp)exp).exp);
+        } else if (exp instanceof MallocExp) {
+            return registersNeeded(((MallocExp)exp).amount);
+        } else if (exp instanceof FieldAccessExp) {
+            final Exp root = fieldRoot((FieldAccessExp)exp);
+            if (root instanceof DereferenceExp) {
+                return registersNeeded(((DereferenceExp)root).exp);
+            } else {
+                return 1;
+            }
+        } else {
+            return 1;
+        }
+    }
+
+    private static boolean canReorder(final BinopExp exp) {
+        return Purity.isPure(exp.left) && Purity.isPure(exp.right);
+    }
+
+    public void compileToRegister(final Exp exp, final int k) {
+        final MIPSRegister destination = TEMPORARIES[k];
+        if (!inRegisters(exp)) {
+            compileToRegisterViaStack(exp, k);
+        } else if (exp instanceof IntegerLiteralExp) {
+            add(new Li(destination, ((IntegerLiteralExp)exp).value));
+        } else if (exp instanceof BooleanLiteralExp) {
+            add(new Li(destination, (((BooleanLiteralExp)exp).value) ? 1 : 0));
+        } else if (exp instanceof SizeofExp) {
+            add(new Li(destination, sizeof(((SizeofExp)exp).type)));
+        } else if (exp instanceof VariableExp) {
+            final Variable variable = ((VariableExp)exp).variable;
+            if (registerParameters.containsKey(variable)) {
+                add(new Move(destination, registerParameters.get(variable)));
+            } else {
+                add(new Lw(destination, variableOffset(variable), variableBase()));
+            }
+        } else if (exp instanceof BinopExp) {
+            compileBinopToRegister((BinopExp)exp, k);
+        } else if (exp instanceof CastExp) {
+            compileToRegister(((CastExp)exp).exp, k);
+        } else if (exp instanceof DereferenceExp) {
+            compileToRegister(((DereferenceExp)exp).exp, k);
+            add(new Lw(destination, 0, destination));
+        } else if (exp instanceof FieldAccessExp) {
+            final FieldAccessExp asField = (FieldAccessExp)exp;
+            final Exp root = fieldRoot(asField);
+            final int offset = offsetFromFieldRoot(asField);
+            if (root instanceof VariableExp &&
+                registerParameters.containsKey(((VariableExp)root).variable)) {
+                // a one-word structure, so this is its only field
+                add(new Move(destination, registerParameters.get(((VariableExp)root).variable)));
+            } else if (root instanceof VariableExp &&
+                       isReference(((VariableExp)root).variable)) {
+                add(new Lw(destination,
+                           variableOffset(((VariableExp)root).variable),
+                           variableBase()));
+                add(new Lw(destination, offset, destination));
+            } else if (root instanceof VariableExp) {
+                add(new Lw(destination,
+                           variableOffset(((VariableExp)root).variable) + offset,
+                           variableBase()));
+            } else {
+                compileToRegister(((DereferenceExp)root).exp, k);
+                add(new Lw(destination, offset, destination));
+            }
+        } else if (exp instanceof AddressOfExp) {
+            final AddressOfExp asAddress = (AddressOfExp)exp;
+            final AddressOfResolved resolution = asAddress.resolved.get();
+            if (resolution instanceof DataResolved) {
+                putLhsAddressIntoRegister(destination, asAddress.lhs);
+            } else {
+                final FunctionName functionName = ((FunctionResolved)resolution).functionName;
+                add(new La(destination, functionNameToLabel(functionName)));
+            }
+        } else if (exp instanceof MallocExp) {
+            // the syscall only touches $v0 and $a0
+            compileToRegister(((MallocExp)exp).amount, k);
+            add(new Move(MIPSRegister.A0, destination));
+            add(new Li(MIPSRegister.V0, 9));
+            add(new Syscall());
+            add(new Move(destination, MIPSRegister.V0));
+        } else {
+            assert false : "Unknown exp: " + exp.toString();
+        }
+    } // compileToRegister
+
+    private void compileBinopToRegister(final BinopExp exp, final int k) {
+        // the constant operand never takes a register, and the scratch
+        // register is free once the other operand is in place
+        final List<MIPSInstruction> constantOperation =
+            withConstantOperand(exp, TEMPORARIES[k], TEMPORARIES[k], SPILL_RELOAD);
+        if (constantOperation != null) {
+            compileToRegister(variableOperand(exp), k);
+            addAll(constantOperation);
+            return;
+        }
+        final MIPSRegister[] operands = compileOperandsToRegisters(exp, k);
+        compileOp(TEMPORARIES[k], operands[0], exp.op, operands[1]);
+    } // compileBinopToRegister
+
+    // returns the registers holding the left and right operands
+    private MIPSRegister[] compileOperandsToRegisters(final BinopExp exp, final int k) {
+        final boolean rightFirst =
+            (canReorder(exp) &&
+             registersNeeded(exp.right) > registersNeeded(exp.left));
+        final Exp first = (rightFirst) ? exp.right : exp.left;
+        final Exp second = (rightFirst) ? exp.left : exp.right;
+
+        compileToRegister(first, k);
+        final MIPSRegister firstRegister;
+        final MIPSRegister secondRegister;
+        if (k + registersNeeded(second) < TEMPORARIES.length) {
+            compileToRegister(second, k + 1);
+            firstRegister = TEMPORARIES[k];
+            secondRegister = TEMPORARIES[k + 1];
+        } else {
+            // out of temporaries; keep the first value on the stack meanwhile
+            push(TEMPORARIES[k]);
+            compileToRegister(second, k);
+            pop(SPILL_RELOAD);
+            firstRegister = SPILL_RELOAD;
+            secondRegister = TEMPORARIES[k];
+        }
+
+        if (rightFirst) {
+            return new MIPSRegister[]{ secondRegister, firstRegister };
+        } else {
+            return new MIPSRegister[]{ firstRegister, secondRegister };
+        }
+    } // compileOperandsToRegisters
+
+    // The stack path may call functions, and uses $t0 and $t1 itself, so
+    // the live temporaries are saved around it.
+    private void compileToRegisterViaStack(final Exp exp, final int k) {
+        assert(expressionSize(exp) == 4);
+        for (int index = 0; index < k; index++) {
+            push(TEMPORARIES[index]);
+        }
+        if (returnsInV0(exp)) {
+            compileCallLikeExp((CallLikeExp)exp, false);
+            add(new Move(TEMPORARIES[k], MIPSRegister.V0));
+        } else {
+            compileExpressionOnStack(exp);
+            pop(TEMPORARIES[k]);
+        }
+        for (int index = k - 1; index >= 0; index--) {
+            pop(TEMPORARIES[index]);
+        }
+    } // compileToRegisterViaStack
+
+    // used where the stack path would push a word only to pop it into $t0
+    private void compileWordIntoT0(final Exp exp) {
+        if (inRegisters(exp)) {
+            compileToRegister(exp, 0);
+        } else {
+            compileExpression(exp);
+            assert(expressionOffset == 4);
+            pop(TEMPORARIES[0]);
+        }
+    }
+    // ---END REGISTER EXPRESSIONS---
+
+    // ---BEGIN REGISTER CALLS---
+    // With options.registerCalls, the first four word-sized arguments go in
+    // $a0-$a3, and word-sized return values come back in $v0.  Structures,
+    // and words past the fourth, still go on the stack, in order.
+
+    // which of ARGUMENT_REGISTERS each argument goes in, or -1 for the stack
+    private int[] argumentRegisters(final int[] argumentSizes) {
+        final int[] result = new int[argumentSizes.length];
+        int nextRegister = 0;
+        for (int index = 0; index < argumentSizes.length; index++) {
+            if (options.registerCalls &&
+                argumentSizes[index] == 4 &&
+                nextRegister < ARGUMENT_REGISTERS.length) {
+                result[index] = nextRegister++;
+            } else {
+                result[index] = -1;
+            }
+        }
+        return result;
+    }
+
+    private int[] parameterRegisters(final List<VariableDeclaration> parameters) {
+        final int[] sizes = new int[parameters.size()];
+        for (int index = 0; index < sizes.length; index++) {
+            sizes[index] = sizeof(parameters.get(index).type);
+        }
+        return argumentRegisters(sizes);
+    }
+
+    private boolean returnsInRegister(final int returnSize) {
+        return options.registerCalls && returnSize == 4;
+    }
+
+    // true for calls whose result comes back in $v0
+    private boolean returnsInV0(final Exp exp) {
+        return (exp instanceof CallLikeExp &&
+                !(((CallLikeExp)exp).resolution.get() instanceof MakeStructureResolved) &&
+                returnsInRegister(expressionSize(exp)));
+    }
+
+    // Leaves the stack arguments on the stack, and the rest in registers.
+    // Arguments are evaluated in order, except that pure word arguments
+    // after the last impure one go straight into their registers at the end.
+    // Structures passed by reference first get any copies they need, in an
+    // area reserved below the arguments, whose size is returned; readOnly
+    // may be null if nothing is known about the callee.  With a result
+    // mark, the result pointer follows the other arguments.
+    private int compileArguments(final List<Exp> params,
+                                 final boolean[] readOnly,
+                                 final int resultMark) {
+        final int numArguments =
+            params.size() + ((resultMark == NO_RESULT_POINTER) ? 0 : 1);
+        final int[] sizes = new int[numArguments];
+        // where each argument's copy goes in the copy area, or -1 for none
+        final int[] copies = new int[numArguments];
+        int copyArea = 0;
+        int lastImpure = -1;
+        for (int index = 0; index < params.size(); index++) {
+            final Exp param = params.get(index);
+            final int size = expressionSize(param);
+            copies[index] = -1;
+            if (byReference(size)) {
+                sizes[index] = 4;
+                if (readOnly == null || !readOnly[index] || !isUnaliased(param)) {
+                    copies[index] = copyArea;
+                    copyArea += size;
+                }
+            } else {
+                sizes[index] = size;
+            }
+            if (!Purity.isPure(param)) {
+                lastImpure = index;
+            }
+        }
+        if (numArguments > params.size()) {
+            sizes[params.size()] = 4;
+            copies[params.size()] = -1;
+        }
+        final int[] registers = argumentRegisters(sizes);
+        reserve(copyArea);
+        final int copyMark = expressionOffset;
+
+        // everything else goes on the stack for now; ends[index] is how far
+        // below the starting $sp the argument ends
+        final MIPSRegister t0 = MIPSRegister.T0;
+        final int start = expressionOffset;
+        final int[] ends = new int[numArguments];
+        for (int index = 0; index < numArguments; index++) {
+            if (index == params.size()) {
+                putResultAddressIntoRegister(t0, resultMark);
+                push(t0);
+            } else if (copies[index] >= 0) {
+                compileStructureInto(params.get(index), copyMark - copies[index]);
+                putResultAddressIntoRegister(t0, copyMark - copies[index]);
+                push(t0);
+            } else if (byReference(expressionSize(params.get(index)))) {
+                compileStructureAddress(params.get(index), t0);
+                push(t0);
+            } else if (!isLateArgument(params, registers, lastImpure, index)) {
+                compileExpression(params.get(index));
+            }
+            ends[index] = expressionOffset - start;
+        }
+        final int early = expressionOffset - start;
+
+        final MIPSRegister sp = MIPSRegister.SP;
+        for (int index = 0; index < numArguments; index++) {
+            if (registers[index] >= 0 && !isLateArgument(params, registers, lastImpure, index)) {
+                add(new Lw(ARGUMENT_REGISTERS[registers[index]], early - ends[index], sp));
+            }
+        }
+
+        // slide the stack arguments up over the ones now in registers
+        int stackEnd = 0;
+        for (int index = 0; index < numArguments; index++) {
+            if (registers[index] < 0) {
+                stackEnd += sizes[index];
+                if (ends[index] > stackEnd) {
+                    copyWords(MIPSRegister.T0,
+                              sp, early - ends[index],
+                              sp, early - stackEnd,
+                              sizes[index]);
+                }
+            }
+        }
+        if (early > stackEnd) {
+            add(new Addi(sp, sp, early - stackEnd));
+            expressionOffset -= early - stackEnd;
+        }
+
+        for (int index = 0; index < numArguments; index++) {
+            if (isLateArgument(params, registers, lastImpure, index)) {
+                compileToRegister(params.get(index), 0);
+                add(new Move(ARGUMENT_REGISTERS[registers[index]], TEMPORARIES[0]));
+            }
+        }
+        return copyArea;
+    }
+
+    // the result pointer is never late
+    private boolean isLateArgument(final List<Exp> params,
+                                   final int[] registers,
+                                   final int lastImpure,
+                                   final int index) {
+        return (index < params.size() &&
+                registers[index] >= 0 &&
+                index > lastImpure &&
+                inRegisters(params.get(index)));
+    }
+    // ---END REGISTER CALLS---
+
+    // ---BEGIN STRUCTURE REFERENCES---
+    // With options.referenceWords, structures of more than that many words
+    // are passed as a pointer instead.  The caller copies the argument into
+    // an area it reserves below the arguments, unless the callee only ever
+    // reads the parameter and the argument is a local nothing else can
+    // reach, in which case the callee gets the original.  Such structures
+    // are returned through a hidden pointer passed after the arguments,
+    // which says where the callee writes the result; calls put their
+    // result straight where it's wanted, or on the stack where it would
+    // have been returned anyway.
+    //
+    // Places on the stack are named by marks: the expressionOffset just
+    // after the place was reserved, so the place is always at
+    // $sp + expressionOffset - mark.
+
+    private boolean byReference(final int size) {
+        return options.referenceWords > 0 && size > 4 * options.referenceWords;
+    }
+
+    private boolean passesByReference(final List<Type> parameterTypes,
+                                      final Type returnType) {
+        for (final Type type : parameterTypes) {
+            if (byReference(sizeof(type))) {
+                return true;
+            }
+        }
+        return byReference(sizeof(returnType));
+    }
+
+    // The parameters as they're passed: structures passed by reference
+    // become pointers, and a structure returned by reference adds the
+    // result pointer.
+    private List<VariableDeclaration> loweredParameters(final FunctionDefinition def) {
+        final List<VariableDeclaration> result = new ArrayList<VariableDeclaration>();
+        for (final VariableDeclaration param : def.parameters) {
+            if (byReference(sizeof(param.type))) {
+                result.add(new VariableDeclaration(new PointerType(param.type),
+                                                   param.variable));
+            } else {
+                result.add(param);
+            }
+        }
+        if (byReference(sizeof(def.returnType))) {
+            result.add(new VariableDeclaration(new PointerType(def.returnType),
+                                               RESULT_VARIABLE));
+        }
+        return result;
+    }
+
+    // which of the function's parameters it never writes, or null for an
+    // unknown function
+    private boolean[] readOnlyParameters(final FunctionName name) {
+        if (options.referenceWords <= 0 || !definitions.containsKey(name)) {
+            return null;
+        }
+        boolean[] result = readOnlyParameters.get(name);
+        if (result == null) {
+            final FunctionDefinition def = definitions.get(name);
+            final Set<Variable> readOnly = ReferenceParameters.readOnly(def);
+            result = new boolean[def.parameters.size()];
+            for (int index = 0; index < result.length; index++) {
+                result[index] = readOnly.contains(def.parameters.get(index).variable);
+            }
+            readOnlyParameters.put(name, result);
+        }
+        return result;
+    }
+
+    // true if the variable's slot holds a pointer to its value
+    private boolean isReference(final Variable variable) {
+        if (referenceSizes.isEmpty() || registerParameters.containsKey(variable)) {
+            return false;
+        } else if (frame != null) {
+            return frame.isReference(variable);
+        } else {
+            return variables.isReference(variable);
+        }
+    }
+
+    // true for variables, their fields, and dereferences, which all have an
+    // address without evaluating them onto the stack
+    private boolean isAddressable(final Exp exp) {
+        if (exp instanceof VariableExp) {
+            return !registerParameters.containsKey(((VariableExp)exp).variable);
+        } else if (exp instanceof FieldAccessExp) {
+            return isAddressable(fieldRoot((FieldAccessExp)exp));
+        } else {
+            return exp instanceof DereferenceExp;
+        }
+    }
+
+    // true if nothing but this function can get at the structure
+    private boolean isUnaliased(final Exp exp) {
+        final Exp root = (exp instanceof FieldAccessExp) ? fieldRoot((FieldAccessExp)exp) : exp;
+        return (root instanceof VariableExp &&
+                isAddressable(root) &&
+                !currentAddressTaken.contains(((VariableExp)root).variable));
+    }
+
+    private void compileStructureAddress(final Exp exp, final MIPSRegister destination) {
+        assert(isAddressable(exp));
+        if (exp instanceof VariableExp) {
+            putLhsAddressIntoRegister(destination, new VariableLhs(((VariableExp)exp).variable));
+        } else if (exp instanceof DereferenceExp) {
+            compileExpression(((DereferenceExp)exp).exp);
+            pop(destination);
+        } else {
+            final FieldAccessExp asField = (FieldAccessExp)exp;
+            compileStructureAddress(fieldRoot(asField), destination);
+            add(new Addi(destination, destination, offsetFromFieldRoot(asField)));
+        }
+    }
+
+    private void putResultAddressIntoRegister(final MIPSRegister destination, final int mark) {
+        if (mark == FORWARD_RESULT_POINTER) {
+            add(new Lw(destination, variableOffset(RESULT_VARIABLE), variableBase()));
+        } else {
+            assert(mark >= 0 && mark <= expressionOffset);
+            add(new Addi(destination, MIPSRegister.SP, expressionOffset - mark));
+        }
+    }
+
+    // where a call's result pointer points, reserving space on the stack
+    // if it's not going anywhere yet
+    private int reserveResult(final int returnTypeSize, final int resultMark) {
+        if (!byReference(returnTypeSize)) {
+            return NO_RESULT_POINTER;
+        } else if (resultMark == NO_RESULT_POINTER) {
+            reserve(returnTypeSize);
+            return expressionOffset;
+        } else {
+            return resultMark;
+        }
+    }
+
+    // Puts the structure's value where the mark says, without leaving
+    // anything on the stack.
+    private void compileStructureInto(final Exp exp, final int mark) {
+        final int size = expressionSize(exp);
+        final MIPSRegister t0 = MIPSRegister.T0;
+        final MIPSRegister t1 = MIPSRegister.T1;
+        if (exp instanceof CallLikeExp &&
+            !(((CallLikeExp)exp).resolution.get() instanceof MakeStructureResolved) &&
+            byReference(size)) {
+            final CallLikeExp call = (CallLikeExp)exp;
+            final CallLikeResolved resolution = call.resolution.get();
+            if (resolution instanceof DirectCallResolved) {
+                compileDirectCall((DirectCallResolved)resolution, call.params, true, mark);
+            } else {
+                compileIndirectCall(((IndirectCallResolved)resolution).functionPointer,
+                                    call.base,
+                                    call.params,
+                                    true,
+                                    mark);
+            }
+        } else if (isAddressable(exp)) {
+            compileStructureAddress(exp, t0);
+            putResultAddressIntoRegister(t1, mark);
+            copyWords(MIPSRegister.T2, t0, 0, t1, 0, size);
+        } else {
+            compileExpression(exp);
+            putResultAddressIntoRegister(t1, mark);
+            copyWords(t0, MIPSRegister.SP, 0, t1, 0, size);
+            discard(size);
+        }
+    }
+
+    private void reserve(final int size) {
+        if (size > 0) {
+            final MIPSRegister sp = MIPSRegister.SP;
+            add(new Addi(sp, sp, -size));
+            expressionOffset += size;
+        }
+    }
+
+    private void discard(final int size) {
+        if (size > 0) {
+            final MIPSRegister sp = MIPSRegister.SP;
+            add(new Addi(sp, sp, size));
+            expressionOffset -= size;
+        }
+    }
+    // ---END STRUCTURE REFERENCES---
+
+    // ---BEGIN CONSTANT OPERANDS---
+    // With options.strengthReduction, multiplying or dividing by a constant
+    // shifts and adds instead of using mult or div.  With
+    // options.immediateOperands, adding, subtracting, or comparing against
+    // a constant which fits in 16 bits puts it in the instruction.  Either
+    // way, only the other operand is compiled.
+
+    // the value of a constant operand, or null if it isn't one
+    private Integer constantValue(final Exp exp) {
+        if (exp instanceof IntegerLiteralExp) {
+            return Integer.valueOf(((IntegerLiteralExp)exp).value);
+        } else if (exp instanceof SizeofExp) {
+            return Integer.valueOf(sizeof(((SizeofExp)exp).type));
+        } else {
+            return null;
+        }
+    }
+
+    // The instructions computing exp into dest from the operand
+    // variableOperand picks, once that's in source, or null if exp
+    // needs both operands in registers after all.  Constants are pure, so
+    // it doesn't matter that they're never evaluated.
+    private List<MIPSInstruction> withConstantOperand(final BinopExp exp,
+                                                      final MIPSRegister dest,
+                                                      final MIPSRegister source,
+                                                      final MIPSRegister scratch) {
+        final Integer right = constantValue(exp.right);
+        final Integer constant = (right != null) ? right : constantValue(exp.left);
+        if (constant == null) {
+            return null;
+        }
+        final boolean onRight = (right != null);
+        final int value = constant.intValue();
+        List<MIPSInstruction> result = null;
+        if (options.strengthReduction && exp.op instanceof MultOp) {
+            result = StrengthReduction.multiply(dest, source, value, scratch);
+        } else if (options.strengthReduction && exp.op instanceof DivOp && onRight) {
+            result = StrengthReduction.divide(dest, source, value, scratch);
+        }
+        if (result == null && options.immediateOperands) {
+            if (exp.op instanceof PlusOp) {
+                result = ImmediateOperands.add(dest, source, value);
+            } else if (exp.op instanceof MinusOp && onRight) {
+                result = ImmediateOperands.subtract(dest, source, value);
+            } else if (exp.op instanceof LessThanOp && onRight) {
+                result = ImmediateOperands.lessThan(dest, source, value);
+            }
+        }
+        return result;
+    } // withConstantOperand
+
+    private Exp variableOperand(final BinopExp exp) {
+        return (constantValue(exp.right) != null) ? exp.left : exp.right;
+    }
+
+    private boolean hasConstantOperand(final BinopExp exp) {
+        return withConstantOperand(exp, MIPSRegister.T0, MIPSRegister.T0, MIPSRegister.T1) != null;
+    }
+
+    private void addAll(final List<MIPSInstruction> instructions) {
+        for (final MIPSInstruction instruction : instructions) {
+            add(instruction);
+        }
+    }
+    // ---END CONSTANT OPERANDS---
+
+    // ---BEGIN TAIL CALLS---
+    // With options.tailCalls, return f(...) for a direct call doesn't need
+    // this function's frame afterward.  The stack arguments are moved to
+    // where this function's own arguments started, the return address and
+    // $fp are put back as our caller left them, and we jump to f.  f then
+    // returns straight to our caller, with the return value exactly where
+    // ours would have gone, as the types match.  Tail recursion therefore
+    // runs in constant stack.
+
+    // Anything passed by reference would point into the frame we reuse, as
+    // would the address of any of our locals or parameters, which f could
+    // have been passed or could get through memory.
+    private boolean isTailCall(final Exp exp) {
+        if (options.tailCalls &&
+            currentAddressTaken.isEmpty() &&
+            exp instanceof CallLikeExp &&
+            ((CallLikeExp)exp).resolution.get() instanceof DirectCallResolved) {
+            final int functionId = ((DirectCallResolved)((CallLikeExp)exp).resolution.get()).functionId;
+            return !passesByReference(symbols.parameterTypes(functionId),
+                                      symbols.returnType(functionId));
+        } else {
+            return false;
+        }
+    }
+
+    private void compileTailCall(final DirectCallResolved call, final List<Exp> params) {
+        assert(expressionOffset == 0);
+        assert(!currentIsLeaf);
+        compileArguments(params, null, NO_RESULT_POINTER);
+        final int argumentsSize = expressionOffset;
+
+        final MIPSRegister sp = MIPSRegister.SP;
+        final MIPSRegister fp = MIPSRegister.FP;
+        final MIPSRegister ra = MIPSRegister.RA;
+        final MIPSRegister t0 = MIPSRegister.T0;
+        final MIPSRegister t1 = MIPSRegister.T1;
+        if (frame != null) {
+            // the arguments are just below $fp
+            add(new Lw(ra, frame.returnAddressOffset(), fp));
+            add(new Lw(t1, frame.savedFpOffset(), fp));
+            final int finalSp = frame.callerSpOffset() - argumentsSize;
+            copyWords(t0, fp, -argumentsSize, fp, finalSp, argumentsSize);
+            add(new Addi(sp, fp, finalSp));
+            add(new Move(fp, t1));
+        } else {
+            add(new Lw(ra, variables.variableOffset(RA_VARIABLE) + argumentsSize, sp));
+            final int sizeOfAllVariables = variables.totalSizeOfAllVariables();
+            copyWords(t0, sp, 0, sp, sizeOfAllVariables, argumentsSize);
+            add(new Addi(sp, sp, sizeOfAllVariables));
+        }
+        add(new J(functionNameToLabel(call.functionName)));
+        resetExpressionOffset();
+    }
+    // ---END TAIL CALLS---
+
+    // ---BEGIN FUSED BRANCHES---
+    // With options.fusedBranches, == and < guards branch on their operands
+    // directly, instead of computing a 0/1 word and comparing it to zero.
+    // Constant guards need no test at all.
+
+    // jumps to target if the guard is false, otherwise falls through
+    private void compileBranchIfFalse(final Exp guard, final MIPSLabel target) {
+        if (options.fusedBranches && guard instanceof BooleanLiteralExp) {
+            if (!((BooleanLiteralExp)guard).value) {
+                add(new J(target));
+            }
+        } else if (options.fusedBranches &&
+                   guard instanceof BinopExp &&
+                   (((BinopExp)guard).op instanceof EqualsOp ||
+                    ((BinopExp)guard).op instanceof LessThanOp)) {
+            final BinopExp asBinop = (BinopExp)guard;
+            final MIPSRegister[] operands = compileOperandsForBranch(asBinop);
+            if (asBinop.op instanceof EqualsOp) {
+                add(new Bne(operands[0], operands[1], target));
+            } else {
+                add(new Bge(operands[0], operands[1], target));
+            }
+        } else {
+            compileWordIntoT0(guard);
+            add(new Beq(TEMPORARIES[0], MIPSRegister.ZERO, target));
+        }
+    } // compileBranchIfFalse
+
+    // returns the registers holding the left and right operands
+    private MIPSRegister[] compileOperandsForBranch(final BinopExp exp) {
+        if (inRegisters(exp)) {
+            return compileOperandsToRegisters(exp, 0);
+        } else {
+            final MIPSRegister t0 = MIPSRegister.T0;
+            final MIPSRegister t1 = MIPSRegister.T1;
+            compileExpression(exp.left);
+            compileExpression(exp.right);
+            pop(t1); // right is on top of the stack...
+            pop(t0); // followed by left
+            return new MIPSRegister[]{ t0, t1 };
+        }
+    } // compileOperandsForBranch
+    // ---END FUSED BRANCHES---
 
     public MIPSEntry[] getEntries() {
-        return entries.toArray(new MIPSInstruction[entries.size()]);
+        return entries.toArray(new MIPSEntry[entries.size()]);
     } // getInstructions
 
     private void mainEnd() {
@@ -873,10 +2038,23 @@ public class MIPSCodeGenerator {
         add(new Syscall());
     } // mainEnd
     
+    // everything writeCompleteFile writes; call once, after compileProgram
+    public List<MIPSEntry> completeEntries() {
+        mainEnd();
+        return entries;
+    } // completeEntries
+
     public void writeCompleteFile(final File file) throws IOException {
+        writeCompleteFile(completeEntries(), file);
+    } // writeCompleteFile
+
+    // entries must start with the code main falls into, and end by exiting
+    public static void writeCompleteFile(final List<MIPSEntry> entries,
+                                         final File file) throws IOException {
+        final WriteAssemblyEvent event = new WriteAssemblyEvent();
+        event.begin();
         final PrintWriter output =
             new PrintWriter(new BufferedWriter(new FileWriter(file)));
-        mainEnd();
         try {
             output.println(".data");
             output.println("newline:");
@@ -889,6 +2067,11 @@ public class MIPSCodeGenerator {
         } finally {
             output.close();
         }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.finish(file.getPath(), numInstructions(entries, 0), file.length());
+        }
     } // writeCompleteFile
 
     // exclusively used in the test suite
@@ -897,16 +2080,52 @@ public class MIPSCodeGenerator {
         this.currentFunction = currentFunction;
     } // setCurrentFunctionForTesting
 
-    public void compile(final File outputFile) throws IOException {
+    // number of actual instructions emitted so far, excluding labels and comments
+    public int numInstructions() {
+        return numInstructions(entries, 0);
+    }
+
+    public static int numInstructions(final List<MIPSEntry> entries,
+                                      final int firstEntry) {
+        int count = 0;
+        for (int index = firstEntry; index < entries.size(); index++) {
+            if (entries.get(index) instanceof MIPSInstruction) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // compiles every function, without writing anything out
+    public void compileProgram() {
         // main needs to be first, so we can fall into it
         final FunctionName mainName = new FunctionName("main");
-        assert functionDefs.containsKey(mainName) : "Missing main function";
-        compileMainFunctionDefinition(functionDefs.get(mainName));
-        for (final FunctionDefinition def : functionDefs.values()) {
+        FunctionDefinition mainDef = null;
+        for (final FunctionDefinition def : functionDefs) {
+            if (def.name.equals(mainName)) {
+                mainDef = def;
+                break;
+            }
+        }
+        assert mainDef != null : "Missing main function";
+        compileMainFunctionDefinition(mainDef);
+        for (final FunctionDefinition def : functionDefs) {
             if (!def.name.equals(mainName)) {
                 compileFunctionDefinition(def);
             }
         }
+    }
+
+    // rewrites everything compiled so far; the exit writeCompleteFile
+    // appends is left alone
+    public void peephole(final PeepholeOptimizer optimizer) {
+        final List<MIPSEntry> optimized = optimizer.optimize(entries);
+        entries.clear();
+        entries.addAll(optimized);
+    }
+
+    public void compile(final File outputFile) throws IOException {
+        compileProgram();
         writeCompleteFile(outputFile);
     }
     
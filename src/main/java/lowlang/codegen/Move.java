@@ -0,0 +1,9 @@
+package lowlang.codegen;
+
+// pseudoinstruction; copies rs into rd
+public class Move extends TwoRegisterInstruction {
+    public Move(final MIPSRegister rd,
+                final MIPSRegister rs) {
+        super("move", rd, rs);
+    }
+} // Move
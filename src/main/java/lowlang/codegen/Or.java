@@ -0,0 +1,9 @@
+package lowlang.codegen;
+
+public class Or extends ThreeRegisterInstruction {
+    public Or(final MIPSRegister rd,
+              final MIPSRegister rs,
+              final MIPSRegister rt) {
+        super("or", rd, rs, rt);
+    }
+} // Or
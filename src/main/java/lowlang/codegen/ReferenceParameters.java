@@ -0,0 +1,158 @@
+package lowlang.codegen;
+
+import lowlang.parser.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.HashSet;
+
+// Finds which variables of a function are written to, have their address
+// taken, or are declared as locals.  A structure passed by reference can
+// point straight at the caller's original if the callee never writes the
+// parameter or takes its address (and no local hides it), and the caller
+// never took the original's address, so nothing else can change it during
+// the call.
+public class ReferenceParameters {
+    private final Set<Variable> written;
+    private final Set<Variable> addressTaken;
+    private final Set<Variable> declared;
+
+    private ReferenceParameters() {
+        written = new HashSet<Variable>();
+        addressTaken = new HashSet<Variable>();
+        declared = new HashSet<Variable>();
+    }
+
+    private static ReferenceParameters analyze(final FunctionDefinition def) {
+        final ReferenceParameters analysis = new ReferenceParameters();
+        analysis.checkStmts(def.body);
+        return analysis;
+    }
+
+    // the parameters which are only ever read
+    public static Set<Variable> readOnly(final FunctionDefinition def) {
+        final ReferenceParameters analysis = analyze(def);
+        final Set<Variable> result = new HashSet<Variable>();
+        for (final VariableDeclaration param : def.parameters) {
+            if (!analysis.written.contains(param.variable) &&
+                !analysis.addressTaken.contains(param.variable) &&
+                !analysis.declared.contains(param.variable)) {
+                result.add(param.variable);
+            }
+        }
+        return result;
+    }
+
+    // every variable whose address is taken, in any scope
+    public static Set<Variable> addressTaken(final FunctionDefinition def) {
+        return analyze(def).addressTaken;
+    }
+
+    private void checkStmts(final List<Stmt> stmts) {
+        for (final Stmt stmt : stmts) {
+            checkStmt(stmt);
+        }
+    }
+
+    private void checkStmt(final Stmt stmt) {
+        if (stmt instanceof VariableDeclarationInitializationStmt) {
+            final VariableDeclarationInitializationStmt asDec =
+                (VariableDeclarationInitializationStmt)stmt;
+            declared.add(asDec.varDec.variable);
+            checkExp(asDec.exp);
+        } else if (stmt instanceof AssignmentStmt) {
+            final AssignmentStmt asAssign = (AssignmentStmt)stmt;
+            final Variable root = lhsRoot(asAssign.lhs);
+            if (root != null) {
+                written.add(root);
+            }
+            checkLhs(asAssign.lhs);
+            checkExp(asAssign.exp);
+        } else if (stmt instanceof BlockStmt) {
+            checkStmts(((BlockStmt)stmt).stmts);
+        } else if (stmt instanceof PrintStmt) {
+            checkExp(((PrintStmt)stmt).exp);
+        } else if (stmt instanceof ReturnStmt) {
+            final ReturnStmt asReturn = (ReturnStmt)stmt;
+            if (asReturn.exp.isPresent()) {
+                checkExp(asReturn.exp.get());
+            }
+        } else if (stmt instanceof ExpStmt) {
+            checkExp(((ExpStmt)stmt).exp);
+        } else if (stmt instanceof IfStmt) {
+            final IfStmt asIf = (IfStmt)stmt;
+            checkExp(asIf.guard);
+            checkStmt(asIf.ifTrue);
+            if (asIf.ifFalse.isPresent()) {
+                checkStmt(asIf.ifFalse.get());
+            }
+        } else if (stmt instanceof WhileStmt) {
+            final WhileStmt asWhile = (WhileStmt)stmt;
+            checkExp(asWhile.guard);
+            checkStmt(asWhile.body);
+        } else if (stmt instanceof BreakStmt ||
+                   stmt instanceof ContinueStmt) {
+            // nothing to do
+        } else {
+            assert false : "Unknown stmt: " + stmt.toString();
+        }
+    }
+
+    // The variable whose memory the lhs is part of, or null if it's behind
+    // a pointer.
+    private static Variable lhsRoot(final Lhs lhs) {
+        if (lhs instanceof VariableLhs) {
+            return ((VariableLhs)lhs).variable;
+        } else if (lhs instanceof FieldAccessLhs) {
+            return lhsRoot(((FieldAccessLhs)lhs).lhs);
+        } else {
+            return null;
+        }
+    }
+
+    // the pointers dereferenced along the way are only read
+    private void checkLhs(final Lhs lhs) {
+        if (lhs instanceof FieldAccessLhs) {
+            checkLhs(((FieldAccessLhs)lhs).lhs);
+        } else if (lhs instanceof DereferenceLhs) {
+            checkLhs(((DereferenceLhs)lhs).lhs);
+        }
+    }
+
+    private void checkExp(final Exp exp) {
+        if (exp instanceof IntegerLiteralExp ||
+            exp instanceof BooleanLiteralExp ||
+            exp instanceof VariableExp ||
+            exp instanceof SizeofExp) {
+            // nothing to do
+        } else if (exp instanceof MallocExp) {
+            checkExp(((MallocExp)exp).amount);
+        } else if (exp instanceof BinopExp) {
+            final BinopExp asBinop = (BinopExp)exp;
+            checkExp(asBinop.left);
+            checkExp(asBinop.right);
+        } else if (exp instanceof CallLikeExp) {
+            final CallLikeExp asCall = (CallLikeExp)exp;
+            checkExp(asCall.base);
+            for (final Exp param : asCall.params) {
+                checkExp(param);
+            }
+        } else if (exp instanceof CastExp) {
+            checkExp(((CastExp)exp).exp);
+        } else if (exp instanceof AddressOfExp) {
+            final AddressOfExp asAddress = (AddressOfExp)exp;
+            if (asAddress.resolved.get() instanceof DataResolved) {
+                final Variable root = lhsRoot(asAddress.lhs);
+                if (root != null) {
+                    addressTaken.add(root);
+                }
+            }
+        } else if (exp instanceof DereferenceExp) {
+            checkExp(((DereferenceExp)exp).exp);
+        } else if (exp instanceof FieldAccessExp) {
+            checkExp(((FieldAccessExp)exp).exp);
+        } else {
+            assert false : "Unknown exp: " + exp.toString();
+        }
+    }
+} // ReferenceParameters
@@ -0,0 +1,134 @@
+package lowlang.codegen;
+
+import lowlang.parser.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.HashSet;
+
+// Decides whether a leaf function can leave the parameters it was passed in
+// $a0-$a3 where they are, instead of storing them into its frame.  Nothing
+// can write to a parameter or need its address, and nothing else can use
+// the registers: calls are already ruled out by being a leaf, but print and
+// malloc both go through $a0.  A local with the same name as a parameter
+// would need a memory home, so that rules it out too.
+public class RegisterParameters {
+    private final Set<Variable> parameters;
+    private boolean canStay;
+
+    private RegisterParameters(final Set<Variable> parameters) {
+        this.parameters = parameters;
+        canStay = true;
+    }
+
+    // assumes def is a leaf
+    public static boolean canStayInRegisters(final FunctionDefinition def) {
+        final Set<Variable> parameters = new HashSet<Variable>();
+        for (final VariableDeclaration param : def.parameters) {
+            parameters.add(param.variable);
+        }
+        final RegisterParameters analysis = new RegisterParameters(parameters);
+        analysis.checkStmts(def.body);
+        return analysis.canStay;
+    }
+
+    private void checkStmts(final List<Stmt> stmts) {
+        for (final Stmt stmt : stmts) {
+            checkStmt(stmt);
+        }
+    }
+
+    private void checkStmt(final Stmt stmt) {
+        if (stmt instanceof VariableDeclarationInitializationStmt) {
+            final VariableDeclarationInitializationStmt asDec =
+                (VariableDeclarationInitializationStmt)stmt;
+            if (parameters.contains(asDec.varDec.variable)) {
+                canStay = false;
+            }
+            checkExp(asDec.exp);
+        } else if (stmt instanceof AssignmentStmt) {
+            final AssignmentStmt asAssign = (AssignmentStmt)stmt;
+            checkLhs(asAssign.lhs);
+            checkExp(asAssign.exp);
+        } else if (stmt instanceof BlockStmt) {
+            checkStmts(((BlockStmt)stmt).stmts);
+        } else if (stmt instanceof PrintStmt) {
+            canStay = false;
+        } else if (stmt instanceof ReturnStmt) {
+            final ReturnStmt asReturn = (ReturnStmt)stmt;
+            if (asReturn.exp.isPresent()) {
+                checkExp(asReturn.exp.get());
+            }
+        } else if (stmt instanceof ExpStmt) {
+            checkExp(((ExpStmt)stmt).exp);
+        } else if (stmt instanceof IfStmt) {
+            final IfStmt asIf = (IfStmt)stmt;
+            checkExp(asIf.guard);
+            checkStmt(asIf.ifTrue);
+            if (asIf.ifFalse.isPresent()) {
+                checkStmt(asIf.ifFalse.get());
+            }
+        } else if (stmt instanceof WhileStmt) {
+            final WhileStmt asWhile = (WhileStmt)stmt;
+            checkExp(asWhile.guard);
+            checkStmt(asWhile.body);
+        } else if (stmt instanceof BreakStmt ||
+                   stmt instanceof ContinueStmt) {
+            // nothing to do
+        } else {
+            assert false : "Unknown stmt: " + stmt.toString();
+        }
+    }
+
+    // A variable at the root of an lhs has its address taken, unless it's
+    // just the pointer being dereferenced.
+    private void checkLhs(final Lhs lhs) {
+        if (lhs instanceof VariableLhs) {
+            if (parameters.contains(((VariableLhs)lhs).variable)) {
+                canStay = false;
+            }
+        } else if (lhs instanceof FieldAccessLhs) {
+            checkLhs(((FieldAccessLhs)lhs).lhs);
+        } else if (lhs instanceof DereferenceLhs) {
+            final Lhs pointer = ((DereferenceLhs)lhs).lhs;
+            if (!(pointer instanceof VariableLhs)) {
+                checkLhs(pointer);
+            }
+        } else {
+            assert false : "Unexpected lhs: " + lhs.toString();
+        }
+    }
+
+    private void checkExp(final Exp exp) {
+        if (exp instanceof IntegerLiteralExp ||
+            exp instanceof BooleanLiteralExp ||
+            exp instanceof VariableExp ||
+            exp instanceof SizeofExp) {
+            // nothing to do
+        } else if (exp instanceof MallocExp) {
+            canStay = false;
+        } else if (exp instanceof BinopExp) {
+            final BinopExp asBinop = (BinopExp)exp;
+            checkExp(asBinop.left);
+            checkExp(asBinop.right);
+        } else if (exp instanceof CallLikeExp) {
+            // only structures can be made in a leaf
+            for (final Exp param : ((CallLikeExp)exp).params) {
+                checkExp(param);
+            }
+        } else if (exp instanceof CastExp) {
+            checkExp(((CastExp)exp).exp);
+        } else if (exp instanceof AddressOfExp) {
+            final AddressOfExp asAddress = (AddressOfExp)exp;
+            if (asAddress.resolved.get() instanceof DataResolved) {
+                checkLhs(asAddress.lhs);
+            }
+        } else if (exp instanceof DereferenceExp) {
+            checkExp(((DereferenceExp)exp).exp);
+        } else if (exp instanceof FieldAccessExp) {
+            checkExp(((FieldAccessExp)exp).exp);
+        } else {
+            assert false : "Unknown exp: " + exp.toString();
+        }
+    }
+} // RegisterParameters
@@ -0,0 +1,10 @@
+package lowlang.codegen;
+
+// shifts rs left by immediate bits
+public class Sll extends TwoRegisterImmediateInstruction {
+    public Sll(final MIPSRegister rt,
+               final MIPSRegister rs,
+               final int immediate) {
+        super("sll", rt, rs, immediate);
+    }
+} // Sll
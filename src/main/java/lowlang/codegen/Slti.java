@@ -0,0 +1,9 @@
+package lowlang.codegen;
+
+public class Slti extends TwoRegisterImmediateInstruction {
+    public Slti(final MIPSRegister rt,
+                final MIPSRegister rs,
+                final int immediate) {
+        super("slti", rt, rs, immediate);
+    }
+} // Slti
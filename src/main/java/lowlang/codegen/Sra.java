@@ -0,0 +1,10 @@
+package lowlang.codegen;
+
+// shifts rs right by immediate bits, copying the sign bit
+public class Sra extends TwoRegisterImmediateInstruction {
+    public Sra(final MIPSRegister rt,
+               final MIPSRegister rs,
+               final int immediate) {
+        super("sra", rt, rs, immediate);
+    }
+} // Sra
@@ -0,0 +1,10 @@
+package lowlang.codegen;
+
+// shifts rs right by immediate bits, filling with zeros
+public class Srl extends TwoRegisterImmediateInstruction {
+    public Srl(final MIPSRegister rt,
+               final MIPSRegister rs,
+               final int immediate) {
+        super("srl", rt, rs, immediate);
+    }
+} // Srl
@@ -0,0 +1,116 @@
+package lowlang.codegen;
+
+import java.util.List;
+import java.util.ArrayList;
+
+// Multiplication and division by constants as shifts and adds, which take a
+// cycle each where mult and div take many.  Each method leaves the result of
+// source op constant in dest, possibly using scratch along the way, or
+// returns null if the constant has no short sequence.  dest may be source,
+// but scratch must be neither.
+//
+// mult and div keep the low word without trapping, so the sequences use
+// addu and subu to wrap around the same way.
+public class StrengthReduction {
+    private static final MIPSRegister ZERO = MIPSRegister.ZERO;
+
+    private static boolean isPowerOfTwo(final int value) {
+        return Integer.bitCount(value) == 1;
+    }
+
+    private static int log2(final int value) {
+        return Integer.numberOfTrailingZeros(value);
+    }
+
+    // dest = source << amount, without anything for a shift by 0
+    private static MIPSRegister shifted(final List<MIPSInstruction> result,
+                                        final MIPSRegister dest,
+                                        final MIPSRegister source,
+                                        final int amount) {
+        if (amount == 0) {
+            return source;
+        } else {
+            result.add(new Sll(dest, source, amount));
+            return dest;
+        }
+    }
+
+    public static List<MIPSInstruction> multiply(final MIPSRegister dest,
+                                                 final MIPSRegister source,
+                                                 final int constant,
+                                                 final MIPSRegister scratch) {
+        final List<MIPSInstruction> result = new ArrayList<MIPSInstruction>();
+        // -Integer.MIN_VALUE overflows, but it's a power of two anyway
+        final boolean negate = constant < 0 && constant != Integer.MIN_VALUE;
+        final int magnitude = (negate) ? -constant : constant;
+        if (magnitude == 0) {
+            result.add(new Li(dest, 0));
+            return result;
+        } else if (isPowerOfTwo(magnitude)) {
+            final MIPSRegister shift = shifted(result, dest, source, log2(magnitude));
+            if (shift != dest) {
+                result.add(new Move(dest, shift));
+            }
+        } else {
+            // two set bits are a sum of shifts, and a single run of set bits
+            // is a difference of them
+            final int low = log2(magnitude);
+            final int rest = magnitude - (1 << low);
+            final boolean isSum = isPowerOfTwo(rest);
+            final boolean isRun = isPowerOfTwo(magnitude + (1 << low));
+            if (!isSum && !isRun) {
+                return null;
+            }
+            final int high = (isSum) ? log2(rest) : log2(magnitude + (1 << low));
+            result.add(new Sll(scratch, source, high));
+            final MIPSRegister lowShift = shifted(result, dest, source, low);
+            if (isSum) {
+                result.add(new Addu(dest, scratch, lowShift));
+            } else {
+                result.add(new Subu(dest, scratch, lowShift));
+            }
+        }
+        if (negate) {
+            result.add(new Subu(dest, ZERO, dest));
+        }
+        return result;
+    } // multiply
+
+    // Division truncates towards zero, but an arithmetic shift rounds down,
+    // so negative dividends get the divisor less one added first.
+    public static List<MIPSInstruction> divide(final MIPSRegister dest,
+                                               final MIPSRegister source,
+                                               final int constant,
+                                               final MIPSRegister scratch) {
+        final List<MIPSInstruction> result = new ArrayList<MIPSInstruction>();
+        if (constant == 1) {
+            if (dest != source) {
+                result.add(new Move(dest, source));
+            }
+            return result;
+        } else if (constant == -1) {
+            result.add(new Subu(dest, ZERO, source));
+            return result;
+        } else if (constant == Integer.MIN_VALUE) {
+            return null;
+        }
+        final int magnitude = Math.abs(constant);
+        if (!isPowerOfTwo(magnitude)) {
+            return null;
+        }
+        final int amount = log2(magnitude);
+        if (amount == 1) {
+            // the sign bit is already the one to add
+            result.add(new Srl(scratch, source, 31));
+        } else {
+            result.add(new Sra(scratch, source, 31));
+            result.add(new Srl(scratch, scratch, 32 - amount));
+        }
+        result.add(new Addu(scratch, source, scratch));
+        result.add(new Sra(dest, scratch, amount));
+        if (constant < 0) {
+            result.add(new Subu(dest, ZERO, dest));
+        }
+        return result;
+    } // divide
+} // StrengthReduction
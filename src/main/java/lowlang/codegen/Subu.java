@@ -0,0 +1,10 @@
+package lowlang.codegen;
+
+// like sub, but wraps around instead of trapping on overflow
+public class Subu extends ThreeRegisterInstruction {
+    public Subu(final MIPSRegister rd,
+                final MIPSRegister rs,
+                final MIPSRegister rt) {
+        super("subu", rd, rs, rt);
+    }
+} // Subu
@@ -0,0 +1,47 @@
+package lowlang.codegen;
+
+// compares rs with rt, and jumps to jumpTo if the comparison holds
+public class TwoRegisterBranchInstruction implements MIPSInstruction {
+    public final String instructionName;
+    public final MIPSRegister rs;
+    public final MIPSRegister rt;
+    public final MIPSLabel jumpTo;
+
+    public TwoRegisterBranchInstruction(final String instructionName,
+                                        final MIPSRegister rs,
+                                        final MIPSRegister rt,
+                                        final MIPSLabel jumpTo) {
+        this.instructionName = instructionName;
+        this.rs = rs;
+        this.rt = rt;
+        this.jumpTo = jumpTo;
+    }
+
+    public String toString() {
+        return (MIPSInstruction.INDENT +
+                instructionName + " " +
+                rs.toString() + ", " +
+                rt.toString() + ", " +
+                jumpTo.getName());
+    } // toString
+
+    public boolean equals(final Object other) {
+        if (other instanceof TwoRegisterBranchInstruction) {
+            final TwoRegisterBranchInstruction otherI =
+                (TwoRegisterBranchInstruction)other;
+            return (instructionName.equals(otherI.instructionName) &&
+                    rs.equals(otherI.rs) &&
+                    rt.equals(otherI.rt) &&
+                    jumpTo.equals(otherI.jumpTo));
+        } else {
+            return false;
+        }
+    } // equals
+
+    public int hashCode() {
+        return (instructionName.hashCode() +
+                rs.hashCode() +
+                rt.hashCode() +
+                jumpTo.hashCode());
+    } // hashCode
+} // TwoRegisterBranchInstruction
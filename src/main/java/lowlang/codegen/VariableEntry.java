@@ -7,20 +7,31 @@ public class VariableEntry {
     public final Variable variable;
     public final Type type;
     public final int size;
+    // the slot holds a pointer to the value, rather than the value
+    public final boolean isReference;
     
     public VariableEntry(final Variable variable,
                          final Type type,
-                         final int size) {
+                         final int size,
+                         final boolean isReference) {
         this.variable = variable;
         this.type = type;
         this.size = size;
+        this.isReference = isReference;
+    }
+
+    public VariableEntry(final Variable variable,
+                         final Type type,
+                         final int size) {
+        this(variable, type, size, false);
     }
 
     public String toString() {
         return ("VariableEntry(" +
                 variable + ", " +
                 type + ", " +
-                size + ")");
+                size + ", " +
+                isReference + ")");
     }
 
     public boolean equals(final Object other) {
@@ -28,7 +39,8 @@ public class VariableEntry {
             final VariableEntry otherEntry = (VariableEntry)other;
             return (variable.equals(otherEntry.variable) &&
                     type.equals(otherEntry.type) &&
-                    size == otherEntry.size);
+                    size == otherEntry.size &&
+                    isReference == otherEntry.isReference);
         } else {
             return false;
         }
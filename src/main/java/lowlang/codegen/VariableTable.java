@@ -19,6 +19,12 @@ public class VariableTable {
         variables.push(new VariableEntry(variable, type, size));
     }
 
+    // the variable's slot holds a pointer to its value
+    public void pushReference(final Variable variable,
+                              final Type type) {
+        variables.push(new VariableEntry(variable, type, 4, true));
+    }
+
     public VariableTableResetPoint makeResetPoint() {
         return new VariableTableResetPoint(variables.size());
     }
@@ -82,6 +88,16 @@ public class VariableTable {
         return 0;
     }
 
+    public boolean isReference(final Variable variable) {
+        for (final VariableEntry entry : variables) {
+            if (entry.variable.equals(variable)) {
+                return entry.isReference;
+            }
+        }
+        assert(false);
+        return false;
+    }
+
     public int totalSizeOfAllVariables() {
         int result = 0;
 
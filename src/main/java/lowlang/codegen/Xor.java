@@ -0,0 +1,9 @@
+package lowlang.codegen;
+
+public class Xor extends ThreeRegisterInstruction {
+    public Xor(final MIPSRegister rd,
+               final MIPSRegister rs,
+               final MIPSRegister rt) {
+        super("xor", rd, rs, rt);
+    }
+} // Xor
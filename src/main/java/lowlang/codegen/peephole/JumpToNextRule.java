@@ -0,0 +1,25 @@
+package lowlang.codegen.peephole;
+
+import lowlang.codegen.*;
+
+import java.util.List;
+
+// A jump to the label right after it falls through anyway.
+public class JumpToNextRule implements PeepholeRule {
+    public String getName() {
+        return "jump-to-next";
+    }
+
+    public int windowSize() {
+        return 2;
+    }
+
+    public PeepholeRewrite rewrite(final List<MIPSEntry> window) {
+        if (window.size() >= 2 &&
+            window.get(0) instanceof J &&
+            ((J)window.get(0)).label.equals(window.get(1))) {
+            return PeepholeRewrite.replace(1);
+        }
+        return null;
+    }
+} // JumpToNextRule
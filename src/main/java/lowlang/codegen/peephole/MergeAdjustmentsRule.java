@@ -0,0 +1,36 @@
+package lowlang.codegen.peephole;
+
+import lowlang.codegen.*;
+
+import java.util.List;
+
+// Back-to-back adjustments of the same register become one:
+//
+// addi rX, rX, A
+// addi rX, rX, B
+public class MergeAdjustmentsRule implements PeepholeRule {
+    public String getName() {
+        return "merge-addi";
+    }
+
+    public int windowSize() {
+        return 2;
+    }
+
+    public PeepholeRewrite rewrite(final List<MIPSEntry> window) {
+        if (window.size() >= 2 &&
+            window.get(0) instanceof Addi &&
+            window.get(1) instanceof Addi) {
+            final Addi first = (Addi)window.get(0);
+            final Addi second = (Addi)window.get(1);
+            final int sum = first.immediate + second.immediate;
+            if (first.rt == first.rs &&
+                second.rt == second.rs &&
+                first.rt == second.rt &&
+                ImmediateOperands.fits(sum)) {
+                return PeepholeRewrite.replace(2, new Addi(first.rt, first.rs, sum));
+            }
+        }
+        return null;
+    }
+} // MergeAdjustmentsRule
@@ -0,0 +1,117 @@
+package lowlang.codegen.peephole;
+
+import lowlang.codegen.MIPSEntry;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.LinkedHashMap;
+
+// Slides a window over the emitted code, trying each rule in order at each
+// position.  After a rewrite, the window backs up far enough that anything
+// the rewrite made possible is matched as well.  Rules needing a bigger
+// window than the one given are never tried.
+public class PeepholeOptimizer {
+    public static final int DEFAULT_WINDOW_SIZE = 4;
+
+    private final List<PeepholeRule> rules;
+    private final int windowSize;
+    private final int[] hits;
+
+    public PeepholeOptimizer(final List<PeepholeRule> rules,
+                             final int windowSize) {
+        assert(windowSize > 0);
+        this.rules = rules;
+        this.windowSize = windowSize;
+        hits = new int[rules.size()];
+    }
+
+    public PeepholeOptimizer(final int windowSize) {
+        this(defaultRules(), windowSize);
+    }
+
+    public PeepholeOptimizer() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    public static List<PeepholeRule> defaultRules() {
+        return new ArrayList<PeepholeRule>(Arrays.asList(new PushPopRule(),
+                                                         new StoreLoadRule(),
+                                                         new ZeroAdjustmentRule(),
+                                                         new MergeAdjustmentsRule(),
+                                                         new JumpToNextRule(),
+                                                         new SelfMoveRule()));
+    }
+
+    public List<MIPSEntry> optimize(final List<MIPSEntry> entries) {
+        // everything before the window is done; the window starts input
+        final List<MIPSEntry> output = new ArrayList<MIPSEntry>(entries.size());
+        final Deque<MIPSEntry> input = new ArrayDeque<MIPSEntry>(entries);
+        final List<MIPSEntry> window = new ArrayList<MIPSEntry>(windowSize);
+
+        while (!input.isEmpty()) {
+            window.clear();
+            for (final MIPSEntry entry : input) {
+                if (window.size() == windowSize) {
+                    break;
+                }
+                window.add(entry);
+            }
+
+            PeepholeRewrite rewrite = null;
+            for (int index = 0; index < rules.size() && rewrite == null; index++) {
+                final PeepholeRule rule = rules.get(index);
+                if (rule.windowSize() <= windowSize) {
+                    rewrite = rule.rewrite(window);
+                    if (rewrite != null) {
+                        hits[index]++;
+                    }
+                }
+            }
+
+            if (rewrite == null) {
+                output.add(input.removeFirst());
+            } else {
+                assert(rewrite.numReplaced > 0 && rewrite.numReplaced <= window.size());
+                for (int count = 0; count < rewrite.numReplaced; count++) {
+                    input.removeFirst();
+                }
+                for (int index = rewrite.replacement.size() - 1; index >= 0; index--) {
+                    input.addFirst(rewrite.replacement.get(index));
+                }
+                for (int count = 0; count < windowSize - 1 && !output.isEmpty(); count++) {
+                    input.addFirst(output.remove(output.size() - 1));
+                }
+            }
+        }
+        return output;
+    }
+
+    // rule name -> how many times it fired, in the order the rules are tried
+    public Map<String, Integer> getHits() {
+        final Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+        for (int index = 0; index < rules.size(); index++) {
+            result.put(rules.get(index).getName(), Integer.valueOf(hits[index]));
+        }
+        return result;
+    }
+
+    public int totalHits() {
+        int total = 0;
+        for (final int ruleHits : hits) {
+            total += ruleHits;
+        }
+        return total;
+    }
+
+    public String hitsToString() {
+        final StringBuilder builder = new StringBuilder();
+        for (final Map.Entry<String, Integer> entry : getHits().entrySet()) {
+            builder.append(String.format("%-16s %8d%n", entry.getKey(), entry.getValue()));
+        }
+        return builder.toString();
+    }
+} // PeepholeOptimizer
@@ -0,0 +1,25 @@
+package lowlang.codegen.peephole;
+
+import lowlang.codegen.MIPSEntry;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Replace the first numReplaced entries of the window with replacement.
+public class PeepholeRewrite {
+    public final int numReplaced;
+    public final List<MIPSEntry> replacement;
+
+    public PeepholeRewrite(final int numReplaced,
+                           final List<MIPSEntry> replacement) {
+        this.numReplaced = numReplaced;
+        this.replacement = replacement;
+    }
+
+    public static PeepholeRewrite replace(final int numReplaced,
+                                          final MIPSEntry... replacement) {
+        return new PeepholeRewrite(numReplaced,
+                                   new ArrayList<MIPSEntry>(Arrays.asList(replacement)));
+    }
+} // PeepholeRewrite
@@ -0,0 +1,20 @@
+package lowlang.codegen.peephole;
+
+import lowlang.codegen.MIPSEntry;
+
+import java.util.List;
+
+// One local rewrite on the emitted code.  Rules only ever see a short run
+// of consecutive entries, and must not change what the program does.
+public interface PeepholeRule {
+    // used when reporting how often each rule fired
+    public String getName();
+
+    // how many entries the rule needs to see to match
+    public int windowSize();
+
+    // Window holds the entries starting from the current position, at most
+    // the optimizer's window size of them.  Returns null if the rule doesn't
+    // apply there.
+    public PeepholeRewrite rewrite(List<MIPSEntry> window);
+} // PeepholeRule
@@ -0,0 +1,41 @@
+package lowlang.codegen.peephole;
+
+import lowlang.codegen.*;
+
+import java.util.List;
+
+// A push immediately popped is a move:
+//
+// addi $sp, $sp, -4
+// sw rX, 0($sp)
+// lw rY, 0($sp)
+// addi $sp, $sp, 4
+public class PushPopRule implements PeepholeRule {
+    public String getName() {
+        return "push-pop";
+    }
+
+    public int windowSize() {
+        return 4;
+    }
+
+    public PeepholeRewrite rewrite(final List<MIPSEntry> window) {
+        if (window.size() >= 4 &&
+            window.get(0).equals(new Addi(MIPSRegister.SP, MIPSRegister.SP, -4)) &&
+            window.get(1) instanceof Sw &&
+            window.get(2) instanceof Lw &&
+            window.get(3).equals(new Addi(MIPSRegister.SP, MIPSRegister.SP, 4))) {
+            final Sw push = (Sw)window.get(1);
+            final Lw pop = (Lw)window.get(2);
+            if (push.offset == 0 && push.right == MIPSRegister.SP &&
+                pop.offset == 0 && pop.right == MIPSRegister.SP) {
+                if (push.left == pop.left) {
+                    return PeepholeRewrite.replace(4);
+                } else {
+                    return PeepholeRewrite.replace(4, new Move(pop.left, push.left));
+                }
+            }
+        }
+        return null;
+    }
+} // PushPopRule
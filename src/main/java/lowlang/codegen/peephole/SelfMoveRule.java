@@ -0,0 +1,26 @@
+package lowlang.codegen.peephole;
+
+import lowlang.codegen.*;
+
+import java.util.List;
+
+// move rX, rX does nothing
+public class SelfMoveRule implements PeepholeRule {
+    public String getName() {
+        return "self-move";
+    }
+
+    public int windowSize() {
+        return 1;
+    }
+
+    public PeepholeRewrite rewrite(final List<MIPSEntry> window) {
+        if (window.get(0) instanceof Move) {
+            final Move move = (Move)window.get(0);
+            if (move.rs == move.rt) {
+                return PeepholeRewrite.replace(1);
+            }
+        }
+        return null;
+    }
+} // SelfMoveRule
@@ -0,0 +1,37 @@
+package lowlang.codegen.peephole;
+
+import lowlang.codegen.*;
+
+import java.util.List;
+
+// A load straight after a store to the same address gets the stored
+// register:
+//
+// sw rX, N(rB)
+// lw rY, N(rB)
+public class StoreLoadRule implements PeepholeRule {
+    public String getName() {
+        return "store-load";
+    }
+
+    public int windowSize() {
+        return 2;
+    }
+
+    public PeepholeRewrite rewrite(final List<MIPSEntry> window) {
+        if (window.size() >= 2 &&
+            window.get(0) instanceof Sw &&
+            window.get(1) instanceof Lw) {
+            final Sw store = (Sw)window.get(0);
+            final Lw load = (Lw)window.get(1);
+            if (store.offset == load.offset && store.right == load.right) {
+                if (store.left == load.left) {
+                    return PeepholeRewrite.replace(2, store);
+                } else {
+                    return PeepholeRewrite.replace(2, store, new Move(load.left, store.left));
+                }
+            }
+        }
+        return null;
+    }
+} // StoreLoadRule
@@ -0,0 +1,26 @@
+package lowlang.codegen.peephole;
+
+import lowlang.codegen.*;
+
+import java.util.List;
+
+// addi rX, rX, 0 does nothing
+public class ZeroAdjustmentRule implements PeepholeRule {
+    public String getName() {
+        return "zero-addi";
+    }
+
+    public int windowSize() {
+        return 1;
+    }
+
+    public PeepholeRewrite rewrite(final List<MIPSEntry> window) {
+        if (window.get(0) instanceof Addi) {
+            final Addi addi = (Addi)window.get(0);
+            if (addi.rt == addi.rs && addi.immediate == 0) {
+                return PeepholeRewrite.replace(1);
+            }
+        }
+        return null;
+    }
+} // ZeroAdjustmentRule
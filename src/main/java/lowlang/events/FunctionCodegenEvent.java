@@ -0,0 +1,30 @@
+package lowlang.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lowlang.FunctionCodegen")
+@Label("Compile Function")
+@Category({"lowlang", "Compiler", "Function"})
+public class FunctionCodegenEvent extends Event {
+    @Label("Function")
+    public String functionName;
+
+    @Label("Node Count")
+    public int nodeCount;
+
+    @Label("Instruction Count")
+    public int instructionCount;
+
+    // call after end(), once shouldCommit() is true
+    public void finish(final String functionName,
+                       final int nodeCount,
+                       final int instructionCount) {
+        this.functionName = functionName;
+        this.nodeCount = nodeCount;
+        this.instructionCount = instructionCount;
+        commit();
+    }
+} // FunctionCodegenEvent
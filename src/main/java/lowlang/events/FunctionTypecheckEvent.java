@@ -0,0 +1,24 @@
+package lowlang.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lowlang.FunctionTypecheck")
+@Label("Typecheck Function")
+@Category({"lowlang", "Compiler", "Function"})
+public class FunctionTypecheckEvent extends Event {
+    @Label("Function")
+    public String functionName;
+
+    @Label("Node Count")
+    public int nodeCount;
+
+    // call after end(), once shouldCommit() is true
+    public void finish(final String functionName, final int nodeCount) {
+        this.functionName = functionName;
+        this.nodeCount = nodeCount;
+        commit();
+    }
+} // FunctionTypecheckEvent
@@ -0,0 +1,24 @@
+package lowlang.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lowlang.Parse")
+@Label("Parse")
+@Category({"lowlang", "Compiler"})
+public class ParseEvent extends Event {
+    @Label("Token Count")
+    public int tokenCount;
+
+    @Label("Node Count")
+    public int nodeCount;
+
+    // call after end(), once shouldCommit() is true
+    public void finish(final int tokenCount, final int nodeCount) {
+        this.tokenCount = tokenCount;
+        this.nodeCount = nodeCount;
+        commit();
+    }
+} // ParseEvent
@@ -0,0 +1,24 @@
+package lowlang.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lowlang.Tokenize")
+@Label("Tokenize")
+@Category({"lowlang", "Compiler"})
+public class TokenizeEvent extends Event {
+    @Label("Input Length")
+    public int inputLength;
+
+    @Label("Token Count")
+    public int tokenCount;
+
+    // call after end(), once shouldCommit() is true
+    public void finish(final int inputLength, final int tokenCount) {
+        this.inputLength = inputLength;
+        this.tokenCount = tokenCount;
+        commit();
+    }
+} // TokenizeEvent
@@ -0,0 +1,24 @@
+package lowlang.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lowlang.Typecheck")
+@Label("Typecheck Program")
+@Category({"lowlang", "Compiler"})
+public class TypecheckEvent extends Event {
+    @Label("Function Count")
+    public int functionCount;
+
+    @Label("Node Count")
+    public int nodeCount;
+
+    // call after end(), once shouldCommit() is true
+    public void finish(final int functionCount, final int nodeCount) {
+        this.functionCount = functionCount;
+        this.nodeCount = nodeCount;
+        commit();
+    }
+} // TypecheckEvent
@@ -0,0 +1,32 @@
+package lowlang.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lowlang.WriteAssembly")
+@Label("Write Assembly")
+@Category({"lowlang", "Compiler"})
+public class WriteAssemblyEvent extends Event {
+    @Label("File")
+    public String path;
+
+    @Label("Instruction Count")
+    public int instructionCount;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytesWritten;
+
+    // call after end(), once shouldCommit() is true
+    public void finish(final String path,
+                       final int instructionCount,
+                       final long bytesWritten) {
+        this.path = path;
+        this.instructionCount = instructionCount;
+        this.bytesWritten = bytesWritten;
+        commit();
+    }
+} // WriteAssemblyEvent
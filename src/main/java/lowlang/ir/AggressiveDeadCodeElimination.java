@@ -0,0 +1,144 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Collections;
+
+// Aggressive dead code elimination over SSA form, as in Cytron et al.
+// Everything starts out dead except instructions with side effects and
+// returns.  Liveness then spreads to the definitions of whatever live
+// instructions read, and to the branches live blocks are control
+// dependent on.  Dead branches become jumps to their immediate
+// postdominator, which takes out whole dead loops and conditionals.
+public class AggressiveDeadCodeElimination {
+    private final IRFunction function;
+    private final Dominators postdominators;
+    private final Map<VReg, Instruction> definitions;
+    private final Map<Instruction, BasicBlock> blockOf;
+    private final Set<Instruction> live;
+    private final Set<BasicBlock> liveBlocks;
+    private final List<Instruction> worklist;
+    // if some block can't reach a return, control dependence isn't
+    // defined, so every branch is kept
+    private final boolean keepAllBranches;
+
+    private AggressiveDeadCodeElimination(final IRFunction function) {
+        this.function = function;
+        postdominators = Dominators.postdominatorsOf(function);
+        definitions = new HashMap<VReg, Instruction>();
+        blockOf = new IdentityHashMap<Instruction, BasicBlock>();
+        live = Collections.newSetFromMap(new IdentityHashMap<Instruction, Boolean>());
+        liveBlocks = new HashSet<BasicBlock>();
+        worklist = new ArrayList<Instruction>();
+
+        boolean allReachExit = true;
+        for (final BasicBlock block : function.getBlocks()) {
+            for (final Instruction instruction : block.instructions) {
+                blockOf.put(instruction, block);
+                for (final VReg def : instruction.defs()) {
+                    definitions.put(def, instruction);
+                }
+            }
+            blockOf.put(block.getTerminator(), block);
+            allReachExit = allReachExit && postdominators.isReachable(block);
+        }
+        keepAllBranches = !allReachExit;
+    }
+
+    // returns the number of instructions removed, counting dead branches
+    public static int run(final IRFunction function) {
+        assert(SSA.isSSA(function));
+        final AggressiveDeadCodeElimination adce = new AggressiveDeadCodeElimination(function);
+        adce.markRoots();
+        adce.propagate();
+        return adce.sweep();
+    }
+
+    private void markLive(final Instruction instruction) {
+        if (live.add(instruction)) {
+            worklist.add(instruction);
+        }
+    }
+
+    private void markBlockLive(final BasicBlock block) {
+        if (liveBlocks.add(block) && !keepAllBranches) {
+            for (final BasicBlock controller : postdominators.frontier(block)) {
+                markLive(controller.getTerminator());
+            }
+        }
+    }
+
+    private void markRoots() {
+        for (final BasicBlock block : function.getBlocks()) {
+            for (final Instruction instruction : block.instructions) {
+                if (instruction.hasSideEffects()) {
+                    markLive(instruction);
+                }
+            }
+            final Terminator terminator = block.getTerminator();
+            if (terminator instanceof Return ||
+                (keepAllBranches && terminator instanceof Branch)) {
+                markLive(terminator);
+            }
+        }
+    }
+
+    private void propagate() {
+        while (!worklist.isEmpty()) {
+            final Instruction instruction = worklist.remove(worklist.size() - 1);
+            markBlockLive(blockOf.get(instruction));
+            for (final VReg use : instruction.uses()) {
+                final Instruction definition = definitions.get(use);
+                if (definition != null) {
+                    markLive(definition);
+                }
+            }
+            if (instruction instanceof Phi) {
+                // which value arrives depends on how control got here
+                for (final BasicBlock predecessor : ((Phi)instruction).incoming.keySet()) {
+                    markBlockLive(predecessor);
+                    if (predecessor.getTerminator() instanceof Branch) {
+                        markLive(predecessor.getTerminator());
+                    }
+                }
+            }
+        }
+    }
+
+    private int sweep() {
+        int numRemoved = 0;
+        for (final BasicBlock block : function.getBlocks()) {
+            final int oldSize = block.instructions.size();
+            final List<Instruction> kept = liveInstructions(block);
+            block.instructions.clear();
+            block.instructions.addAll(kept);
+            numRemoved += oldSize - block.instructions.size();
+
+            final Terminator terminator = block.getTerminator();
+            if (terminator instanceof Branch && !live.contains(terminator)) {
+                // nothing live depends on which way this goes
+                final BasicBlock target = postdominators.immediateDominator(block);
+                assert(target != null);
+                block.setTerminator(new Jump(target));
+                numRemoved++;
+            }
+        }
+        function.computeEdges();
+        return numRemoved;
+    }
+
+    private List<Instruction> liveInstructions(final BasicBlock block) {
+        final List<Instruction> result = new ArrayList<Instruction>();
+        for (final Instruction instruction : block.instructions) {
+            if (live.contains(instruction)) {
+                result.add(instruction);
+            }
+        }
+        return result;
+    }
+} // AggressiveDeadCodeElimination
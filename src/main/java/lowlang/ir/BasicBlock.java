@@ -0,0 +1,82 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+
+// Straight-line instructions, ending in exactly one terminator.  Edges
+// come from the terminator; predecessors are kept up to date by
+// IRFunction.computeEdges.
+public class BasicBlock {
+    public final int id;
+    public final List<Instruction> instructions;
+    private Terminator terminator;
+    private final List<BasicBlock> predecessors;
+
+    public BasicBlock(final int id) {
+        this.id = id;
+        instructions = new ArrayList<Instruction>();
+        terminator = null;
+        predecessors = new ArrayList<BasicBlock>();
+    }
+
+    public String getName() {
+        return "b" + id;
+    }
+
+    public boolean isTerminated() {
+        return terminator != null;
+    }
+
+    public Terminator getTerminator() {
+        assert terminator != null : "Unterminated block: " + getName();
+        return terminator;
+    }
+
+    public void setTerminator(final Terminator terminator) {
+        this.terminator = terminator;
+    }
+
+    public void add(final Instruction instruction) {
+        assert terminator == null : "Adding to terminated block: " + getName();
+        assert !(instruction instanceof Terminator);
+        instructions.add(instruction);
+    }
+
+    public List<BasicBlock> successors() {
+        return getTerminator().successors();
+    }
+
+    public List<BasicBlock> predecessors() {
+        return Collections.unmodifiableList(predecessors);
+    }
+
+    void clearPredecessors() {
+        predecessors.clear();
+    }
+
+    void addPredecessor(final BasicBlock block) {
+        if (!predecessors.contains(block)) {
+            predecessors.add(block);
+        }
+    }
+
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(getName() + ":");
+        if (!predecessors.isEmpty()) {
+            builder.append(" ; preds");
+            for (final BasicBlock predecessor : predecessors) {
+                builder.append(" " + predecessor.getName());
+            }
+        }
+        builder.append("\n");
+        for (final Instruction instruction : instructions) {
+            builder.append("    " + instruction.toString() + "\n");
+        }
+        if (terminator != null) {
+            builder.append("    " + terminator.toString() + "\n");
+        }
+        return builder.toString();
+    }
+} // BasicBlock
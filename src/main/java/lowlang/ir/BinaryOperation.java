@@ -0,0 +1,67 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Function;
+
+// dest = left op right
+public class BinaryOperation implements Instruction {
+    public final VReg dest;
+    public final VReg left;
+    public final BinaryOperator op;
+    public final VReg right;
+
+    public BinaryOperation(final VReg dest,
+                           final VReg left,
+                           final BinaryOperator op,
+                           final VReg right) {
+        this.dest = dest;
+        this.left = left;
+        this.op = op;
+        this.right = right;
+    }
+
+    public List<VReg> uses() {
+        return Arrays.asList(left, right);
+    }
+
+    public List<VReg> defs() {
+        return Collections.singletonList(dest);
+    }
+
+    public Instruction renameUses(final Function<VReg, VReg> renaming) {
+        return new BinaryOperation(dest, renaming.apply(left), op, renaming.apply(right));
+    }
+
+    public Instruction renameDefs(final Function<VReg, VReg> renaming) {
+        return new BinaryOperation(renaming.apply(dest), left, op, right);
+    }
+
+    public boolean hasSideEffects() {
+        return false;
+    }
+
+    public boolean equals(final Object other) {
+        if (other instanceof BinaryOperation) {
+            final BinaryOperation otherBinaryOperation = (BinaryOperation)other;
+            return (dest.equals(otherBinaryOperation.dest) &&
+                    left.equals(otherBinaryOperation.left) &&
+                    op.equals(otherBinaryOperation.op) &&
+                    right.equals(otherBinaryOperation.right));
+        } else {
+            return false;
+        }
+    }
+
+    public int hashCode() {
+        return (dest.hashCode() +
+                left.hashCode() +
+                op.hashCode() +
+                right.hashCode());
+    }
+
+    public String toString() {
+        return dest.toString() + " = " + op.toString() + " " + left.toString() + ", " + right.toString();
+    }
+} // BinaryOperation
@@ -0,0 +1,43 @@
+package lowlang.ir;
+
+import lowlang.parser.*;
+
+public enum BinaryOperator {
+    ADD("add", IRType.INT),
+    SUB("sub", IRType.INT),
+    MUL("mul", IRType.INT),
+    DIV("div", IRType.INT),
+    EQ("eq", IRType.BOOL),
+    LT("lt", IRType.BOOL);
+
+    public final String name;
+    public final IRType resultType;
+
+    BinaryOperator(final String name, final IRType resultType) {
+        this.name = name;
+        this.resultType = resultType;
+    }
+
+    public static BinaryOperator fromOp(final Op op) {
+        if (op instanceof PlusOp) {
+            return ADD;
+        } else if (op instanceof MinusOp) {
+            return SUB;
+        } else if (op instanceof MultOp) {
+            return MUL;
+        } else if (op instanceof DivOp) {
+            return DIV;
+        } else if (op instanceof EqualsOp) {
+            return EQ;
+        } else if (op instanceof LessThanOp) {
+            return LT;
+        } else {
+            assert false : "Unknown op: " + op.toString();
+            return null;
+        }
+    }
+
+    public String toString() {
+        return name;
+    }
+} // BinaryOperator
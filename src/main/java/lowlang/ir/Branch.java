@@ -0,0 +1,50 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Function;
+
+// goes to ifTrue if condition is nonzero, otherwise ifFalse
+public class Branch implements Terminator {
+    public final VReg condition;
+    public final BasicBlock ifTrue;
+    public final BasicBlock ifFalse;
+
+    public Branch(final VReg condition,
+                  final BasicBlock ifTrue,
+                  final BasicBlock ifFalse) {
+        this.condition = condition;
+        this.ifTrue = ifTrue;
+        this.ifFalse = ifFalse;
+    }
+
+    public List<BasicBlock> successors() {
+        return Arrays.asList(ifTrue, ifFalse);
+    }
+
+    public List<VReg> uses() {
+        return Collections.singletonList(condition);
+    }
+
+    public List<VReg> defs() {
+        return Collections.emptyList();
+    }
+
+    public Terminator renameUses(final Function<VReg, VReg> renaming) {
+        return new Branch(renaming.apply(condition), ifTrue, ifFalse);
+    }
+
+    public Terminator renameDefs(final Function<VReg, VReg> renaming) {
+        return this;
+    }
+
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    public String toString() {
+        return ("branch " + condition.toString() + ", " +
+                ifTrue.getName() + ", " + ifFalse.getName());
+    }
+} // Branch
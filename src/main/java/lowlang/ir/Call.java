@@ -0,0 +1,71 @@
+package lowlang.ir;
+
+import lowlang.parser.FunctionName;
+
+import java.util.List;
+import java.util.Collections;
+import java.util.function.Function;
+
+// results = function(arguments), where each argument and the result are
+// split into words
+public class Call implements Instruction {
+    public final List<VReg> results;
+    public final FunctionName function;
+    public final List<VReg> arguments;
+    // how many words each source-level argument takes, in order
+    public final List<Integer> argumentWords;
+
+    public Call(final List<VReg> results,
+                final FunctionName function,
+                final List<VReg> arguments,
+                final List<Integer> argumentWords) {
+        this.results = results;
+        this.function = function;
+        this.arguments = arguments;
+        this.argumentWords = argumentWords;
+    }
+
+    public List<VReg> uses() {
+        return Collections.unmodifiableList(arguments);
+    }
+
+    public List<VReg> defs() {
+        return Collections.unmodifiableList(results);
+    }
+
+    public Instruction renameUses(final Function<VReg, VReg> renaming) {
+        return new Call(results, function, VReg.renameAll(arguments, renaming), argumentWords);
+    }
+
+    public Instruction renameDefs(final Function<VReg, VReg> renaming) {
+        return new Call(VReg.renameAll(results, renaming), function, arguments, argumentWords);
+    }
+
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    public boolean equals(final Object other) {
+        if (other instanceof Call) {
+            final Call otherCall = (Call)other;
+            return (results.equals(otherCall.results) &&
+                    function.equals(otherCall.function) &&
+                    arguments.equals(otherCall.arguments) &&
+                    argumentWords.equals(otherCall.argumentWords));
+        } else {
+            return false;
+        }
+    }
+
+    public int hashCode() {
+        return (results.hashCode() +
+                function.hashCode() +
+                arguments.hashCode());
+    }
+
+    public String toString() {
+        return (IRFunction.registersToString(results) +
+                " = call " + function.toString() +
+                "(" + IRFunction.registersToString(arguments) + ")");
+    }
+} // Call
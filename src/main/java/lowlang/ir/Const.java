@@ -0,0 +1,56 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.Collections;
+import java.util.function.Function;
+
+// dest = value
+public class Const implements Instruction {
+    public final VReg dest;
+    public final int value;
+
+    public Const(final VReg dest,
+                 final int value) {
+        this.dest = dest;
+        this.value = value;
+    }
+
+    public List<VReg> uses() {
+        return Collections.emptyList();
+    }
+
+    public List<VReg> defs() {
+        return Collections.singletonList(dest);
+    }
+
+    public Instruction renameUses(final Function<VReg, VReg> renaming) {
+        return this;
+    }
+
+    public Instruction renameDefs(final Function<VReg, VReg> renaming) {
+        return new Const(renaming.apply(dest), value);
+    }
+
+    public boolean hasSideEffects() {
+        return false;
+    }
+
+    public boolean equals(final Object other) {
+        if (other instanceof Const) {
+            final Const otherConst = (Const)other;
+            return (dest.equals(otherConst.dest) &&
+                    value == otherConst.value);
+        } else {
+            return false;
+        }
+    }
+
+    public int hashCode() {
+        return (dest.hashCode() +
+                value);
+    }
+
+    public String toString() {
+        return dest.toString() + " = const " + value;
+    }
+} // Const
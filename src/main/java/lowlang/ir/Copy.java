@@ -0,0 +1,56 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.Collections;
+import java.util.function.Function;
+
+// dest = source
+public class Copy implements Instruction {
+    public final VReg dest;
+    public final VReg source;
+
+    public Copy(final VReg dest,
+                final VReg source) {
+        this.dest = dest;
+        this.source = source;
+    }
+
+    public List<VReg> uses() {
+        return Collections.singletonList(source);
+    }
+
+    public List<VReg> defs() {
+        return Collections.singletonList(dest);
+    }
+
+    public Instruction renameUses(final Function<VReg, VReg> renaming) {
+        return new Copy(dest, renaming.apply(source));
+    }
+
+    public Instruction renameDefs(final Function<VReg, VReg> renaming) {
+        return new Copy(renaming.apply(dest), source);
+    }
+
+    public boolean hasSideEffects() {
+        return false;
+    }
+
+    public boolean equals(final Object other) {
+        if (other instanceof Copy) {
+            final Copy otherCopy = (Copy)other;
+            return (dest.equals(otherCopy.dest) &&
+                    source.equals(otherCopy.source));
+        } else {
+            return false;
+        }
+    }
+
+    public int hashCode() {
+        return (dest.hashCode() +
+                source.hashCode());
+    }
+
+    public String toString() {
+        return dest.toString() + " = " + source.toString();
+    }
+} // Copy
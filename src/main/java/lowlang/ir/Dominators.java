@@ -0,0 +1,234 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.LinkedHashSet;
+import java.util.Collections;
+import java.util.Arrays;
+
+// The dominator tree and dominance frontiers of a function's blocks, using
+// the iterative algorithm from Cooper, Harvey, and Kennedy's "A Simple,
+// Fast Dominance Algorithm".  Built over the reversed graph, this gives
+// postdominators instead; a virtual exit (null) then succeeds every
+// returning block.
+public class Dominators {
+    private static final int UNDEFINED = -1;
+
+    // nodes are indices into this; null is the virtual exit
+    private final List<BasicBlock> nodes;
+    private final Map<BasicBlock, Integer> indices;
+    private final int[] idom;
+    private final int[] postorderNumber;
+    private final List<BasicBlock> reversePostorder;
+    private final List<List<BasicBlock>> children;
+    private final List<Set<BasicBlock>> frontier;
+
+    private Dominators(final List<BasicBlock> nodes,
+                       final List<List<Integer>> successors,
+                       final int root) {
+        this.nodes = nodes;
+        indices = new HashMap<BasicBlock, Integer>();
+        for (int index = 0; index < nodes.size(); index++) {
+            indices.put(nodes.get(index), Integer.valueOf(index));
+        }
+        final int numNodes = nodes.size();
+        final List<List<Integer>> predecessors = new ArrayList<List<Integer>>();
+        for (int index = 0; index < numNodes; index++) {
+            predecessors.add(new ArrayList<Integer>());
+        }
+        for (int index = 0; index < numNodes; index++) {
+            for (final Integer successor : successors.get(index)) {
+                predecessors.get(successor.intValue()).add(Integer.valueOf(index));
+            }
+        }
+
+        // number the nodes in postorder
+        postorderNumber = new int[numNodes];
+        Arrays.fill(postorderNumber, UNDEFINED);
+        final List<Integer> postorder = new ArrayList<Integer>();
+        final boolean[] visited = new boolean[numNodes];
+        final List<int[]> stack = new ArrayList<int[]>(); // node, next successor
+        visited[root] = true;
+        stack.add(new int[]{ root, 0 });
+        while (!stack.isEmpty()) {
+            final int[] top = stack.get(stack.size() - 1);
+            final List<Integer> nodeSuccessors = successors.get(top[0]);
+            if (top[1] < nodeSuccessors.size()) {
+                final int successor = nodeSuccessors.get(top[1]++).intValue();
+                if (!visited[successor]) {
+                    visited[successor] = true;
+                    stack.add(new int[]{ successor, 0 });
+                }
+            } else {
+                postorderNumber[top[0]] = postorder.size();
+                postorder.add(Integer.valueOf(top[0]));
+                stack.remove(stack.size() - 1);
+            }
+        }
+        reversePostorder = new ArrayList<BasicBlock>();
+        for (int index = postorder.size() - 1; index >= 0; index--) {
+            reversePostorder.add(nodes.get(postorder.get(index).intValue()));
+        }
+
+        idom = new int[numNodes];
+        Arrays.fill(idom, UNDEFINED);
+        idom[root] = root;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int index = postorder.size() - 1; index >= 0; index--) {
+                final int node = postorder.get(index).intValue();
+                if (node == root) {
+                    continue;
+                }
+                int newIdom = UNDEFINED;
+                for (final Integer predecessor : predecessors.get(node)) {
+                    final int pred = predecessor.intValue();
+                    if (idom[pred] != UNDEFINED) {
+                        newIdom = (newIdom == UNDEFINED) ? pred : intersect(pred, newIdom);
+                    }
+                }
+                if (idom[node] != newIdom) {
+                    idom[node] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+
+        children = new ArrayList<List<BasicBlock>>();
+        frontier = new ArrayList<Set<BasicBlock>>();
+        for (int index = 0; index < numNodes; index++) {
+            children.add(new ArrayList<BasicBlock>());
+            frontier.add(new LinkedHashSet<BasicBlock>());
+        }
+        for (final Integer nodeIndex : postorder) {
+            final int node = nodeIndex.intValue();
+            if (node != root) {
+                children.get(idom[node]).add(nodes.get(node));
+            }
+        }
+        for (final Integer nodeIndex : postorder) {
+            final int node = nodeIndex.intValue();
+            if (predecessors.get(node).size() < 2) {
+                continue;
+            }
+            for (final Integer predecessor : predecessors.get(node)) {
+                int runner = predecessor.intValue();
+                if (idom[runner] == UNDEFINED) {
+                    continue; // unreachable from the root
+                }
+                while (runner != idom[node]) {
+                    frontier.get(runner).add(nodes.get(node));
+                    runner = idom[runner];
+                }
+            }
+        }
+        // children in reverse postorder, so walks visit them in program order
+        for (final List<BasicBlock> nodeChildren : children) {
+            Collections.reverse(nodeChildren);
+        }
+    }
+
+    private int intersect(int first, int second) {
+        while (first != second) {
+            while (postorderNumber[first] < postorderNumber[second]) {
+                first = idom[first];
+            }
+            while (postorderNumber[second] < postorderNumber[first]) {
+                second = idom[second];
+            }
+        }
+        return first;
+    }
+
+    public static Dominators dominatorsOf(final IRFunction function) {
+        final List<BasicBlock> nodes = new ArrayList<BasicBlock>(function.getBlocks());
+        final Map<BasicBlock, Integer> indices = new HashMap<BasicBlock, Integer>();
+        for (int index = 0; index < nodes.size(); index++) {
+            indices.put(nodes.get(index), Integer.valueOf(index));
+        }
+        final List<List<Integer>> successors = new ArrayList<List<Integer>>();
+        for (final BasicBlock block : nodes) {
+            final List<Integer> blockSuccessors = new ArrayList<Integer>();
+            for (final BasicBlock successor : block.successors()) {
+                blockSuccessors.add(indices.get(successor));
+            }
+            successors.add(blockSuccessors);
+        }
+        return new Dominators(nodes, successors, 0);
+    }
+
+    // blocks which can't reach a return (infinite loops) are left out
+    public static Dominators postdominatorsOf(final IRFunction function) {
+        final List<BasicBlock> nodes = new ArrayList<BasicBlock>(function.getBlocks());
+        final int exit = nodes.size();
+        nodes.add(null);
+        final Map<BasicBlock, Integer> indices = new HashMap<BasicBlock, Integer>();
+        for (int index = 0; index < nodes.size(); index++) {
+            indices.put(nodes.get(index), Integer.valueOf(index));
+        }
+        final List<List<Integer>> successors = new ArrayList<List<Integer>>();
+        for (int index = 0; index < nodes.size(); index++) {
+            successors.add(new ArrayList<Integer>());
+        }
+        for (int index = 0; index < exit; index++) {
+            final BasicBlock block = nodes.get(index);
+            for (final BasicBlock successor : block.successors()) {
+                successors.get(indices.get(successor).intValue()).add(Integer.valueOf(index));
+            }
+            if (block.getTerminator() instanceof Return) {
+                successors.get(exit).add(Integer.valueOf(index));
+            }
+        }
+        return new Dominators(nodes, successors, exit);
+    }
+
+    private int indexOf(final BasicBlock block) {
+        final Integer index = indices.get(block);
+        assert index != null : "Unknown block: " + block;
+        return index.intValue();
+    }
+
+    public boolean isReachable(final BasicBlock block) {
+        return idom[indexOf(block)] != UNDEFINED;
+    }
+
+    // null for the root, and for blocks immediately postdominated by the
+    // virtual exit
+    public BasicBlock immediateDominator(final BasicBlock block) {
+        final int index = indexOf(block);
+        assert(idom[index] != UNDEFINED);
+        return nodes.get(idom[index]);
+    }
+
+    public boolean dominates(final BasicBlock dominator, final BasicBlock block) {
+        final int target = indexOf(dominator);
+        int runner = indexOf(block);
+        if (idom[runner] == UNDEFINED) {
+            return false;
+        }
+        while (runner != target) {
+            if (idom[runner] == runner) {
+                return false;
+            }
+            runner = idom[runner];
+        }
+        return true;
+    }
+
+    public List<BasicBlock> children(final BasicBlock block) {
+        return Collections.unmodifiableList(children.get(indexOf(block)));
+    }
+
+    public Set<BasicBlock> frontier(final BasicBlock block) {
+        return Collections.unmodifiableSet(frontier.get(indexOf(block)));
+    }
+
+    // reachable blocks only
+    public List<BasicBlock> getReversePostorder() {
+        return Collections.unmodifiableList(reversePostorder);
+    }
+} // Dominators
@@ -0,0 +1,58 @@
+package lowlang.ir;
+
+import lowlang.parser.FunctionName;
+
+import java.util.List;
+import java.util.Collections;
+import java.util.function.Function;
+
+// dest = the address of a function
+public class FunctionAddress implements Instruction {
+    public final VReg dest;
+    public final FunctionName function;
+
+    public FunctionAddress(final VReg dest,
+                           final FunctionName function) {
+        this.dest = dest;
+        this.function = function;
+    }
+
+    public List<VReg> uses() {
+        return Collections.emptyList();
+    }
+
+    public List<VReg> defs() {
+        return Collections.singletonList(dest);
+    }
+
+    public Instruction renameUses(final Function<VReg, VReg> renaming) {
+        return this;
+    }
+
+    public Instruction renameDefs(final Function<VReg, VReg> renaming) {
+        return new FunctionAddress(renaming.apply(dest), function);
+    }
+
+    public boolean hasSideEffects() {
+        return false;
+    }
+
+    public boolean equals(final Object other) {
+        if (other instanceof FunctionAddress) {
+            final FunctionAddress otherFunctionAddress = (FunctionAddress)other;
+            return (dest.equals(otherFunctionAddress.dest) &&
+                    function.equals(otherFunctionAddress.function));
+        } else {
+            return false;
+        }
+    }
+
+    public int hashCode() {
+        return (dest.hashCode() +
+                function.hashCode());
+    }
+
+    public String toString() {
+        return dest.toString() + " = address " + function.toString();
+    }
+} // FunctionAddress
@@ -0,0 +1,155 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.function.Function;
+
+// Dominator-based global value numbering over SSA form, after Briggs,
+// Cooper, and Simpson.  Walking the dominator tree with a scoped table, an
+// instruction computing the same value as one in a dominating block is
+// removed, and its register is replaced with the earlier one.  Copies are
+// propagated the same way.
+//
+// Loads are only reused within a block, since anything else would need to
+// know what stores and calls in between might write.  A store makes the
+// stored value available to later loads of the same address.
+public class GlobalValueNumbering {
+    // stands in for the destination in table keys, so that instructions
+    // computing the same thing compare equal
+    private static final VReg KEY_DEST = new VReg(-1, IRType.WORD);
+
+    private final IRFunction function;
+    private final Dominators dominators;
+    // register -> the register holding the same value which replaces it
+    private final Map<VReg, VReg> leaders;
+    private final Map<Instruction, VReg> available;
+    private int numRemoved;
+
+    private GlobalValueNumbering(final IRFunction function) {
+        this.function = function;
+        dominators = Dominators.dominatorsOf(function);
+        leaders = new HashMap<VReg, VReg>();
+        available = new HashMap<Instruction, VReg>();
+        numRemoved = 0;
+    }
+
+    // returns the number of instructions removed
+    public static int run(final IRFunction function) {
+        assert(SSA.isSSA(function));
+        final GlobalValueNumbering gvn = new GlobalValueNumbering(function);
+        gvn.number(function.getEntry());
+        // phis on back edges may refer to registers replaced after them
+        function.renameUses(register -> gvn.leaderOf(register));
+        return gvn.numRemoved;
+    }
+
+    private VReg leaderOf(final VReg register) {
+        final VReg leader = leaders.get(register);
+        return (leader == null) ? register : leader;
+    }
+
+    private void setLeader(final VReg register, final VReg leader) {
+        leaders.put(register, leaderOf(leader));
+    }
+
+    // operands of commutative operators are put in a fixed order
+    private static Instruction key(final Instruction instruction) {
+        final Instruction keyed = instruction.renameDefs(register -> KEY_DEST);
+        if (keyed instanceof BinaryOperation) {
+            final BinaryOperation asBinop = (BinaryOperation)keyed;
+            final boolean commutative = (asBinop.op == BinaryOperator.ADD ||
+                                         asBinop.op == BinaryOperator.MUL ||
+                                         asBinop.op == BinaryOperator.EQ);
+            if (commutative && asBinop.left.id > asBinop.right.id) {
+                return new BinaryOperation(KEY_DEST, asBinop.right, asBinop.op, asBinop.left);
+            }
+        }
+        return keyed;
+    }
+
+    private static boolean isNumbered(final Instruction instruction) {
+        return (instruction instanceof Const ||
+                instruction instanceof BinaryOperation ||
+                instruction instanceof SlotAddress ||
+                instruction instanceof FunctionAddress);
+    }
+
+    private void number(final BasicBlock block) {
+        final List<Instruction> added = new ArrayList<Instruction>();
+        final Map<Instruction, VReg> loads = new HashMap<Instruction, VReg>();
+        final Function<VReg, VReg> renaming = register -> leaderOf(register);
+
+        final List<Instruction> kept = new ArrayList<Instruction>();
+        for (final Instruction original : block.instructions) {
+            final Instruction instruction = original.renameUses(renaming);
+            if (instruction instanceof Copy) {
+                final Copy asCopy = (Copy)instruction;
+                setLeader(asCopy.dest, asCopy.source);
+                numRemoved++;
+                continue;
+            } else if (instruction instanceof Phi) {
+                // a phi merging the same value everywhere is just that value
+                final Phi asPhi = (Phi)instruction;
+                VReg same = null;
+                boolean allSame = true;
+                for (final VReg incoming : asPhi.incoming.values()) {
+                    if (incoming.equals(asPhi.dest)) {
+                        continue;
+                    } else if (same == null) {
+                        same = incoming;
+                    } else if (!same.equals(incoming)) {
+                        allSame = false;
+                    }
+                }
+                if (allSame && same != null) {
+                    setLeader(asPhi.dest, same);
+                    numRemoved++;
+                    continue;
+                }
+            } else if (isNumbered(instruction)) {
+                final Instruction key = key(instruction);
+                final VReg existing = available.get(key);
+                final VReg dest = instruction.defs().get(0);
+                if (existing != null) {
+                    setLeader(dest, existing);
+                    numRemoved++;
+                    continue;
+                }
+                available.put(key, dest);
+                added.add(key);
+            } else if (instruction instanceof Load) {
+                final Load asLoad = (Load)instruction;
+                final Instruction key = key(asLoad);
+                final VReg existing = loads.get(key);
+                if (existing != null) {
+                    setLeader(asLoad.dest, existing);
+                    numRemoved++;
+                    continue;
+                }
+                loads.put(key, asLoad.dest);
+            } else if (instruction instanceof Store) {
+                final Store asStore = (Store)instruction;
+                // any other address might be the same memory
+                loads.clear();
+                loads.put(key(new Load(KEY_DEST, asStore.address, asStore.offset)),
+                          asStore.value);
+            } else if (instruction instanceof Call ||
+                       instruction instanceof IndirectCall) {
+                loads.clear();
+            }
+            kept.add(instruction);
+        }
+        block.instructions.clear();
+        block.instructions.addAll(kept);
+        block.setTerminator(block.getTerminator().renameUses(renaming));
+
+        for (final BasicBlock child : dominators.children(block)) {
+            number(child);
+        }
+        for (final Instruction key : added) {
+            available.remove(key);
+        }
+    }
+} // GlobalValueNumbering
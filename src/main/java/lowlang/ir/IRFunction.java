@@ -0,0 +1,159 @@
+package lowlang.ir;
+
+import lowlang.parser.FunctionName;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Collections;
+import java.util.function.Function;
+
+// One function's control-flow graph.  The first block is the entry.
+public class IRFunction {
+    public final FunctionName name;
+    // words of every parameter, in order; defined on entry
+    public final List<VReg> parameters;
+    // how many words each source-level parameter takes, in order
+    public final List<Integer> parameterWords;
+    public final int returnWords;
+    private final List<BasicBlock> blocks;
+    private final List<Slot> slots;
+    private int numVRegs;
+    private int nextBlockId;
+
+    public IRFunction(final FunctionName name,
+                      final List<Integer> parameterWords,
+                      final int returnWords) {
+        this.name = name;
+        this.parameterWords = parameterWords;
+        this.returnWords = returnWords;
+        parameters = new ArrayList<VReg>();
+        blocks = new ArrayList<BasicBlock>();
+        slots = new ArrayList<Slot>();
+        numVRegs = 0;
+        nextBlockId = 0;
+    }
+
+    public VReg newVReg(final IRType type) {
+        return new VReg(numVRegs++, type);
+    }
+
+    public int getNumVRegs() {
+        return numVRegs;
+    }
+
+    public BasicBlock newBlock() {
+        final BasicBlock block = new BasicBlock(nextBlockId++);
+        blocks.add(block);
+        return block;
+    }
+
+    // moves the block to the end of the layout; blocks are laid out in the
+    // order they're filled in, so fallthrough follows the source
+    public void moveToEnd(final BasicBlock block) {
+        blocks.remove(block);
+        blocks.add(block);
+    }
+
+    public Slot newSlot(final int size) {
+        final Slot slot = new Slot(slots.size(), size);
+        slots.add(slot);
+        return slot;
+    }
+
+    public BasicBlock getEntry() {
+        return blocks.get(0);
+    }
+
+    // in layout order; the entry is first
+    public List<BasicBlock> getBlocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    public List<Slot> getSlots() {
+        return Collections.unmodifiableList(slots);
+    }
+
+    // Drops blocks which can't be reached from the entry, and recomputes
+    // every block's predecessors.
+    public void computeEdges() {
+        final Set<BasicBlock> reachable = new HashSet<BasicBlock>();
+        final List<BasicBlock> worklist = new ArrayList<BasicBlock>();
+        reachable.add(getEntry());
+        worklist.add(getEntry());
+        while (!worklist.isEmpty()) {
+            final BasicBlock current = worklist.remove(worklist.size() - 1);
+            for (final BasicBlock successor : current.successors()) {
+                if (reachable.add(successor)) {
+                    worklist.add(successor);
+                }
+            }
+        }
+        blocks.retainAll(reachable);
+
+        for (final BasicBlock block : blocks) {
+            block.clearPredecessors();
+        }
+        for (final BasicBlock block : blocks) {
+            for (final BasicBlock successor : block.successors()) {
+                successor.addPredecessor(block);
+            }
+        }
+
+        // phis only keep values from blocks which still lead to them
+        for (final BasicBlock block : blocks) {
+            for (final Instruction instruction : block.instructions) {
+                if (instruction instanceof Phi) {
+                    ((Phi)instruction).incoming.keySet().retainAll(block.predecessors());
+                }
+            }
+        }
+    }
+
+    // rewrites every read of a register, terminators included
+    public void renameUses(final Function<VReg, VReg> renaming) {
+        for (final BasicBlock block : blocks) {
+            final List<Instruction> instructions = block.instructions;
+            for (int index = 0; index < instructions.size(); index++) {
+                instructions.set(index, instructions.get(index).renameUses(renaming));
+            }
+            block.setTerminator(block.getTerminator().renameUses(renaming));
+        }
+    }
+
+    // instructions in all blocks, including terminators
+    public int numInstructions() {
+        int count = 0;
+        for (final BasicBlock block : blocks) {
+            count += block.instructions.size() + 1;
+        }
+        return count;
+    }
+
+    public static String registersToString(final List<VReg> registers) {
+        final StringBuilder builder = new StringBuilder();
+        for (int index = 0; index < registers.size(); index++) {
+            if (index > 0) {
+                builder.append(", ");
+            }
+            builder.append(registers.get(index).toString());
+        }
+        return builder.toString();
+    }
+
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("function " + name.toString() +
+                       "(" + registersToString(parameters) + ")" +
+                       " returns " + returnWords + " word(s)" +
+                       "; " + numInstructions() + " instruction(s)\n");
+        for (final Slot slot : slots) {
+            builder.append("  " + slot.toString() + "\n");
+        }
+        for (final BasicBlock block : blocks) {
+            builder.append(block.toString());
+        }
+        return builder.toString();
+    }
+} // IRFunction
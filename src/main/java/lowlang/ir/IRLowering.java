@@ -0,0 +1,650 @@
+package lowlang.ir;
+
+import lowlang.parser.*;
+import lowlang.typechecker.SymbolTable;
+import lowlang.codegen.Layout;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+
+// Lowers the typed AST into IR.  Assumes the program has undergone
+// typechecking.
+//
+// Every expression becomes a list of words, in memory order: word i is at
+// byte offset 4 * i from the value's lowest address.  Word-sized variables
+// live in virtual registers, unless their address is taken.  Structures,
+// and anything whose address is taken, live in stack slots.
+//
+// With scalar replacement, structures whose address is never taken get a
+// register per word instead, like any other value.  Nothing else can see
+// them, and passing or returning one whole is just passing its words, so
+// each field becomes an independent register the optimizations can see
+// through.
+public class IRLowering {
+    // where a variable lives
+    private static class VariableLocation {
+        public final Type type;
+        // present if the variable lives in registers, one per word...
+        public final List<VReg> registers;
+        // ...otherwise it's in this slot
+        public final Slot slot;
+
+        public VariableLocation(final Type type,
+                                final List<VReg> registers,
+                                final Slot slot) {
+            this.type = type;
+            this.registers = registers;
+            this.slot = slot;
+        }
+    } // VariableLocation
+
+    // an lhs, either registers or memory at address + offset
+    private static class Place {
+        public final List<VReg> registers;
+        public final VReg address;
+        public final int offset;
+
+        public Place(final List<VReg> registers,
+                     final VReg address,
+                     final int offset) {
+            this.registers = registers;
+            this.address = address;
+            this.offset = offset;
+        }
+
+        public boolean inRegister() {
+            return registers != null;
+        }
+    } // Place
+
+    private final SymbolTable symbols;
+    private final Layout layout;
+    private final boolean scalarReplacement;
+
+    // ---BEGIN PER-FUNCTION STATE---
+    private IRFunction function;
+    private BasicBlock current;
+    private Set<Variable> addressTaken;
+    private Map<Variable, VariableLocation> variables;
+    private BasicBlock breakTarget;
+    private BasicBlock continueTarget;
+    // ---END PER-FUNCTION STATE---
+
+    public IRLowering(final SymbolTable symbols,
+                      final boolean scalarReplacement) {
+        this.symbols = symbols;
+        this.scalarReplacement = scalarReplacement;
+        layout = new Layout(symbols);
+    }
+
+    public IRLowering(final SymbolTable symbols) {
+        this(symbols, false);
+    }
+
+    // symbols must be the table the program was typechecked with
+    public static IRProgram lower(final Program program,
+                                  final SymbolTable symbols) {
+        return lower(program, symbols, false);
+    }
+
+    public static IRProgram lower(final Program program,
+                                  final SymbolTable symbols,
+                                  final boolean scalarReplacement) {
+        final IRLowering lowering = new IRLowering(symbols, scalarReplacement);
+        final List<IRFunction> functions = new ArrayList<IRFunction>();
+        for (final FunctionDefinition def : program.functionDefs) {
+            functions.add(lowering.lowerFunction(def));
+        }
+        return new IRProgram(functions);
+    }
+
+    public static int words(final int size) {
+        assert(size % 4 == 0);
+        return size / 4;
+    }
+
+    private IRType wordType(final Type type) {
+        return (layout.sizeof(type) == 4) ? IRType.fromType(type) : IRType.WORD;
+    }
+
+    private VReg newVReg(final IRType type) {
+        return function.newVReg(type);
+    }
+
+    private void emit(final Instruction instruction) {
+        current.add(instruction);
+    }
+
+    private void terminate(final Terminator terminator) {
+        current.setTerminator(terminator);
+    }
+
+    // lays the block out after everything started so far
+    private void startBlock(final BasicBlock block) {
+        function.moveToEnd(block);
+        current = block;
+    }
+
+    // anything after a jump or return is unreachable, but still needs
+    // somewhere to go; computeEdges drops it
+    private void startUnreachableBlock() {
+        startBlock(function.newBlock());
+    }
+
+    private void jumpTo(final BasicBlock target) {
+        if (!current.isTerminated()) {
+            terminate(new Jump(target));
+        }
+    }
+
+    public IRFunction lowerFunction(final FunctionDefinition def) {
+        final List<Integer> parameterWords = new ArrayList<Integer>();
+        for (final VariableDeclaration param : def.parameters) {
+            parameterWords.add(Integer.valueOf(words(layout.sizeof(param.type))));
+        }
+        function = new IRFunction(def.name,
+                                  parameterWords,
+                                  words(layout.sizeof(def.returnType)));
+        addressTaken = new HashSet<Variable>();
+        addAddressTakenStmts(def.body);
+        variables = new HashMap<Variable, VariableLocation>();
+        breakTarget = null;
+        continueTarget = null;
+        startBlock(function.newBlock());
+
+        for (final VariableDeclaration param : def.parameters) {
+            final List<VReg> words = new ArrayList<VReg>();
+            final int numWords = words(layout.sizeof(param.type));
+            for (int index = 0; index < numWords; index++) {
+                words.add(newVReg(wordType(param.type)));
+            }
+            function.parameters.addAll(words);
+            if (livesInRegister(param.variable, param.type)) {
+                // the parameter's registers double as the variable's
+                variables.put(param.variable,
+                              new VariableLocation(param.type, words, null));
+            } else {
+                declareInMemory(param.variable, param.type, words);
+            }
+        }
+
+        lowerStmts(def.body);
+        if (!current.isTerminated()) {
+            // only reachable for void functions; the typechecker ensures
+            // everything else returns
+            final List<VReg> zeros = new ArrayList<VReg>();
+            for (int index = 0; index < function.returnWords; index++) {
+                final VReg zero = newVReg(IRType.WORD);
+                emit(new Const(zero, 0));
+                zeros.add(zero);
+            }
+            terminate(new Return(zeros));
+        }
+        function.computeEdges();
+        return function;
+    }
+
+    // ---BEGIN ADDRESS TAKEN---
+    // Variables whose address is taken have to live in memory.  Names are
+    // not scoped here, so this is conservative with shadowing.
+    private void addAddressTakenStmts(final List<Stmt> stmts) {
+        for (final Stmt stmt : stmts) {
+            addAddressTakenStmt(stmt);
+        }
+    }
+
+    private void addAddressTakenStmt(final Stmt stmt) {
+        if (stmt instanceof VariableDeclarationInitializationStmt) {
+            addAddressTakenExp(((VariableDeclarationInitializationStmt)stmt).exp);
+        } else if (stmt instanceof AssignmentStmt) {
+            addAddressTakenExp(((AssignmentStmt)stmt).exp);
+        } else if (stmt instanceof BlockStmt) {
+            addAddressTakenStmts(((BlockStmt)stmt).stmts);
+        } else if (stmt instanceof PrintStmt) {
+            addAddressTakenExp(((PrintStmt)stmt).exp);
+        } else if (stmt instanceof ReturnStmt) {
+            final ReturnStmt asReturn = (ReturnStmt)stmt;
+            if (asReturn.exp.isPresent()) {
+                addAddressTakenExp(asReturn.exp.get());
+            }
+        } else if (stmt instanceof ExpStmt) {
+            addAddressTakenExp(((ExpStmt)stmt).exp);
+        } else if (stmt instanceof IfStmt) {
+            final IfStmt asIf = (IfStmt)stmt;
+            addAddressTakenExp(asIf.guard);
+            addAddressTakenStmt(asIf.ifTrue);
+            if (asIf.ifFalse.isPresent()) {
+                addAddressTakenStmt(asIf.ifFalse.get());
+            }
+        } else if (stmt instanceof WhileStmt) {
+            final WhileStmt asWhile = (WhileStmt)stmt;
+            addAddressTakenExp(asWhile.guard);
+            addAddressTakenStmt(asWhile.body);
+        }
+    }
+
+    private void addAddressTakenExp(final Exp exp) {
+        if (exp instanceof AddressOfExp) {
+            final AddressOfExp asAddress = (AddressOfExp)exp;
+            if (asAddress.resolved.get() instanceof DataResolved) {
+                Lhs lhs = asAddress.lhs;
+                while (lhs instanceof FieldAccessLhs) {
+                    lhs = ((FieldAccessLhs)lhs).lhs;
+                }
+                if (lhs instanceof VariableLhs) {
+                    addressTaken.add(((VariableLhs)lhs).variable);
+                }
+            }
+        } else if (exp instanceof MallocExp) {
+            addAddressTakenExp(((MallocExp)exp).amount);
+        } else if (exp instanceof BinopExp) {
+            addAddressTakenExp(((BinopExp)exp).left);
+            addAddressTakenExp(((BinopExp)exp).right);
+        } else if (exp instanceof CallLikeExp) {
+            final CallLikeExp asCall = (CallLikeExp)exp;
+            addAddressTakenExp(asCall.base);
+            for (final Exp param : asCall.params) {
+                addAddressTakenExp(param);
+            }
+        } else if (exp instanceof CastExp) {
+            addAddressTakenExp(((CastExp)exp).exp);
+        } else if (exp instanceof DereferenceExp) {
+            addAddressTakenExp(((DereferenceExp)exp).exp);
+        } else if (exp instanceof FieldAccessExp) {
+            addAddressTakenExp(((FieldAccessExp)exp).exp);
+        }
+    }
+    // ---END ADDRESS TAKEN---
+
+    // ---BEGIN VARIABLES---
+    private boolean livesInRegister(final Variable variable, final Type type) {
+        if (addressTaken.contains(variable)) {
+            return false;
+        } else if (type instanceof StructureType) {
+            return scalarReplacement;
+        } else {
+            return layout.sizeof(type) == 4;
+        }
+    }
+
+    private void declareInMemory(final Variable variable,
+                                 final Type type,
+                                 final List<VReg> initialWords) {
+        final Slot slot = function.newSlot(layout.sizeof(type));
+        variables.put(variable, new VariableLocation(type, null, slot));
+        final VReg address = newVReg(IRType.POINTER);
+        emit(new SlotAddress(address, slot));
+        storeWords(address, 0, initialWords);
+    }
+
+    private void declare(final Variable variable,
+                         final Type type,
+                         final List<VReg> initialWords) {
+        if (livesInRegister(variable, type)) {
+            final List<VReg> registers = new ArrayList<VReg>();
+            for (final VReg word : initialWords) {
+                final VReg register = newVReg(wordType(type));
+                emit(new Copy(register, word));
+                registers.add(register);
+            }
+            variables.put(variable, new VariableLocation(type, registers, null));
+        } else {
+            declareInMemory(variable, type, initialWords);
+        }
+    }
+
+    private List<VReg> loadWords(final VReg address,
+                                 final int offset,
+                                 final Type type) {
+        final List<VReg> result = new ArrayList<VReg>();
+        final int numWords = words(layout.sizeof(type));
+        for (int index = 0; index < numWords; index++) {
+            final VReg word = newVReg(wordType(type));
+            emit(new Load(word, address, offset + 4 * index));
+            result.add(word);
+        }
+        return result;
+    }
+
+    private void storeWords(final VReg address,
+                            final int offset,
+                            final List<VReg> words) {
+        for (int index = 0; index < words.size(); index++) {
+            emit(new Store(address, offset + 4 * index, words.get(index)));
+        }
+    }
+
+    private Place placeOfVariable(final Variable variable) {
+        final VariableLocation location = variables.get(variable);
+        assert location != null : "Unknown variable: " + variable.toString();
+        if (location.registers != null) {
+            return new Place(location.registers, null, 0);
+        } else {
+            final VReg address = newVReg(IRType.POINTER);
+            emit(new SlotAddress(address, location.slot));
+            return new Place(null, address, 0);
+        }
+    }
+
+    private Place placeOfLhs(final Lhs lhs) {
+        if (lhs instanceof VariableLhs) {
+            return placeOfVariable(((VariableLhs)lhs).variable);
+        } else if (lhs instanceof FieldAccessLhs) {
+            final FieldAccessLhs asField = (FieldAccessLhs)lhs;
+            final Place structure = placeOfLhs(asField.lhs);
+            final int fieldOffset = layout.fieldOffset(asField.structureId, asField.fieldId);
+            if (structure.inRegister()) {
+                final int first = words(fieldOffset);
+                final int size = layout.fieldSize(asField.structureId, asField.fieldId);
+                return new Place(structure.registers.subList(first, first + words(size)),
+                                 null,
+                                 0);
+            }
+            return new Place(null,
+                             structure.address,
+                             structure.offset + fieldOffset);
+        } else if (lhs instanceof DereferenceLhs) {
+            final Place pointer = placeOfLhs(((DereferenceLhs)lhs).lhs);
+            return new Place(null, readWord(pointer, IRType.POINTER), 0);
+        } else {
+            assert false : "Unknown lhs: " + lhs.toString();
+            return null;
+        }
+    }
+
+    private VReg readWord(final Place place, final IRType type) {
+        if (place.inRegister()) {
+            assert(place.registers.size() == 1);
+            return place.registers.get(0);
+        } else {
+            final VReg result = newVReg(type);
+            emit(new Load(result, place.address, place.offset));
+            return result;
+        }
+    }
+
+    private void writePlace(final Place place, final List<VReg> words) {
+        if (place.inRegister() && words.size() == 1) {
+            emit(new Copy(place.registers.get(0), words.get(0)));
+        } else if (place.inRegister()) {
+            // the words may be the registers themselves, in another order,
+            // so they're all read before any is written
+            assert(words.size() == place.registers.size());
+            final List<VReg> temporaries = new ArrayList<VReg>();
+            for (final VReg word : words) {
+                final VReg temporary = newVReg(IRType.WORD);
+                emit(new Copy(temporary, word));
+                temporaries.add(temporary);
+            }
+            for (int index = 0; index < words.size(); index++) {
+                emit(new Copy(place.registers.get(index), temporaries.get(index)));
+            }
+        } else {
+            storeWords(place.address, place.offset, words);
+        }
+    }
+    // ---END VARIABLES---
+
+    // ---BEGIN STATEMENTS---
+    private void lowerStmts(final List<Stmt> stmts) {
+        for (final Stmt stmt : stmts) {
+            lowerStmt(stmt);
+        }
+    }
+
+    private void lowerInNestedScope(final Stmt stmt) {
+        final Map<Variable, VariableLocation> oldVariables = variables;
+        variables = new HashMap<Variable, VariableLocation>(oldVariables);
+        lowerStmt(stmt);
+        variables = oldVariables;
+    }
+
+    private void lowerStmt(final Stmt stmt) {
+        if (stmt instanceof VariableDeclarationInitializationStmt) {
+            final VariableDeclarationInitializationStmt asDec =
+                (VariableDeclarationInitializationStmt)stmt;
+            declare(asDec.varDec.variable,
+                    asDec.varDec.type,
+                    lowerExp(asDec.exp));
+        } else if (stmt instanceof AssignmentStmt) {
+            // value first, then where it goes, as in the stack code generator
+            final AssignmentStmt asAssign = (AssignmentStmt)stmt;
+            final List<VReg> value = lowerExp(asAssign.exp);
+            writePlace(placeOfLhs(asAssign.lhs), value);
+        } else if (stmt instanceof BlockStmt) {
+            final Map<Variable, VariableLocation> oldVariables = variables;
+            variables = new HashMap<Variable, VariableLocation>(oldVariables);
+            lowerStmts(((BlockStmt)stmt).stmts);
+            variables = oldVariables;
+        } else if (stmt instanceof PrintStmt) {
+            emit(new Print(lowerWord(((PrintStmt)stmt).exp)));
+        } else if (stmt instanceof ReturnStmt) {
+            final ReturnStmt asReturn = (ReturnStmt)stmt;
+            final List<VReg> value =
+                (asReturn.exp.isPresent()) ? lowerExp(asReturn.exp.get()) : new ArrayList<VReg>();
+            terminate(new Return(value));
+            startUnreachableBlock();
+        } else if (stmt instanceof ExpStmt) {
+            lowerExp(((ExpStmt)stmt).exp);
+        } else if (stmt instanceof IfStmt) {
+            lowerIfStmt((IfStmt)stmt);
+        } else if (stmt instanceof WhileStmt) {
+            lowerWhileStmt((WhileStmt)stmt);
+        } else if (stmt instanceof BreakStmt) {
+            assert(breakTarget != null);
+            terminate(new Jump(breakTarget));
+            startUnreachableBlock();
+        } else if (stmt instanceof ContinueStmt) {
+            assert(continueTarget != null);
+            terminate(new Jump(continueTarget));
+            startUnreachableBlock();
+        } else {
+            assert false : "Unknown stmt: " + stmt.toString();
+        }
+    }
+
+    private void lowerIfStmt(final IfStmt stmt) {
+        final VReg guard = lowerWord(stmt.guard);
+        final BasicBlock ifTrue = function.newBlock();
+        final BasicBlock join = function.newBlock();
+        final BasicBlock ifFalse = (stmt.ifFalse.isPresent()) ? function.newBlock() : join;
+        terminate(new Branch(guard, ifTrue, ifFalse));
+
+        startBlock(ifTrue);
+        lowerInNestedScope(stmt.ifTrue);
+        jumpTo(join);
+
+        if (stmt.ifFalse.isPresent()) {
+            startBlock(ifFalse);
+            lowerInNestedScope(stmt.ifFalse.get());
+            jumpTo(join);
+        }
+        startBlock(join);
+    }
+
+    private void lowerWhileStmt(final WhileStmt stmt) {
+        final BasicBlock header = function.newBlock();
+        final BasicBlock body = function.newBlock();
+        final BasicBlock exit = function.newBlock();
+        jumpTo(header);
+
+        startBlock(header);
+        terminate(new Branch(lowerWord(stmt.guard), body, exit));
+
+        // nested loops have their own targets
+        final BasicBlock oldBreakTarget = breakTarget;
+        final BasicBlock oldContinueTarget = continueTarget;
+        breakTarget = exit;
+        continueTarget = header;
+        startBlock(body);
+        lowerInNestedScope(stmt.body);
+        jumpTo(header);
+        breakTarget = oldBreakTarget;
+        continueTarget = oldContinueTarget;
+
+        startBlock(exit);
+    }
+    // ---END STATEMENTS---
+
+    // ---BEGIN EXPRESSIONS---
+    private VReg lowerWord(final Exp exp) {
+        final List<VReg> words = lowerExp(exp);
+        assert(words.size() == 1);
+        return words.get(0);
+    }
+
+    private List<VReg> single(final VReg register) {
+        final List<VReg> result = new ArrayList<VReg>();
+        result.add(register);
+        return result;
+    }
+
+    private List<VReg> constant(final int value, final IRType type) {
+        final VReg result = newVReg(type);
+        emit(new Const(result, value));
+        return single(result);
+    }
+
+    private List<VReg> lowerExp(final Exp exp) {
+        if (exp instanceof IntegerLiteralExp) {
+            return constant(((IntegerLiteralExp)exp).value, IRType.INT);
+        } else if (exp instanceof BooleanLiteralExp) {
+            return constant((((BooleanLiteralExp)exp).value) ? 1 : 0, IRType.BOOL);
+        } else if (exp instanceof SizeofExp) {
+            return constant(layout.sizeof(((SizeofExp)exp).type), IRType.INT);
+        } else if (exp instanceof VariableExp) {
+            final Variable variable = ((VariableExp)exp).variable;
+            final VariableLocation location = variables.get(variable);
+            assert location != null : "Unknown variable: " + variable.toString();
+            if (location.registers != null) {
+                return new ArrayList<VReg>(location.registers);
+            } else {
+                final VReg address = newVReg(IRType.POINTER);
+                emit(new SlotAddress(address, location.slot));
+                return loadWords(address, 0, location.type);
+            }
+        } else if (exp instanceof BinopExp) {
+            final BinopExp asBinop = (BinopExp)exp;
+            final VReg left = lowerWord(asBinop.left);
+            final VReg right = lowerWord(asBinop.right);
+            final BinaryOperator op = BinaryOperator.fromOp(asBinop.op);
+            final VReg result = newVReg(op.resultType);
+            emit(new BinaryOperation(result, left, op, right));
+            return single(result);
+        } else if (exp instanceof CastExp) {
+            // same bits, different type
+            return lowerExp(((CastExp)exp).exp);
+        } else if (exp instanceof MallocExp) {
+            final VReg amount = lowerWord(((MallocExp)exp).amount);
+            final VReg result = newVReg(IRType.POINTER);
+            emit(new Malloc(result, amount));
+            return single(result);
+        } else if (exp instanceof DereferenceExp) {
+            final DereferenceExp asDeref = (DereferenceExp)exp;
+            final VReg address = lowerWord(asDeref.exp);
+            return loadWords(address, 0, asDeref.typeAfterDereference.get());
+        } else if (exp instanceof AddressOfExp) {
+            final AddressOfExp asAddress = (AddressOfExp)exp;
+            final AddressOfResolved resolution = asAddress.resolved.get();
+            if (resolution instanceof FunctionResolved) {
+                final VReg result = newVReg(IRType.FUNCTION_POINTER);
+                emit(new FunctionAddress(result, ((FunctionResolved)resolution).functionName));
+                return single(result);
+            } else {
+                final Place place = placeOfLhs(asAddress.lhs);
+                assert(!place.inRegister());
+                if (place.offset == 0) {
+                    return single(place.address);
+                } else {
+                    final VReg offset = newVReg(IRType.INT);
+                    emit(new Const(offset, place.offset));
+                    final VReg result = newVReg(IRType.POINTER);
+                    emit(new BinaryOperation(result, place.address, BinaryOperator.ADD, offset));
+                    return single(result);
+                }
+            }
+        } else if (exp instanceof FieldAccessExp) {
+            return lowerFieldAccessExp((FieldAccessExp)exp);
+        } else if (exp instanceof CallLikeExp) {
+            return lowerCallLikeExp((CallLikeExp)exp);
+        } else {
+            assert false : "Unknown exp: " + exp.toString();
+            return null;
+        }
+    }
+
+    private List<VReg> lowerFieldAccessExp(final FieldAccessExp exp) {
+        final Type fieldType = symbols.fieldType(exp.structureId, exp.fieldId);
+        final int fieldOffset = layout.fieldOffset(exp.structureId, exp.fieldId);
+
+        // fields of structures in memory are loaded directly
+        if (exp.exp instanceof VariableExp &&
+            variables.get(((VariableExp)exp.exp).variable).registers == null) {
+            final Place place = placeOfVariable(((VariableExp)exp.exp).variable);
+            return loadWords(place.address, place.offset + fieldOffset, fieldType);
+        } else if (exp.exp instanceof DereferenceExp) {
+            final VReg address = lowerWord(((DereferenceExp)exp.exp).exp);
+            return loadWords(address, fieldOffset, fieldType);
+        } else {
+            final List<VReg> structure = lowerExp(exp.exp);
+            final int first = words(fieldOffset);
+            return new ArrayList<VReg>(structure.subList(first,
+                                                         first + words(layout.sizeof(fieldType))));
+        }
+    }
+
+    private List<VReg> lowerCallLikeExp(final CallLikeExp exp) {
+        final CallLikeResolved resolution = exp.resolution.get();
+        if (resolution instanceof MakeStructureResolved) {
+            final int structureId = ((MakeStructureResolved)resolution).structureId;
+            final VReg[] result = new VReg[words(layout.structureSize(structureId))];
+            for (int fieldId = 0; fieldId < exp.params.size(); fieldId++) {
+                final List<VReg> field = lowerExp(exp.params.get(fieldId));
+                final int first = words(layout.fieldOffset(structureId, fieldId));
+                for (int index = 0; index < field.size(); index++) {
+                    result[first + index] = field.get(index);
+                }
+            }
+            return new ArrayList<VReg>(Arrays.asList(result));
+        }
+
+        // the base is evaluated before the arguments
+        final VReg target =
+            (resolution instanceof IndirectCallResolved) ? lowerWord(exp.base) : null;
+        final List<VReg> arguments = new ArrayList<VReg>();
+        final List<Integer> argumentWords = new ArrayList<Integer>();
+        for (final Exp param : exp.params) {
+            final List<VReg> words = lowerExp(param);
+            arguments.addAll(words);
+            argumentWords.add(Integer.valueOf(words.size()));
+        }
+
+        final Type returnType;
+        if (resolution instanceof DirectCallResolved) {
+            returnType = symbols.returnType(((DirectCallResolved)resolution).functionId);
+        } else {
+            returnType = ((IndirectCallResolved)resolution).functionPointer.returnType;
+        }
+        final List<VReg> results = new ArrayList<VReg>();
+        final int numWords = words(layout.sizeof(returnType));
+        for (int index = 0; index < numWords; index++) {
+            results.add(newVReg(wordType(returnType)));
+        }
+
+        if (resolution instanceof DirectCallResolved) {
+            emit(new Call(results,
+                          ((DirectCallResolved)resolution).functionName,
+                          arguments,
+                          argumentWords));
+        } else {
+            emit(new IndirectCall(results, target, arguments, argumentWords));
+        }
+        return results;
+    }
+    // ---END EXPRESSIONS---
+} // IRLowering
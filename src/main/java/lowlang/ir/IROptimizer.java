@@ -0,0 +1,30 @@
+package lowlang.ir;
+
+// Runs the SSA-based passes over each function: constant propagation,
+// value numbering, loop-invariant code motion, and dead code elimination,
+// repeated while any of them finds something, then converts back out of
+// SSA for instruction selection.
+public class IROptimizer {
+    // each pass is cheap, but there's no point chasing a long tail
+    public static final int MAX_ROUNDS = 4;
+
+    public static void optimize(final IRFunction function) {
+        SSA.construct(function);
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            final int changes = (SparseConditionalConstantPropagation.run(function) +
+                                 GlobalValueNumbering.run(function) +
+                                 LoopInvariantCodeMotion.run(function) +
+                                 AggressiveDeadCodeElimination.run(function));
+            if (changes == 0) {
+                break;
+            }
+        }
+        SSA.destruct(function);
+    }
+
+    public static void optimize(final IRProgram program) {
+        for (final IRFunction function : program.functions) {
+            optimize(function);
+        }
+    }
+} // IROptimizer
@@ -0,0 +1,28 @@
+package lowlang.ir;
+
+import java.util.List;
+
+public class IRProgram {
+    public final List<IRFunction> functions;
+
+    public IRProgram(final List<IRFunction> functions) {
+        this.functions = functions;
+    }
+
+    public int numInstructions() {
+        int count = 0;
+        for (final IRFunction function : functions) {
+            count += function.numInstructions();
+        }
+        return count;
+    }
+
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (final IRFunction function : functions) {
+            builder.append(function.toString());
+            builder.append("\n");
+        }
+        return builder.toString();
+    }
+} // IRProgram
@@ -0,0 +1,38 @@
+package lowlang.ir;
+
+import lowlang.parser.*;
+
+// Every IR value is a single word.  Structures are split into their words,
+// which have no type of their own.
+public enum IRType {
+    INT("int"),
+    BOOL("bool"),
+    POINTER("ptr"),
+    FUNCTION_POINTER("fnptr"),
+    WORD("word");
+
+    public final String name;
+
+    IRType(final String name) {
+        this.name = name;
+    }
+
+    // the type of a word-sized source type; anything else is WORD
+    public static IRType fromType(final Type type) {
+        if (type instanceof IntType) {
+            return INT;
+        } else if (type instanceof BoolType) {
+            return BOOL;
+        } else if (type instanceof PointerType) {
+            return POINTER;
+        } else if (type instanceof FunctionPointerType) {
+            return FUNCTION_POINTER;
+        } else {
+            return WORD;
+        }
+    }
+
+    public String toString() {
+        return name;
+    }
+} // IRType
@@ -0,0 +1,71 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.function.Function;
+
+// results = (*target)(arguments); like Call, but through a function pointer
+public class IndirectCall implements Instruction {
+    public final List<VReg> results;
+    public final VReg target;
+    public final List<VReg> arguments;
+    public final List<Integer> argumentWords;
+
+    public IndirectCall(final List<VReg> results,
+                        final VReg target,
+                        final List<VReg> arguments,
+                        final List<Integer> argumentWords) {
+        this.results = results;
+        this.target = target;
+        this.arguments = arguments;
+        this.argumentWords = argumentWords;
+    }
+
+    public List<VReg> uses() {
+        final List<VReg> uses = new ArrayList<VReg>();
+        uses.add(target);
+        uses.addAll(arguments);
+        return uses;
+    }
+
+    public List<VReg> defs() {
+        return Collections.unmodifiableList(results);
+    }
+
+    public Instruction renameUses(final Function<VReg, VReg> renaming) {
+        return new IndirectCall(results, renaming.apply(target), VReg.renameAll(arguments, renaming), argumentWords);
+    }
+
+    public Instruction renameDefs(final Function<VReg, VReg> renaming) {
+        return new IndirectCall(VReg.renameAll(results, renaming), target, arguments, argumentWords);
+    }
+
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    public boolean equals(final Object other) {
+        if (other instanceof IndirectCall) {
+            final IndirectCall otherCall = (IndirectCall)other;
+            return (results.equals(otherCall.results) &&
+                    target.equals(otherCall.target) &&
+                    arguments.equals(otherCall.arguments) &&
+                    argumentWords.equals(otherCall.argumentWords));
+        } else {
+            return false;
+        }
+    }
+
+    public int hashCode() {
+        return (results.hashCode() +
+                target.hashCode() +
+                arguments.hashCode());
+    }
+
+    public String toString() {
+        return (IRFunction.registersToString(results) +
+                " = call *" + target.toString() +
+                "(" + IRFunction.registersToString(arguments) + ")");
+    }
+} // IndirectCall
@@ -0,0 +1,21 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.function.Function;
+
+public interface Instruction {
+    // registers read, in operand order
+    public List<VReg> uses();
+
+    // registers written
+    public List<VReg> defs();
+
+    // the same instruction, with every register read passed through renaming
+    public Instruction renameUses(Function<VReg, VReg> renaming);
+
+    // the same instruction, with every register written passed through renaming
+    public Instruction renameDefs(Function<VReg, VReg> renaming);
+
+    // true if this does anything beyond writing its defs
+    public boolean hasSideEffects();
+} // Instruction
@@ -0,0 +1,41 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.Collections;
+import java.util.function.Function;
+
+public class Jump implements Terminator {
+    public final BasicBlock target;
+
+    public Jump(final BasicBlock target) {
+        this.target = target;
+    }
+
+    public List<BasicBlock> successors() {
+        return Collections.singletonList(target);
+    }
+
+    public List<VReg> uses() {
+        return Collections.emptyList();
+    }
+
+    public List<VReg> defs() {
+        return Collections.emptyList();
+    }
+
+    public Terminator renameUses(final Function<VReg, VReg> renaming) {
+        return this;
+    }
+
+    public Terminator renameDefs(final Function<VReg, VReg> renaming) {
+        return this;
+    }
+
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    public String toString() {
+        return "jump " + target.getName();
+    }
+} // Jump
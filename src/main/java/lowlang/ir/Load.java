@@ -0,0 +1,61 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.Collections;
+import java.util.function.Function;
+
+// dest = the word at address + offset
+public class Load implements Instruction {
+    public final VReg dest;
+    public final VReg address;
+    public final int offset;
+
+    public Load(final VReg dest,
+                final VReg address,
+                final int offset) {
+        this.dest = dest;
+        this.address = address;
+        this.offset = offset;
+    }
+
+    public List<VReg> uses() {
+        return Collections.singletonList(address);
+    }
+
+    public List<VReg> defs() {
+        return Collections.singletonList(dest);
+    }
+
+    public Instruction renameUses(final Function<VReg, VReg> renaming) {
+        return new Load(dest, renaming.apply(address), offset);
+    }
+
+    public Instruction renameDefs(final Function<VReg, VReg> renaming) {
+        return new Load(renaming.apply(dest), address, offset);
+    }
+
+    public boolean hasSideEffects() {
+        return false;
+    }
+
+    public boolean equals(final Object other) {
+        if (other instanceof Load) {
+            final Load otherLoad = (Load)other;
+            return (dest.equals(otherLoad.dest) &&
+                    address.equals(otherLoad.address) &&
+                    offset == otherLoad.offset);
+        } else {
+            return false;
+        }
+    }
+
+    public int hashCode() {
+        return (dest.hashCode() +
+                address.hashCode() +
+                offset);
+    }
+
+    public String toString() {
+        return dest.toString() + " = load " + offset + "(" + address.toString() + ")";
+    }
+} // Load
@@ -0,0 +1,262 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Iterator;
+
+// Loop-invariant code motion over SSA form.  Natural loops come from back
+// edges, edges to a block which dominates their source, and loops sharing
+// a header are merged.  Working from the innermost loops out, anything
+// whose operands are all defined outside the loop, or by what's already
+// been hoisted, moves to the end of the preheader.  That's the one block
+// entering the loop from outside, which has to end in a jump; loops
+// without one are left alone.
+//
+// Constants, addresses, copies, multiplication, and comparisons can't
+// fault, so they're hoisted from anywhere in the loop, even though the
+// loop might not have run them.  Addition and subtraction trap on overflow
+// and division on 0, and loads can fault, so those are only hoisted from
+// the header, which runs whenever the loop is entered.  Nothing in the
+// loop may write what a load reads, either: calls may write anything, and
+// a store is assumed to write it unless it's provably another word,
+// through the same address register at another offset, into another slot,
+// or into a slot whose address is only ever used directly to load and
+// store when the other side is a pointer.
+public class LoopInvariantCodeMotion {
+    private static class Loop {
+        public final BasicBlock header;
+        public final Set<BasicBlock> body;
+
+        public Loop(final BasicBlock header) {
+            this.header = header;
+            body = new HashSet<BasicBlock>();
+            body.add(header);
+        }
+    } // Loop
+
+    private final IRFunction function;
+    private final Dominators dominators;
+    // where each register is defined; parameters have no entry
+    private final Map<VReg, BasicBlock> definedIn;
+    // what registers defined by SlotAddress point to
+    private final Map<VReg, Slot> slotOf;
+    private final Set<Slot> escaping;
+    private int numHoisted;
+
+    private LoopInvariantCodeMotion(final IRFunction function) {
+        this.function = function;
+        dominators = Dominators.dominatorsOf(function);
+        definedIn = new HashMap<VReg, BasicBlock>();
+        slotOf = new HashMap<VReg, Slot>();
+        escaping = new HashSet<Slot>();
+        numHoisted = 0;
+        for (final BasicBlock block : function.getBlocks()) {
+            for (final Instruction instruction : block.instructions) {
+                for (final VReg def : instruction.defs()) {
+                    definedIn.put(def, block);
+                }
+                if (instruction instanceof SlotAddress) {
+                    final SlotAddress asSlotAddress = (SlotAddress)instruction;
+                    slotOf.put(asSlotAddress.dest, asSlotAddress.slot);
+                }
+            }
+        }
+        for (final BasicBlock block : function.getBlocks()) {
+            for (final Instruction instruction : block.instructions) {
+                addEscaping(instruction);
+            }
+            addEscaping(block.getTerminator());
+        }
+    }
+
+    // a slot's address escapes if it's used for anything but an address
+    private void addEscaping(final Instruction instruction) {
+        for (final VReg use : instruction.uses()) {
+            final Slot slot = slotOf.get(use);
+            if (slot == null) {
+                continue;
+            } else if (instruction instanceof Load) {
+                // only the address is used
+            } else if (instruction instanceof Store &&
+                       !((Store)instruction).value.equals(use)) {
+                // only the address is used
+            } else {
+                escaping.add(slot);
+            }
+        }
+    }
+
+    // returns the number of instructions hoisted
+    public static int run(final IRFunction function) {
+        assert(SSA.isSSA(function));
+        final LoopInvariantCodeMotion licm = new LoopInvariantCodeMotion(function);
+        for (final Loop loop : licm.findLoops()) {
+            licm.hoist(loop);
+        }
+        return licm.numHoisted;
+    }
+
+    // innermost first
+    private List<Loop> findLoops() {
+        final Map<BasicBlock, Loop> byHeader = new LinkedHashMap<BasicBlock, Loop>();
+        for (final BasicBlock block : dominators.getReversePostorder()) {
+            for (final BasicBlock successor : block.successors()) {
+                if (dominators.dominates(successor, block)) {
+                    Loop loop = byHeader.get(successor);
+                    if (loop == null) {
+                        loop = new Loop(successor);
+                        byHeader.put(successor, loop);
+                    }
+                    addBody(loop, block);
+                }
+            }
+        }
+        final List<Loop> result = new ArrayList<Loop>(byHeader.values());
+        result.sort((first, second) -> Integer.compare(first.body.size(), second.body.size()));
+        return result;
+    }
+
+    // everything which reaches the back edge's source without going
+    // through the header
+    private void addBody(final Loop loop, final BasicBlock source) {
+        final List<BasicBlock> worklist = new ArrayList<BasicBlock>();
+        if (loop.body.add(source)) {
+            worklist.add(source);
+        }
+        while (!worklist.isEmpty()) {
+            final BasicBlock block = worklist.remove(worklist.size() - 1);
+            for (final BasicBlock predecessor : block.predecessors()) {
+                if (loop.body.add(predecessor)) {
+                    worklist.add(predecessor);
+                }
+            }
+        }
+    }
+
+    private BasicBlock preheaderOf(final Loop loop) {
+        BasicBlock result = null;
+        for (final BasicBlock predecessor : loop.header.predecessors()) {
+            if (!loop.body.contains(predecessor)) {
+                if (result != null) {
+                    return null;
+                }
+                result = predecessor;
+            }
+        }
+        if (result == null || !(result.getTerminator() instanceof Jump)) {
+            return null;
+        }
+        return result;
+    }
+
+    private void hoist(final Loop loop) {
+        final BasicBlock preheader = preheaderOf(loop);
+        if (preheader == null) {
+            return;
+        }
+        final List<Store> stores = new ArrayList<Store>();
+        boolean hasCall = false;
+        for (final BasicBlock block : loop.body) {
+            for (final Instruction instruction : block.instructions) {
+                if (instruction instanceof Store) {
+                    stores.add((Store)instruction);
+                } else if (instruction instanceof Call ||
+                           instruction instanceof IndirectCall) {
+                    hasCall = true;
+                }
+            }
+        }
+
+        // hoisting one instruction can make those using it invariant
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (final BasicBlock block : function.getBlocks()) {
+                if (!loop.body.contains(block)) {
+                    continue;
+                }
+                final Iterator<Instruction> iterator = block.instructions.iterator();
+                while (iterator.hasNext()) {
+                    final Instruction instruction = iterator.next();
+                    if (canHoist(instruction, block, loop, stores, hasCall)) {
+                        iterator.remove();
+                        preheader.instructions.add(instruction);
+                        for (final VReg def : instruction.defs()) {
+                            definedIn.put(def, preheader);
+                        }
+                        numHoisted++;
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isInvariant(final VReg register, final Loop loop) {
+        final BasicBlock block = definedIn.get(register);
+        return block == null || !loop.body.contains(block);
+    }
+
+    private boolean canHoist(final Instruction instruction,
+                             final BasicBlock block,
+                             final Loop loop,
+                             final List<Store> stores,
+                             final boolean hasCall) {
+        if (instruction instanceof Const ||
+            instruction instanceof Copy ||
+            instruction instanceof SlotAddress ||
+            instruction instanceof FunctionAddress) {
+            // fall through to the operands
+        } else if (instruction instanceof BinaryOperation) {
+            if (canTrap(((BinaryOperation)instruction).op) && block != loop.header) {
+                return false;
+            }
+        } else if (instruction instanceof Load) {
+            if (block != loop.header || hasCall) {
+                return false;
+            }
+            for (final Store store : stores) {
+                if (mayAlias(store, (Load)instruction)) {
+                    return false;
+                }
+            }
+        } else {
+            return false;
+        }
+        for (final VReg use : instruction.uses()) {
+            if (!isInvariant(use, loop)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // selected as add, sub, and div, which trap
+    private static boolean canTrap(final BinaryOperator op) {
+        return (op == BinaryOperator.ADD ||
+                op == BinaryOperator.SUB ||
+                op == BinaryOperator.DIV);
+    }
+
+    private boolean mayAlias(final Store store, final Load load) {
+        if (store.address.equals(load.address)) {
+            return store.offset == load.offset;
+        }
+        final Slot storeSlot = slotOf.get(store.address);
+        final Slot loadSlot = slotOf.get(load.address);
+        if (storeSlot != null && loadSlot != null) {
+            return storeSlot == loadSlot && store.offset == load.offset;
+        } else if (storeSlot != null) {
+            return escaping.contains(storeSlot);
+        } else if (loadSlot != null) {
+            return escaping.contains(loadSlot);
+        } else {
+            return true;
+        }
+    }
+} // LoopInvariantCodeMotion
@@ -0,0 +1,56 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.Collections;
+import java.util.function.Function;
+
+// dest = a fresh allocation of amount bytes
+public class Malloc implements Instruction {
+    public final VReg dest;
+    public final VReg amount;
+
+    public Malloc(final VReg dest,
+                  final VReg amount) {
+        this.dest = dest;
+        this.amount = amount;
+    }
+
+    public List<VReg> uses() {
+        return Collections.singletonList(amount);
+    }
+
+    public List<VReg> defs() {
+        return Collections.singletonList(dest);
+    }
+
+    public Instruction renameUses(final Function<VReg, VReg> renaming) {
+        return new Malloc(dest, renaming.apply(amount));
+    }
+
+    public Instruction renameDefs(final Function<VReg, VReg> renaming) {
+        return new Malloc(renaming.apply(dest), amount);
+    }
+
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    public boolean equals(final Object other) {
+        if (other instanceof Malloc) {
+            final Malloc otherMalloc = (Malloc)other;
+            return (dest.equals(otherMalloc.dest) &&
+                    amount.equals(otherMalloc.amount));
+        } else {
+            return false;
+        }
+    }
+
+    public int hashCode() {
+        return (dest.hashCode() +
+                amount.hashCode());
+    }
+
+    public String toString() {
+        return dest.toString() + " = malloc " + amount.toString();
+    }
+} // Malloc
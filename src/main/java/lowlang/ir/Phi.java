@@ -0,0 +1,77 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.function.Function;
+
+// dest = the value from whichever predecessor control came from.  Only
+// present in SSA form, and always at the start of a block.
+public class Phi implements Instruction {
+    public final VReg dest;
+    // one entry per predecessor
+    public final Map<BasicBlock, VReg> incoming;
+
+    public Phi(final VReg dest,
+               final Map<BasicBlock, VReg> incoming) {
+        this.dest = dest;
+        this.incoming = incoming;
+    }
+
+    public Phi(final VReg dest) {
+        this(dest, new LinkedHashMap<BasicBlock, VReg>());
+    }
+
+    public List<VReg> uses() {
+        return new ArrayList<VReg>(incoming.values());
+    }
+
+    public List<VReg> defs() {
+        final List<VReg> result = new ArrayList<VReg>();
+        result.add(dest);
+        return result;
+    }
+
+    public Instruction renameUses(final Function<VReg, VReg> renaming) {
+        final Map<BasicBlock, VReg> renamed = new LinkedHashMap<BasicBlock, VReg>();
+        for (final Map.Entry<BasicBlock, VReg> entry : incoming.entrySet()) {
+            renamed.put(entry.getKey(), renaming.apply(entry.getValue()));
+        }
+        return new Phi(dest, renamed);
+    }
+
+    public Instruction renameDefs(final Function<VReg, VReg> renaming) {
+        return new Phi(renaming.apply(dest), new LinkedHashMap<BasicBlock, VReg>(incoming));
+    }
+
+    public boolean hasSideEffects() {
+        return false;
+    }
+
+    public boolean equals(final Object other) {
+        if (other instanceof Phi) {
+            final Phi otherPhi = (Phi)other;
+            return (dest.equals(otherPhi.dest) &&
+                    incoming.equals(otherPhi.incoming));
+        } else {
+            return false;
+        }
+    }
+
+    public int hashCode() {
+        return dest.hashCode();
+    }
+
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(dest.toString() + " = phi");
+        boolean first = true;
+        for (final Map.Entry<BasicBlock, VReg> entry : incoming.entrySet()) {
+            builder.append((first) ? " [" : ", [");
+            builder.append(entry.getKey().getName() + ": " + entry.getValue().toString() + "]");
+            first = false;
+        }
+        return builder.toString();
+    }
+} // Phi
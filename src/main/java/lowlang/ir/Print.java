@@ -0,0 +1,51 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.Collections;
+import java.util.function.Function;
+
+// prints the value, followed by a newline
+public class Print implements Instruction {
+    public final VReg value;
+
+    public Print(final VReg value) {
+        this.value = value;
+    }
+
+    public List<VReg> uses() {
+        return Collections.singletonList(value);
+    }
+
+    public List<VReg> defs() {
+        return Collections.emptyList();
+    }
+
+    public Instruction renameUses(final Function<VReg, VReg> renaming) {
+        return new Print(renaming.apply(value));
+    }
+
+    public Instruction renameDefs(final Function<VReg, VReg> renaming) {
+        return this;
+    }
+
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    public boolean equals(final Object other) {
+        if (other instanceof Print) {
+            final Print otherPrint = (Print)other;
+            return (value.equals(otherPrint.value));
+        } else {
+            return false;
+        }
+    }
+
+    public int hashCode() {
+        return (value.hashCode());
+    }
+
+    public String toString() {
+        return "print " + value.toString();
+    }
+} // Print
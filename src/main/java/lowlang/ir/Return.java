@@ -0,0 +1,42 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.Collections;
+import java.util.function.Function;
+
+// values holds the words of the return value; empty for void
+public class Return implements Terminator {
+    public final List<VReg> values;
+
+    public Return(final List<VReg> values) {
+        this.values = values;
+    }
+
+    public List<BasicBlock> successors() {
+        return Collections.emptyList();
+    }
+
+    public List<VReg> uses() {
+        return Collections.unmodifiableList(values);
+    }
+
+    public List<VReg> defs() {
+        return Collections.emptyList();
+    }
+
+    public Terminator renameUses(final Function<VReg, VReg> renaming) {
+        return new Return(VReg.renameAll(values, renaming));
+    }
+
+    public Terminator renameDefs(final Function<VReg, VReg> renaming) {
+        return this;
+    }
+
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    public String toString() {
+        return "return " + IRFunction.registersToString(values);
+    }
+} // Return
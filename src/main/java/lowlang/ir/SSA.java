@@ -0,0 +1,216 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Function;
+
+// Conversion into and out of static single assignment form.
+//
+// Lowering already gives every expression temporary a single definition,
+// so only registers holding source-level variables are renamed.  Phis go
+// at the iterated dominance frontier of each such register's definitions,
+// as in Cytron et al.  Phis which turn out to be unused are left for dead
+// code elimination.
+public class SSA {
+    private final IRFunction function;
+    private final Dominators dominators;
+    // registers with more than one definition, which need renaming
+    private final Set<VReg> variables;
+    private final Map<BasicBlock, List<Phi>> phis;
+    private final Map<Phi, VReg> phiVariables;
+    private final Map<VReg, Deque<VReg>> currentNames;
+    // stands in for variables read before any definition, which is only
+    // possible along paths the program never takes at runtime
+    private VReg undefined;
+
+    private SSA(final IRFunction function) {
+        this.function = function;
+        dominators = Dominators.dominatorsOf(function);
+        variables = new HashSet<VReg>();
+        phis = new HashMap<BasicBlock, List<Phi>>();
+        phiVariables = new HashMap<Phi, VReg>();
+        currentNames = new HashMap<VReg, Deque<VReg>>();
+        undefined = null;
+    }
+
+    public static boolean isSSA(final IRFunction function) {
+        final Set<VReg> defined = new HashSet<VReg>(function.parameters);
+        for (final BasicBlock block : function.getBlocks()) {
+            for (final Instruction instruction : block.instructions) {
+                for (final VReg def : instruction.defs()) {
+                    if (!defined.add(def)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    public static void construct(final IRFunction function) {
+        final SSA ssa = new SSA(function);
+        ssa.placePhis();
+        ssa.rename(function.getEntry());
+        ssa.insertPhis();
+        if (ssa.undefined != null) {
+            function.getEntry().instructions.add(0, new Const(ssa.undefined, 0));
+        }
+    }
+
+    private void placePhis() {
+        final Map<VReg, Set<BasicBlock>> definingBlocks = new HashMap<VReg, Set<BasicBlock>>();
+        final Map<VReg, Integer> numDefinitions = new HashMap<VReg, Integer>();
+        for (final VReg parameter : function.parameters) {
+            addDefinition(definingBlocks, numDefinitions, parameter, function.getEntry());
+        }
+        for (final BasicBlock block : function.getBlocks()) {
+            for (final Instruction instruction : block.instructions) {
+                for (final VReg def : instruction.defs()) {
+                    addDefinition(definingBlocks, numDefinitions, def, block);
+                }
+            }
+        }
+
+        for (final Map.Entry<VReg, Integer> entry : numDefinitions.entrySet()) {
+            if (entry.getValue().intValue() < 2) {
+                continue;
+            }
+            final VReg variable = entry.getKey();
+            variables.add(variable);
+            currentNames.put(variable, new ArrayDeque<VReg>());
+            final Set<BasicBlock> hasPhi = new HashSet<BasicBlock>();
+            final List<BasicBlock> worklist =
+                new ArrayList<BasicBlock>(definingBlocks.get(variable));
+            while (!worklist.isEmpty()) {
+                final BasicBlock block = worklist.remove(worklist.size() - 1);
+                for (final BasicBlock frontier : dominators.frontier(block)) {
+                    if (hasPhi.add(frontier)) {
+                        final Phi phi = new Phi(function.newVReg(variable.type));
+                        if (!phis.containsKey(frontier)) {
+                            phis.put(frontier, new ArrayList<Phi>());
+                        }
+                        phis.get(frontier).add(phi);
+                        phiVariables.put(phi, variable);
+                        worklist.add(frontier);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void addDefinition(final Map<VReg, Set<BasicBlock>> definingBlocks,
+                                      final Map<VReg, Integer> numDefinitions,
+                                      final VReg register,
+                                      final BasicBlock block) {
+        if (!definingBlocks.containsKey(register)) {
+            definingBlocks.put(register, new HashSet<BasicBlock>());
+            numDefinitions.put(register, Integer.valueOf(0));
+        }
+        definingBlocks.get(register).add(block);
+        numDefinitions.put(register,
+                           Integer.valueOf(numDefinitions.get(register).intValue() + 1));
+    }
+
+    private List<Phi> phisOf(final BasicBlock block) {
+        final List<Phi> result = phis.get(block);
+        return (result == null) ? new ArrayList<Phi>() : result;
+    }
+
+    private VReg currentName(final VReg register) {
+        if (!variables.contains(register)) {
+            return register;
+        }
+        final Deque<VReg> names = currentNames.get(register);
+        if (names.isEmpty()) {
+            if (undefined == null) {
+                undefined = function.newVReg(IRType.WORD);
+            }
+            return undefined;
+        }
+        return names.peek();
+    }
+
+    // walks the dominator tree, so the name on top of each stack is the
+    // definition reaching the current point
+    private void rename(final BasicBlock block) {
+        final List<VReg> pushed = new ArrayList<VReg>();
+        if (block == function.getEntry()) {
+            // parameters keep their names for their first definition
+            for (final VReg parameter : function.parameters) {
+                if (variables.contains(parameter)) {
+                    currentNames.get(parameter).push(parameter);
+                    pushed.add(parameter);
+                }
+            }
+        }
+        for (final Phi phi : phisOf(block)) {
+            final VReg variable = phiVariables.get(phi);
+            currentNames.get(variable).push(phi.dest);
+            pushed.add(variable);
+        }
+
+        final Function<VReg, VReg> useRenaming = register -> currentName(register);
+        final List<Instruction> instructions = block.instructions;
+        for (int index = 0; index < instructions.size(); index++) {
+            final Instruction renamed = instructions.get(index).renameUses(useRenaming);
+            final Map<VReg, VReg> newNames = new HashMap<VReg, VReg>();
+            for (final VReg def : renamed.defs()) {
+                if (variables.contains(def)) {
+                    final VReg newName = function.newVReg(def.type);
+                    newNames.put(def, newName);
+                    currentNames.get(def).push(newName);
+                    pushed.add(def);
+                }
+            }
+            instructions.set(index,
+                             renamed.renameDefs(register -> newNames.getOrDefault(register, register)));
+        }
+        block.setTerminator(block.getTerminator().renameUses(useRenaming));
+
+        for (final BasicBlock successor : block.successors()) {
+            for (final Phi phi : phisOf(successor)) {
+                phi.incoming.put(block, currentName(phiVariables.get(phi)));
+            }
+        }
+        for (final BasicBlock child : dominators.children(block)) {
+            rename(child);
+        }
+        for (final VReg variable : pushed) {
+            currentNames.get(variable).pop();
+        }
+    }
+
+    private void insertPhis() {
+        for (final Map.Entry<BasicBlock, List<Phi>> entry : phis.entrySet()) {
+            entry.getKey().instructions.addAll(0, entry.getValue());
+        }
+    }
+
+    // Replaces each phi with copies at the end of its predecessors.  Each
+    // phi gets its own temporary, so copies for different phis can't
+    // overwrite each other's sources (the "swap problem"), and a value
+    // still live out of a predecessor along another edge is untouched
+    // (the "lost copy problem").
+    public static void destruct(final IRFunction function) {
+        for (final BasicBlock block : function.getBlocks()) {
+            final List<Instruction> instructions = block.instructions;
+            for (int index = 0; index < instructions.size(); index++) {
+                if (!(instructions.get(index) instanceof Phi)) {
+                    break;
+                }
+                final Phi phi = (Phi)instructions.get(index);
+                final VReg temporary = function.newVReg(phi.dest.type);
+                for (final Map.Entry<BasicBlock, VReg> entry : phi.incoming.entrySet()) {
+                    entry.getKey().instructions.add(new Copy(temporary, entry.getValue()));
+                }
+                instructions.set(index, new Copy(phi.dest, temporary));
+            }
+        }
+    }
+} // SSA
@@ -0,0 +1,28 @@
+package lowlang.ir;
+
+// A piece of the stack frame, for values which must live in memory:
+// structures, and anything whose address is taken.
+public class Slot {
+    public final int id;
+    public final int size;
+
+    public Slot(final int id, final int size) {
+        assert(size > 0);
+        assert(size % 4 == 0);
+        this.id = id;
+        this.size = size;
+    }
+
+    public boolean equals(final Object other) {
+        return (other instanceof Slot &&
+                ((Slot)other).id == id);
+    }
+
+    public int hashCode() {
+        return id;
+    }
+
+    public String toString() {
+        return "slot" + id + "[" + size + "]";
+    }
+} // Slot
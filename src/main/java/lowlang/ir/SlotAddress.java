@@ -0,0 +1,56 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.Collections;
+import java.util.function.Function;
+
+// dest = the address of a stack slot
+public class SlotAddress implements Instruction {
+    public final VReg dest;
+    public final Slot slot;
+
+    public SlotAddress(final VReg dest,
+                       final Slot slot) {
+        this.dest = dest;
+        this.slot = slot;
+    }
+
+    public List<VReg> uses() {
+        return Collections.emptyList();
+    }
+
+    public List<VReg> defs() {
+        return Collections.singletonList(dest);
+    }
+
+    public Instruction renameUses(final Function<VReg, VReg> renaming) {
+        return this;
+    }
+
+    public Instruction renameDefs(final Function<VReg, VReg> renaming) {
+        return new SlotAddress(renaming.apply(dest), slot);
+    }
+
+    public boolean hasSideEffects() {
+        return false;
+    }
+
+    public boolean equals(final Object other) {
+        if (other instanceof SlotAddress) {
+            final SlotAddress otherSlotAddress = (SlotAddress)other;
+            return (dest.equals(otherSlotAddress.dest) &&
+                    slot.equals(otherSlotAddress.slot));
+        } else {
+            return false;
+        }
+    }
+
+    public int hashCode() {
+        return (dest.hashCode() +
+                slot.hashCode());
+    }
+
+    public String toString() {
+        return dest.toString() + " = address " + slot.toString();
+    }
+} // SlotAddress
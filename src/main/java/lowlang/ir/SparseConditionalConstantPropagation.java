@@ -0,0 +1,289 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.HashSet;
+
+// Wegman and Zadeck's sparse conditional constant propagation, over SSA
+// form.  Registers start out unknown, and only move down the lattice
+// unknown -> constant -> varying.  Blocks are only visited once some
+// executable edge reaches them, so constants flowing into a branch prune
+// the code it never takes.
+public class SparseConditionalConstantPropagation {
+    private static final int UNKNOWN = 0;
+    private static final int CONSTANT = 1;
+    private static final int VARYING = 2;
+
+    private final IRFunction function;
+    private final int[] state;
+    private final int[] value;
+    // every instruction reading each register
+    private final Map<VReg, List<Instruction>> users;
+    // compared by identity, since equal instructions can appear in many places
+    private final Map<Instruction, BasicBlock> blockOf;
+    private final Set<BasicBlock> executableBlocks;
+    private final Map<BasicBlock, Set<BasicBlock>> executableEdges;
+    private final List<BasicBlock[]> edgeWorklist;
+    private final List<VReg> registerWorklist;
+
+    private SparseConditionalConstantPropagation(final IRFunction function) {
+        this.function = function;
+        state = new int[function.getNumVRegs()];
+        value = new int[function.getNumVRegs()];
+        users = new HashMap<VReg, List<Instruction>>();
+        blockOf = new IdentityHashMap<Instruction, BasicBlock>();
+        executableBlocks = new HashSet<BasicBlock>();
+        executableEdges = new HashMap<BasicBlock, Set<BasicBlock>>();
+        edgeWorklist = new ArrayList<BasicBlock[]>();
+        registerWorklist = new ArrayList<VReg>();
+
+        for (final BasicBlock block : function.getBlocks()) {
+            for (final Instruction instruction : block.instructions) {
+                addUser(instruction, block);
+            }
+            addUser(block.getTerminator(), block);
+        }
+        for (final VReg parameter : function.parameters) {
+            state[parameter.id] = VARYING;
+        }
+    }
+
+    private void addUser(final Instruction instruction, final BasicBlock block) {
+        blockOf.put(instruction, block);
+        for (final VReg use : instruction.uses()) {
+            if (!users.containsKey(use)) {
+                users.put(use, new ArrayList<Instruction>());
+            }
+            users.get(use).add(instruction);
+        }
+    }
+
+    // returns the number of instructions replaced by constants, plus the
+    // number of branches resolved
+    public static int run(final IRFunction function) {
+        assert(SSA.isSSA(function));
+        final SparseConditionalConstantPropagation sccp =
+            new SparseConditionalConstantPropagation(function);
+        sccp.propagate();
+        return sccp.rewrite();
+    }
+
+    // ---BEGIN PROPAGATION---
+    private void propagate() {
+        edgeWorklist.add(new BasicBlock[]{ null, function.getEntry() });
+        while (!edgeWorklist.isEmpty() || !registerWorklist.isEmpty()) {
+            while (!edgeWorklist.isEmpty()) {
+                final BasicBlock[] edge = edgeWorklist.remove(edgeWorklist.size() - 1);
+                visitEdge(edge[0], edge[1]);
+            }
+            while (!registerWorklist.isEmpty()) {
+                final VReg register = registerWorklist.remove(registerWorklist.size() - 1);
+                final List<Instruction> registerUsers = users.get(register);
+                if (registerUsers == null) {
+                    continue;
+                }
+                for (final Instruction user : registerUsers) {
+                    if (executableBlocks.contains(blockOf.get(user))) {
+                        visit(user);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isExecutable(final BasicBlock from, final BasicBlock to) {
+        final Set<BasicBlock> targets = executableEdges.get(from);
+        return targets != null && targets.contains(to);
+    }
+
+    private void visitEdge(final BasicBlock from, final BasicBlock to) {
+        if (from != null) {
+            if (isExecutable(from, to)) {
+                return;
+            }
+            if (!executableEdges.containsKey(from)) {
+                executableEdges.put(from, new HashSet<BasicBlock>());
+            }
+            executableEdges.get(from).add(to);
+        }
+
+        if (executableBlocks.add(to)) {
+            for (final Instruction instruction : to.instructions) {
+                visit(instruction);
+            }
+            visit(to.getTerminator());
+        } else {
+            // only the phis can see the new edge
+            for (final Instruction instruction : to.instructions) {
+                if (instruction instanceof Phi) {
+                    visit(instruction);
+                }
+            }
+        }
+    }
+
+    private void addEdge(final BasicBlock from, final BasicBlock to) {
+        edgeWorklist.add(new BasicBlock[]{ from, to });
+    }
+
+    private void visit(final Instruction instruction) {
+        if (instruction instanceof Jump) {
+            addEdge(blockOf.get(instruction), ((Jump)instruction).target);
+        } else if (instruction instanceof Branch) {
+            final Branch asBranch = (Branch)instruction;
+            final BasicBlock block = blockOf.get(instruction);
+            final int condition = asBranch.condition.id;
+            if (state[condition] == CONSTANT) {
+                addEdge(block, (value[condition] != 0) ? asBranch.ifTrue : asBranch.ifFalse);
+            } else if (state[condition] == VARYING) {
+                addEdge(block, asBranch.ifTrue);
+                addEdge(block, asBranch.ifFalse);
+            }
+        } else if (instruction instanceof Const) {
+            final Const asConst = (Const)instruction;
+            lower(asConst.dest, CONSTANT, asConst.value);
+        } else if (instruction instanceof Copy) {
+            final Copy asCopy = (Copy)instruction;
+            lower(asCopy.dest, state[asCopy.source.id], value[asCopy.source.id]);
+        } else if (instruction instanceof BinaryOperation) {
+            visitBinaryOperation((BinaryOperation)instruction);
+        } else if (instruction instanceof Phi) {
+            visitPhi((Phi)instruction);
+        } else {
+            // loads, calls, and addresses aren't known at compile time
+            for (final VReg def : instruction.defs()) {
+                lower(def, VARYING, 0);
+            }
+        }
+    }
+
+    private void visitBinaryOperation(final BinaryOperation operation) {
+        final int left = operation.left.id;
+        final int right = operation.right.id;
+        if (state[left] == VARYING || state[right] == VARYING) {
+            lower(operation.dest, VARYING, 0);
+        } else if (state[left] == CONSTANT && state[right] == CONSTANT) {
+            if (operation.op == BinaryOperator.DIV && value[right] == 0) {
+                // leave the trap to runtime
+                lower(operation.dest, VARYING, 0);
+            } else {
+                lower(operation.dest, CONSTANT, fold(operation.op, value[left], value[right]));
+            }
+        }
+    }
+
+    // arithmetic wraps at 32 bits and division truncates, as on MIPS
+    public static int fold(final BinaryOperator op, final int left, final int right) {
+        switch (op) {
+        case ADD:
+            return left + right;
+        case SUB:
+            return left - right;
+        case MUL:
+            return left * right;
+        case DIV:
+            return left / right;
+        case EQ:
+            return (left == right) ? 1 : 0;
+        case LT:
+            return (left < right) ? 1 : 0;
+        default:
+            assert false : "Unknown operator: " + op.toString();
+            return 0;
+        }
+    }
+
+    private void visitPhi(final Phi phi) {
+        final BasicBlock block = blockOf.get(phi);
+        int newState = UNKNOWN;
+        int newValue = 0;
+        for (final Map.Entry<BasicBlock, VReg> entry : phi.incoming.entrySet()) {
+            if (!isExecutable(entry.getKey(), block)) {
+                continue;
+            }
+            final int incoming = entry.getValue().id;
+            if (state[incoming] == VARYING ||
+                (state[incoming] == CONSTANT && newState == CONSTANT && value[incoming] != newValue)) {
+                newState = VARYING;
+                break;
+            } else if (state[incoming] == CONSTANT) {
+                newState = CONSTANT;
+                newValue = value[incoming];
+            }
+        }
+        lower(phi.dest, newState, newValue);
+    }
+
+    private void lower(final VReg register, final int newState, final int newValue) {
+        if (newState > state[register.id]) {
+            state[register.id] = newState;
+            value[register.id] = newValue;
+            registerWorklist.add(register);
+        }
+    }
+    // ---END PROPAGATION---
+
+    private int rewrite() {
+        int numRewritten = 0;
+        for (final BasicBlock block : function.getBlocks()) {
+            if (!executableBlocks.contains(block)) {
+                // dropped by computeEdges below
+                continue;
+            }
+            final List<Instruction> phis = new ArrayList<Instruction>();
+            final List<Instruction> constantPhis = new ArrayList<Instruction>();
+            final List<Instruction> rest = new ArrayList<Instruction>();
+            for (final Instruction instruction : block.instructions) {
+                final Instruction replacement = constantReplacement(instruction);
+                if (replacement != instruction) {
+                    numRewritten++;
+                }
+                if (instruction instanceof Phi) {
+                    if (replacement instanceof Phi) {
+                        phis.add(replacement);
+                    } else {
+                        constantPhis.add(replacement);
+                    }
+                } else {
+                    rest.add(replacement);
+                }
+            }
+            // phis must stay at the start of the block
+            block.instructions.clear();
+            block.instructions.addAll(phis);
+            block.instructions.addAll(constantPhis);
+            block.instructions.addAll(rest);
+
+            final Terminator terminator = block.getTerminator();
+            if (terminator instanceof Branch) {
+                final Branch asBranch = (Branch)terminator;
+                final int condition = asBranch.condition.id;
+                if (state[condition] == CONSTANT) {
+                    block.setTerminator(new Jump((value[condition] != 0) ?
+                                                 asBranch.ifTrue : asBranch.ifFalse));
+                    numRewritten++;
+                }
+            }
+        }
+        function.computeEdges();
+        return numRewritten;
+    }
+
+    private Instruction constantReplacement(final Instruction instruction) {
+        if (instruction instanceof Const ||
+            instruction.hasSideEffects() ||
+            instruction.defs().size() != 1) {
+            return instruction;
+        }
+        final VReg dest = instruction.defs().get(0);
+        if (state[dest.id] == CONSTANT) {
+            return new Const(dest, value[dest.id]);
+        } else {
+            return instruction;
+        }
+    }
+} // SparseConditionalConstantPropagation
@@ -0,0 +1,62 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Function;
+
+// the word at address + offset = value
+public class Store implements Instruction {
+    public final VReg address;
+    public final int offset;
+    public final VReg value;
+
+    public Store(final VReg address,
+                 final int offset,
+                 final VReg value) {
+        this.address = address;
+        this.offset = offset;
+        this.value = value;
+    }
+
+    public List<VReg> uses() {
+        return Arrays.asList(address, value);
+    }
+
+    public List<VReg> defs() {
+        return Collections.emptyList();
+    }
+
+    public Instruction renameUses(final Function<VReg, VReg> renaming) {
+        return new Store(renaming.apply(address), offset, renaming.apply(value));
+    }
+
+    public Instruction renameDefs(final Function<VReg, VReg> renaming) {
+        return this;
+    }
+
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    public boolean equals(final Object other) {
+        if (other instanceof Store) {
+            final Store otherStore = (Store)other;
+            return (address.equals(otherStore.address) &&
+                    offset == otherStore.offset &&
+                    value.equals(otherStore.value));
+        } else {
+            return false;
+        }
+    }
+
+    public int hashCode() {
+        return (address.hashCode() +
+                offset +
+                value.hashCode());
+    }
+
+    public String toString() {
+        return "store " + offset + "(" + address.toString() + "), " + value.toString();
+    }
+} // Store
@@ -0,0 +1,13 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.function.Function;
+
+// The last instruction of every basic block.
+public interface Terminator extends Instruction {
+    public List<BasicBlock> successors();
+
+    public Terminator renameUses(Function<VReg, VReg> renaming);
+
+    public Terminator renameDefs(Function<VReg, VReg> renaming);
+} // Terminator
@@ -0,0 +1,38 @@
+package lowlang.ir;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.function.Function;
+
+// A virtual register, holding one word.  Ids are dense within a function.
+public class VReg {
+    public final int id;
+    public final IRType type;
+
+    public VReg(final int id, final IRType type) {
+        this.id = id;
+        this.type = type;
+    }
+
+    public static List<VReg> renameAll(final List<VReg> registers,
+                                       final Function<VReg, VReg> renaming) {
+        final List<VReg> result = new ArrayList<VReg>();
+        for (final VReg register : registers) {
+            result.add(renaming.apply(register));
+        }
+        return result;
+    }
+
+    public boolean equals(final Object other) {
+        return (other instanceof VReg &&
+                ((VReg)other).id == id);
+    }
+
+    public int hashCode() {
+        return id;
+    }
+
+    public String toString() {
+        return "%" + id;
+    }
+} // VReg
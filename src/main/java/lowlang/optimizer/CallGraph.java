@@ -0,0 +1,194 @@
+package lowlang.optimizer;
+
+import lowlang.parser.*;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+
+// Who calls whom.  Built from the typechecker's resolutions, so this
+// assumes the program has undergone typechecking.
+//
+// Indirect calls can't be resolved in general.  Instead, taking the address
+// of a function (&fn) is treated as a potential call to it: anything reachable
+// through a function pointer must have had its address taken somewhere.
+public class CallGraph {
+    // functions each function calls directly
+    private final Map<FunctionName, Set<FunctionName>> directCalls;
+
+    // functions each function takes the address of
+    private final Map<FunctionName, Set<FunctionName>> addressesTaken;
+
+    // functions which contain at least one call through a function pointer
+    private final Set<FunctionName> makesIndirectCalls;
+
+    // how many direct call expressions name each function, across the
+    // whole program
+    private final Map<FunctionName, Integer> callSites;
+
+    // in the order they appear in the program
+    private final List<FunctionName> functions;
+
+    public CallGraph(final Program program) {
+        directCalls = new HashMap<FunctionName, Set<FunctionName>>();
+        addressesTaken = new HashMap<FunctionName, Set<FunctionName>>();
+        makesIndirectCalls = new HashSet<FunctionName>();
+        callSites = new HashMap<FunctionName, Integer>();
+        functions = new ArrayList<FunctionName>();
+
+        for (final FunctionDefinition def : program.functionDefs) {
+            functions.add(def.name);
+            directCalls.put(def.name, new LinkedHashSet<FunctionName>());
+            addressesTaken.put(def.name, new LinkedHashSet<FunctionName>());
+            addStmts(def.name, def.body);
+        }
+    }
+
+    private void addStmts(final FunctionName from, final List<Stmt> stmts) {
+        for (final Stmt stmt : stmts) {
+            addStmt(from, stmt);
+        }
+    }
+
+    private void addStmt(final FunctionName from, final Stmt stmt) {
+        if (stmt instanceof VariableDeclarationInitializationStmt) {
+            addExp(from, ((VariableDeclarationInitializationStmt)stmt).exp);
+        } else if (stmt instanceof AssignmentStmt) {
+            // lhs can't contain calls or function addresses
+            addExp(from, ((AssignmentStmt)stmt).exp);
+        } else if (stmt instanceof BlockStmt) {
+            addStmts(from, ((BlockStmt)stmt).stmts);
+        } else if (stmt instanceof PrintStmt) {
+            addExp(from, ((PrintStmt)stmt).exp);
+        } else if (stmt instanceof ReturnStmt) {
+            final ReturnStmt asReturn = (ReturnStmt)stmt;
+            if (asReturn.exp.isPresent()) {
+                addExp(from, asReturn.exp.get());
+            }
+        } else if (stmt instanceof ExpStmt) {
+            addExp(from, ((ExpStmt)stmt).exp);
+        } else if (stmt instanceof IfStmt) {
+            final IfStmt asIf = (IfStmt)stmt;
+            addExp(from, asIf.guard);
+            addStmt(from, asIf.ifTrue);
+            if (asIf.ifFalse.isPresent()) {
+                addStmt(from, asIf.ifFalse.get());
+            }
+        } else if (stmt instanceof WhileStmt) {
+            final WhileStmt asWhile = (WhileStmt)stmt;
+            addExp(from, asWhile.guard);
+            addStmt(from, asWhile.body);
+        } else if (stmt instanceof BreakStmt ||
+                   stmt instanceof ContinueStmt) {
+            // nothing to do
+        } else {
+            assert false : "Unknown stmt: " + stmt.toString();
+        }
+    }
+
+    private void addExps(final FunctionName from, final List<Exp> exps) {
+        for (final Exp exp : exps) {
+            addExp(from, exp);
+        }
+    }
+
+    private void addExp(final FunctionName from, final Exp exp) {
+        if (exp instanceof IntegerLiteralExp ||
+            exp instanceof BooleanLiteralExp ||
+            exp instanceof VariableExp ||
+            exp instanceof SizeofExp) {
+            // nothing to do
+        } else if (exp instanceof MallocExp) {
+            addExp(from, ((MallocExp)exp).amount);
+        } else if (exp instanceof BinopExp) {
+            final BinopExp asBinop = (BinopExp)exp;
+            addExp(from, asBinop.left);
+            addExp(from, asBinop.right);
+        } else if (exp instanceof CallLikeExp) {
+            final CallLikeExp asCall = (CallLikeExp)exp;
+            final CallLikeResolved resolution = asCall.resolution.get();
+            if (resolution instanceof DirectCallResolved) {
+                final FunctionName callee = ((DirectCallResolved)resolution).functionName;
+                directCalls.get(from).add(callee);
+                final Integer count = callSites.get(callee);
+                callSites.put(callee, Integer.valueOf((count == null) ? 1 : count.intValue() + 1));
+            } else if (resolution instanceof IndirectCallResolved) {
+                makesIndirectCalls.add(from);
+                addExp(from, asCall.base);
+            }
+            addExps(from, asCall.params);
+        } else if (exp instanceof CastExp) {
+            addExp(from, ((CastExp)exp).exp);
+        } else if (exp instanceof AddressOfExp) {
+            final AddressOfResolved resolution = ((AddressOfExp)exp).resolved.get();
+            if (resolution instanceof FunctionResolved) {
+                addressesTaken.get(from).add(((FunctionResolved)resolution).functionName);
+            }
+        } else if (exp instanceof DereferenceExp) {
+            addExp(from, ((DereferenceExp)exp).exp);
+        } else if (exp instanceof FieldAccessExp) {
+            addExp(from, ((FieldAccessExp)exp).exp);
+        } else {
+            assert false : "Unknown exp: " + exp.toString();
+        }
+    }
+
+    public List<FunctionName> getFunctions() {
+        return Collections.unmodifiableList(functions);
+    }
+
+    public Set<FunctionName> directCallees(final FunctionName function) {
+        return Collections.unmodifiableSet(directCalls.get(function));
+    }
+
+    public Set<FunctionName> addressesTakenBy(final FunctionName function) {
+        return Collections.unmodifiableSet(addressesTaken.get(function));
+    }
+
+    // every direct call to the function, even several from one caller
+    public int numCallSites(final FunctionName function) {
+        final Integer count = callSites.get(function);
+        return (count == null) ? 0 : count.intValue();
+    }
+
+    public boolean makesIndirectCall(final FunctionName function) {
+        return makesIndirectCalls.contains(function);
+    }
+
+    // true if the function makes no calls at all, direct or indirect
+    public boolean isLeaf(final FunctionName function) {
+        return (directCalls.get(function).isEmpty() &&
+                !makesIndirectCalls.contains(function));
+    }
+
+    // Everything which could possibly run if root is called, including root
+    // itself.  Any function whose address is taken by something reachable is
+    // treated as reachable, as it may be called through a pointer.
+    public Set<FunctionName> reachableFrom(final FunctionName root) {
+        final Set<FunctionName> reachable = new LinkedHashSet<FunctionName>();
+        final List<FunctionName> worklist = new ArrayList<FunctionName>();
+        reachable.add(root);
+        worklist.add(root);
+
+        while (!worklist.isEmpty()) {
+            final FunctionName current = worklist.remove(worklist.size() - 1);
+            for (final FunctionName next : directCalls.get(current)) {
+                if (reachable.add(next)) {
+                    worklist.add(next);
+                }
+            }
+            for (final FunctionName next : addressesTaken.get(current)) {
+                if (reachable.add(next)) {
+                    worklist.add(next);
+                }
+            }
+        }
+
+        return reachable;
+    }
+} // CallGraph
@@ -0,0 +1,307 @@
+package lowlang.optimizer;
+
+import lowlang.parser.*;
+import lowlang.typechecker.SymbolTable;
+import lowlang.codegen.Layout;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Optional;
+
+// Evaluates constant subexpressions at compile time, and simplifies what's
+// left.  Integer and boolean literals and sizeof are constants, and so is
+// any operator or cast applied only to constants.  Arithmetic is that of
+// the generated code: * wraps at 32 bits, but + and - use add and sub,
+// which trap on overflow, and division truncates and traps on 0, so
+// anything which would trap is left to happen at runtime.  Beyond that:
+//
+// - x + 0, x - 0, x * 1, 1 * x, and x / 1 are just x
+// - x * 0 and 0 * x are 0 if x has no side effects and can't trap
+// - a cast of a cast only needs the outer one, since casts don't convert
+// - an if with a constant guard is replaced by the arm it takes, and a
+//   while which never runs goes away; if the arm taken always returns,
+//   whatever follows it is dead too
+//
+// Works on typechecked programs, but the result has to be typechecked
+// again, as new nodes have no resolutions.
+public class ConstantFolder {
+    private final Layout layout;
+    private int numFolded;
+
+    // symbols must be the table the program was typechecked with
+    public ConstantFolder(final SymbolTable symbols) {
+        layout = new Layout(symbols);
+        numFolded = 0;
+    }
+
+    // expressions replaced, plus branches resolved
+    public int numFolded() {
+        return numFolded;
+    }
+
+    // assumes the program has undergone typechecking
+    public Program fold(final Program program) {
+        final List<FunctionDefinition> result = new ArrayList<FunctionDefinition>();
+        for (final FunctionDefinition def : program.functionDefs) {
+            result.add(new FunctionDefinition(def.returnType,
+                                              def.name,
+                                              def.parameters,
+                                              foldStmts(def.body)));
+        }
+        return new Program(program.structDecs, result);
+    }
+
+    // ---BEGIN STATEMENTS---
+    private List<Stmt> foldStmts(final List<Stmt> stmts) {
+        final List<Stmt> result = new ArrayList<Stmt>();
+        for (final Stmt stmt : stmts) {
+            final Stmt folded = foldStmt(stmt);
+            if (!isEmptyBlock(folded)) {
+                result.add(folded);
+            }
+            if (alwaysReturns(folded)) {
+                // the typechecker rejects anything after a resolved arm
+                // which returns
+                break;
+            }
+        }
+        return result;
+    }
+
+    // as the typechecker sees it
+    private static boolean alwaysReturns(final Stmt stmt) {
+        if (stmt instanceof ReturnStmt) {
+            return true;
+        } else if (stmt instanceof BlockStmt) {
+            for (final Stmt inner : ((BlockStmt)stmt).stmts) {
+                if (alwaysReturns(inner)) {
+                    return true;
+                }
+            }
+            return false;
+        } else if (stmt instanceof IfStmt) {
+            final IfStmt asIf = (IfStmt)stmt;
+            return (asIf.ifFalse.isPresent() &&
+                    alwaysReturns(asIf.ifTrue) &&
+                    alwaysReturns(asIf.ifFalse.get()));
+        } else {
+            return false;
+        }
+    }
+
+    private static boolean isEmptyBlock(final Stmt stmt) {
+        return stmt instanceof BlockStmt && ((BlockStmt)stmt).stmts.isEmpty();
+    }
+
+    // arms of an if are scopes of their own, so they stay that way when
+    // they replace it
+    private static Stmt asBlock(final Stmt stmt) {
+        if (stmt instanceof BlockStmt) {
+            return stmt;
+        } else {
+            final List<Stmt> stmts = new ArrayList<Stmt>();
+            stmts.add(stmt);
+            return new BlockStmt(stmts);
+        }
+    }
+
+    private Stmt foldStmt(final Stmt stmt) {
+        if (stmt instanceof VariableDeclarationInitializationStmt) {
+            final VariableDeclarationInitializationStmt asDec =
+                (VariableDeclarationInitializationStmt)stmt;
+            return new VariableDeclarationInitializationStmt(asDec.varDec,
+                                                             foldExp(asDec.exp));
+        } else if (stmt instanceof AssignmentStmt) {
+            final AssignmentStmt asAssign = (AssignmentStmt)stmt;
+            return new AssignmentStmt(asAssign.lhs, foldExp(asAssign.exp));
+        } else if (stmt instanceof BlockStmt) {
+            return new BlockStmt(foldStmts(((BlockStmt)stmt).stmts));
+        } else if (stmt instanceof PrintStmt) {
+            return new PrintStmt(foldExp(((PrintStmt)stmt).exp));
+        } else if (stmt instanceof ReturnStmt) {
+            final ReturnStmt asReturn = (ReturnStmt)stmt;
+            if (asReturn.exp.isPresent()) {
+                return new ReturnStmt(Optional.of(foldExp(asReturn.exp.get())));
+            } else {
+                return stmt;
+            }
+        } else if (stmt instanceof ExpStmt) {
+            return new ExpStmt(foldExp(((ExpStmt)stmt).exp));
+        } else if (stmt instanceof IfStmt) {
+            return foldIfStmt((IfStmt)stmt);
+        } else if (stmt instanceof WhileStmt) {
+            final WhileStmt asWhile = (WhileStmt)stmt;
+            final Exp guard = foldExp(asWhile.guard);
+            if (guard instanceof BooleanLiteralExp &&
+                !((BooleanLiteralExp)guard).value) {
+                numFolded++;
+                return new BlockStmt(new ArrayList<Stmt>());
+            }
+            return new WhileStmt(guard, foldStmt(asWhile.body));
+        } else if (stmt instanceof BreakStmt ||
+                   stmt instanceof ContinueStmt) {
+            return stmt;
+        } else {
+            assert false : "Unknown stmt: " + stmt.toString();
+            return stmt;
+        }
+    }
+
+    private Stmt foldIfStmt(final IfStmt stmt) {
+        final Exp guard = foldExp(stmt.guard);
+        if (guard instanceof BooleanLiteralExp) {
+            numFolded++;
+            if (((BooleanLiteralExp)guard).value) {
+                return asBlock(foldStmt(stmt.ifTrue));
+            } else if (stmt.ifFalse.isPresent()) {
+                return asBlock(foldStmt(stmt.ifFalse.get()));
+            } else {
+                return new BlockStmt(new ArrayList<Stmt>());
+            }
+        }
+        final Optional<Stmt> ifFalse;
+        if (stmt.ifFalse.isPresent()) {
+            ifFalse = Optional.of(foldStmt(stmt.ifFalse.get()));
+        } else {
+            ifFalse = Optional.empty();
+        }
+        return new IfStmt(guard, foldStmt(stmt.ifTrue), ifFalse);
+    }
+    // ---END STATEMENTS---
+
+    // ---BEGIN EXPRESSIONS---
+    private Exp foldExp(final Exp exp) {
+        if (exp instanceof IntegerLiteralExp ||
+            exp instanceof BooleanLiteralExp ||
+            exp instanceof VariableExp ||
+            exp instanceof AddressOfExp) {
+            return exp;
+        } else if (exp instanceof SizeofExp) {
+            numFolded++;
+            return new IntegerLiteralExp(layout.sizeof(((SizeofExp)exp).type));
+        } else if (exp instanceof MallocExp) {
+            return new MallocExp(foldExp(((MallocExp)exp).amount));
+        } else if (exp instanceof BinopExp) {
+            return foldBinopExp((BinopExp)exp);
+        } else if (exp instanceof CallLikeExp) {
+            final CallLikeExp asCall = (CallLikeExp)exp;
+            final List<Exp> params = new ArrayList<Exp>();
+            for (final Exp param : asCall.params) {
+                params.add(foldExp(param));
+            }
+            return new CallLikeExp(foldExp(asCall.base), params);
+        } else if (exp instanceof CastExp) {
+            return foldCastExp((CastExp)exp);
+        } else if (exp instanceof DereferenceExp) {
+            return new DereferenceExp(foldExp(((DereferenceExp)exp).exp));
+        } else if (exp instanceof FieldAccessExp) {
+            final FieldAccessExp asField = (FieldAccessExp)exp;
+            return new FieldAccessExp(foldExp(asField.exp), asField.field);
+        } else {
+            assert false : "Unknown exp: " + exp.toString();
+            return exp;
+        }
+    }
+
+    private static boolean isInteger(final Exp exp, final int value) {
+        return exp instanceof IntegerLiteralExp && ((IntegerLiteralExp)exp).value == value;
+    }
+
+    private Exp foldBinopExp(final BinopExp exp) {
+        final Exp left = foldExp(exp.left);
+        final Exp right = foldExp(exp.right);
+        final Exp folded = evaluate(left, exp.op, right);
+        if (folded != null) {
+            numFolded++;
+            return folded;
+        }
+
+        if ((exp.op instanceof PlusOp && isInteger(right, 0)) ||
+            (exp.op instanceof MinusOp && isInteger(right, 0)) ||
+            (exp.op instanceof MultOp && isInteger(right, 1)) ||
+            (exp.op instanceof DivOp && isInteger(right, 1))) {
+            numFolded++;
+            return left;
+        } else if ((exp.op instanceof PlusOp && isInteger(left, 0)) ||
+                   (exp.op instanceof MultOp && isInteger(left, 1))) {
+            numFolded++;
+            return right;
+        } else if (exp.op instanceof MultOp &&
+                   ((isInteger(right, 0) && Purity.isDiscardable(left)) ||
+                    (isInteger(left, 0) && Purity.isDiscardable(right)))) {
+            numFolded++;
+            return new IntegerLiteralExp(0);
+        } else {
+            return new BinopExp(left, exp.op, right);
+        }
+    } // foldBinopExp
+
+    // the literal left op right evaluates to, or null if it isn't constant
+    // or should happen at runtime
+    private static Exp evaluate(final Exp left, final Op op, final Exp right) {
+        if (left instanceof BooleanLiteralExp &&
+            right instanceof BooleanLiteralExp &&
+            op instanceof EqualsOp) {
+            return new BooleanLiteralExp(((BooleanLiteralExp)left).value ==
+                                         ((BooleanLiteralExp)right).value);
+        } else if (!(left instanceof IntegerLiteralExp &&
+                     right instanceof IntegerLiteralExp)) {
+            return null;
+        }
+        final int leftValue = ((IntegerLiteralExp)left).value;
+        final int rightValue = ((IntegerLiteralExp)right).value;
+        try {
+            if (op instanceof PlusOp) {
+                return new IntegerLiteralExp(Math.addExact(leftValue, rightValue));
+            } else if (op instanceof MinusOp) {
+                return new IntegerLiteralExp(Math.subtractExact(leftValue, rightValue));
+            } else if (op instanceof MultOp) {
+                return new IntegerLiteralExp(leftValue * rightValue);
+            } else if (op instanceof DivOp) {
+                // MIPS leaves Integer.MIN_VALUE / -1 undefined
+                if (rightValue == 0 ||
+                    (leftValue == Integer.MIN_VALUE && rightValue == -1)) {
+                    return null;
+                }
+                return new IntegerLiteralExp(leftValue / rightValue);
+            } else if (op instanceof EqualsOp) {
+                return new BooleanLiteralExp(leftValue == rightValue);
+            } else if (op instanceof LessThanOp) {
+                return new BooleanLiteralExp(leftValue < rightValue);
+            } else {
+                assert false : "Unknown op: " + op.toString();
+                return null;
+            }
+        } catch (final ArithmeticException e) {
+            // add and sub trap on overflow
+            return null;
+        }
+    } // evaluate
+
+    // Booleans are 0 or 1 in a word, so only those values change between
+    // int and bool literals.
+    private Exp foldCastExp(final CastExp exp) {
+        Exp inner = foldExp(exp.exp);
+        if (inner instanceof CastExp) {
+            numFolded++;
+            inner = ((CastExp)inner).exp;
+        }
+        if (exp.type instanceof IntType && inner instanceof IntegerLiteralExp) {
+            numFolded++;
+            return inner;
+        } else if (exp.type instanceof IntType && inner instanceof BooleanLiteralExp) {
+            numFolded++;
+            return new IntegerLiteralExp((((BooleanLiteralExp)inner).value) ? 1 : 0);
+        } else if (exp.type instanceof BoolType && inner instanceof BooleanLiteralExp) {
+            numFolded++;
+            return inner;
+        } else if (exp.type instanceof BoolType &&
+                   (isInteger(inner, 0) || isInteger(inner, 1))) {
+            numFolded++;
+            return new BooleanLiteralExp(isInteger(inner, 1));
+        } else {
+            return new CastExp(exp.type, inner);
+        }
+    } // foldCastExp
+    // ---END EXPRESSIONS---
+} // ConstantFolder
@@ -0,0 +1,460 @@
+package lowlang.optimizer;
+
+import lowlang.parser.*;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Optional;
+
+// Removes stores to local variables and parameters which are never read
+// afterwards, found with a liveness analysis over each function's
+// statements, along with the declarations of variables which are never
+// read at all.  A store whose value has side effects or could trap keeps
+// evaluating it as an expression statement; only the store goes.  Removing
+// a store can leave what it read unused, so this repeats until nothing
+// more is removed.
+//
+// Each declaration is a different variable, even if its name shadows
+// another's, so every use is first resolved to its declaration.  Variables
+// whose address is taken can be read through pointers, so their stores are
+// always kept.
+//
+// Works on typechecked programs, but the result has to be typechecked
+// again, as new nodes have no types.
+public class DeadStoreEliminator {
+    // the declaration each VariableExp, VariableLhs, parameter, and
+    // declaration statement refers to, by node
+    private final Map<Object, Integer> idOf;
+    private final Set<Integer> read;
+    private final Set<Integer> addressTaken;
+    // what's live after each store
+    private final Map<Stmt, Set<Integer>> liveAfter;
+    private int nextId;
+    private int numRemoved;
+
+    public DeadStoreEliminator() {
+        idOf = new IdentityHashMap<Object, Integer>();
+        read = new HashSet<Integer>();
+        addressTaken = new HashSet<Integer>();
+        liveAfter = new IdentityHashMap<Stmt, Set<Integer>>();
+        nextId = 0;
+        numRemoved = 0;
+    }
+
+    public int numRemoved() {
+        return numRemoved;
+    }
+
+    public Program eliminate(final Program program) {
+        final List<FunctionDefinition> result = new ArrayList<FunctionDefinition>();
+        for (final FunctionDefinition def : program.functionDefs) {
+            List<Stmt> body = def.body;
+            int lastRemoved;
+            do {
+                lastRemoved = numRemoved;
+                idOf.clear();
+                read.clear();
+                addressTaken.clear();
+                liveAfter.clear();
+                final Map<Variable, Integer> scope = new HashMap<Variable, Integer>();
+                for (final VariableDeclaration param : def.parameters) {
+                    scope.put(param.variable, Integer.valueOf(nextId++));
+                }
+                resolveStmts(body, scope);
+                liveStmts(body, new HashSet<Integer>(), null, null);
+                body = rewriteStmts(body);
+            } while (numRemoved != lastRemoved);
+            result.add(new FunctionDefinition(def.returnType,
+                                              def.name,
+                                              def.parameters,
+                                              body));
+        }
+        return new Program(program.structDecs, result);
+    }
+
+    // ---BEGIN RESOLUTION---
+    // scope is the function's own, so anything else, like a function
+    // name, isn't in it
+    private void resolveStmts(final List<Stmt> stmts, final Map<Variable, Integer> scope) {
+        final Map<Variable, Integer> inner = new HashMap<Variable, Integer>(scope);
+        for (final Stmt stmt : stmts) {
+            resolveStmt(stmt, inner);
+        }
+    }
+
+    // adds any variable stmt declares to scope
+    private void resolveStmt(final Stmt stmt, final Map<Variable, Integer> scope) {
+        if (stmt instanceof VariableDeclarationInitializationStmt) {
+            final VariableDeclarationInitializationStmt asDec =
+                (VariableDeclarationInitializationStmt)stmt;
+            resolveExp(asDec.exp, scope);
+            final Integer id = Integer.valueOf(nextId++);
+            idOf.put(stmt, id);
+            scope.put(asDec.varDec.variable, id);
+        } else if (stmt instanceof AssignmentStmt) {
+            final AssignmentStmt asAssign = (AssignmentStmt)stmt;
+            resolveStore(asAssign.lhs, scope);
+            resolveExp(asAssign.exp, scope);
+        } else if (stmt instanceof BlockStmt) {
+            resolveStmts(((BlockStmt)stmt).stmts, scope);
+        } else if (stmt instanceof PrintStmt) {
+            resolveExp(((PrintStmt)stmt).exp, scope);
+        } else if (stmt instanceof ReturnStmt) {
+            final ReturnStmt asReturn = (ReturnStmt)stmt;
+            if (asReturn.exp.isPresent()) {
+                resolveExp(asReturn.exp.get(), scope);
+            }
+        } else if (stmt instanceof ExpStmt) {
+            resolveExp(((ExpStmt)stmt).exp, scope);
+        } else if (stmt instanceof IfStmt) {
+            final IfStmt asIf = (IfStmt)stmt;
+            resolveExp(asIf.guard, scope);
+            resolveStmt(asIf.ifTrue, new HashMap<Variable, Integer>(scope));
+            if (asIf.ifFalse.isPresent()) {
+                resolveStmt(asIf.ifFalse.get(), new HashMap<Variable, Integer>(scope));
+            }
+        } else if (stmt instanceof WhileStmt) {
+            final WhileStmt asWhile = (WhileStmt)stmt;
+            resolveExp(asWhile.guard, scope);
+            resolveStmt(asWhile.body, new HashMap<Variable, Integer>(scope));
+        } else if (stmt instanceof BreakStmt ||
+                   stmt instanceof ContinueStmt) {
+            // nothing to do
+        } else {
+            assert false : "Unknown stmt: " + stmt.toString();
+        }
+    }
+
+    // returns the id, or null if the variable isn't a local
+    private Integer resolveVariable(final Object node,
+                                    final Variable variable,
+                                    final Map<Variable, Integer> scope) {
+        final Integer id = scope.get(variable);
+        if (id != null) {
+            idOf.put(node, id);
+        }
+        return id;
+    }
+
+    // lhs is written
+    private void resolveStore(final Lhs lhs, final Map<Variable, Integer> scope) {
+        if (lhs instanceof VariableLhs) {
+            resolveVariable(lhs, ((VariableLhs)lhs).variable, scope);
+        } else if (lhs instanceof FieldAccessLhs) {
+            resolveStore(((FieldAccessLhs)lhs).lhs, scope);
+        } else if (lhs instanceof DereferenceLhs) {
+            resolveRead(((DereferenceLhs)lhs).lhs, scope);
+        } else {
+            assert false : "Unknown lhs: " + lhs.toString();
+        }
+    }
+
+    // lhs is read, to get the pointer to dereference
+    private void resolveRead(final Lhs lhs, final Map<Variable, Integer> scope) {
+        if (lhs instanceof VariableLhs) {
+            final Integer id = resolveVariable(lhs, ((VariableLhs)lhs).variable, scope);
+            if (id != null) {
+                read.add(id);
+            }
+        } else if (lhs instanceof FieldAccessLhs) {
+            resolveRead(((FieldAccessLhs)lhs).lhs, scope);
+        } else if (lhs instanceof DereferenceLhs) {
+            resolveRead(((DereferenceLhs)lhs).lhs, scope);
+        } else {
+            assert false : "Unknown lhs: " + lhs.toString();
+        }
+    }
+
+    // lhs has its address taken
+    private void resolveAddress(final Lhs lhs, final Map<Variable, Integer> scope) {
+        if (lhs instanceof VariableLhs) {
+            final Integer id = resolveVariable(lhs, ((VariableLhs)lhs).variable, scope);
+            if (id != null) {
+                addressTaken.add(id);
+            }
+        } else if (lhs instanceof FieldAccessLhs) {
+            resolveAddress(((FieldAccessLhs)lhs).lhs, scope);
+        } else if (lhs instanceof DereferenceLhs) {
+            resolveRead(((DereferenceLhs)lhs).lhs, scope);
+        } else {
+            assert false : "Unknown lhs: " + lhs.toString();
+        }
+    }
+
+    private void resolveExp(final Exp exp, final Map<Variable, Integer> scope) {
+        if (exp instanceof IntegerLiteralExp ||
+            exp instanceof BooleanLiteralExp ||
+            exp instanceof SizeofExp) {
+            // nothing to do
+        } else if (exp instanceof VariableExp) {
+            final Integer id = resolveVariable(exp, ((VariableExp)exp).variable, scope);
+            if (id != null) {
+                read.add(id);
+            }
+        } else if (exp instanceof MallocExp) {
+            resolveExp(((MallocExp)exp).amount, scope);
+        } else if (exp instanceof BinopExp) {
+            final BinopExp asBinop = (BinopExp)exp;
+            resolveExp(asBinop.left, scope);
+            resolveExp(asBinop.right, scope);
+        } else if (exp instanceof CallLikeExp) {
+            final CallLikeExp asCall = (CallLikeExp)exp;
+            resolveExp(asCall.base, scope);
+            for (final Exp param : asCall.params) {
+                resolveExp(param, scope);
+            }
+        } else if (exp instanceof CastExp) {
+            resolveExp(((CastExp)exp).exp, scope);
+        } else if (exp instanceof AddressOfExp) {
+            resolveAddress(((AddressOfExp)exp).lhs, scope);
+        } else if (exp instanceof DereferenceExp) {
+            resolveExp(((DereferenceExp)exp).exp, scope);
+        } else if (exp instanceof FieldAccessExp) {
+            resolveExp(((FieldAccessExp)exp).exp, scope);
+        } else {
+            assert false : "Unknown exp: " + exp.toString();
+        }
+    }
+    // ---END RESOLUTION---
+
+    // ---BEGIN LIVENESS---
+    // Works backwards from what's live after the statements to what's live
+    // before them.  Variables whose address is taken are never removed, so
+    // reads through pointers can be ignored.
+    private Set<Integer> liveStmts(final List<Stmt> stmts,
+                                   final Set<Integer> liveOut,
+                                   final Set<Integer> liveAtBreak,
+                                   final Set<Integer> liveAtContinue) {
+        Set<Integer> live = liveOut;
+        for (int index = stmts.size() - 1; index >= 0; index--) {
+            live = liveStmt(stmts.get(index), live, liveAtBreak, liveAtContinue);
+        }
+        return live;
+    }
+
+    private Set<Integer> liveStmt(final Stmt stmt,
+                                  final Set<Integer> liveOut,
+                                  final Set<Integer> liveAtBreak,
+                                  final Set<Integer> liveAtContinue) {
+        if (stmt instanceof VariableDeclarationInitializationStmt) {
+            final Set<Integer> result = new HashSet<Integer>(liveOut);
+            result.remove(idOf.get(stmt));
+            addUses(((VariableDeclarationInitializationStmt)stmt).exp, result);
+            return result;
+        } else if (stmt instanceof AssignmentStmt) {
+            final AssignmentStmt asAssign = (AssignmentStmt)stmt;
+            liveAfter.put(stmt, liveOut);
+            final Set<Integer> result = new HashSet<Integer>(liveOut);
+            // writing a field leaves the rest of the variable as it was
+            if (asAssign.lhs instanceof VariableLhs) {
+                result.remove(idOf.get(asAssign.lhs));
+            }
+            addStoreUses(asAssign.lhs, result);
+            addUses(asAssign.exp, result);
+            return result;
+        } else if (stmt instanceof BlockStmt) {
+            return liveStmts(((BlockStmt)stmt).stmts, liveOut, liveAtBreak, liveAtContinue);
+        } else if (stmt instanceof PrintStmt) {
+            final Set<Integer> result = new HashSet<Integer>(liveOut);
+            addUses(((PrintStmt)stmt).exp, result);
+            return result;
+        } else if (stmt instanceof ReturnStmt) {
+            final ReturnStmt asReturn = (ReturnStmt)stmt;
+            final Set<Integer> result = new HashSet<Integer>();
+            if (asReturn.exp.isPresent()) {
+                addUses(asReturn.exp.get(), result);
+            }
+            return result;
+        } else if (stmt instanceof ExpStmt) {
+            final Set<Integer> result = new HashSet<Integer>(liveOut);
+            addUses(((ExpStmt)stmt).exp, result);
+            return result;
+        } else if (stmt instanceof IfStmt) {
+            final IfStmt asIf = (IfStmt)stmt;
+            final Set<Integer> result =
+                new HashSet<Integer>(liveStmt(asIf.ifTrue, liveOut, liveAtBreak, liveAtContinue));
+            if (asIf.ifFalse.isPresent()) {
+                result.addAll(liveStmt(asIf.ifFalse.get(), liveOut, liveAtBreak, liveAtContinue));
+            } else {
+                result.addAll(liveOut);
+            }
+            addUses(asIf.guard, result);
+            return result;
+        } else if (stmt instanceof WhileStmt) {
+            // what's live at the guard depends on the body, which depends
+            // on what's live at the guard, so this repeats until it settles
+            final WhileStmt asWhile = (WhileStmt)stmt;
+            Set<Integer> atGuard = new HashSet<Integer>(liveOut);
+            addUses(asWhile.guard, atGuard);
+            while (true) {
+                final Set<Integer> next = new HashSet<Integer>(liveOut);
+                next.addAll(liveStmt(asWhile.body, atGuard, liveOut, atGuard));
+                addUses(asWhile.guard, next);
+                if (next.equals(atGuard)) {
+                    return atGuard;
+                }
+                atGuard = next;
+            }
+        } else if (stmt instanceof BreakStmt) {
+            return liveAtBreak;
+        } else if (stmt instanceof ContinueStmt) {
+            return liveAtContinue;
+        } else {
+            assert false : "Unknown stmt: " + stmt.toString();
+            return liveOut;
+        }
+    }
+
+    private void addUse(final Object node, final Set<Integer> live) {
+        final Integer id = idOf.get(node);
+        if (id != null) {
+            live.add(id);
+        }
+    }
+
+    // what writing lhs reads
+    private void addStoreUses(final Lhs lhs, final Set<Integer> live) {
+        if (lhs instanceof FieldAccessLhs) {
+            addStoreUses(((FieldAccessLhs)lhs).lhs, live);
+        } else if (lhs instanceof DereferenceLhs) {
+            addReadUses(((DereferenceLhs)lhs).lhs, live);
+        }
+    }
+
+    // what reading lhs reads
+    private void addReadUses(final Lhs lhs, final Set<Integer> live) {
+        if (lhs instanceof VariableLhs) {
+            addUse(lhs, live);
+        } else if (lhs instanceof FieldAccessLhs) {
+            addReadUses(((FieldAccessLhs)lhs).lhs, live);
+        } else if (lhs instanceof DereferenceLhs) {
+            addReadUses(((DereferenceLhs)lhs).lhs, live);
+        }
+    }
+
+    private void addUses(final Exp exp, final Set<Integer> live) {
+        if (exp instanceof VariableExp) {
+            addUse(exp, live);
+        } else if (exp instanceof MallocExp) {
+            addUses(((MallocExp)exp).amount, live);
+        } else if (exp instanceof BinopExp) {
+            final BinopExp asBinop = (BinopExp)exp;
+            addUses(asBinop.left, live);
+            addUses(asBinop.right, live);
+        } else if (exp instanceof CallLikeExp) {
+            final CallLikeExp asCall = (CallLikeExp)exp;
+            addUses(asCall.base, live);
+            for (final Exp param : asCall.params) {
+                addUses(param, live);
+            }
+        } else if (exp instanceof CastExp) {
+            addUses(((CastExp)exp).exp, live);
+        } else if (exp instanceof AddressOfExp) {
+            // taking a variable's address reads nothing
+            addStoreUses(((AddressOfExp)exp).lhs, live);
+        } else if (exp instanceof DereferenceExp) {
+            addUses(((DereferenceExp)exp).exp, live);
+        } else if (exp instanceof FieldAccessExp) {
+            addUses(((FieldAccessExp)exp).exp, live);
+        }
+    }
+    // ---END LIVENESS---
+
+    // ---BEGIN REWRITING---
+    // the variable a store to lhs writes to, or null if it's behind a
+    // pointer
+    private Integer storedTo(final Lhs lhs) {
+        if (lhs instanceof VariableLhs) {
+            return idOf.get(lhs);
+        } else if (lhs instanceof FieldAccessLhs) {
+            return storedTo(((FieldAccessLhs)lhs).lhs);
+        } else {
+            return null;
+        }
+    }
+
+    private boolean isDead(final Stmt stmt) {
+        if (stmt instanceof VariableDeclarationInitializationStmt) {
+            final Integer id = idOf.get(stmt);
+            return !read.contains(id) && !addressTaken.contains(id);
+        } else if (stmt instanceof AssignmentStmt) {
+            final Integer id = storedTo(((AssignmentStmt)stmt).lhs);
+            final Set<Integer> live = liveAfter.get(stmt);
+            return (id != null &&
+                    live != null &&
+                    !live.contains(id) &&
+                    !addressTaken.contains(id));
+        } else {
+            return false;
+        }
+    }
+
+    // null if the stmt goes entirely
+    private Stmt withoutStore(final Exp exp) {
+        numRemoved++;
+        if (Purity.isDiscardable(exp)) {
+            return null;
+        } else {
+            return new ExpStmt(exp);
+        }
+    }
+
+    private List<Stmt> rewriteStmts(final List<Stmt> stmts) {
+        final List<Stmt> result = new ArrayList<Stmt>();
+        for (final Stmt stmt : stmts) {
+            final Stmt rewritten = rewriteStmt(stmt);
+            if (rewritten != null) {
+                result.add(rewritten);
+            }
+        }
+        return result;
+    }
+
+    // an arm or body which went entirely is left as an empty block
+    private Stmt rewriteNested(final Stmt stmt) {
+        final Stmt rewritten = rewriteStmt(stmt);
+        if (rewritten == null) {
+            return new BlockStmt(new ArrayList<Stmt>());
+        } else {
+            return rewritten;
+        }
+    }
+
+    private Stmt rewriteStmt(final Stmt stmt) {
+        if (stmt instanceof VariableDeclarationInitializationStmt) {
+            if (isDead(stmt)) {
+                return withoutStore(((VariableDeclarationInitializationStmt)stmt).exp);
+            } else {
+                return stmt;
+            }
+        } else if (stmt instanceof AssignmentStmt) {
+            if (isDead(stmt)) {
+                return withoutStore(((AssignmentStmt)stmt).exp);
+            } else {
+                return stmt;
+            }
+        } else if (stmt instanceof BlockStmt) {
+            return new BlockStmt(rewriteStmts(((BlockStmt)stmt).stmts));
+        } else if (stmt instanceof IfStmt) {
+            final IfStmt asIf = (IfStmt)stmt;
+            final Optional<Stmt> ifFalse;
+            if (asIf.ifFalse.isPresent()) {
+                ifFalse = Optional.of(rewriteNested(asIf.ifFalse.get()));
+            } else {
+                ifFalse = Optional.empty();
+            }
+            return new IfStmt(asIf.guard, rewriteNested(asIf.ifTrue), ifFalse);
+        } else if (stmt instanceof WhileStmt) {
+            final WhileStmt asWhile = (WhileStmt)stmt;
+            return new WhileStmt(asWhile.guard, rewriteNested(asWhile.body));
+        } else {
+            return stmt;
+        }
+    }
+    // ---END REWRITING---
+} // DeadStoreEliminator
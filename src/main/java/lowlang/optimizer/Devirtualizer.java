@@ -0,0 +1,407 @@
+package lowlang.optimizer;
+
+import lowlang.parser.*;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Optional;
+
+// Turns calls through function pointers which can only hold one function
+// into direct calls to it, which the inliner can then work on.
+//
+// Each variable's value is found by constant propagation over every
+// definition of it: its initializers and assignments, and for parameters,
+// the arguments of every direct call.  A variable whose definitions are all
+// &fn, or copies of variables holding &fn, holds fn.  Anything else, like
+// a cast or a field, could hold anything, and so could the parameters of a
+// function whose address is taken, since they can be called from anywhere,
+// and variables whose address is taken, since they can be written through
+// a pointer.  Variables are told apart by name within a function, so
+// shadowing just merges the definitions of both.
+//
+// A call is only rewritten if nothing in the caller is named after the
+// function, as the name would refer to the variable instead.
+//
+// Works on typechecked programs, but the result has to be typechecked
+// again, as new nodes have no resolutions.
+public class Devirtualizer {
+    // a variable in a particular function
+    private static class Binding {
+        public final FunctionName function;
+        public final Variable variable;
+
+        public Binding(final FunctionName function, final Variable variable) {
+            this.function = function;
+            this.variable = variable;
+        }
+
+        public boolean equals(final Object other) {
+            if (other instanceof Binding) {
+                final Binding otherBinding = (Binding)other;
+                return (function.equals(otherBinding.function) &&
+                        variable.equals(otherBinding.variable));
+            } else {
+                return false;
+            }
+        }
+
+        public int hashCode() {
+            return function.hashCode() + variable.hashCode();
+        }
+    } // Binding
+
+    // exp is evaluated in the function context
+    private static class Definition {
+        public final Binding target;
+        public final FunctionName context;
+        public final Exp exp;
+
+        public Definition(final Binding target,
+                          final FunctionName context,
+                          final Exp exp) {
+            this.target = target;
+            this.context = context;
+            this.exp = exp;
+        }
+    } // Definition
+
+    // the value of anything which could hold more than one function
+    private static final FunctionName VARYING = new FunctionName("");
+
+    private final List<Definition> definitions;
+    private final Map<Binding, FunctionName> values;
+    // every name each function declares
+    private final Map<FunctionName, Set<Variable>> declared;
+    // caller: pointer -> callee, for each call rewritten
+    private final List<String> report;
+
+    private Map<FunctionName, FunctionDefinition> functions;
+    private FunctionName current;
+    private int numDevirtualized;
+
+    public Devirtualizer() {
+        definitions = new ArrayList<Definition>();
+        values = new HashMap<Binding, FunctionName>();
+        declared = new HashMap<FunctionName, Set<Variable>>();
+        report = new ArrayList<String>();
+        numDevirtualized = 0;
+    }
+
+    public List<String> getReport() {
+        return report;
+    }
+
+    public int numDevirtualized() {
+        return numDevirtualized;
+    }
+
+    public String reportToString() {
+        final StringBuilder builder = new StringBuilder();
+        for (final String line : report) {
+            builder.append(line);
+            builder.append(String.format("%n"));
+        }
+        builder.append(String.format("%d call(s) devirtualized%n", numDevirtualized));
+        return builder.toString();
+    }
+
+    // assumes the program has undergone typechecking
+    public Program devirtualize(final Program program) {
+        functions = new HashMap<FunctionName, FunctionDefinition>();
+        for (final FunctionDefinition def : program.functionDefs) {
+            functions.put(def.name, def);
+        }
+        final CallGraph callGraph = new CallGraph(program);
+        for (final FunctionDefinition def : program.functionDefs) {
+            current = def.name;
+            declared.put(def.name, new HashSet<Variable>());
+            for (final VariableDeclaration param : def.parameters) {
+                declared.get(def.name).add(param.variable);
+            }
+            collectStmts(def.body);
+            for (final FunctionName taken : callGraph.addressesTakenBy(def.name)) {
+                for (final VariableDeclaration param : functions.get(taken).parameters) {
+                    values.put(new Binding(taken, param.variable), VARYING);
+                }
+            }
+        }
+        propagate();
+
+        final List<FunctionDefinition> result = new ArrayList<FunctionDefinition>();
+        for (final FunctionDefinition def : program.functionDefs) {
+            current = def.name;
+            result.add(new FunctionDefinition(def.returnType,
+                                              def.name,
+                                              def.parameters,
+                                              rewriteStmts(def.body)));
+        }
+        return new Program(program.structDecs, result);
+    }
+
+    // ---BEGIN COLLECTING DEFINITIONS---
+    private void define(final Variable variable, final Exp exp) {
+        definitions.add(new Definition(new Binding(current, variable), current, exp));
+    }
+
+    private void collectStmts(final List<Stmt> stmts) {
+        for (final Stmt stmt : stmts) {
+            collectStmt(stmt);
+        }
+    }
+
+    private void collectStmt(final Stmt stmt) {
+        if (stmt instanceof VariableDeclarationInitializationStmt) {
+            final VariableDeclarationInitializationStmt asDec =
+                (VariableDeclarationInitializationStmt)stmt;
+            declared.get(current).add(asDec.varDec.variable);
+            define(asDec.varDec.variable, asDec.exp);
+            collectExp(asDec.exp);
+        } else if (stmt instanceof AssignmentStmt) {
+            final AssignmentStmt asAssign = (AssignmentStmt)stmt;
+            if (asAssign.lhs instanceof VariableLhs) {
+                define(((VariableLhs)asAssign.lhs).variable, asAssign.exp);
+            }
+            // anything else writes memory, which only variables whose
+            // address was taken can be in
+            collectExp(asAssign.exp);
+        } else if (stmt instanceof BlockStmt) {
+            collectStmts(((BlockStmt)stmt).stmts);
+        } else if (stmt instanceof PrintStmt) {
+            collectExp(((PrintStmt)stmt).exp);
+        } else if (stmt instanceof ReturnStmt) {
+            final ReturnStmt asReturn = (ReturnStmt)stmt;
+            if (asReturn.exp.isPresent()) {
+                collectExp(asReturn.exp.get());
+            }
+        } else if (stmt instanceof ExpStmt) {
+            collectExp(((ExpStmt)stmt).exp);
+        } else if (stmt instanceof IfStmt) {
+            final IfStmt asIf = (IfStmt)stmt;
+            collectExp(asIf.guard);
+            collectStmt(asIf.ifTrue);
+            if (asIf.ifFalse.isPresent()) {
+                collectStmt(asIf.ifFalse.get());
+            }
+        } else if (stmt instanceof WhileStmt) {
+            final WhileStmt asWhile = (WhileStmt)stmt;
+            collectExp(asWhile.guard);
+            collectStmt(asWhile.body);
+        } else if (stmt instanceof BreakStmt ||
+                   stmt instanceof ContinueStmt) {
+            // nothing to do
+        } else {
+            assert false : "Unknown stmt: " + stmt.toString();
+        }
+    }
+
+    // the variable whose memory the lhs is part of, or null if it's behind
+    // a pointer
+    private static Variable lhsRoot(final Lhs lhs) {
+        if (lhs instanceof VariableLhs) {
+            return ((VariableLhs)lhs).variable;
+        } else if (lhs instanceof FieldAccessLhs) {
+            return lhsRoot(((FieldAccessLhs)lhs).lhs);
+        } else {
+            return null;
+        }
+    }
+
+    private void collectExp(final Exp exp) {
+        if (exp instanceof IntegerLiteralExp ||
+            exp instanceof BooleanLiteralExp ||
+            exp instanceof VariableExp ||
+            exp instanceof SizeofExp) {
+            // nothing to do
+        } else if (exp instanceof MallocExp) {
+            collectExp(((MallocExp)exp).amount);
+        } else if (exp instanceof BinopExp) {
+            final BinopExp asBinop = (BinopExp)exp;
+            collectExp(asBinop.left);
+            collectExp(asBinop.right);
+        } else if (exp instanceof CallLikeExp) {
+            final CallLikeExp asCall = (CallLikeExp)exp;
+            final CallLikeResolved resolution = asCall.resolution.get();
+            if (resolution instanceof DirectCallResolved) {
+                final FunctionDefinition callee =
+                    functions.get(((DirectCallResolved)resolution).functionName);
+                for (int index = 0; index < asCall.params.size(); index++) {
+                    definitions.add(new Definition(new Binding(callee.name,
+                                                               callee.parameters.get(index).variable),
+                                                   current,
+                                                   asCall.params.get(index)));
+                }
+            }
+            collectExp(asCall.base);
+            for (final Exp param : asCall.params) {
+                collectExp(param);
+            }
+        } else if (exp instanceof CastExp) {
+            collectExp(((CastExp)exp).exp);
+        } else if (exp instanceof AddressOfExp) {
+            final AddressOfExp asAddress = (AddressOfExp)exp;
+            if (asAddress.resolved.get() instanceof DataResolved) {
+                final Variable root = lhsRoot(asAddress.lhs);
+                if (root != null) {
+                    values.put(new Binding(current, root), VARYING);
+                }
+            }
+        } else if (exp instanceof DereferenceExp) {
+            collectExp(((DereferenceExp)exp).exp);
+        } else if (exp instanceof FieldAccessExp) {
+            collectExp(((FieldAccessExp)exp).exp);
+        } else {
+            assert false : "Unknown exp: " + exp.toString();
+        }
+    }
+    // ---END COLLECTING DEFINITIONS---
+
+    // ---BEGIN PROPAGATION---
+    // Variables start out with no value, and move to a function and then
+    // VARYING as definitions are seen.  A definition copying a variable
+    // with no value yet waits until it has one.
+    private void propagate() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (final Definition definition : definitions) {
+                final FunctionName value = valueOf(definition.context, definition.exp);
+                final FunctionName old = values.get(definition.target);
+                if (value == null || old == VARYING) {
+                    continue;
+                } else if (old == null) {
+                    values.put(definition.target, value);
+                    changed = true;
+                } else if (!old.equals(value)) {
+                    values.put(definition.target, VARYING);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    // null if it isn't known yet
+    private FunctionName valueOf(final FunctionName context, final Exp exp) {
+        if (exp instanceof AddressOfExp &&
+            ((AddressOfExp)exp).resolved.get() instanceof FunctionResolved) {
+            return ((FunctionResolved)((AddressOfExp)exp).resolved.get()).functionName;
+        } else if (exp instanceof VariableExp) {
+            return values.get(new Binding(context, ((VariableExp)exp).variable));
+        } else {
+            return VARYING;
+        }
+    }
+
+    // the one function the call can reach, or null
+    private FunctionName target(final CallLikeExp exp) {
+        if (!(exp.resolution.get() instanceof IndirectCallResolved) ||
+            !(exp.base instanceof VariableExp)) {
+            return null;
+        }
+        final FunctionName value = values.get(new Binding(current, ((VariableExp)exp.base).variable));
+        if (value == null ||
+            value == VARYING ||
+            declared.get(current).contains(new Variable(value.name))) {
+            return null;
+        }
+        return value;
+    }
+    // ---END PROPAGATION---
+
+    // ---BEGIN REWRITING---
+    private List<Stmt> rewriteStmts(final List<Stmt> stmts) {
+        final List<Stmt> result = new ArrayList<Stmt>();
+        for (final Stmt stmt : stmts) {
+            result.add(rewriteStmt(stmt));
+        }
+        return result;
+    }
+
+    private Stmt rewriteStmt(final Stmt stmt) {
+        if (stmt instanceof VariableDeclarationInitializationStmt) {
+            final VariableDeclarationInitializationStmt asDec =
+                (VariableDeclarationInitializationStmt)stmt;
+            return new VariableDeclarationInitializationStmt(asDec.varDec,
+                                                             rewriteExp(asDec.exp));
+        } else if (stmt instanceof AssignmentStmt) {
+            final AssignmentStmt asAssign = (AssignmentStmt)stmt;
+            return new AssignmentStmt(asAssign.lhs, rewriteExp(asAssign.exp));
+        } else if (stmt instanceof BlockStmt) {
+            return new BlockStmt(rewriteStmts(((BlockStmt)stmt).stmts));
+        } else if (stmt instanceof PrintStmt) {
+            return new PrintStmt(rewriteExp(((PrintStmt)stmt).exp));
+        } else if (stmt instanceof ReturnStmt) {
+            final ReturnStmt asReturn = (ReturnStmt)stmt;
+            if (asReturn.exp.isPresent()) {
+                return new ReturnStmt(Optional.of(rewriteExp(asReturn.exp.get())));
+            } else {
+                return stmt;
+            }
+        } else if (stmt instanceof ExpStmt) {
+            return new ExpStmt(rewriteExp(((ExpStmt)stmt).exp));
+        } else if (stmt instanceof IfStmt) {
+            final IfStmt asIf = (IfStmt)stmt;
+            final Optional<Stmt> ifFalse;
+            if (asIf.ifFalse.isPresent()) {
+                ifFalse = Optional.of(rewriteStmt(asIf.ifFalse.get()));
+            } else {
+                ifFalse = Optional.empty();
+            }
+            return new IfStmt(rewriteExp(asIf.guard), rewriteStmt(asIf.ifTrue), ifFalse);
+        } else if (stmt instanceof WhileStmt) {
+            final WhileStmt asWhile = (WhileStmt)stmt;
+            return new WhileStmt(rewriteExp(asWhile.guard), rewriteStmt(asWhile.body));
+        } else if (stmt instanceof BreakStmt ||
+                   stmt instanceof ContinueStmt) {
+            return stmt;
+        } else {
+            assert false : "Unknown stmt: " + stmt.toString();
+            return stmt;
+        }
+    }
+
+    private Exp rewriteExp(final Exp exp) {
+        if (exp instanceof IntegerLiteralExp ||
+            exp instanceof BooleanLiteralExp ||
+            exp instanceof VariableExp ||
+            exp instanceof SizeofExp ||
+            exp instanceof AddressOfExp) {
+            return exp;
+        } else if (exp instanceof MallocExp) {
+            return new MallocExp(rewriteExp(((MallocExp)exp).amount));
+        } else if (exp instanceof BinopExp) {
+            final BinopExp asBinop = (BinopExp)exp;
+            return new BinopExp(rewriteExp(asBinop.left),
+                                asBinop.op,
+                                rewriteExp(asBinop.right));
+        } else if (exp instanceof CallLikeExp) {
+            final CallLikeExp asCall = (CallLikeExp)exp;
+            final List<Exp> params = new ArrayList<Exp>();
+            for (final Exp param : asCall.params) {
+                params.add(rewriteExp(param));
+            }
+            final FunctionName target = target(asCall);
+            if (target != null) {
+                report.add(current.name + ": " + asCall.base.toString() + " -> " + target.name);
+                numDevirtualized++;
+                return new CallLikeExp(new VariableExp(new Variable(target.name)), params);
+            }
+            return new CallLikeExp(rewriteExp(asCall.base), params);
+        } else if (exp instanceof CastExp) {
+            final CastExp asCast = (CastExp)exp;
+            return new CastExp(asCast.type, rewriteExp(asCast.exp));
+        } else if (exp instanceof DereferenceExp) {
+            return new DereferenceExp(rewriteExp(((DereferenceExp)exp).exp));
+        } else if (exp instanceof FieldAccessExp) {
+            final FieldAccessExp asField = (FieldAccessExp)exp;
+            return new FieldAccessExp(rewriteExp(asField.exp), asField.field);
+        } else {
+            assert false : "Unknown exp: " + exp.toString();
+            return exp;
+        }
+    }
+    // ---END REWRITING---
+} // Devirtualizer
@@ -0,0 +1,545 @@
+package lowlang.optimizer;
+
+import lowlang.parser.*;
+import lowlang.typechecker.Typechecker;
+import lowlang.typechecker.TypeErrorException;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Optional;
+
+// Replaces direct calls to small, non-recursive functions with copies of
+// their bodies.  Parameters become locals initialized with the arguments,
+// and every local of the callee is renamed with a '$', which can't appear
+// in source names, so nothing in the caller can clash with it.
+//
+// The copy goes just before the statement containing the call, so only
+// calls evaluated before anything else in that statement are inlined;
+// otherwise the order of evaluation would change.  If the callee only
+// returns at its end, the returned expression just initializes a
+// temporary.  Otherwise the body goes in a while (true) loop, and each
+// return assigns the temporary and breaks out.  That can't jump out of a
+// loop within the callee, so callees returning from inside a loop are left
+// alone, as are ones that would need a structure temporary without an
+// initial value.
+//
+// Works on typechecked programs, but the result has to be typechecked
+// again, as new nodes have no resolutions.  Rounds after the first
+// typecheck what the previous one produced for the same reason.
+public class Inliner {
+    // in AST nodes, as counted by NodeCounter
+    public static final int DEFAULT_MAX_SIZE = 40;
+    // functions called from just one place can be bigger, as the original
+    // usually goes away
+    public static final int DEFAULT_MAX_SINGLE_CALL_SIZE = 120;
+    // each round inlines calls revealed by the previous one
+    public static final int DEFAULT_MAX_ROUNDS = 3;
+
+    private final int maxSize;
+    private final int maxSingleCallSize;
+    private final int maxRounds;
+    // caller <- callee, for each call inlined
+    private final List<String> report;
+
+    private Map<FunctionName, FunctionDefinition> definitions;
+    private Map<FunctionName, Integer> callSites;
+    // whether each function can be inlined anywhere, with the names it
+    // needs callers not to hide
+    private Map<FunctionName, Boolean> inlinable;
+    private Map<FunctionName, Set<Variable>> namesUsed;
+    private CallGraph callGraph;
+    private FunctionDefinition caller;
+    private Set<Variable> callerVariables;
+    private int numInlined;
+
+    public Inliner(final int maxSize,
+                   final int maxSingleCallSize,
+                   final int maxRounds) {
+        this.maxSize = maxSize;
+        this.maxSingleCallSize = maxSingleCallSize;
+        this.maxRounds = maxRounds;
+        report = new ArrayList<String>();
+        numInlined = 0;
+    }
+
+    public Inliner() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_MAX_SINGLE_CALL_SIZE, DEFAULT_MAX_ROUNDS);
+    }
+
+    // assumes the program has undergone typechecking
+    public Program inline(Program program) throws TypeErrorException {
+        for (int round = 0; round < maxRounds; round++) {
+            final int before = numInlined;
+            if (round > 0) {
+                Typechecker.typecheckProgramExternalEntry(program);
+            }
+            program = inlineRound(program);
+            if (numInlined == before) {
+                break;
+            }
+        }
+        return program;
+    }
+
+    private Program inlineRound(final Program program) {
+        definitions = new HashMap<FunctionName, FunctionDefinition>();
+        for (final FunctionDefinition def : program.functionDefs) {
+            definitions.put(def.name, def);
+        }
+        callGraph = new CallGraph(program);
+        callSites = countCallSites(program);
+        inlinable = new HashMap<FunctionName, Boolean>();
+        namesUsed = new HashMap<FunctionName, Set<Variable>>();
+
+        final List<FunctionDefinition> result = new ArrayList<FunctionDefinition>();
+        for (final FunctionDefinition def : program.functionDefs) {
+            caller = def;
+            callerVariables = declaredVariables(def);
+            result.add(new FunctionDefinition(def.returnType,
+                                              def.name,
+                                              def.parameters,
+                                              inlineStmts(def.body)));
+        }
+        return new Program(program.structDecs, result);
+    }
+
+    private Map<FunctionName, Integer> countCallSites(final Program program) {
+        final Map<FunctionName, Integer> result = new HashMap<FunctionName, Integer>();
+        for (final FunctionDefinition def : program.functionDefs) {
+            result.put(def.name, Integer.valueOf(callGraph.numCallSites(def.name)));
+        }
+        for (final FunctionDefinition def : program.functionDefs) {
+            // taking the address counts as another use
+            for (final FunctionName taken : callGraph.addressesTakenBy(def.name)) {
+                result.put(taken, Integer.valueOf(Integer.MAX_VALUE / 2));
+            }
+        }
+        return result;
+    }
+
+    public List<String> getReport() {
+        return report;
+    }
+
+    public int numInlined() {
+        return numInlined;
+    }
+
+    public String reportToString() {
+        final StringBuilder builder = new StringBuilder();
+        for (final String line : report) {
+            builder.append(line);
+            builder.append(String.format("%n"));
+        }
+        builder.append(String.format("%d call(s) inlined%n", numInlined));
+        return builder.toString();
+    }
+
+    // ---BEGIN DECIDING WHAT TO INLINE---
+    private boolean shouldInline(final FunctionName callee) {
+        Boolean result = inlinable.get(callee);
+        if (result == null) {
+            result = Boolean.valueOf(isInlinable(callee));
+            inlinable.put(callee, result);
+            if (result.booleanValue()) {
+                namesUsed.put(callee, namesUsed(definitions.get(callee)));
+            }
+        }
+        if (!result.booleanValue()) {
+            return false;
+        }
+
+        // a caller's local can hide a function or structure the callee names
+        for (final Variable name : namesUsed.get(callee)) {
+            if (callerVariables.contains(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isInlinable(final FunctionName callee) {
+        final FunctionDefinition def = definitions.get(callee);
+        if (def == null ||
+            def.name.equals(UnreachableFunctionElimination.MAIN) ||
+            isRecursive(callee)) {
+            return false;
+        }
+        final int size = NodeCounter.countNodes(def);
+        final Integer sites = callSites.get(callee);
+        final boolean calledOnce = (sites != null && sites.intValue() == 1);
+        if (size > maxSize && !(calledOnce && size <= maxSingleCallSize)) {
+            return false;
+        }
+        return (returnsOnlyAtEnd(def) ||
+                (!returnsInLoop(def.body, false) && defaultValue(def.returnType) != null));
+    }
+
+    // through direct calls; a function pointer can only lead back to it
+    // through a separate call, which is never inlined into itself
+    private boolean isRecursive(final FunctionName function) {
+        final Set<FunctionName> seen = new HashSet<FunctionName>();
+        final List<FunctionName> worklist = new ArrayList<FunctionName>(callGraph.directCallees(function));
+        while (!worklist.isEmpty()) {
+            final FunctionName current = worklist.remove(worklist.size() - 1);
+            if (current.equals(function)) {
+                return true;
+            } else if (seen.add(current) && definitions.containsKey(current)) {
+                worklist.addAll(callGraph.directCallees(current));
+            }
+        }
+        return false;
+    }
+
+    private static boolean returnsOnlyAtEnd(final FunctionDefinition def) {
+        final int last = def.body.size() - 1;
+        for (int index = 0; index < def.body.size(); index++) {
+            if (containsReturn(def.body.get(index)) &&
+                !(index == last && def.body.get(index) instanceof ReturnStmt)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsReturn(final Stmt stmt) {
+        if (stmt instanceof ReturnStmt) {
+            return true;
+        } else if (stmt instanceof BlockStmt) {
+            for (final Stmt nested : ((BlockStmt)stmt).stmts) {
+                if (containsReturn(nested)) {
+                    return true;
+                }
+            }
+            return false;
+        } else if (stmt instanceof IfStmt) {
+            final IfStmt asIf = (IfStmt)stmt;
+            return (containsReturn(asIf.ifTrue) ||
+                    (asIf.ifFalse.isPresent() && containsReturn(asIf.ifFalse.get())));
+        } else if (stmt instanceof WhileStmt) {
+            return containsReturn(((WhileStmt)stmt).body);
+        } else {
+            return false;
+        }
+    }
+
+    private static boolean returnsInLoop(final List<Stmt> stmts, final boolean inLoop) {
+        for (final Stmt stmt : stmts) {
+            if (returnsInLoop(stmt, inLoop)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean returnsInLoop(final Stmt stmt, final boolean inLoop) {
+        if (stmt instanceof ReturnStmt) {
+            return inLoop;
+        } else if (stmt instanceof BlockStmt) {
+            return returnsInLoop(((BlockStmt)stmt).stmts, inLoop);
+        } else if (stmt instanceof IfStmt) {
+            final IfStmt asIf = (IfStmt)stmt;
+            return (returnsInLoop(asIf.ifTrue, inLoop) ||
+                    (asIf.ifFalse.isPresent() && returnsInLoop(asIf.ifFalse.get(), inLoop)));
+        } else if (stmt instanceof WhileStmt) {
+            return returnsInLoop(((WhileStmt)stmt).body, true);
+        } else {
+            return false;
+        }
+    }
+
+    // something a temporary of this type can start out as, or null
+    private static Exp defaultValue(final Type type) {
+        if (type instanceof IntType) {
+            return new IntegerLiteralExp(0);
+        } else if (type instanceof BoolType) {
+            return new BooleanLiteralExp(false);
+        } else if (type instanceof PointerType ||
+                   type instanceof FunctionPointerType) {
+            return new CastExp(type, new IntegerLiteralExp(0));
+        } else {
+            return null;
+        }
+    }
+
+    private static Renamer walk(final FunctionDefinition def) {
+        final Renamer renamer = new Renamer("");
+        for (final VariableDeclaration param : def.parameters) {
+            renamer.bind(param.variable);
+        }
+        renamer.stmts(def.body);
+        return renamer;
+    }
+
+    private static Set<Variable> declaredVariables(final FunctionDefinition def) {
+        return walk(def).bound;
+    }
+
+    // names in the function's body which aren't its own variables
+    private static Set<Variable> namesUsed(final FunctionDefinition def) {
+        return walk(def).free;
+    }
+    // ---END DECIDING WHAT TO INLINE---
+
+    // ---BEGIN INLINING---
+    private List<Stmt> inlineStmts(final List<Stmt> stmts) {
+        final List<Stmt> result = new ArrayList<Stmt>();
+        for (final Stmt stmt : stmts) {
+            inlineStmt(stmt, result);
+        }
+        return result;
+    }
+
+    // a statement which might become several needs a block of its own
+    private Stmt inlineNested(final Stmt stmt) {
+        final List<Stmt> result = new ArrayList<Stmt>();
+        inlineStmt(stmt, result);
+        if (result.size() == 1) {
+            return result.get(0);
+        } else {
+            return new BlockStmt(result);
+        }
+    }
+
+    private void inlineStmt(Stmt stmt, final List<Stmt> output) {
+        if (stmt instanceof BlockStmt) {
+            output.add(new BlockStmt(inlineStmts(((BlockStmt)stmt).stmts)));
+            return;
+        } else if (stmt instanceof WhileStmt) {
+            // the guard runs every iteration, so it's left alone
+            final WhileStmt asWhile = (WhileStmt)stmt;
+            output.add(new WhileStmt(asWhile.guard, inlineNested(asWhile.body)));
+            return;
+        } else if (stmt instanceof IfStmt) {
+            final IfStmt asIf = (IfStmt)stmt;
+            final Optional<Stmt> ifFalse =
+                (asIf.ifFalse.isPresent()) ? Optional.of(inlineNested(asIf.ifFalse.get())) : Optional.empty();
+            stmt = new IfStmt(asIf.guard, inlineNested(asIf.ifTrue), ifFalse);
+        }
+
+        // inline the leading call until there isn't one
+        Exp exp = stmtExp(stmt);
+        CallLikeExp call = (exp == null) ? null : leadingCall(exp);
+        while (call != null) {
+            final FunctionName callee = ((DirectCallResolved)call.resolution.get()).functionName;
+            final boolean wholeExpStmt = (stmt instanceof ExpStmt && exp == call);
+            final Optional<Variable> result = inlineCall(call, output, !wholeExpStmt);
+            report.add(caller.name.name + " <- " + callee.name);
+            numInlined++;
+            if (wholeExpStmt) {
+                return;
+            }
+            stmt = withStmtExp(stmt, replace(exp, call, new VariableExp(result.get())));
+            exp = stmtExp(stmt);
+            call = leadingCall(exp);
+        }
+        output.add(stmt);
+    }
+
+    // the expression the statement evaluates first, if any
+    private static Exp stmtExp(final Stmt stmt) {
+        if (stmt instanceof VariableDeclarationInitializationStmt) {
+            return ((VariableDeclarationInitializationStmt)stmt).exp;
+        } else if (stmt instanceof AssignmentStmt) {
+            // the rhs is evaluated before the lhs
+            return ((AssignmentStmt)stmt).exp;
+        } else if (stmt instanceof PrintStmt) {
+            return ((PrintStmt)stmt).exp;
+        } else if (stmt instanceof ExpStmt) {
+            return ((ExpStmt)stmt).exp;
+        } else if (stmt instanceof ReturnStmt) {
+            final ReturnStmt asReturn = (ReturnStmt)stmt;
+            return (asReturn.exp.isPresent()) ? asReturn.exp.get() : null;
+        } else if (stmt instanceof IfStmt) {
+            return ((IfStmt)stmt).guard;
+        } else {
+            return null;
+        }
+    }
+
+    private static Stmt withStmtExp(final Stmt stmt, final Exp exp) {
+        if (stmt instanceof VariableDeclarationInitializationStmt) {
+            return new VariableDeclarationInitializationStmt(((VariableDeclarationInitializationStmt)stmt).varDec,
+                                                             exp);
+        } else if (stmt instanceof AssignmentStmt) {
+            return new AssignmentStmt(((AssignmentStmt)stmt).lhs, exp);
+        } else if (stmt instanceof PrintStmt) {
+            return new PrintStmt(exp);
+        } else if (stmt instanceof ExpStmt) {
+            return new ExpStmt(exp);
+        } else if (stmt instanceof ReturnStmt) {
+            return new ReturnStmt(Optional.of(exp));
+        } else if (stmt instanceof IfStmt) {
+            final IfStmt asIf = (IfStmt)stmt;
+            return new IfStmt(exp, asIf.ifTrue, asIf.ifFalse);
+        } else {
+            assert false : "No expression in: " + stmt.toString();
+            return stmt;
+        }
+    }
+
+    // The inlinable call evaluated before anything else which could have or
+    // see side effects, or null.  Literals and inlining temporaries can't
+    // be affected by a call, so calls after them still count.
+    private CallLikeExp leadingCall(final Exp exp) {
+        if (exp instanceof CallLikeExp) {
+            final CallLikeExp asCall = (CallLikeExp)exp;
+            final CallLikeResolved resolution = asCall.resolution.get();
+            if (resolution instanceof DirectCallResolved &&
+                shouldInline(((DirectCallResolved)resolution).functionName)) {
+                return asCall;
+            } else if (resolution instanceof IndirectCallResolved) {
+                return leadingCall(asCall.base);
+            } else if (!asCall.params.isEmpty()) {
+                return leadingCall(asCall.params.get(0));
+            } else {
+                return null;
+            }
+        } else if (exp instanceof BinopExp) {
+            final BinopExp asBinop = (BinopExp)exp;
+            final CallLikeExp left = leadingCall(asBinop.left);
+            if (left == null && isStable(asBinop.left)) {
+                return leadingCall(asBinop.right);
+            } else {
+                return left;
+            }
+        } else if (exp instanceof CastExp) {
+            return leadingCall(((CastExp)exp).exp);
+        } else if (exp instanceof DereferenceExp) {
+            return leadingCall(((DereferenceExp)exp).exp);
+        } else if (exp instanceof FieldAccessExp) {
+            return leadingCall(((FieldAccessExp)exp).exp);
+        } else if (exp instanceof MallocExp) {
+            return leadingCall(((MallocExp)exp).amount);
+        } else {
+            return null;
+        }
+    }
+
+    private static boolean isStable(final Exp exp) {
+        return (exp instanceof IntegerLiteralExp ||
+                exp instanceof BooleanLiteralExp ||
+                exp instanceof SizeofExp ||
+                (exp instanceof VariableExp &&
+                 ((VariableExp)exp).variable.name.contains("$")));
+    }
+
+    // copies the callee's body into output, giving back the temporary
+    // holding the result, if it's wanted
+    private Optional<Variable> inlineCall(final CallLikeExp call,
+                                          final List<Stmt> output,
+                                          final boolean wantResult) {
+        final FunctionDefinition callee =
+            definitions.get(((DirectCallResolved)call.resolution.get()).functionName);
+        final String suffix = "$" + numInlined;
+        final Renamer renamer = new Renamer(suffix);
+
+        // arguments are evaluated in order, as for the call
+        for (int index = 0; index < callee.parameters.size(); index++) {
+            final VariableDeclaration param = callee.parameters.get(index);
+            output.add(new VariableDeclarationInitializationStmt(new VariableDeclaration(param.type,
+                                                                                         renamer.bind(param.variable)),
+                                                                 call.params.get(index)));
+        }
+
+        final boolean isVoid = callee.returnType instanceof VoidType;
+        final Variable result = new Variable(callee.name.name + "$result" + numInlined);
+        if (returnsOnlyAtEnd(callee)) {
+            final List<Stmt> body = renamer.stmts(callee.body);
+            final Stmt last = (body.isEmpty()) ? null : body.get(body.size() - 1);
+            if (last instanceof ReturnStmt) {
+                body.remove(body.size() - 1);
+            }
+            output.addAll(body);
+            if (!isVoid) {
+                final Exp returned = ((ReturnStmt)last).exp.get();
+                if (wantResult) {
+                    output.add(new VariableDeclarationInitializationStmt(new VariableDeclaration(callee.returnType,
+                                                                                                 result),
+                                                                         returned));
+                } else {
+                    output.add(new ExpStmt(returned));
+                }
+            }
+        } else {
+            if (!isVoid) {
+                output.add(new VariableDeclarationInitializationStmt(new VariableDeclaration(callee.returnType,
+                                                                                             result),
+                                                                     defaultValue(callee.returnType)));
+            }
+            final List<Stmt> body = returnsToBreaks(renamer.stmts(callee.body), result);
+            body.add(new BreakStmt());
+            output.add(new WhileStmt(new BooleanLiteralExp(true), new BlockStmt(body)));
+        }
+        return (isVoid) ? Optional.empty() : Optional.of(result);
+    }
+
+    // assumes no return is in a loop, so break always leaves the body
+    private static List<Stmt> returnsToBreaks(final List<Stmt> stmts, final Variable result) {
+        final List<Stmt> output = new ArrayList<Stmt>();
+        for (final Stmt stmt : stmts) {
+            output.add(returnsToBreaks(stmt, result));
+        }
+        return output;
+    }
+
+    private static Stmt returnsToBreaks(final Stmt stmt, final Variable result) {
+        if (stmt instanceof ReturnStmt) {
+            final ReturnStmt asReturn = (ReturnStmt)stmt;
+            final List<Stmt> replacement = new ArrayList<Stmt>();
+            if (asReturn.exp.isPresent()) {
+                replacement.add(new AssignmentStmt(new VariableLhs(result), asReturn.exp.get()));
+            }
+            replacement.add(new BreakStmt());
+            return new BlockStmt(replacement);
+        } else if (stmt instanceof BlockStmt) {
+            return new BlockStmt(returnsToBreaks(((BlockStmt)stmt).stmts, result));
+        } else if (stmt instanceof IfStmt) {
+            final IfStmt asIf = (IfStmt)stmt;
+            final Optional<Stmt> ifFalse =
+                (asIf.ifFalse.isPresent()) ? Optional.of(returnsToBreaks(asIf.ifFalse.get(), result)) : Optional.empty();
+            return new IfStmt(asIf.guard, returnsToBreaks(asIf.ifTrue, result), ifFalse);
+        } else {
+            return stmt;
+        }
+    }
+
+    // replaces the one occurrence of target, by identity
+    private static Exp replace(final Exp exp, final Exp target, final Exp replacement) {
+        if (exp == target) {
+            return replacement;
+        } else if (exp instanceof CallLikeExp) {
+            final CallLikeExp asCall = (CallLikeExp)exp;
+            final List<Exp> params = new ArrayList<Exp>();
+            for (final Exp param : asCall.params) {
+                params.add(replace(param, target, replacement));
+            }
+            final CallLikeExp result = new CallLikeExp(replace(asCall.base, target, replacement), params);
+            // leadingCall needs to see what the call is
+            result.resolution = asCall.resolution;
+            return result;
+        } else if (exp instanceof BinopExp) {
+            final BinopExp asBinop = (BinopExp)exp;
+            return new BinopExp(replace(asBinop.left, target, replacement),
+                                asBinop.op,
+                                replace(asBinop.right, target, replacement));
+        } else if (exp instanceof CastExp) {
+            final CastExp asCast = (CastExp)exp;
+            return new CastExp(asCast.type, replace(asCast.exp, target, replacement));
+        } else if (exp instanceof DereferenceExp) {
+            return new DereferenceExp(replace(((DereferenceExp)exp).exp, target, replacement));
+        } else if (exp instanceof FieldAccessExp) {
+            final FieldAccessExp asField = (FieldAccessExp)exp;
+            return new FieldAccessExp(replace(asField.exp, target, replacement), asField.field);
+        } else if (exp instanceof MallocExp) {
+            return new MallocExp(replace(((MallocExp)exp).amount, target, replacement));
+        } else {
+            return exp;
+        }
+    }
+    // ---END INLINING---
+} // Inliner
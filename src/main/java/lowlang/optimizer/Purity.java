@@ -0,0 +1,64 @@
+package lowlang.optimizer;
+
+import lowlang.parser.*;
+
+// What evaluating an expression can do besides produce its value.  Calls
+// and malloc have side effects.  add and sub trap on overflow, div on 0,
+// and dereferences on bad addresses, but mult and comparisons never trap.
+public class Purity {
+    // no side effects, though it may trap, so it can be evaluated in any
+    // order relative to other pure expressions
+    public static boolean isPure(final Exp exp) {
+        return isPure(exp, true);
+    }
+
+    // true if leaving exp out changes nothing
+    public static boolean isDiscardable(final Exp exp) {
+        return isPure(exp, false);
+    }
+
+    private static boolean isPure(final Exp exp, final boolean mayTrap) {
+        if (exp instanceof IntegerLiteralExp ||
+            exp instanceof BooleanLiteralExp ||
+            exp instanceof VariableExp ||
+            exp instanceof AddressOfExp ||
+            exp instanceof SizeofExp) {
+            return true;
+        } else if (exp instanceof BinopExp) {
+            final BinopExp asBinop = (BinopExp)exp;
+            return ((mayTrap || !canTrap(asBinop.op)) &&
+                    isPure(asBinop.left, mayTrap) &&
+                    isPure(asBinop.right, mayTrap));
+        } else if (exp instanceof CallLikeExp &&
+                   isMakeStructure((CallLikeExp)exp)) {
+            for (final Exp param : ((CallLikeExp)exp).params) {
+                if (!isPure(param, mayTrap)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (exp instanceof CastExp) {
+            return isPure(((CastExp)exp).exp, mayTrap);
+        } else if (exp instanceof DereferenceExp) {
+            return mayTrap && isPure(((DereferenceExp)exp).exp, mayTrap);
+        } else if (exp instanceof FieldAccessExp) {
+            return isPure(((FieldAccessExp)exp).exp, mayTrap);
+        } else {
+            // calls and malloc
+            return false;
+        }
+    }
+
+    // a rewritten call isn't resolved until typechecked again, so it could
+    // be anything
+    private static boolean isMakeStructure(final CallLikeExp exp) {
+        return (exp.resolution.isPresent() &&
+                exp.resolution.get() instanceof MakeStructureResolved);
+    }
+
+    private static boolean canTrap(final Op op) {
+        return (op instanceof PlusOp ||
+                op instanceof MinusOp ||
+                op instanceof DivOp);
+    }
+} // Purity
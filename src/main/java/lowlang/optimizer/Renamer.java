@@ -0,0 +1,173 @@
+package lowlang.optimizer;
+
+import lowlang.parser.*;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Optional;
+
+// Copies statements, renaming every variable bound beforehand or declared
+// along the way by adding a suffix, and respecting scopes.  Names which are
+// used without being bound are left alone and collected; in a function body
+// those are the functions and structures it refers to.  The copies have no
+// resolutions, so they need to be typechecked.
+public class Renamer {
+    private final String suffix;
+    private Map<Variable, Variable> renamed;
+    // everything bound, by its original name
+    public final Set<Variable> bound;
+    public final Set<Variable> free;
+
+    public Renamer(final String suffix) {
+        this.suffix = suffix;
+        renamed = new HashMap<Variable, Variable>();
+        bound = new HashSet<Variable>();
+        free = new HashSet<Variable>();
+    }
+
+    // returns the new name
+    public Variable bind(final Variable variable) {
+        final Variable newName = new Variable(variable.name + suffix);
+        renamed.put(variable, newName);
+        bound.add(variable);
+        return newName;
+    }
+
+    private Variable rename(final Variable variable) {
+        final Variable newName = renamed.get(variable);
+        if (newName == null) {
+            free.add(variable);
+            return variable;
+        } else {
+            return newName;
+        }
+    }
+
+    // the statements form a scope of their own
+    public List<Stmt> stmts(final List<Stmt> stmts) {
+        final Map<Variable, Variable> outer = renamed;
+        renamed = new HashMap<Variable, Variable>(outer);
+        final List<Stmt> result = new ArrayList<Stmt>();
+        for (final Stmt stmt : stmts) {
+            result.add(stmtInScope(stmt));
+        }
+        renamed = outer;
+        return result;
+    }
+
+    public Stmt stmt(final Stmt stmt) {
+        final Map<Variable, Variable> outer = renamed;
+        renamed = new HashMap<Variable, Variable>(outer);
+        final Stmt result = stmtInScope(stmt);
+        renamed = outer;
+        return result;
+    }
+
+    // declarations stay in scope afterward
+    private Stmt stmtInScope(final Stmt stmt) {
+        if (stmt instanceof VariableDeclarationInitializationStmt) {
+            final VariableDeclarationInitializationStmt asDec =
+                (VariableDeclarationInitializationStmt)stmt;
+            // the initializer can't see the new variable
+            final Exp exp = exp(asDec.exp);
+            final Variable variable = bind(asDec.varDec.variable);
+            return new VariableDeclarationInitializationStmt(new VariableDeclaration(asDec.varDec.type,
+                                                                                     variable),
+                                                             exp);
+        } else if (stmt instanceof AssignmentStmt) {
+            final AssignmentStmt asAssign = (AssignmentStmt)stmt;
+            return new AssignmentStmt(lhs(asAssign.lhs), exp(asAssign.exp));
+        } else if (stmt instanceof BlockStmt) {
+            return new BlockStmt(stmts(((BlockStmt)stmt).stmts));
+        } else if (stmt instanceof PrintStmt) {
+            return new PrintStmt(exp(((PrintStmt)stmt).exp));
+        } else if (stmt instanceof ReturnStmt) {
+            final ReturnStmt asReturn = (ReturnStmt)stmt;
+            if (asReturn.exp.isPresent()) {
+                return new ReturnStmt(Optional.of(exp(asReturn.exp.get())));
+            } else {
+                return new ReturnStmt(Optional.empty());
+            }
+        } else if (stmt instanceof ExpStmt) {
+            return new ExpStmt(exp(((ExpStmt)stmt).exp));
+        } else if (stmt instanceof IfStmt) {
+            final IfStmt asIf = (IfStmt)stmt;
+            final Exp guard = exp(asIf.guard);
+            final Stmt ifTrue = stmt(asIf.ifTrue);
+            if (asIf.ifFalse.isPresent()) {
+                return new IfStmt(guard, ifTrue, Optional.of(stmt(asIf.ifFalse.get())));
+            } else {
+                return new IfStmt(guard, ifTrue, Optional.empty());
+            }
+        } else if (stmt instanceof WhileStmt) {
+            final WhileStmt asWhile = (WhileStmt)stmt;
+            return new WhileStmt(exp(asWhile.guard), stmt(asWhile.body));
+        } else if (stmt instanceof BreakStmt) {
+            return new BreakStmt();
+        } else if (stmt instanceof ContinueStmt) {
+            return new ContinueStmt();
+        } else {
+            assert false : "Unknown stmt: " + stmt.toString();
+            return stmt;
+        }
+    }
+
+    public Lhs lhs(final Lhs lhs) {
+        if (lhs instanceof VariableLhs) {
+            return new VariableLhs(rename(((VariableLhs)lhs).variable));
+        } else if (lhs instanceof FieldAccessLhs) {
+            final FieldAccessLhs asField = (FieldAccessLhs)lhs;
+            return new FieldAccessLhs(lhs(asField.lhs), asField.field);
+        } else if (lhs instanceof DereferenceLhs) {
+            return new DereferenceLhs(lhs(((DereferenceLhs)lhs).lhs));
+        } else {
+            assert false : "Unexpected lhs: " + lhs.toString();
+            return lhs;
+        }
+    }
+
+    public List<Exp> exps(final List<Exp> exps) {
+        final List<Exp> result = new ArrayList<Exp>();
+        for (final Exp exp : exps) {
+            result.add(exp(exp));
+        }
+        return result;
+    }
+
+    public Exp exp(final Exp exp) {
+        if (exp instanceof IntegerLiteralExp) {
+            return new IntegerLiteralExp(((IntegerLiteralExp)exp).value);
+        } else if (exp instanceof BooleanLiteralExp) {
+            return new BooleanLiteralExp(((BooleanLiteralExp)exp).value);
+        } else if (exp instanceof SizeofExp) {
+            return new SizeofExp(((SizeofExp)exp).type);
+        } else if (exp instanceof VariableExp) {
+            return new VariableExp(rename(((VariableExp)exp).variable));
+        } else if (exp instanceof MallocExp) {
+            return new MallocExp(exp(((MallocExp)exp).amount));
+        } else if (exp instanceof BinopExp) {
+            final BinopExp asBinop = (BinopExp)exp;
+            return new BinopExp(exp(asBinop.left), asBinop.op, exp(asBinop.right));
+        } else if (exp instanceof CallLikeExp) {
+            final CallLikeExp asCall = (CallLikeExp)exp;
+            return new CallLikeExp(exp(asCall.base), exps(asCall.params));
+        } else if (exp instanceof CastExp) {
+            final CastExp asCast = (CastExp)exp;
+            return new CastExp(asCast.type, exp(asCast.exp));
+        } else if (exp instanceof AddressOfExp) {
+            return new AddressOfExp(lhs(((AddressOfExp)exp).lhs));
+        } else if (exp instanceof DereferenceExp) {
+            return new DereferenceExp(exp(((DereferenceExp)exp).exp));
+        } else if (exp instanceof FieldAccessExp) {
+            final FieldAccessExp asField = (FieldAccessExp)exp;
+            return new FieldAccessExp(exp(asField.exp), asField.field);
+        } else {
+            assert false : "Unknown exp: " + exp.toString();
+            return exp;
+        }
+    }
+} // Renamer
@@ -0,0 +1,38 @@
+package lowlang.optimizer;
+
+import lowlang.parser.Program;
+import lowlang.parser.FunctionDefinition;
+import lowlang.parser.FunctionName;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Set;
+
+// Drops every function which can't be reached from main, so it never gets
+// compiled or emitted.  Programs which pull in large generated libraries
+// typically use only a small part of them.
+public class UnreachableFunctionElimination {
+    public static final FunctionName MAIN = new FunctionName("main");
+
+    // assumes the program has undergone typechecking
+    public static Program eliminate(final Program program) {
+        return eliminate(program, new CallGraph(program));
+    }
+
+    public static Program eliminate(final Program program,
+                                    final CallGraph callGraph) {
+        final Set<FunctionName> reachable = callGraph.reachableFrom(MAIN);
+        if (reachable.size() == program.functionDefs.size()) {
+            return program;
+        }
+
+        // keep the original order, as codegen output follows it
+        final List<FunctionDefinition> kept = new ArrayList<FunctionDefinition>();
+        for (final FunctionDefinition def : program.functionDefs) {
+            if (reachable.contains(def.name)) {
+                kept.add(def);
+            }
+        }
+        return new Program(program.structDecs, kept);
+    }
+} // UnreachableFunctionElimination
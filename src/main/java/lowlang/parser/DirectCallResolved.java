@@ -2,24 +2,32 @@ package lowlang.parser;
 
 public class DirectCallResolved implements CallLikeResolved {
     public final FunctionName functionName;
+    public final int functionId; // index into the typechecker's SymbolTable
 
-    public DirectCallResolved(final FunctionName functionName) {
+    public DirectCallResolved(final FunctionName functionName,
+                              final int functionId) {
         this.functionName = functionName;
+        this.functionId = functionId;
     }
 
     @Override
     public boolean equals(final Object other) {
-        return (other instanceof DirectCallResolved &&
-                functionName.equals(((DirectCallResolved)other).functionName));
+        if (other instanceof DirectCallResolved) {
+            final DirectCallResolved asDirect = (DirectCallResolved)other;
+            return (functionName.equals(asDirect.functionName) &&
+                    functionId == asDirect.functionId);
+        } else {
+            return false;
+        }
     }
 
     @Override
     public int hashCode() {
-        return functionName.hashCode();
+        return functionName.hashCode() + functionId;
     }
 
     @Override
     public String toString() {
-        return "DirectCallResolved(" + functionName.toString() + ")";
+        return "DirectCallResolved(" + functionName.toString() + ", " + functionId + ")";
     }
 }
@@ -6,12 +6,19 @@ public class FieldAccessExp implements Exp {
     public final Exp exp;
     public Optional<StructureName> expStructure; // needed for codegen
     public final FieldName field;
+    // indices into the typechecker's SymbolTable; NOT_RESOLVED until typechecked
+    public int structureId;
+    public int fieldId;
+
+    public static final int NOT_RESOLVED = -1;
 
     public FieldAccessExp(final Exp exp,
                           final FieldName field) {
         this.exp = exp;
         expStructure = Optional.empty();
         this.field = field;
+        structureId = NOT_RESOLVED;
+        fieldId = NOT_RESOLVED;
     }
 
     public int hashCode() {
@@ -25,7 +32,9 @@ public class FieldAccessExp implements Exp {
             final FieldAccessExp otherExp = (FieldAccessExp)other;
             return (exp.equals(otherExp.exp) &&
                     expStructure.equals(otherExp.expStructure) &&
-                    field.equals(otherExp.field));
+                    field.equals(otherExp.field) &&
+                    structureId == otherExp.structureId &&
+                    fieldId == otherExp.fieldId);
         } else {
             return false;
         }
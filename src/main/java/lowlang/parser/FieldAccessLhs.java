@@ -6,12 +6,19 @@ public class FieldAccessLhs implements Lhs {
     public final Lhs lhs;
     public Optional<StructureName> lhsStructure; // needed for codegen
     public final FieldName field;
+    // indices into the typechecker's SymbolTable; NOT_RESOLVED until typechecked
+    public int structureId;
+    public int fieldId;
+
+    public static final int NOT_RESOLVED = -1;
 
     public FieldAccessLhs(final Lhs lhs,
                           final FieldName field) {
         this.lhs = lhs;
         lhsStructure = Optional.empty();
         this.field = field;
+        structureId = NOT_RESOLVED;
+        fieldId = NOT_RESOLVED;
     }
 
     public int hashCode() {
@@ -25,7 +32,9 @@ public class FieldAccessLhs implements Lhs {
             final FieldAccessLhs otherLhs = (FieldAccessLhs)other;
             return (lhs.equals(otherLhs.lhs) &&
                     lhsStructure.equals(otherLhs.lhsStructure) &&
-                    field.equals(otherLhs.field));
+                    field.equals(otherLhs.field) &&
+                    structureId == otherLhs.structureId &&
+                    fieldId == otherLhs.fieldId);
         } else {
             return false;
         }
@@ -2,19 +2,32 @@ package lowlang.parser;
 
 public class FunctionResolved implements AddressOfResolved {
     public final FunctionName functionName;
+    public final int functionId; // index into the typechecker's SymbolTable
 
-    public FunctionResolved(final FunctionName functionName) {
+    public FunctionResolved(final FunctionName functionName,
+                            final int functionId) {
         this.functionName = functionName;
+        this.functionId = functionId;
     }
 
     @Override
     public boolean equals(final Object other) {
-        return (other instanceof FunctionResolved &&
-                functionName.equals(((FunctionResolved)other).functionName));
+        if (other instanceof FunctionResolved) {
+            final FunctionResolved asFunction = (FunctionResolved)other;
+            return (functionName.equals(asFunction.functionName) &&
+                    functionId == asFunction.functionId);
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return functionName.hashCode() + functionId;
     }
 
     @Override
     public String toString() {
-        return "FunctionResolved(" + functionName.toString() + ")";
+        return "FunctionResolved(" + functionName.toString() + ", " + functionId + ")";
     }
 }
@@ -2,24 +2,32 @@ package lowlang.parser;
 
 public class MakeStructureResolved implements CallLikeResolved {
     public final StructureName structureName;
+    public final int structureId; // index into the typechecker's SymbolTable
 
-    public MakeStructureResolved(final StructureName structureName) {
+    public MakeStructureResolved(final StructureName structureName,
+                                 final int structureId) {
         this.structureName = structureName;
+        this.structureId = structureId;
     }
 
     @Override
     public boolean equals(final Object other) {
-        return (other instanceof MakeStructureResolved &&
-                structureName.equals(((MakeStructureResolved)other).structureName));
+        if (other instanceof MakeStructureResolved) {
+            final MakeStructureResolved asMake = (MakeStructureResolved)other;
+            return (structureName.equals(asMake.structureName) &&
+                    structureId == asMake.structureId);
+        } else {
+            return false;
+        }
     }
 
     @Override
     public int hashCode() {
-        return structureName.hashCode();
+        return structureName.hashCode() + structureId;
     }
 
     @Override
     public String toString() {
-        return "MakeStructureResolved(" + structureName.toString() + ")";
+        return "MakeStructureResolved(" + structureName.toString() + ", " + structureId + ")";
     }
 }
@@ -0,0 +1,125 @@
+package lowlang.parser;
+
+import java.util.List;
+
+// Counts the AST nodes in a program: declarations, statements, expressions,
+// and lhses.  Types and names are not counted.
+public class NodeCounter {
+    private int count;
+
+    private NodeCounter() {
+        count = 0;
+    }
+
+    public static int countNodes(final Program program) {
+        final NodeCounter counter = new NodeCounter();
+        for (final StructureDeclaration dec : program.structDecs) {
+            counter.count += 1 + dec.fields.size();
+        }
+        for (final FunctionDefinition def : program.functionDefs) {
+            counter.count += countNodes(def);
+        }
+        return counter.count;
+    }
+
+    public static int countNodes(final FunctionDefinition def) {
+        final NodeCounter counter = new NodeCounter();
+        counter.count += 1 + def.parameters.size();
+        counter.addStmts(def.body);
+        return counter.count;
+    }
+
+    private void addStmts(final List<Stmt> stmts) {
+        for (final Stmt stmt : stmts) {
+            addStmt(stmt);
+        }
+    }
+
+    private void addStmt(final Stmt stmt) {
+        count++;
+        if (stmt instanceof VariableDeclarationInitializationStmt) {
+            count++; // the declaration
+            addExp(((VariableDeclarationInitializationStmt)stmt).exp);
+        } else if (stmt instanceof AssignmentStmt) {
+            final AssignmentStmt asAssign = (AssignmentStmt)stmt;
+            addLhs(asAssign.lhs);
+            addExp(asAssign.exp);
+        } else if (stmt instanceof BlockStmt) {
+            addStmts(((BlockStmt)stmt).stmts);
+        } else if (stmt instanceof PrintStmt) {
+            addExp(((PrintStmt)stmt).exp);
+        } else if (stmt instanceof ReturnStmt) {
+            final ReturnStmt asReturn = (ReturnStmt)stmt;
+            if (asReturn.exp.isPresent()) {
+                addExp(asReturn.exp.get());
+            }
+        } else if (stmt instanceof ExpStmt) {
+            addExp(((ExpStmt)stmt).exp);
+        } else if (stmt instanceof IfStmt) {
+            final IfStmt asIf = (IfStmt)stmt;
+            addExp(asIf.guard);
+            addStmt(asIf.ifTrue);
+            if (asIf.ifFalse.isPresent()) {
+                addStmt(asIf.ifFalse.get());
+            }
+        } else if (stmt instanceof WhileStmt) {
+            final WhileStmt asWhile = (WhileStmt)stmt;
+            addExp(asWhile.guard);
+            addStmt(asWhile.body);
+        } else if (stmt instanceof BreakStmt ||
+                   stmt instanceof ContinueStmt) {
+            // nothing to do
+        } else {
+            assert false : "Unknown stmt: " + stmt.toString();
+        }
+    }
+
+    private void addLhs(final Lhs lhs) {
+        count++;
+        if (lhs instanceof VariableLhs) {
+            // nothing to do
+        } else if (lhs instanceof FieldAccessLhs) {
+            addLhs(((FieldAccessLhs)lhs).lhs);
+        } else if (lhs instanceof DereferenceLhs) {
+            addLhs(((DereferenceLhs)lhs).lhs);
+        } else {
+            assert false : "Unknown lhs: " + lhs.toString();
+        }
+    }
+
+    private void addExps(final List<Exp> exps) {
+        for (final Exp exp : exps) {
+            addExp(exp);
+        }
+    }
+
+    private void addExp(final Exp exp) {
+        count++;
+        if (exp instanceof IntegerLiteralExp ||
+            exp instanceof BooleanLiteralExp ||
+            exp instanceof VariableExp ||
+            exp instanceof SizeofExp) {
+            // nothing to do
+        } else if (exp instanceof MallocExp) {
+            addExp(((MallocExp)exp).amount);
+        } else if (exp instanceof BinopExp) {
+            final BinopExp asBinop = (BinopExp)exp;
+            addExp(asBinop.left);
+            addExp(asBinop.right);
+        } else if (exp instanceof CallLikeExp) {
+            final CallLikeExp asCall = (CallLikeExp)exp;
+            addExp(asCall.base);
+            addExps(asCall.params);
+        } else if (exp instanceof CastExp) {
+            addExp(((CastExp)exp).exp);
+        } else if (exp instanceof AddressOfExp) {
+            addLhs(((AddressOfExp)exp).lhs);
+        } else if (exp instanceof DereferenceExp) {
+            addExp(((DereferenceExp)exp).exp);
+        } else if (exp instanceof FieldAccessExp) {
+            addExp(((FieldAccessExp)exp).exp);
+        } else {
+            assert false : "Unknown exp: " + exp.toString();
+        }
+    }
+} // NodeCounter
@@ -1,6 +1,7 @@
 package lowlang.parser;
 
 import lowlang.tokenizer.*;
+import lowlang.events.ParseEvent;
 
 import java.util.List;
 import java.util.ArrayList;
@@ -669,6 +670,13 @@ public class Parser {
     }
 
     public static Program parse(final Token[] tokens) throws ParseException {
-        return new Parser(tokens).parseProgram();
+        final ParseEvent event = new ParseEvent();
+        event.begin();
+        final Program program = new Parser(tokens).parseProgram();
+        event.end();
+        if (event.shouldCommit()) {
+            event.finish(tokens.length, NodeCounter.countNodes(program));
+        }
+        return program;
     } // parse
 } // Parser
@@ -9,6 +9,8 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 
+import lowlang.events.TokenizeEvent;
+
 public class Tokenizer {
     public static final Map<String, Token> RESERVED_WORDS =
         new HashMap<String, Token>() {{
@@ -144,7 +146,14 @@ public class Tokenizer {
     }
     
     public static Token[] tokenize(final String input) throws TokenizerException {
-        return new Tokenizer(input).tokenize();
+        final TokenizeEvent event = new TokenizeEvent();
+        event.begin();
+        final Token[] tokens = new Tokenizer(input).tokenize();
+        event.end();
+        if (event.shouldCommit()) {
+            event.finish(input.length(), tokens.length);
+        }
+        return tokens;
     }
 
     public static Token[] tokenize(final File input) throws TokenizerException, IOException {
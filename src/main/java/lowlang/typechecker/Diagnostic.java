@@ -0,0 +1,40 @@
+package lowlang.typechecker;
+
+import lowlang.parser.FunctionName;
+
+import java.util.Optional;
+
+public class Diagnostic {
+    // function the error was found in; empty for errors in structure
+    // declarations or the program as a whole
+    public final Optional<FunctionName> function;
+    public final TypeErrorException error;
+
+    public Diagnostic(final Optional<FunctionName> function,
+                      final TypeErrorException error) {
+        this.function = function;
+        this.error = error;
+    }
+
+    public int hashCode() {
+        return function.hashCode() + error.getMessage().hashCode();
+    }
+
+    public boolean equals(final Object other) {
+        if (other instanceof Diagnostic) {
+            final Diagnostic otherDiagnostic = (Diagnostic)other;
+            return (function.equals(otherDiagnostic.function) &&
+                    error.getMessage().equals(otherDiagnostic.error.getMessage()));
+        } else {
+            return false;
+        }
+    }
+
+    public String toString() {
+        if (function.isPresent()) {
+            return "In " + function.get().toString() + ": " + error.getMessage();
+        } else {
+            return error.getMessage();
+        }
+    }
+} // Diagnostic
@@ -0,0 +1,61 @@
+package lowlang.typechecker;
+
+import lowlang.parser.FunctionName;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+
+// Collects type errors when typechecking keeps going past the first one.
+// Errors are kept in the order they were found.
+public class Diagnostics {
+    private final List<Diagnostic> diagnostics;
+
+    public Diagnostics() {
+        diagnostics = new ArrayList<Diagnostic>();
+    }
+
+    public void record(final Optional<FunctionName> function,
+                       final TypeErrorException error) {
+        diagnostics.add(new Diagnostic(function, error));
+    }
+
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+
+    public boolean hasErrors() {
+        return !diagnostics.isEmpty();
+    }
+
+    // every function with at least one error, in the order they were found
+    public Set<FunctionName> functionsWithErrors() {
+        final Set<FunctionName> result = new LinkedHashSet<FunctionName>();
+        for (final Diagnostic diagnostic : diagnostics) {
+            if (diagnostic.function.isPresent()) {
+                result.add(diagnostic.function.get());
+            }
+        }
+        return result;
+    }
+
+    // throws a single exception listing every recorded error, if there were any
+    public void throwIfErrors() throws TypeErrorException {
+        if (hasErrors()) {
+            throw new TypeErrorException(toString());
+        }
+    }
+
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(diagnostics.size());
+        builder.append(diagnostics.size() == 1 ? " type error" : " type errors");
+        for (final Diagnostic diagnostic : diagnostics) {
+            builder.append("\n");
+            builder.append(diagnostic.toString());
+        }
+        return builder.toString();
+    }
+} // Diagnostics
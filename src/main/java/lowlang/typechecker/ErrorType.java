@@ -0,0 +1,35 @@
+package lowlang.typechecker;
+
+import lowlang.parser.Type;
+import lowlang.parser.PointerType;
+import lowlang.parser.FunctionPointerType;
+
+// Stands in for the type of something which already failed to typecheck.
+// Only produced when collecting errors; anything involving an ErrorType is
+// accepted without complaint, so a single mistake doesn't cascade into a
+// pile of follow-on errors.
+public class ErrorType implements Type {
+    public int hashCode() { return 3; }
+    public boolean equals(final Object other) {
+        return other instanceof ErrorType;
+    }
+    public String toString() { return "<error>"; }
+
+    public static boolean containedIn(final Type type) {
+        if (type instanceof ErrorType) {
+            return true;
+        } else if (type instanceof PointerType) {
+            return containedIn(((PointerType)type).pointsTo);
+        } else if (type instanceof FunctionPointerType) {
+            final FunctionPointerType asFunc = (FunctionPointerType)type;
+            for (final Type paramType : asFunc.paramTypes) {
+                if (containedIn(paramType)) {
+                    return true;
+                }
+            }
+            return containedIn(asFunc.returnType);
+        } else {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package lowlang.typechecker;
+
+import lowlang.parser.*;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+
+// Dense integer ids for every function, structure, and field in a program.
+// Functions and structures are numbered in declaration order, and fields by
+// their position in the structure.  Names are only hashed once, when a
+// reference is resolved; after that, everything is looked up by index.
+//
+// The typechecker stamps these ids onto the AST as part of resolution, so
+// later phases need to use the same table (or one rebuilt from the same
+// program with fromProgram).
+public class SymbolTable {
+    public static final int NOT_FOUND = -1;
+
+    private final Map<FunctionName, Integer> functionIds;
+    private final List<FunctionName> functionNames;
+    private final List<List<Type>> parameterTypes;
+    private final List<Type> returnTypes;
+
+    private final Map<StructureName, Integer> structureIds;
+    private final List<StructureName> structureNames;
+    private final List<List<FieldName>> fieldNames;
+    private final List<List<Type>> fieldTypes;
+    private final List<Map<FieldName, Integer>> fieldIds;
+
+    public SymbolTable() {
+        functionIds = new HashMap<FunctionName, Integer>();
+        functionNames = new ArrayList<FunctionName>();
+        parameterTypes = new ArrayList<List<Type>>();
+        returnTypes = new ArrayList<Type>();
+        structureIds = new HashMap<StructureName, Integer>();
+        structureNames = new ArrayList<StructureName>();
+        fieldNames = new ArrayList<List<FieldName>>();
+        fieldTypes = new ArrayList<List<Type>>();
+        fieldIds = new ArrayList<Map<FieldName, Integer>>();
+    }
+
+    // Gives the same ids as the typechecker did.  Assumes the program has
+    // undergone typechecking.
+    public static SymbolTable fromProgram(final Program program) {
+        final SymbolTable result = new SymbolTable();
+        for (final StructureDeclaration dec : program.structDecs) {
+            if (result.structureId(dec.name) == NOT_FOUND) {
+                final int structureId = result.addStructure(dec.name);
+                for (final VariableDeclaration field : dec.fields) {
+                    result.addField(structureId,
+                                    new FieldName(field.variable.name),
+                                    field.type);
+                }
+            }
+        }
+        for (final FunctionDefinition def : program.functionDefs) {
+            if (result.functionId(def.name) == NOT_FOUND) {
+                final List<Type> parameters = new ArrayList<Type>();
+                for (final VariableDeclaration param : def.parameters) {
+                    parameters.add(param.type);
+                }
+                result.addFunction(def.name, parameters, def.returnType);
+            }
+        }
+        return result;
+    }
+
+    // ---BEGIN FUNCTIONS---
+    // returns the new function's id
+    public int addFunction(final FunctionName name,
+                           final List<Type> parameters,
+                           final Type returnType) {
+        assert(!functionIds.containsKey(name));
+        final int id = functionNames.size();
+        functionIds.put(name, Integer.valueOf(id));
+        functionNames.add(name);
+        parameterTypes.add(parameters);
+        returnTypes.add(returnType);
+        return id;
+    }
+
+    public int functionId(final FunctionName name) {
+        final Integer id = functionIds.get(name);
+        return (id == null) ? NOT_FOUND : id.intValue();
+    }
+
+    public int numFunctions() {
+        return functionNames.size();
+    }
+
+    public FunctionName functionName(final int functionId) {
+        return functionNames.get(functionId);
+    }
+
+    public List<Type> parameterTypes(final int functionId) {
+        return parameterTypes.get(functionId);
+    }
+
+    public Type returnType(final int functionId) {
+        return returnTypes.get(functionId);
+    }
+    // ---END FUNCTIONS---
+
+    // ---BEGIN STRUCTURES---
+    // returns the new structure's id
+    public int addStructure(final StructureName name) {
+        assert(!structureIds.containsKey(name));
+        final int id = structureNames.size();
+        structureIds.put(name, Integer.valueOf(id));
+        structureNames.add(name);
+        fieldNames.add(new ArrayList<FieldName>());
+        fieldTypes.add(new ArrayList<Type>());
+        fieldIds.add(new HashMap<FieldName, Integer>());
+        return id;
+    }
+
+    // Returns the new field's id.  If the structure already has a field with
+    // this name, the earlier one keeps the name.
+    public int addField(final int structureId,
+                        final FieldName name,
+                        final Type type) {
+        final List<FieldName> names = fieldNames.get(structureId);
+        final int id = names.size();
+        names.add(name);
+        fieldTypes.get(structureId).add(type);
+        final Map<FieldName, Integer> ids = fieldIds.get(structureId);
+        if (!ids.containsKey(name)) {
+            ids.put(name, Integer.valueOf(id));
+        }
+        return id;
+    }
+
+    public void setFieldType(final int structureId,
+                             final int fieldId,
+                             final Type type) {
+        fieldTypes.get(structureId).set(fieldId, type);
+    }
+
+    public int structureId(final StructureName name) {
+        final Integer id = structureIds.get(name);
+        return (id == null) ? NOT_FOUND : id.intValue();
+    }
+
+    public int numStructures() {
+        return structureNames.size();
+    }
+
+    public StructureName structureName(final int structureId) {
+        return structureNames.get(structureId);
+    }
+
+    public int numFields(final int structureId) {
+        return fieldNames.get(structureId).size();
+    }
+
+    // true if every field has a different name
+    public boolean fieldNamesDistinct(final int structureId) {
+        return fieldIds.get(structureId).size() == numFields(structureId);
+    }
+
+    public int fieldId(final int structureId,
+                       final FieldName name) {
+        final Integer id = fieldIds.get(structureId).get(name);
+        return (id == null) ? NOT_FOUND : id.intValue();
+    }
+
+    public FieldName fieldName(final int structureId,
+                               final int fieldId) {
+        return fieldNames.get(structureId).get(fieldId);
+    }
+
+    public Type fieldType(final int structureId,
+                          final int fieldId) {
+        return fieldTypes.get(structureId).get(fieldId);
+    }
+
+    // in declaration order
+    public List<Type> fieldTypes(final int structureId) {
+        return Collections.unmodifiableList(fieldTypes.get(structureId));
+    }
+    // ---END STRUCTURES---
+} // SymbolTable
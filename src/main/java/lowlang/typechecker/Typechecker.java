@@ -2,42 +2,90 @@ package lowlang.typechecker;
 
 import lowlang.tokenizer.Pair;
 import lowlang.parser.*;
+import lowlang.events.TypecheckEvent;
+import lowlang.events.FunctionTypecheckEvent;
 
 import java.util.Map;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.Set;
-import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Optional;
 import java.util.Iterator;
 
 public class Typechecker {
-    // maps the name of the structure to its fields, and each of those
-    // fields to its type
-    private final Map<StructureName, LinkedHashMap<FieldName, Type>> structDecs;
+    // Structures with the types of their fields, along with functions with
+    // their parameter and return types.  Filled in by the first part of
+    // typechecking, which gives everything an id.  Resolved references
+    // carry these ids, so later phases can use them.
+    private final SymbolTable symbols;
 
-    // maps each function name to its parameter types and return type
-    private final Map<FunctionName, Pair<List<Type>, Type>> functionDefs;
+    // Present if errors should be collected instead of thrown.  In this mode,
+    // checking continues after an error, using ErrorType for anything whose
+    // type couldn't be determined.
+    private final Optional<Diagnostics> diagnostics;
+
+    // function currently being checked, for attributing collected errors
+    private Optional<FunctionName> currentFunction;
+
+    private Typechecker(final Program program,
+                        final Optional<Diagnostics> diagnostics) throws TypeErrorException {
+        this.diagnostics = diagnostics;
+        currentFunction = Optional.empty();
+
+        final TypecheckEvent event = new TypecheckEvent();
+        event.begin();
 
-    private Typechecker(final Program program) throws TypeErrorException {
         // have to load these before checking structure or function validity
-        structDecs = makeStructMapping(program.structDecs);
+        symbols = new SymbolTable();
+        addStructures(program.structDecs);
         ensureStructureFieldsValid();
 
-        functionDefs = makeFunctionMapping(program.functionDefs);
+        addFunctions(program.functionDefs);
 
+        // errors in one function never stop the others from being checked
         for (final FunctionDefinition def : program.functionDefs) {
-            typecheckFunctionDef(def);
+            currentFunction = Optional.of(def.name);
+            final FunctionTypecheckEvent functionEvent = new FunctionTypecheckEvent();
+            functionEvent.begin();
+            try {
+                typecheckFunctionDef(def);
+            } catch (final TypeErrorException e) {
+                report(e);
+            } finally {
+                functionEvent.end();
+                if (functionEvent.shouldCommit()) {
+                    functionEvent.finish(def.name.name, NodeCounter.countNodes(def));
+                }
+            }
+        }
+        currentFunction = Optional.empty();
+        event.end();
+        if (event.shouldCommit()) {
+            event.finish(program.functionDefs.size(), NodeCounter.countNodes(program));
+        }
+    }
+
+    // Normally just rethrows the error.  When collecting errors, the error is
+    // recorded instead, and the caller carries on with a best-effort result.
+    private void report(final TypeErrorException error) throws TypeErrorException {
+        if (diagnostics.isPresent()) {
+            diagnostics.get().record(currentFunction, error);
+        } else {
+            throw error;
         }
     }
 
     // makes sure that structure fields don't refer to non-existent structures
     private void ensureStructureFieldsValid() throws TypeErrorException {
-        for (final LinkedHashMap<FieldName, Type> fields : structDecs.values()) {
-            for (final Type type : fields.values()) {
-                ensureValidType(type);
+        for (int structureId = 0; structureId < symbols.numStructures(); structureId++) {
+            for (int fieldId = 0; fieldId < symbols.numFields(structureId); fieldId++) {
+                try {
+                    ensureValidType(symbols.fieldType(structureId, fieldId));
+                } catch (final TypeErrorException e) {
+                    report(e);
+                    symbols.setFieldType(structureId, fieldId, new ErrorType());
+                }
             }
         }
     }
@@ -46,32 +94,29 @@ public class Typechecker {
     public static Type expTypeForTesting(final Exp exp) throws TypeErrorException {
         final Typechecker checker =
             new Typechecker(new Program(new ArrayList<StructureDeclaration>(),
-                                        new ArrayList<FunctionDefinition>()));
+                                        new ArrayList<FunctionDefinition>()),
+                            Optional.empty());
         return checker.expTypeNoScopeForTesting(exp);
     }
         
     // not permitted to have multiple functions with the same name
     // not permitted to have a function with the same name as a struct
-    private Map<FunctionName, Pair<List<Type>, Type>>
-        makeFunctionMapping(final List<FunctionDefinition> functions) throws TypeErrorException {
-
-        final Map<FunctionName, Pair<List<Type>, Type>> result =
-            new HashMap<FunctionName, Pair<List<Type>, Type>>();
-
+    private void addFunctions(final List<FunctionDefinition> functions) throws TypeErrorException {
         for (final FunctionDefinition def : functions) {
-            if (result.containsKey(def.name)) {
-                throw new TypeErrorException("Duplicate function name: " + def.name.toString());
+            currentFunction = Optional.of(def.name);
+            if (symbols.functionId(def.name) != SymbolTable.NOT_FOUND) {
+                // when collecting errors, the first definition wins
+                report(new TypeErrorException("Duplicate function name: " + def.name.toString()));
+                continue;
             }
-            if (structDecs.containsKey(new StructureName(def.name.name))) {
-                throw new TypeErrorException("Function name with same name as structure: " + def.name.toString());
+            if (symbols.structureId(new StructureName(def.name.name)) != SymbolTable.NOT_FOUND) {
+                report(new TypeErrorException("Function name with same name as structure: " + def.name.toString()));
             }
-            final List<Type> parameters = parameterTypes(def.parameters);
-            final Pair<List<Type>, Type> value =
-                new Pair<List<Type>, Type>(parameters, def.returnType);
-            result.put(def.name, value);
+            symbols.addFunction(def.name,
+                                parameterTypes(def.parameters),
+                                def.returnType);
         }
-
-        return result;
+        currentFunction = Optional.empty();
     }
 
     // throws exception if any are void
@@ -79,9 +124,7 @@ public class Typechecker {
         final List<Type> result = new ArrayList<Type>();
 
         for (final VariableDeclaration vardec : vars) {
-            ensureValidType(vardec.type);
-            ensureNonVoidType(vardec.type);
-            result.add(vardec.type);
+            result.add(validNonVoidTypeOrError(vardec.type));
         }
 
         return result;
@@ -91,7 +134,7 @@ public class Typechecker {
     private void ensureValidType(final Type type) throws TypeErrorException {
         if (type instanceof StructureType) {
             final StructureName name = ((StructureType)type).name;
-            if (!structDecs.containsKey(name)) {
+            if (symbols.structureId(name) == SymbolTable.NOT_FOUND) {
                 throw new TypeErrorException("Non-existent structure referenced: " +
                                              name.toString());
             }
@@ -103,44 +146,50 @@ public class Typechecker {
             throw new TypeErrorException("Void type illegal here");
         }
     }
+
+    // reports if the type is invalid or void; when collecting errors, such a
+    // type is replaced with ErrorType
+    private Type validNonVoidTypeOrError(final Type type) throws TypeErrorException {
+        try {
+            ensureValidType(type);
+            ensureNonVoidType(type);
+            return type;
+        } catch (final TypeErrorException e) {
+            report(e);
+            return new ErrorType();
+        }
+    }
     
     // not permitted to have multiple structure declarations with the same name
-    private static Map<StructureName, LinkedHashMap<FieldName, Type>>
-        makeStructMapping(final List<StructureDeclaration> structDecs) throws TypeErrorException {
-
-        final Map<StructureName, LinkedHashMap<FieldName, Type>> result =
-            new HashMap<StructureName, LinkedHashMap<FieldName, Type>>();
-
+    private void addStructures(final List<StructureDeclaration> structDecs) throws TypeErrorException {
         for (final StructureDeclaration dec : structDecs) {
-            if (result.containsKey(dec.name)) {
-                throw new TypeErrorException("Duplicate structure name: " + dec.name.toString());
+            if (symbols.structureId(dec.name) != SymbolTable.NOT_FOUND) {
+                // when collecting errors, the first declaration wins
+                report(new TypeErrorException("Duplicate structure name: " + dec.name.toString()));
+            } else {
+                addFields(symbols.addStructure(dec.name), dec.fields);
             }
-            final LinkedHashMap<FieldName, Type> fieldMapping =
-                makeFieldMapping(dec.fields);
-            result.put(dec.name, fieldMapping);
         }
-
-        return result;
     }
 
     // not permitted to have repeated field names in the same structure
     // fields cannot have void types
-    private static LinkedHashMap<FieldName, Type>
-        makeFieldMapping(final List<VariableDeclaration> fields) throws TypeErrorException {
-        
-        final LinkedHashMap<FieldName, Type> result =
-            new LinkedHashMap<FieldName, Type>();
-
+    private void addFields(final int structureId,
+                           final List<VariableDeclaration> fields) throws TypeErrorException {
         for (final VariableDeclaration dec : fields) {
-            ensureNonVoidType(dec.type);
-            result.put(new FieldName(dec.variable.name), dec.type);
+            Type fieldType = dec.type;
+            try {
+                ensureNonVoidType(fieldType);
+            } catch (final TypeErrorException e) {
+                report(e);
+                fieldType = new ErrorType();
+            }
+            symbols.addField(structureId, new FieldName(dec.variable.name), fieldType);
         }
 
-        if (result.size() != fields.size()) {
-            throw new TypeErrorException("Duplicate field name");
+        if (!symbols.fieldNamesDistinct(structureId)) {
+            report(new TypeErrorException("Duplicate field name"));
         }
-
-        return result;
     }
     
     private void typecheckFunctionDef(final FunctionDefinition fdef) throws TypeErrorException {
@@ -156,7 +205,7 @@ public class Typechecker {
     }
 
     // error if duplicate variable names are used
-    private static Map<Variable, Type> initialVariableMapping(final List<VariableDeclaration> parameters) throws TypeErrorException {
+    private Map<Variable, Type> initialVariableMapping(final List<VariableDeclaration> parameters) throws TypeErrorException {
         final Map<Variable, Type> result = new HashMap<Variable, Type>();
 
         for (final VariableDeclaration dec : parameters) {
@@ -164,7 +213,7 @@ public class Typechecker {
         }
 
         if (result.size() != parameters.size()) {
-            throw new TypeErrorException("Duplicate variable name in function parameters");
+            report(new TypeErrorException("Duplicate variable name in function parameters"));
         }
 
         return result;
@@ -182,15 +231,28 @@ public class Typechecker {
         }
     }
     
+    // anything involving an ErrorType already had its error reported
     private static void ensureTypesSame(final Type expected, final Type received) throws TypeErrorException {
-        if (!expected.equals(received)) {
+        if (!expected.equals(received) &&
+            !ErrorType.containedIn(expected) &&
+            !ErrorType.containedIn(received)) {
             throw new TypeErrorException(expected, received);
         }
     }
 
     private static Type binopType(final Type left, final Op op, final Type right) throws TypeErrorException {
         final IntType intType = new IntType();
-        if (op instanceof PlusOp) {
+        if (left instanceof ErrorType || right instanceof ErrorType) {
+            // Only happens when collecting errors.  Give back whatever the
+            // operator would normally produce, without further complaint.
+            if (op instanceof EqualsOp || op instanceof LessThanOp) {
+                return new BoolType();
+            } else if (op instanceof PlusOp) {
+                return left;
+            } else {
+                return intType;
+            }
+        } else if (op instanceof PlusOp) {
             // TWO kinds are permitted:
             // int + int: returns int
             // pointer + int: returns same pointer type
@@ -264,28 +326,60 @@ public class Typechecker {
             return new InScope(returnType, inScope, true);
         }
         
-        private Type typeofAccess(final Type maybeStructureType,
-                                  final FieldName field) throws TypeErrorException {
-            if (maybeStructureType instanceof StructureType) {
+        // Gives back the id of the structure the type refers to, or
+        // NOT_FOUND if the type is already an error.
+        private int structureIdOf(final Type maybeStructureType) throws TypeErrorException {
+            if (maybeStructureType instanceof ErrorType) {
+                return SymbolTable.NOT_FOUND;
+            } else if (maybeStructureType instanceof StructureType) {
                 final StructureName name = ((StructureType)maybeStructureType).name;
-                final LinkedHashMap<FieldName, Type> expected = structDecs.get(name);
-                if (expected != null) {
-                    final Type fieldType = expected.get(field);
-                    if (fieldType != null) {
-                        return fieldType;
-                    } else {
-                        throw new TypeErrorException("Structure " + name.toString() +
-                                                     " does not have field " + field.toString());
-                    }
-                } else {
+                final int structureId = symbols.structureId(name);
+                if (structureId == SymbolTable.NOT_FOUND) {
                     throw new TypeErrorException("No structure with name: " + name.toString());
                 }
+                return structureId;
             } else {
                 throw new TypeErrorException("Expected structure type; received: " +
                                              maybeStructureType.toString());
             }
         }
 
+        private int fieldIdOf(final int structureId,
+                              final FieldName field) throws TypeErrorException {
+            final int fieldId = symbols.fieldId(structureId, field);
+            if (fieldId == SymbolTable.NOT_FOUND) {
+                throw new TypeErrorException("Structure " + symbols.structureName(structureId).toString() +
+                                             " does not have field " + field.toString());
+            }
+            return fieldId;
+        }
+
+        private Type typeofFieldAccessLhs(final FieldAccessLhs lhs) throws TypeErrorException {
+            final Type lhsType = typeofLhs(lhs.lhs);
+            final int structureId = structureIdOf(lhsType);
+            if (structureId == SymbolTable.NOT_FOUND) {
+                return lhsType;
+            }
+            final int fieldId = fieldIdOf(structureId, lhs.field);
+            lhs.lhsStructure = Optional.of(symbols.structureName(structureId));
+            lhs.structureId = structureId;
+            lhs.fieldId = fieldId;
+            return symbols.fieldType(structureId, fieldId);
+        }
+
+        private Type typeofFieldAccessExp(final FieldAccessExp exp) throws TypeErrorException {
+            final Type expType = typeofExp(exp.exp);
+            final int structureId = structureIdOf(expType);
+            if (structureId == SymbolTable.NOT_FOUND) {
+                return expType;
+            }
+            final int fieldId = fieldIdOf(structureId, exp.field);
+            exp.expStructure = Optional.of(symbols.structureName(structureId));
+            exp.structureId = structureId;
+            exp.fieldId = fieldId;
+            return symbols.fieldType(structureId, fieldId);
+        }
+
         private Type typeofDereferenceLhs(final DereferenceLhs lhs) throws TypeErrorException {
             final Type nested = typeofDereference(typeofLhs(lhs.lhs));
             lhs.typeAfterDereference = Optional.of(nested);
@@ -299,7 +393,9 @@ public class Typechecker {
         }
         
         private Type typeofDereference(final Type maybePointerType) throws TypeErrorException {
-            if (maybePointerType instanceof PointerType) {
+            if (maybePointerType instanceof ErrorType) {
+                return maybePointerType;
+            } else if (maybePointerType instanceof PointerType) {
                 // dereferencing a pointer yields whatever its underlying type is
                 return ((PointerType)maybePointerType).pointsTo;
             } else {
@@ -317,10 +413,11 @@ public class Typechecker {
                     return new Pair<AddressOfResolved, Type>(new DataResolved(), new PointerType(variableType));
                 } else {
                     final FunctionName functionName = new FunctionName(variable.name);
-                    final Pair<List<Type>, Type> signature = functionDefs.get(functionName);
-                    if (signature != null) {
-                        return new Pair<AddressOfResolved, Type>(new FunctionResolved(functionName),
-                                                                 new FunctionPointerType(signature.first, signature.second));
+                    final int functionId = symbols.functionId(functionName);
+                    if (functionId != SymbolTable.NOT_FOUND) {
+                        return new Pair<AddressOfResolved, Type>(new FunctionResolved(functionName, functionId),
+                                                                 new FunctionPointerType(symbols.parameterTypes(functionId),
+                                                                                         symbols.returnType(functionId)));
                     } else {
                         throw new TypeErrorException("Getting address of non-variable or function: " + variable.toString());
                     }
@@ -330,15 +427,21 @@ public class Typechecker {
             }
         }
         
+        // when collecting errors, an lhs which fails to typecheck has ErrorType
         private Type typeofLhs(final Lhs lhs) throws TypeErrorException {
+            try {
+                return typeofLhsNoRecovery(lhs);
+            } catch (final TypeErrorException e) {
+                report(e);
+                return new ErrorType();
+            }
+        }
+
+        private Type typeofLhsNoRecovery(final Lhs lhs) throws TypeErrorException {
             if (lhs instanceof VariableLhs) {
                 return lookupVariable(((VariableLhs)lhs).variable);
             } else if (lhs instanceof FieldAccessLhs) {
-                final FieldAccessLhs asAccess = (FieldAccessLhs)lhs;
-                final Type lhsType = typeofLhs(asAccess.lhs);
-                final Type retval = typeofAccess(lhsType, asAccess.field);
-                asAccess.lhsStructure = Optional.of(((StructureType)lhsType).name);
-                return retval;
+                return typeofFieldAccessLhs((FieldAccessLhs)lhs);
             } else if (lhs instanceof DereferenceLhs) {
                 return typeofDereferenceLhs((DereferenceLhs)lhs);
             } else {
@@ -368,7 +471,9 @@ public class Typechecker {
         public Type asIndirectFunctionCall(final CallLikeExp exp,
                                            final List<Type> paramTypes) throws TypeErrorException {
             final Type baseType = typeofExp(exp.base);
-            if (baseType instanceof FunctionPointerType) {
+            if (baseType instanceof ErrorType) {
+                return baseType;
+            } else if (baseType instanceof FunctionPointerType) {
                 final FunctionPointerType fp = (FunctionPointerType)baseType;
                 ensureTypesSame(fp.paramTypes.iterator(),
                                 paramTypes.iterator());
@@ -399,20 +504,20 @@ public class Typechecker {
                 } else {
                     // See if it's a function
                     final FunctionName functionName = new FunctionName(variable.name);
-                    final Pair<List<Type>, Type> functionSignature = functionDefs.get(functionName);
-                    if (functionSignature != null) {
-                        ensureTypesSame(functionSignature.first.iterator(),
+                    final int functionId = symbols.functionId(functionName);
+                    if (functionId != SymbolTable.NOT_FOUND) {
+                        ensureTypesSame(symbols.parameterTypes(functionId).iterator(),
                                         paramTypes.iterator());
-                        exp.resolution = Optional.of(new DirectCallResolved(functionName));
-                        return functionSignature.second;
+                        exp.resolution = Optional.of(new DirectCallResolved(functionName, functionId));
+                        return symbols.returnType(functionId);
                     } else {
                         // See if it's a structure.
                         final StructureName structureName = new StructureName(variable.name);
-                        final LinkedHashMap<FieldName, Type> structSignature = structDecs.get(structureName);
-                        if (structSignature != null) {
-                            ensureTypesSame(structSignature.values().iterator(),
+                        final int structureId = symbols.structureId(structureName);
+                        if (structureId != SymbolTable.NOT_FOUND) {
+                            ensureTypesSame(symbols.fieldTypes(structureId).iterator(),
                                             paramTypes.iterator());
-                            exp.resolution = Optional.of(new MakeStructureResolved(structureName));
+                            exp.resolution = Optional.of(new MakeStructureResolved(structureName, structureId));
                             return new StructureType(structureName);
                         } else {
                             throw new TypeErrorException("No such variable, function, or structure name: " + variable.toString());
@@ -424,7 +529,17 @@ public class Typechecker {
             }
         } // callLikeExpType
         
+        // when collecting errors, an expression which fails to typecheck has ErrorType
         public Type typeofExp(final Exp exp) throws TypeErrorException {
+            try {
+                return typeofExpNoRecovery(exp);
+            } catch (final TypeErrorException e) {
+                report(e);
+                return new ErrorType();
+            }
+        }
+
+        private Type typeofExpNoRecovery(final Exp exp) throws TypeErrorException {
             if (exp instanceof IntegerLiteralExp) {
                 return new IntType();
             } else if (exp instanceof BooleanLiteralExp) {
@@ -467,31 +582,49 @@ public class Typechecker {
             } else if (exp instanceof DereferenceExp) {
                 return typeofDereferenceExp((DereferenceExp)exp);
             } else if (exp instanceof FieldAccessExp) {
-                final FieldAccessExp asAccess = (FieldAccessExp)exp;
-                final Type expType = typeofExp(asAccess.exp);
-                final Type retval = typeofAccess(expType, asAccess.field);
-                asAccess.expStructure = Optional.of(((StructureType)expType).name);
-                return retval;
+                return typeofFieldAccessExp((FieldAccessExp)exp);
             } else {
                 assert false : "Unknown exp: " + exp.toString();
                 throw new TypeErrorException("Unrecognized expression: " + exp.toString());
             }
-        } // typeofExp
+        } // typeofExpNoRecovery
 
         // threads the same scope along
+        // When collecting errors, a statement which fails to typecheck is
+        // skipped, though any variable it declares is still put in scope.
         public Pair<InScope, Boolean> typecheckStmts(final List<Stmt> stmts) throws TypeErrorException {
             InScope curScope = this;
             boolean returned = false;
+            boolean reportedDeadCode = false;
             for (final Stmt stmt : stmts) {
-                if (returned) {
-                    throw new TypeErrorException("Dead code from early return");
+                if (returned && !reportedDeadCode) {
+                    report(new TypeErrorException("Dead code from early return"));
+                    reportedDeadCode = true;
+                }
+                try {
+                    final Pair<InScope, Boolean> current = curScope.typecheckStmt(stmt);
+                    returned = returned || current.second.booleanValue();
+                    curScope = current.first;
+                } catch (final TypeErrorException e) {
+                    report(e);
+                    curScope = curScope.recoverFrom(stmt);
                 }
-                final Pair<InScope, Boolean> current = curScope.typecheckStmt(stmt);
-                returned = current.second.booleanValue();
-                curScope = current.first;
             }
             return new Pair<InScope, Boolean>(curScope, Boolean.valueOf(returned));
         }
+
+        // scope to continue with after stmt failed to typecheck
+        private InScope recoverFrom(final Stmt stmt) {
+            if (stmt instanceof VariableDeclarationInitializationStmt) {
+                final VariableDeclaration varDec =
+                    ((VariableDeclarationInitializationStmt)stmt).varDec;
+                final Type declaredType =
+                    (isValidNonVoidType(varDec.type)) ? varDec.type : new ErrorType();
+                return addVariable(varDec.variable, declaredType);
+            } else {
+                return this;
+            }
+        }
         
         // returns any new scope to use, along with whether or not return was observed on
         // all paths
@@ -545,10 +678,16 @@ public class Typechecker {
                 return new Pair<InScope, Boolean>(this, Boolean.valueOf(false));
             } else if (stmt instanceof ReturnStmt) {
                 final Optional<Exp> exp = ((ReturnStmt)stmt).exp;
-                if (exp.isPresent()) {
-                    ensureTypesSame(returnType, typeofExp(exp.get()));
-                } else {
-                    ensureTypesSame(new VoidType(), returnType);
+                // even a mistyped return still returns, so no missing return
+                // should be reported after it
+                try {
+                    if (exp.isPresent()) {
+                        ensureTypesSame(returnType, typeofExp(exp.get()));
+                    } else {
+                        ensureTypesSame(new VoidType(), returnType);
+                    }
+                } catch (final TypeErrorException e) {
+                    report(e);
                 }
                 return new Pair<InScope, Boolean>(this, Boolean.valueOf(true));
             } else if (stmt instanceof BlockStmt) {
@@ -563,7 +702,8 @@ public class Typechecker {
                 final PrintStmt asPrint = (PrintStmt)stmt;
                 final Type expType = typeofExp(asPrint.exp);
                 if (!(expType instanceof IntType ||
-                      expType instanceof BoolType)) {
+                      expType instanceof BoolType ||
+                      expType instanceof ErrorType)) {
                     throw new TypeErrorException("Attempt to print something that's not an integer or boolean: " +
                                                  expType.toString());
                 }
@@ -576,16 +716,57 @@ public class Typechecker {
         } // typecheckStmt
     } // InScope
 
+    private boolean isValidNonVoidType(final Type type) {
+        try {
+            ensureValidType(type);
+            ensureNonVoidType(type);
+            return true;
+        } catch (final TypeErrorException e) {
+            return false;
+        }
+    }
+
     // skips check for main
     public static void typecheckProgramForTesting(final Program program) throws TypeErrorException {
-        new Typechecker(program);
+        new Typechecker(program, Optional.empty());
     }
 
-    public static void typecheckProgramExternalEntry(final Program program) throws TypeErrorException {
-        final Typechecker typechecker = new Typechecker(program);
-        if (!typechecker.functionDefs.containsKey(new FunctionName("main"))) {
+    // skips check for main
+    public static void typecheckProgramForTesting(final Program program,
+                                                  final Diagnostics diagnostics) {
+        typecheckProgram(program, diagnostics, false);
+    }
+
+    // The returned table has the ids used in the program's resolutions.
+    public static SymbolTable typecheckProgramExternalEntry(final Program program) throws TypeErrorException {
+        final Typechecker typechecker = new Typechecker(program, Optional.empty());
+        if (typechecker.symbols.functionId(new FunctionName("main")) == SymbolTable.NOT_FOUND) {
             throw new TypeErrorException("Missing void main() definition");
         }
+        return typechecker.symbols;
+    }
+
+    // Records every error into diagnostics rather than stopping at the first.
+    // Every function is checked, even if earlier ones have errors.
+    public static void typecheckProgramExternalEntry(final Program program,
+                                                     final Diagnostics diagnostics) {
+        typecheckProgram(program, diagnostics, true);
+    }
+
+    private static void typecheckProgram(final Program program,
+                                         final Diagnostics diagnostics,
+                                         final boolean needsMain) {
+        try {
+            final Typechecker typechecker = new Typechecker(program, Optional.of(diagnostics));
+            if (needsMain &&
+                typechecker.symbols.functionId(new FunctionName("main")) == SymbolTable.NOT_FOUND) {
+                diagnostics.record(Optional.empty(),
+                                   new TypeErrorException("Missing void main() definition"));
+            }
+        } catch (final TypeErrorException e) {
+            // shouldn't happen, as errors are recorded instead of thrown
+            diagnostics.record(Optional.empty(), e);
+        }
     }
 }
 
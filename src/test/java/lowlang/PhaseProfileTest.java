@@ -0,0 +1,54 @@
+package lowlang;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import org.junit.Test;
+
+public class PhaseProfileTest {
+    @Test
+    public void testDisabledRecordsNothing() {
+        final PhaseProfile profile = new PhaseProfile(false);
+        profile.start("tokenize");
+        profile.stop();
+        profile.setCount("tokens", 3);
+        assertEquals(0, profile.getPhases().size());
+    }
+
+    @Test
+    public void testCompileRecordsEveryPhase() throws Exception {
+        final File input = File.createTempFile("test", ".ll");
+        final File output = File.createTempFile("test", ".asm");
+        final File json = File.createTempFile("test", ".json");
+        try {
+            final FileWriter writer = new FileWriter(input);
+            try {
+                writer.write("int foo(int x) { return x + 1; } void main() { print(foo(1)); }");
+            } finally {
+                writer.close();
+            }
+
+            final CompilerOptions options = new CompilerOptions();
+            assertTrue(options.setFlag("-profile-json=" + json.getPath()));
+            assertTrue(options.isProfiling());
+            assertFalse(options.printProfile);
+            Compiler.compile(input.getPath(), output.getPath(), options);
+
+            final String contents = Compiler.fileContentsAsString(json.getPath());
+            for (final String name : Arrays.asList("tokenize", "parse", "typecheck",
+                                                   "optimize", "codegen", "write")) {
+                assertTrue(name, contents.contains("\"name\": \"" + name + "\""));
+            }
+            assertTrue(contents.contains("\"countUnit\": \"instructions\""));
+            assertTrue(contents.contains("\"count\": 11, \"countUnit\": \"nodes\""));
+        } finally {
+            input.delete();
+            output.delete();
+            json.delete();
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package lowlang.codegen;
 
+import lowlang.Compiler;
+import lowlang.CompilerOptions;
+import lowlang.PhaseProfile;
 import lowlang.tokenizer.Tokenizer;
 import lowlang.tokenizer.TokenizerException;
 import lowlang.parser.Parser;
@@ -8,11 +11,17 @@ import lowlang.parser.ParseException;
 import lowlang.parser.Program;
 import lowlang.typechecker.Typechecker;
 import lowlang.typechecker.TypeErrorException;
+import lowlang.typechecker.SymbolTable;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.Arrays;
+import java.util.Collections;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 import org.junit.Rule;
 import org.junit.rules.TestName;
@@ -28,18 +37,95 @@ public class CodegenTest {
         return retval;
     } // parseOutput
 
+    // copied whole, unless copied by a loop or passed by reference
+    public static final String BIG_STRUCTURE =
+        "struct Big { int a; int b; int c; int d; int e; int f; int g; int h; int i; int j; };" +
+        "Big id(Big b) { return b; }" +
+        "void main() { Big b = Big(1, 2, 3, 4, 5, 6, 7, 8, 9, 10); print(id(b).j); }";
+
+    // everything Compiler.codegen writes for the program; assumes the
+    // program has undergone typechecking
+    public static List<MIPSEntry> entries(final Program program,
+                                          final CodegenOptions options) {
+        return Compiler.generate(program,
+                                 SymbolTable.fromProgram(program),
+                                 new CompilerOptions(options),
+                                 new PhaseProfile(false));
+    }
+
+    public static List<MIPSEntry> entries(final String input,
+                                          final CodegenOptions options) throws TokenizerException, ParseException, TypeErrorException {
+        final Program program = Parser.parse(Tokenizer.tokenize(input));
+        Typechecker.typecheckProgramExternalEntry(program);
+        return entries(program, options);
+    }
+
+    public static int numInstructions(final Program program,
+                                      final CodegenOptions options) {
+        return MIPSCodeGenerator.numInstructions(entries(program, options), 0);
+    }
+
+    public static int numInstructions(final String input,
+                                      final CodegenOptions options) throws TokenizerException, ParseException, TypeErrorException {
+        return MIPSCodeGenerator.numInstructions(entries(input, options), 0);
+    }
+
+    // how many of the instructions are of the given class
+    public static int count(final String input,
+                            final CodegenOptions options,
+                            final Class<?> instruction) throws TokenizerException, ParseException, TypeErrorException {
+        int result = 0;
+        for (final MIPSEntry entry : entries(input, options)) {
+            if (instruction.isInstance(entry)) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    public static boolean uses(final String input,
+                               final CodegenOptions options,
+                               final Class<?> instruction) throws TokenizerException, ParseException, TypeErrorException {
+        return count(input, options, instruction) > 0;
+    }
+
+    // the code for input must have expected in it, in order and back to back
+    public static void assertEmits(final String input,
+                                   final CodegenOptions options,
+                                   final MIPSEntry... expected) throws TokenizerException, ParseException, TypeErrorException {
+        final List<MIPSEntry> received = entries(input, options);
+        assertTrue("Expected: " + Arrays.asList(expected) + "; Received: " + received,
+                   Collections.indexOfSubList(received, Arrays.asList(expected)) >= 0);
+    }
+
+    // subclasses rerun every test with other code generation strategies
+    protected CodegenOptions codegenOptions() {
+        return new CodegenOptions();
+    }
+
+    // subclasses can rewrite the typechecked program first; the result
+    // must be typechecked too
+    protected Program prepareProgram(final Program program) throws TypeErrorException {
+        return program;
+    }
+
     public void assertResult(final String programAsString,
                              final int... expected) throws TokenizerException, ParseException, TypeErrorException, IOException {
         boolean wantToSaveFile = true; // for debugging
 
-        final Program program = Parser.parse(Tokenizer.tokenize(programAsString));
-        Typechecker.typecheckProgramExternalEntry(program);
+        final Program parsed = Parser.parse(Tokenizer.tokenize(programAsString));
+        Typechecker.typecheckProgramExternalEntry(parsed);
+        final Program program = prepareProgram(parsed);
         final File file = File.createTempFile(name.getMethodName(),
                                               ".asm",
                                               new File("testPrograms"));
         boolean testPassed = false;
         try {
-            MIPSCodeGenerator.compile(program, file);
+            Compiler.codegen(program,
+                             SymbolTable.fromProgram(program),
+                             new CompilerOptions(codegenOptions()),
+                             new PhaseProfile(false),
+                             file);
             final String[] output = SPIMRunner.runFile(file);
             final int[] received = parseOutput(output);
             if (wantToSaveFile) {
@@ -144,6 +230,51 @@ public class CodegenTest {
         // TODO: this is very bad; assumes initial value of allocated memory
         assertExpResult("*((int*)malloc(4))", 0);
     }
+
+    @Test
+    public void testMultiplyAndDivideByConstants() throws Exception {
+        assertResult("void show(int x) {" +
+                     "  print(x * 0); print(x * 1); print(3 * x); print(x * 6); print(x * 7);" +
+                     "  print(x * 10); print(x * sizeof(int)); print(x * (0 - 8));" +
+                     "  print(x / 1); print(x / 2); print(x / 8); print(x / sizeof(int));" +
+                     "  print(x / (0 - 16)); print(x / 3);" +
+                     "}" +
+                     "void main() { show(7); show(0 - 100); }",
+                     0, 7, 21, 42, 49, 70, 28, -56, 7, 3, 0, 1, 0, 2,
+                     0, -100, -300, -600, -700, -1000, -400, 800, -100, -50, -12, -25, 6, -33);
+    }
+
+    @Test
+    public void testSmallAndLargeConstants() throws Exception {
+        assertResult("void main() {" +
+                     "  int x = 10;" +
+                     "  print(x + 32767); print(x + 32768); print(x - 32768); print(x - 32769);" +
+                     "  print(5 + x); print(5 - x);" +
+                     "  print(x < 32767); print(x < 40000); print(5 < x); print(x < 5);" +
+                     "  int i = 0; while (i < 3) { i = i + 1; } print(i);" +
+                     "}",
+                     32777, 32778, -32758, -32759, 15, -5, 1, 1, 1, 0, 3);
+    }
+
+    public static final String NESTED_STRUCTURES =
+        "struct Inner { int a; int b; };" +
+        "struct Outer { int x; Inner inner; int y; };" +
+        "struct One { int only; };";
+
+    @Test
+    public void testFieldsInMemory() throws Exception {
+        assertResult(NESTED_STRUCTURES +
+                     "int only(One o) { return o.only; }" +
+                     "Inner innerOf(Outer* p) { return (*p).inner; }" +
+                     "void main() {" +
+                     "  Outer o = Outer(1, Inner(2, 3), 4);" +
+                     "  Outer* p = &o;" +
+                     "  print(o.inner.b); print(o.y); print((*p).inner.a); print((*p).y);" +
+                     "  Inner i = o.inner; print(i.a + i.b);" +
+                     "  print(innerOf(p).b); print(only(One(5)));" +
+                     "}",
+                     3, 4, 2, 4, 5, 3, 5);
+    }
     // ---END TESTS FOR EXPRESSIONS---
 
     // ---BEGIN TESTS FOR STATEMENTS---
@@ -641,6 +772,70 @@ public class CodegenTest {
                      5,
                      25);
     }
+
+    @Test
+    public void testComparisonGuards() throws Exception {
+        assertResult("void main() {" +
+                     "  int x = 0 - 3;" +
+                     "  while (x < 2) {" +
+                     "    if (x == 0) { print(100); } else { print(x); }" +
+                     "    x = x + 1;" +
+                     "  }" +
+                     "  if (2 < x) { print(1); }" +
+                     "  if (false) { print(2); }" +
+                     "  if ((x == 2) == true) { print(3); }" +
+                     "}",
+                     -3, -2, -1, 100, 1, 3);
+    }
+
+    @Test
+    public void testGuardWithCalls() throws Exception {
+        assertResult("int f(int x) { print(x); return x; }" +
+                     "void main() {" +
+                     "  if (f(1) < f(2)) { print(3); }" +
+                     "  while (f(5) == f(4)) { print(6); }" +
+                     "}",
+                     1, 2, 3, 5, 4);
+    }
+
+    @Test
+    public void testLocalsInSiblingScopes() throws Exception {
+        assertResult("struct TwoInts { int x; int y; };" +
+                     "TwoInts f(int a) {" +
+                     "  int i = 0;" +
+                     "  while (i < 3) {" +
+                     "    if (i == a) { TwoInts t = TwoInts(i, a); return t; }" +
+                     "    else { int t = i * 10; print(t); }" +
+                     "    int j = i + 1;" +
+                     "    i = j;" +
+                     "    if (j == 2) { int k = 0; continue; }" +
+                     "  }" +
+                     "  return TwoInts(7, 8);" +
+                     "}" +
+                     "void main() { print(f(1).y); print(f(5).x); }",
+                     0, 1, 0, 10, 20, 7);
+    }
+
+    @Test
+    public void testLoopInvariants() throws Exception {
+        assertResult("int countdown(int* p, int* q) { int i = 0; while (i < *p) { *q = *q - 1; i = i + 1; } return i; }" +
+                     "int scaled(int* p, int k) { int i = 0; int s = 0; while (i < *p + sizeof(int) / 4) { s = s + k * 3; i = i + 1; } return s; }" +
+                     "void main() {" +
+                     "  int a = 10; print(countdown(&a, &a)); print(a);" +
+                     "  int b = 4; int c = 7; print(countdown(&b, &c)); print(c);" +
+                     "  print(scaled(&b, 2));" +
+                     "}",
+                     5, 5, 4, 3, 30);
+    }
+
+    // code in a loop which never runs mustn't trap
+    @Test
+    public void testLoopNeverRunsTrappingCode() throws Exception {
+        assertResult("int f(int n, int x, int k) { int i = 0; int r = 0;" +
+                     "  while (i < n) { r = x + x; r = r + x / k; i = i + 1; } return r; }" +
+                     "void main() { print(f(0, 2147483647, 0)); print(f(1, 3, 1)); }",
+                     0, 9);
+    }
     // ---END TESTS FOR STATEMENTS---
 
     // ---BEGIN TESTS FOR FUNCTIONS---
@@ -832,5 +1027,117 @@ public class CodegenTest {
                      3,
                      4);
     }
+
+    @Test
+    public void testDeeplyNestedCalls() throws Exception {
+        // more live values than there are temporary registers
+        assertResult("int f(int x) { int y = x * 2; return y / 2; }" +
+                     "void main() {" +
+                     "  print(f(1) - (f(2) - (f(3) - (f(4) - (f(5) - (f(6) - (f(7) - (f(8) - (f(9) - (f(10) - (f(11) - (f(12)))))))))))));" +
+                     "}",
+                     -6);
+    }
+
+    @Test
+    public void testDeeplyNestedNonCommutative() throws Exception {
+        assertExpResult("1 - (2 - (3 - (4 - (5 - (6 - (7 - (8 - (9 - (10 - (11 - (12)))))))))))", -6);
+    }
+
+    @Test
+    public void testCallBetweenOperands() throws Exception {
+        assertResult("int g(int x) { int a = 5; return a * x + (x - a); }" +
+                     "void main() {" +
+                     "  int y = 3;" +
+                     "  print(y * 10 - g(y) + y);" +
+                     "  print((y + 1) * (g(y + 1) - y));" +
+                     "}",
+                     30 - (15 + (3 - 5)) + 3,
+                     4 * ((5 * 4 + (4 - 5)) - 3));
+    }
+
+    @Test
+    public void testFieldsThroughPointerInExpression() throws Exception {
+        assertResult("struct Inner { int a; int b; };" +
+                     "struct Outer { int c; Inner inner; };" +
+                     "void main() {" +
+                     "  Outer o = Outer(1, Inner(2, 3));" +
+                     "  Outer* p = &o;" +
+                     "  o.inner.b = (*p).inner.a * 10 + o.c;" +
+                     "  print(o.inner.b - (*p).c);" +
+                     "}",
+                     20);
+    }
+
+    @Test
+    public void testMixedArguments() throws Exception {
+        assertResult("struct TwoInts { int x; int y; };" +
+                     "int g(int a) { print(a); return a; }" +
+                     "void f(int a, TwoInts s, int b, int c, int d, int e) {" +
+                     "  print(a); print(s.x); print(s.y); print(b); print(c); print(d); print(e);" +
+                     "}" +
+                     "void main() {" +
+                     "  int v = 4;" +
+                     "  f(1, TwoInts(2, g(3)), g(v), v + 1, 6, g(7));" +
+                     "  (int, TwoInts, int, int, int, int) => void p = &f;" +
+                     "  p(v - 3, TwoInts(2, 3), v, g(5), 6, v + 3);" +
+                     "}",
+                     3, 4, 7, 1, 2, 3, 4, 5, 6, 7,
+                     5, 1, 2, 3, 4, 5, 6, 7);
+    }
+
+    @Test
+    public void testRecursiveWordCalls() throws Exception {
+        assertResult("int fib(int n) { if (n < 2) { return n; } return fib(n - 1) + fib(n - 2); }" +
+                     "int sum(int* p, int a, int b) { return *p + a + b; }" +
+                     "void main() { int x = 1; print(fib(10)); print(sum(&x, fib(4), x)); }",
+                     55, 1 + 3 + 1);
+    }
+
+    @Test
+    public void testLeafParameters() throws Exception {
+        assertResult("int bump(int* p, int by) { *p = *p + by; return *p; }" +
+                     "int shadow(int a) { if (a < 3) { int a = 9; return a; } return a; }" +
+                     "int set(int a) { a = a + 1; return a; }" +
+                     "void main() { int x = 4; print(bump(&x, 2)); print(x); print(shadow(1)); print(shadow(5)); print(set(7)); }",
+                     6, 6, 9, 5, 8);
+    }
+
+    @Test
+    public void testCallbacks() throws Exception {
+        assertResult("int square(int x) { return x * x; }" +
+                     "int twice(int x) { return x + x; }" +
+                     "int apply((int) => int f, int x) { return f(x); }" +
+                     "int sum((int) => int f, int n) { int t = 0; while (0 < n) { t = t + f(n); n = n - 1; } return t; }" +
+                     "void main() {" +
+                     "  (int) => int f = &square; (int) => int g = f; print(g(3));" +
+                     "  print(apply(&twice, 4)); print(apply(&square, 5)); print(sum(&square, 3));" +
+                     "  (int) => int h = &square; if (true) { h = &twice; } print(h(10));" +
+                     "}",
+                     9, 8, 25, 14, 20);
+    }
+
+    @Test
+    public void testCallsInReturns() throws Exception {
+        assertResult("struct Pair { int a; int b; };" +
+                     "bool isEven(int n) { if (n == 0) { return true; } return isOdd(n - 1); }" +
+                     "bool isOdd(int n) { if (n == 0) { return false; } return isEven(n - 1); }" +
+                     "Pair swap(Pair p, int n) { if (n == 0) { return p; } { int x = 1; return swap(Pair(p.b, p.a), n - x); } }" +
+                     "int wide(int a, int b, int c, int d, int e, int f) { if (a == 0) { return b + c + d + e + f; } return wide(a - 1, b, c, d, e, f + 1); }" +
+                     "int narrow(int a) { return wide(a, 1, 2, 3, 4, 5); }" +
+                     "void main() { print(isEven(7)); print(swap(Pair(1, 2), 3).a); print(narrow(10)); }",
+                     0, 2, 25);
+    }
+
+    // the callee's frame mustn't replace the one the pointer points into
+    @Test
+    public void testReturnCallWithLocalAddress() throws Exception {
+        assertResult("struct Pair { int a; int b; };" +
+                     "int deref(int* p) { int a = 100; int b = 200; int c = 300; print(a + b + c); return *p; }" +
+                     "int g() { int x = 5; int y = 6; return deref(&x); }" +
+                     "int h(int x) { return deref(&x); }" +
+                     "int k() { Pair p = Pair(7, 8); int* q = &p.b; return deref(q); }" +
+                     "void main() { print(g()); print(h(9)); print(k()); }",
+                     600, 5, 600, 9, 600, 8);
+    }
     // ---END TESTS FOR FUNCTIONS---
 }
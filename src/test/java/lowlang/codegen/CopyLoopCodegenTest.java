@@ -0,0 +1,83 @@
+package lowlang.codegen;
+
+import lowlang.tokenizer.Tokenizer;
+import lowlang.parser.Parser;
+import lowlang.parser.Program;
+import lowlang.typechecker.Typechecker;
+import lowlang.typechecker.SymbolTable;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import org.junit.Test;
+
+// every codegen test, with every copy of more than a word done by a loop
+public class CopyLoopCodegenTest extends CodegenTest {
+    @Override
+    protected CodegenOptions codegenOptions() {
+        final CodegenOptions options = new CodegenOptions();
+        options.copyLoopWords = 1;
+        return options;
+    }
+
+    // Three addis set up the end and the two cursors, then the loop
+    // copies a word, moves both cursors, and branches back.  main copies
+    // b to pass it, and id copies it in and back out.
+    @Test
+    public void testLoopShape() throws Exception {
+        final CodegenOptions options = new CodegenOptions();
+        options.copyLoopWords = MIPSCodeGenerator.DEFAULT_COPY_LOOP_WORDS;
+        final List<MIPSEntry> entries = entries(BIG_STRUCTURE, options);
+        final Class<?>[] shape = new Class<?>[] {
+            Addi.class, Addi.class, Addi.class,
+            MIPSLabel.class, Lw.class, Sw.class, Addi.class, Addi.class, Bne.class
+        };
+        int loops = 0;
+        for (int index = 0; index < entries.size(); index++) {
+            if (entries.get(index) instanceof Bne) {
+                final int start = index - shape.length + 1;
+                for (int offset = 0; offset < shape.length; offset++) {
+                    assertTrue(shape[offset].isInstance(entries.get(start + offset)));
+                }
+                assertEquals(entries.get(start + 3), ((Bne)entries.get(index)).jumpTo);
+                loops++;
+            }
+        }
+        assertEquals(3, loops);
+        assertEquals(MIPSCodeGenerator.COPY_LOOP_INSTRUCTIONS, shape.length - 1);
+    }
+
+    // a structure of DEFAULT_COPY_LOOP_WORDS is still copied word by word
+    @Test
+    public void testNoLoopAtThreshold() throws Exception {
+        final CodegenOptions options = new CodegenOptions();
+        options.copyLoopWords = MIPSCodeGenerator.DEFAULT_COPY_LOOP_WORDS;
+        assertEquals(0,
+                     count("struct S { int a; int b; int c; int d; int e; int f; int g; int h; };" +
+                           "S id(S s) { return s; }" +
+                           "void main() { S s = S(1, 2, 3, 4, 5, 6, 7, 8); print(id(s).h); }",
+                           options,
+                           Bne.class));
+    }
+
+    @Test
+    public void testSavingsByFunction() throws Exception {
+        final Program program = Parser.parse(Tokenizer.tokenize(BIG_STRUCTURE));
+        Typechecker.typecheckProgramExternalEntry(program);
+        final CodegenOptions options = new CodegenOptions();
+        options.copyLoopWords = MIPSCodeGenerator.DEFAULT_COPY_LOOP_WORDS;
+        final MIPSCodeGenerator generator =
+            new MIPSCodeGenerator(program, SymbolTable.fromProgram(program), options);
+        generator.compileProgram();
+        final Map<String, Integer> savings = generator.getCopySavings();
+
+        // id copies its parameter onto the stack, then returns it
+        assertEquals(Integer.valueOf(2 * (2 * 10 - MIPSCodeGenerator.COPY_LOOP_INSTRUCTIONS)),
+                     savings.get("id"));
+        assertTrue(savings.containsKey("main"));
+        assertFalse(savings.containsKey("$REAL_MAIN"));
+    }
+} // CopyLoopCodegenTest
@@ -0,0 +1,33 @@
+package lowlang.codegen;
+
+import lowlang.tokenizer.Tokenizer;
+import lowlang.parser.Parser;
+import lowlang.parser.Program;
+import lowlang.typechecker.Typechecker;
+import lowlang.typechecker.TypeErrorException;
+import lowlang.optimizer.DeadStoreEliminator;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+// every codegen test, with dead stores removed first
+public class DeadStoreCodegenTest extends CodegenTest {
+    @Override
+    protected Program prepareProgram(final Program program) throws TypeErrorException {
+        final Program eliminated = new DeadStoreEliminator().eliminate(program);
+        Typechecker.typecheckProgramExternalEntry(eliminated);
+        return eliminated;
+    }
+
+    // the code is exactly what the program without the dead stores gets
+    @Test
+    public void testSameCodeAsWithoutDeadStores() throws Exception {
+        final String input =
+            "void main() { int x = 1; int y = x + 2; x = y * 3; int z = x; print(y); }";
+        final Program program = Parser.parse(Tokenizer.tokenize(input));
+        Typechecker.typecheckProgramExternalEntry(program);
+        assertEquals(entries("void main() { int x = 1; int y = x + 2; print(y); }",
+                             new CodegenOptions()),
+                     entries(prepareProgram(program), new CodegenOptions()));
+    }
+} // DeadStoreCodegenTest
@@ -0,0 +1,16 @@
+package lowlang.codegen;
+
+import lowlang.parser.Program;
+import lowlang.typechecker.Typechecker;
+import lowlang.typechecker.TypeErrorException;
+import lowlang.optimizer.Devirtualizer;
+
+// every codegen test, with calls through known function pointers made direct
+public class DevirtualizedCodegenTest extends CodegenTest {
+    @Override
+    protected Program prepareProgram(final Program program) throws TypeErrorException {
+        final Program devirtualized = new Devirtualizer().devirtualize(program);
+        Typechecker.typecheckProgramExternalEntry(devirtualized);
+        return devirtualized;
+    }
+} // DevirtualizedCodegenTest
@@ -0,0 +1,48 @@
+package lowlang.codegen;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+// every codegen test, with locals at fixed offsets from $fp
+public class FixedFrameCodegenTest extends CodegenTest {
+    @Override
+    protected CodegenOptions codegenOptions() {
+        final CodegenOptions options = new CodegenOptions();
+        options.fixedFrames = true;
+        return options;
+    }
+
+    // $sp moves once to make main's frame and once to drop it, with no
+    // adjustments for declarations or leaving their scopes.  Both z's
+    // share a slot, so the frame is x, y, z, $fp, and $ra.
+    @Test
+    public void testOneFrameAdjustment() throws Exception {
+        final String input =
+            "void main() {" +
+            "  int x = 0;" +
+            "  while (x < 10) {" +
+            "    int y = x * 2;" +
+            "    if (y < 5) { int z = y + 1; print(z); } else { int z = y - 1; print(z); }" +
+            "    x = x + 1;" +
+            "  }" +
+            "}";
+        final CodegenOptions options = codegenOptions();
+        options.registerExpressions = true;
+        final MIPSRegister sp = MIPSRegister.SP;
+        final MIPSRegister fp = MIPSRegister.FP;
+        int adjustments = 0;
+        for (final MIPSEntry entry : entries(input, options)) {
+            if (entry instanceof Addi && ((Addi)entry).rt == sp) {
+                adjustments++;
+            }
+        }
+        assertEquals(2, adjustments);
+        assertEmits(input,
+                    options,
+                    new Addi(sp, sp, -20),
+                    new Sw(MIPSRegister.RA, 16, sp),
+                    new Sw(fp, 12, sp),
+                    new Move(fp, sp));
+        assertEmits(input, options, new Addi(sp, fp, 20));
+    }
+}
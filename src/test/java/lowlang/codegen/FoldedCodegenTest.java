@@ -0,0 +1,17 @@
+package lowlang.codegen;
+
+import lowlang.parser.Program;
+import lowlang.typechecker.Typechecker;
+import lowlang.typechecker.TypeErrorException;
+import lowlang.typechecker.SymbolTable;
+import lowlang.optimizer.ConstantFolder;
+
+// every codegen test, with constants folded first
+public class FoldedCodegenTest extends CodegenTest {
+    @Override
+    protected Program prepareProgram(final Program program) throws TypeErrorException {
+        final Program folded = new ConstantFolder(SymbolTable.fromProgram(program)).fold(program);
+        Typechecker.typecheckProgramExternalEntry(folded);
+        return folded;
+    }
+} // FoldedCodegenTest
@@ -0,0 +1,39 @@
+package lowlang.codegen;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+// every codegen test, with if/while guards branching on their operands
+public class FusedBranchCodegenTest extends CodegenTest {
+    @Override
+    protected CodegenOptions codegenOptions() {
+        final CodegenOptions options = new CodegenOptions();
+        options.fusedBranches = true;
+        return options;
+    }
+
+    public static final String GUARDS =
+        "void main() { int x = 0; while (x < 10) { if (x == 5) { print(x); } x = x + 1; } }";
+
+    // one branch per guard, on x and the constant, with no boolean
+    // materialized by slt or seq and tested by beq
+    public static void assertBranchesOnOperands(final CodegenOptions options) throws Exception {
+        assertEquals(1, count(GUARDS, options, Bge.class));
+        assertEquals(1, count(GUARDS, options, Bne.class));
+        assertEquals(0, count(GUARDS, options, Slt.class));
+        assertEquals(0, count(GUARDS, options, Seq.class));
+        assertEquals(0, count(GUARDS, options, Beq.class));
+    }
+
+    @Test
+    public void testGuardsBranchOnOperands() throws Exception {
+        assertBranchesOnOperands(codegenOptions());
+    }
+
+    @Test
+    public void testGuardsBranchOnOperandsInRegisters() throws Exception {
+        final CodegenOptions options = codegenOptions();
+        options.registerExpressions = true;
+        assertBranchesOnOperands(options);
+    }
+}
@@ -0,0 +1,11 @@
+package lowlang.codegen;
+
+// every codegen test, compiled through the three-address IR
+public class IRCodegenTest extends CodegenTest {
+    @Override
+    protected CodegenOptions codegenOptions() {
+        final CodegenOptions options = new CodegenOptions();
+        options.useIR = true;
+        return options;
+    }
+}
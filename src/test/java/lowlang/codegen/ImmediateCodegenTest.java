@@ -0,0 +1,61 @@
+package lowlang.codegen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import org.junit.Test;
+
+// every codegen test, with small constants as immediate operands
+public class ImmediateCodegenTest extends CodegenTest {
+    @Override
+    protected CodegenOptions codegenOptions() {
+        final CodegenOptions options = new CodegenOptions();
+        options.immediateOperands = true;
+        return options;
+    }
+
+    public static final String COUNT =
+        "void main() { int i = 0; while (i < 10) { i = i + 1; } print(i); }";
+
+    @Test
+    public void testLoopCounterUsesImmediates() throws Exception {
+        assertTrue(uses(COUNT, codegenOptions(), Slti.class));
+        assertTrue(uses(COUNT, codegenOptions(), Addi.class));
+        assertFalse(uses(COUNT, codegenOptions(), Slt.class));
+    }
+
+    @Test
+    public void testIncrementNeedsNoLi() throws Exception {
+        final CodegenOptions options = codegenOptions();
+        options.registerExpressions = true;
+        final CodegenOptions withoutImmediates = new CodegenOptions();
+        withoutImmediates.registerExpressions = true;
+        final String input = "void main() { int x = 1; x = x + 1; }";
+        assertEquals(numInstructions(input, withoutImmediates) - 1,
+                     numInstructions(input, options));
+    }
+
+    // i's initial 0 is the only constant loaded; every other li sets up
+    // a syscall
+    @Test
+    public void testLoopConstantsNeedNoLi() throws Exception {
+        int loaded = 0;
+        for (final MIPSEntry entry : entries(COUNT, codegenOptions())) {
+            if (entry instanceof Li && ((Li)entry).rd != MIPSRegister.V0) {
+                loaded++;
+            }
+        }
+        assertEquals(1, loaded);
+    }
+
+    @Test
+    public void testLargeConstantsInRegisters() throws Exception {
+        assertFalse(uses("void main() { int x = 1; print(x < 32768); }",
+                                                      codegenOptions(),
+                                                      Slti.class));
+        assertTrue(uses("void main() { int x = 1; print(x - 32768); }",
+                                                     codegenOptions(),
+                                                     Addi.class));
+        assertTrue(ImmediateOperands.subtract(MIPSRegister.T0, MIPSRegister.T0, -32768) == null);
+    }
+}
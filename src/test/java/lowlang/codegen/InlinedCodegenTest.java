@@ -0,0 +1,16 @@
+package lowlang.codegen;
+
+import lowlang.parser.Program;
+import lowlang.typechecker.Typechecker;
+import lowlang.typechecker.TypeErrorException;
+import lowlang.optimizer.Inliner;
+
+// every codegen test, with calls inlined first
+public class InlinedCodegenTest extends CodegenTest {
+    @Override
+    protected Program prepareProgram(final Program program) throws TypeErrorException {
+        final Program inlined = new Inliner().inline(program);
+        Typechecker.typecheckProgramExternalEntry(inlined);
+        return inlined;
+    }
+} // InlinedCodegenTest
@@ -0,0 +1,46 @@
+package lowlang.codegen;
+
+import java.util.List;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+// every codegen test, with leaf functions skipping $ra, and word arguments
+// in registers so leaves can keep them there
+public class LeafFunctionCodegenTest extends CodegenTest {
+    @Override
+    protected CodegenOptions codegenOptions() {
+        final CodegenOptions options = new CodegenOptions();
+        options.leafFunctions = true;
+        options.registerCalls = true;
+        return options;
+    }
+
+    // add never touches $ra; only main saves and restores it
+    @Test
+    public void testLeafSkipsRa() throws Exception {
+        final List<MIPSEntry> entries =
+            entries("int add(int a, int b) { return a + b; }" +
+                    "void main() { print(add(1, 2)); }",
+                    codegenOptions());
+        final MIPSRegister ra = MIPSRegister.RA;
+        final MIPSRegister sp = MIPSRegister.SP;
+        assertEquals(1, Collections.frequency(entries, new Sw(ra, 0, sp)));
+        assertEquals(1, Collections.frequency(entries, new Lw(ra, 0, sp)));
+    }
+
+    @Test
+    public void testFramelessLeaf() throws Exception {
+        // nothing but moving the parameter into $v0, and the jump back
+        final CodegenOptions options = codegenOptions();
+        options.fixedFrames = true;
+        options.registerExpressions = true;
+        final int withLeaf =
+            numInstructions("int id(int a) { return a; } void main() { print(1); }",
+                                                options);
+        final int withoutLeaf =
+            numInstructions("void main() { print(1); }", options);
+        assertEquals(3, withLeaf - withoutLeaf);
+    }
+}
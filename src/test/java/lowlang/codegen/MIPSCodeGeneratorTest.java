@@ -0,0 +1,32 @@
+package lowlang.codegen;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+// properties of the stack code generator itself, which the IR doesn't share
+public class MIPSCodeGeneratorTest {
+    public static final String FIELD_ACCESS =
+        "int get(S* p) { return (*p).f; }" +
+        "int getLocal(S s) { return s.f; }" +
+        "void main() {}";
+
+    public static void assertFieldCostIndependentOfStructureSize(final CodegenOptions options) throws Exception {
+        assertEquals(CodegenTest.numInstructions("struct S { int f; int g; };" + FIELD_ACCESS,
+                                                 options),
+                     CodegenTest.numInstructions("struct S { int f; int g; int h; int i; int j; int k; };" + FIELD_ACCESS,
+                                                 options));
+    }
+
+    // only the field is read, however big the rest of the structure is
+    @Test
+    public void testFieldCostIndependentOfStructureSize() throws Exception {
+        assertFieldCostIndependentOfStructureSize(new CodegenOptions());
+    }
+
+    @Test
+    public void testFieldCostIndependentOfStructureSizeInRegisters() throws Exception {
+        final CodegenOptions options = new CodegenOptions();
+        options.registerExpressions = true;
+        assertFieldCostIndependentOfStructureSize(options);
+    }
+} // MIPSCodeGeneratorTest
@@ -0,0 +1,12 @@
+package lowlang.codegen;
+
+// every codegen test, compiled through the IR with the SSA optimizations on
+public class OptimizedIRCodegenTest extends CodegenTest {
+    @Override
+    protected CodegenOptions codegenOptions() {
+        final CodegenOptions options = new CodegenOptions();
+        options.useIR = true;
+        options.optimizeIR = true;
+        return options;
+    }
+}
@@ -0,0 +1,11 @@
+package lowlang.codegen;
+
+// every codegen test, with the peephole rules run over the output
+public class PeepholeCodegenTest extends CodegenTest {
+    @Override
+    protected CodegenOptions codegenOptions() {
+        final CodegenOptions options = new CodegenOptions();
+        options.peephole = true;
+        return options;
+    }
+}
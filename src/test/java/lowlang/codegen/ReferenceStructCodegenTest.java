@@ -0,0 +1,109 @@
+package lowlang.codegen;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+// every codegen test, with every structure of more than a word passed and
+// returned by reference
+public class ReferenceStructCodegenTest extends CodegenTest {
+    @Override
+    protected CodegenOptions codegenOptions() {
+        final CodegenOptions options = new CodegenOptions();
+        options.referenceWords = 1;
+        return options;
+    }
+
+    public static final String RECT =
+        "struct Rect { int x; int y; int w; int h; int c; int d; };" +
+        "Rect make(int a) { return Rect(a, a + 1, a + 2, a + 3, a + 4, a + 5); }";
+
+    @Test
+    public void testWrittenParametersAreCopies() throws Exception {
+        assertResult(RECT +
+                     "int bump(Rect r) { r.w = r.w + 100; return r.w; }" +
+                     "int poke(Rect r) { int* p = &r.h; *p = 7; return r.h; }" +
+                     "Rect grow(Rect r, int n) { r.w = r.w + n; return r; }" +
+                     "void main() {" +
+                     "  Rect a = make(1);" +
+                     "  print(bump(a)); print(a.w);" +
+                     "  print(poke(a)); print(a.h);" +
+                     "  a = grow(a, 10); print(a.w);" +
+                     "}",
+                     103, 3, 7, 4, 13);
+    }
+
+    @Test
+    public void testResultsGoStraightToTheirDestination() throws Exception {
+        assertResult(RECT +
+                     "Rect grow(Rect r, int n) { r.w = r.w + n; return r; }" +
+                     "Rect twice(int a) { return grow(grow(make(a), 1), 2); }" +
+                     "Rect load(Rect* p) { return *p; }" +
+                     "int sum(int a, Rect r, int b, Rect s) { return a + r.c + b * s.d; }" +
+                     "void main() {" +
+                     "  Rect a = twice(10);" +
+                     "  print(a.w);" +
+                     "  Rect* p = &a;" +
+                     "  print(load(p).x);" +
+                     "  print(sum(1, *p, 2, make(3)));" +
+                     "  (Rect, int) => Rect g = &grow;" +
+                     "  print(g(a, 5).w);" +
+                     "}",
+                     15, 10, 31, 20);
+    }
+
+    @Test
+    public void testRecursionThroughReferences() throws Exception {
+        assertResult(RECT +
+                     "Rect count(Rect r, int n) { if (n == 0) { return r; } r.x = r.x + 1; return count(r, n - 1); }" +
+                     "int first(Rect r) { Rect r = make(50); return r.x; }" +
+                     "void main() { Rect a = make(0); print(count(a, 5).x); print(a.x); print(first(a)); }",
+                     5, 0, 50);
+    }
+
+    // how many instructions one more call to first adds, with a structure
+    // of the given number of words
+    private int callCost(final int words) throws Exception {
+        String fields = "";
+        String values = "";
+        for (int index = 0; index < words; index++) {
+            fields += "int f" + index + ";";
+            values += ((index == 0) ? "" : ", ") + index;
+        }
+        final String start =
+            "struct S {" + fields + "};" +
+            "int first(S s) { return s.f0; }" +
+            "void main() { S s = S(" + values + "); int a = first(s);";
+        return (numInstructions(start + " int b = first(s); }", codegenOptions()) -
+                numInstructions(start + " }", codegenOptions()));
+    }
+
+    // first never writes its parameter, so it gets the original
+    @Test
+    public void testCallCostIndependentOfStructureSize() throws Exception {
+        assertEquals(callCost(2), callCost(20));
+    }
+
+    // main passes id the addresses of b and of the space for the result,
+    // and id copies b through them once
+    @Test
+    public void testPassedAsAddresses() throws Exception {
+        final MIPSRegister t0 = MIPSRegister.T0;
+        final MIPSRegister sp = MIPSRegister.SP;
+        assertEmits(BIG_STRUCTURE,
+                    codegenOptions(),
+                    new Addi(t0, sp, 40),
+                    new Addi(sp, sp, -4),
+                    new Sw(t0, 0, sp),
+                    new Addi(t0, sp, 4),
+                    new Addi(sp, sp, -4),
+                    new Sw(t0, 0, sp),
+                    new Jal(new MIPSLabel("id", 0)));
+        int throughPointers = 0;
+        for (final MIPSEntry entry : entries(BIG_STRUCTURE, codegenOptions())) {
+            if (entry instanceof Sw && ((Sw)entry).right != sp) {
+                throughPointers++;
+            }
+        }
+        assertEquals(10, throughPointers);
+    }
+} // ReferenceStructCodegenTest
@@ -0,0 +1,31 @@
+package lowlang.codegen;
+
+import java.util.List;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+// every codegen test, with word arguments and return values in registers
+public class RegisterCallCodegenTest extends CodegenTest {
+    @Override
+    protected CodegenOptions codegenOptions() {
+        final CodegenOptions options = new CodegenOptions();
+        options.registerCalls = true;
+        return options;
+    }
+
+    // each call gets n in $a0, and each return leaves its result in $v0
+    @Test
+    public void testWordsPassedInRegisters() throws Exception {
+        final String input =
+            "int fib(int n) { if (n < 2) { return n; } return fib(n - 1) + fib(n - 2); }" +
+            "void main() { print(fib(10)); }";
+        final CodegenOptions options = codegenOptions();
+        options.registerExpressions = true;
+        final List<MIPSEntry> entries = entries(input, options);
+        final MIPSRegister t0 = MIPSRegister.T0;
+        assertEquals(3, Collections.frequency(entries, new Move(MIPSRegister.A0, t0)));
+        assertEquals(2, Collections.frequency(entries, new Move(MIPSRegister.V0, t0)));
+    }
+}
@@ -0,0 +1,34 @@
+package lowlang.codegen;
+
+import org.junit.Test;
+
+// every codegen test, with expressions evaluated in registers
+public class RegisterCodegenTest extends CodegenTest {
+    @Override
+    protected CodegenOptions codegenOptions() {
+        final CodegenOptions options = new CodegenOptions();
+        options.registerExpressions = true;
+        return options;
+    }
+
+    // the operands are loaded straight from the parameters, with nothing
+    // pushed or popped in between
+    @Test
+    public void testOperandsStayInRegisters() throws Exception {
+        final MIPSRegister t0 = MIPSRegister.T0;
+        final MIPSRegister t1 = MIPSRegister.T1;
+        final MIPSRegister t2 = MIPSRegister.T2;
+        final MIPSRegister sp = MIPSRegister.SP;
+        assertEmits("int f(int a, int b) { return a * b + (a - b); }" +
+                    "void main() { print(f(1, 2)); }",
+                    codegenOptions(),
+                    new Lw(t0, 8, sp),
+                    new Lw(t1, 4, sp),
+                    new Mult(t0, t1),
+                    new Mflo(t0),
+                    new Lw(t1, 8, sp),
+                    new Lw(t2, 4, sp),
+                    new Sub(t1, t1, t2),
+                    new Add(t0, t0, t1));
+    }
+}
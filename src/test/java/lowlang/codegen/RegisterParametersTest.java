@@ -0,0 +1,39 @@
+package lowlang.codegen;
+
+import static lowlang.optimizer.CallGraphTest.typechecked;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import org.junit.Test;
+
+public class RegisterParametersTest {
+    public static boolean canStay(final String function) throws Exception {
+        return RegisterParameters.canStayInRegisters(typechecked(function + "void main() {}").functionDefs.get(0));
+    }
+
+    @Test
+    public void testReadsAndDereferences() throws Exception {
+        assertTrue(canStay("int f(int a, int* p) { *p = a; return *p + a; }"));
+    }
+
+    @Test
+    public void testAssignment() throws Exception {
+        assertFalse(canStay("int f(int a) { a = 2; return a; }"));
+    }
+
+    @Test
+    public void testAddressTaken() throws Exception {
+        assertFalse(canStay("int* f(int a) { return &a; }"));
+    }
+
+    @Test
+    public void testShadowed() throws Exception {
+        assertFalse(canStay("int f(int a) { if (a < 1) { int a = 2; return a; } return a; }"));
+    }
+
+    @Test
+    public void testSyscalls() throws Exception {
+        assertFalse(canStay("void f(int a) { print(a); }"));
+        assertFalse(canStay("void* f(int a) { return malloc(a); }"));
+    }
+}
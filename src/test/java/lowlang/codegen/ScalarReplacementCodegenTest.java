@@ -0,0 +1,14 @@
+package lowlang.codegen;
+
+// every codegen test, compiled through the optimized IR with structures
+// kept in registers where possible
+public class ScalarReplacementCodegenTest extends CodegenTest {
+    @Override
+    protected CodegenOptions codegenOptions() {
+        final CodegenOptions options = new CodegenOptions();
+        options.useIR = true;
+        options.optimizeIR = true;
+        options.scalarReplacement = true;
+        return options;
+    }
+}
@@ -0,0 +1,52 @@
+package lowlang.codegen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import org.junit.Test;
+
+// every codegen test, with multiplication and division by constants
+// compiled to shifts and adds
+public class StrengthReductionCodegenTest extends CodegenTest {
+    @Override
+    protected CodegenOptions codegenOptions() {
+        final CodegenOptions options = new CodegenOptions();
+        options.strengthReduction = true;
+        return options;
+    }
+
+    public static final String ALLOCATE =
+        "struct Pair { int a; int b; };" +
+        "Pair* allocate(int n) { return (Pair*)malloc(sizeof(Pair) * n); }" +
+        "void main() { Pair* p = allocate(3); }";
+
+    @Test
+    public void testSizeofTimesCountIsAShift() throws Exception {
+        assertTrue(uses(ALLOCATE, new CodegenOptions(), Mult.class));
+        assertFalse(uses(ALLOCATE, codegenOptions(), Mult.class));
+        assertTrue(uses(ALLOCATE, codegenOptions(), Sll.class));
+    }
+
+    @Test
+    public void testSizeofTimesCountIsAShiftInRegisters() throws Exception {
+        // sizeof(Pair) is 8, so n is shifted left by 3
+        final CodegenOptions options = codegenOptions();
+        options.registerExpressions = true;
+        final MIPSRegister t0 = MIPSRegister.T0;
+        assertEmits(ALLOCATE,
+                    options,
+                    new Lw(t0, 4, MIPSRegister.SP),
+                    new Sll(t0, t0, 3),
+                    new Move(MIPSRegister.A0, t0));
+        assertEquals(1, count(ALLOCATE, options, Sll.class));
+        assertFalse(uses(ALLOCATE, options, Mult.class));
+        assertFalse(uses(ALLOCATE, options, Mflo.class));
+    }
+
+    @Test
+    public void testOtherConstantsKeepDiv() throws Exception {
+        assertTrue(uses("int f(int x) { return x / 3; } void main() { print(f(9)); }",
+                        codegenOptions(),
+                        Div.class));
+    }
+}
@@ -0,0 +1,140 @@
+package lowlang.codegen;
+
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotNull;
+import org.junit.Test;
+
+public class StrengthReductionTest {
+    public static final MIPSRegister DEST = MIPSRegister.T0;
+    public static final MIPSRegister SOURCE = MIPSRegister.T1;
+    public static final MIPSRegister SCRATCH = MIPSRegister.T2;
+
+    public static final int[] VALUES = new int[] {
+        0, 1, -1, 2, -2, 7, -7, 8, -8, 9, -9, 100, -100, 12345, -12345,
+        Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE - 3, Integer.MIN_VALUE + 3
+    };
+
+    private static int read(final Map<MIPSRegister, Integer> registers,
+                            final MIPSRegister register) {
+        return (register == MIPSRegister.ZERO) ? 0 : registers.get(register).intValue();
+    }
+
+    // runs the sequence with value in SOURCE, and returns DEST
+    public static int run(final List<MIPSInstruction> instructions,
+                          final MIPSRegister dest,
+                          final int value) {
+        final Map<MIPSRegister, Integer> registers = new HashMap<MIPSRegister, Integer>();
+        registers.put(SOURCE, Integer.valueOf(value));
+        for (final MIPSInstruction instruction : instructions) {
+            if (instruction instanceof TwoRegisterImmediateInstruction) {
+                final TwoRegisterImmediateInstruction asShift =
+                    (TwoRegisterImmediateInstruction)instruction;
+                final int operand = read(registers, asShift.rs);
+                final int result;
+                if (instruction instanceof Sll) {
+                    result = operand << asShift.immediate;
+                } else if (instruction instanceof Sra) {
+                    result = operand >> asShift.immediate;
+                } else {
+                    assertEquals(Srl.class, instruction.getClass());
+                    result = operand >>> asShift.immediate;
+                }
+                registers.put(asShift.rt, Integer.valueOf(result));
+            } else if (instruction instanceof Addu) {
+                final Addu asAdd = (Addu)instruction;
+                registers.put(asAdd.rd, Integer.valueOf(read(registers, asAdd.rs) +
+                                                        read(registers, asAdd.rt)));
+            } else if (instruction instanceof Subu) {
+                final Subu asSub = (Subu)instruction;
+                registers.put(asSub.rd, Integer.valueOf(read(registers, asSub.rs) -
+                                                        read(registers, asSub.rt)));
+            } else if (instruction instanceof Move) {
+                final Move asMove = (Move)instruction;
+                registers.put(asMove.rs, Integer.valueOf(read(registers, asMove.rt)));
+            } else if (instruction instanceof Li) {
+                final Li asLi = (Li)instruction;
+                registers.put(asLi.rd, Integer.valueOf(asLi.immediate));
+            } else {
+                throw new AssertionError("Unexpected instruction: " + instruction.toString());
+            }
+        }
+        return read(registers, dest);
+    }
+
+    @Test
+    public void testMultiplyMatchesMult() {
+        for (int constant = -70; constant <= 70; constant++) {
+            final List<MIPSInstruction> instructions =
+                StrengthReduction.multiply(DEST, SOURCE, constant, SCRATCH);
+            if (instructions != null) {
+                for (final int value : VALUES) {
+                    assertEquals(value + " * " + constant,
+                                 value * constant,
+                                 run(instructions, DEST, value));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMultiplyInPlace() {
+        for (final int constant : new int[] { 1, 3, 6, 14, -24 }) {
+            final List<MIPSInstruction> instructions =
+                StrengthReduction.multiply(SOURCE, SOURCE, constant, SCRATCH);
+            assertEquals(-5 * constant, run(instructions, SOURCE, -5));
+        }
+    }
+
+    @Test
+    public void testMultiplyExtremes() {
+        for (final int constant : new int[] { Integer.MIN_VALUE, 1 << 30, Integer.MAX_VALUE }) {
+            final List<MIPSInstruction> instructions =
+                StrengthReduction.multiply(DEST, SOURCE, constant, SCRATCH);
+            assertNotNull(instructions);
+            for (final int value : VALUES) {
+                assertEquals(value * constant, run(instructions, DEST, value));
+            }
+        }
+    }
+
+    @Test
+    public void testShortSequencesOnly() {
+        assertEquals(1, StrengthReduction.multiply(DEST, SOURCE, 8, SCRATCH).size());
+        assertEquals(3, StrengthReduction.multiply(DEST, SOURCE, 10, SCRATCH).size());
+        assertEquals(3, StrengthReduction.multiply(DEST, SOURCE, 14, SCRATCH).size());
+        assertNull(StrengthReduction.multiply(DEST, SOURCE, 11, SCRATCH));
+        assertNull(StrengthReduction.divide(DEST, SOURCE, 3, SCRATCH));
+        assertNull(StrengthReduction.divide(DEST, SOURCE, 0, SCRATCH));
+    }
+
+    @Test
+    public void testDivideMatchesDiv() {
+        for (int amount = 0; amount < 31; amount++) {
+            for (final int constant : new int[] { 1 << amount, -(1 << amount) }) {
+                final List<MIPSInstruction> instructions =
+                    StrengthReduction.divide(DEST, SOURCE, constant, SCRATCH);
+                for (final int value : VALUES) {
+                    if (value == Integer.MIN_VALUE && constant == -1) {
+                        // overflows, and MIPS leaves it undefined
+                        continue;
+                    }
+                    assertEquals(value + " / " + constant,
+                                 value / constant,
+                                 run(instructions, DEST, value));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDivideInPlace() {
+        final List<MIPSInstruction> instructions =
+            StrengthReduction.divide(SOURCE, SOURCE, 4, SCRATCH);
+        assertEquals(-2, run(instructions, SOURCE, -9));
+    }
+}
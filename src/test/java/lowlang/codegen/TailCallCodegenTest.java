@@ -0,0 +1,35 @@
+package lowlang.codegen;
+
+import org.junit.Test;
+
+// every codegen test, with direct calls in return statements turned into jumps
+public class TailCallCodegenTest extends CodegenTest {
+    @Override
+    protected CodegenOptions codegenOptions() {
+        final CodegenOptions options = new CodegenOptions();
+        options.tailCalls = true;
+        return options;
+    }
+
+    // A local's address is the same at any depth of tail recursion.  depth
+    // can't take one itself, as that keeps its own calls from being tail
+    // calls.
+    public static final String DEPTH =
+        "int here() { int here = 0; return (int)&here; }" +
+        "int depth(int n) {" +
+        "  if (n == 0) { return here(); }" +
+        "  return depth(n - 1);" +
+        "}" +
+        "void main() {" +
+        "  int shallow = 0;" +
+        "  int deep = 0;" +
+        "  shallow = depth(0);" +
+        "  deep = depth(1000);" +
+        "  print(shallow == deep);" +
+        "}";
+
+    @Test
+    public void testConstantStack() throws Exception {
+        assertResult(DEPTH, 1);
+    }
+} // TailCallCodegenTest
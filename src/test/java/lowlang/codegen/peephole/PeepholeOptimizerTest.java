@@ -0,0 +1,95 @@
+package lowlang.codegen.peephole;
+
+import lowlang.codegen.*;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class PeepholeOptimizerTest {
+    private static final MIPSRegister SP = MIPSRegister.SP;
+    private static final MIPSRegister T0 = MIPSRegister.T0;
+    private static final MIPSRegister T1 = MIPSRegister.T1;
+
+    public static List<MIPSEntry> entries(final MIPSEntry... entries) {
+        return new ArrayList<MIPSEntry>(Arrays.asList(entries));
+    }
+
+    @Test
+    public void testPushPopBecomesMove() {
+        final PeepholeOptimizer optimizer = new PeepholeOptimizer();
+        assertEquals(entries(new Move(T1, T0)),
+                     optimizer.optimize(entries(new Addi(SP, SP, -4),
+                                                new Sw(T0, 0, SP),
+                                                new Lw(T1, 0, SP),
+                                                new Addi(SP, SP, 4))));
+        assertEquals(Integer.valueOf(1), optimizer.getHits().get("push-pop"));
+    }
+
+    @Test
+    public void testPushPopSameRegisterDisappears() {
+        assertEquals(entries(),
+                     new PeepholeOptimizer().optimize(entries(new Addi(SP, SP, -4),
+                                                              new Sw(T0, 0, SP),
+                                                              new Lw(T0, 0, SP),
+                                                              new Addi(SP, SP, 4))));
+    }
+
+    @Test
+    public void testSmallWindowSkipsBigRules() {
+        final PeepholeOptimizer optimizer = new PeepholeOptimizer(2);
+        assertEquals(entries(new Addi(SP, SP, -4),
+                             new Sw(T0, 0, SP),
+                             new Move(T1, T0),
+                             new Addi(SP, SP, 4)),
+                     optimizer.optimize(entries(new Addi(SP, SP, -4),
+                                                new Sw(T0, 0, SP),
+                                                new Lw(T1, 0, SP),
+                                                new Addi(SP, SP, 4))));
+        assertEquals(Integer.valueOf(0), optimizer.getHits().get("push-pop"));
+        assertEquals(Integer.valueOf(1), optimizer.getHits().get("store-load"));
+    }
+
+    @Test
+    public void testAdjustmentsMergeAndVanish() {
+        final PeepholeOptimizer optimizer = new PeepholeOptimizer();
+        assertEquals(entries(new Li(T0, 1)),
+                     optimizer.optimize(entries(new Addi(SP, SP, -8),
+                                                new Addi(SP, SP, 4),
+                                                new Addi(SP, SP, 4),
+                                                new Li(T0, 1))));
+        assertEquals(Integer.valueOf(2), optimizer.getHits().get("merge-addi"));
+        assertEquals(Integer.valueOf(1), optimizer.getHits().get("zero-addi"));
+    }
+
+    @Test
+    public void testLabelsBlockRewrites() {
+        final MIPSLabel label = new MIPSLabel("loop", 0);
+        final List<MIPSEntry> input = entries(new Addi(SP, SP, -4),
+                                              label,
+                                              new Addi(SP, SP, 4));
+        assertEquals(input, new PeepholeOptimizer().optimize(input));
+    }
+
+    @Test
+    public void testJumpToNextLabel() {
+        final MIPSLabel label = new MIPSLabel("end", 0);
+        assertEquals(entries(label, new Li(T0, 1)),
+                     new PeepholeOptimizer().optimize(entries(new J(label),
+                                                              label,
+                                                              new Li(T0, 1))));
+    }
+
+    @Test
+    public void testCustomRules() {
+        final List<PeepholeRule> rules = new ArrayList<PeepholeRule>();
+        rules.add(new SelfMoveRule());
+        final PeepholeOptimizer optimizer = new PeepholeOptimizer(rules, 1);
+        assertEquals(entries(new Addi(SP, SP, 0)),
+                     optimizer.optimize(entries(new Move(T0, T0), new Addi(SP, SP, 0))));
+        assertEquals(1, optimizer.totalHits());
+    }
+}
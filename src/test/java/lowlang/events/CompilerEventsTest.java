@@ -0,0 +1,74 @@
+package lowlang.events;
+
+import lowlang.Compiler;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Set;
+import java.util.HashSet;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class CompilerEventsTest {
+    public static final String PROGRAM =
+        "int foo(int x) { return x + 1; }" +
+        "void main() { print(foo(1)); }";
+
+    @Test
+    public void testEventsForEveryPhaseAndFunction() throws Exception {
+        final File input = File.createTempFile("test", ".ll");
+        final File output = File.createTempFile("test", ".asm");
+        final File recorded = File.createTempFile("test", ".jfr");
+        try {
+            final FileWriter writer = new FileWriter(input);
+            try {
+                writer.write(PROGRAM);
+            } finally {
+                writer.close();
+            }
+
+            final Recording recording = new Recording();
+            try {
+                recording.enable("lowlang.*");
+                recording.start();
+                Compiler.compile(input.getPath(), output.getPath());
+                recording.stop();
+                recording.dump(recorded.toPath());
+            } finally {
+                recording.close();
+            }
+
+            final Set<String> typechecked = new HashSet<String>();
+            final Set<String> compiled = new HashSet<String>();
+            int numWrites = 0;
+            for (final RecordedEvent event : RecordingFile.readAllEvents(recorded.toPath())) {
+                final String name = event.getEventType().getName();
+                if (name.equals("lowlang.FunctionTypecheck")) {
+                    typechecked.add(event.getString("functionName"));
+                } else if (name.equals("lowlang.FunctionCodegen")) {
+                    compiled.add(event.getString("functionName"));
+                } else if (name.equals("lowlang.Tokenize")) {
+                    assertEquals(27, event.getInt("tokenCount"));
+                } else if (name.equals("lowlang.WriteAssembly")) {
+                    numWrites++;
+                }
+            }
+
+            final Set<String> expected = new HashSet<String>();
+            expected.add("foo");
+            expected.add("main");
+            assertEquals(expected, typechecked);
+            assertEquals(expected, compiled);
+            assertEquals(1, numWrites);
+        } finally {
+            input.delete();
+            output.delete();
+            recorded.delete();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package lowlang.ir;
+
+import lowlang.tokenizer.Tokenizer;
+import lowlang.parser.Parser;
+import lowlang.parser.Program;
+import lowlang.typechecker.Typechecker;
+import lowlang.typechecker.SymbolTable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class IRLoweringTest {
+    public static IRProgram lower(final String input) throws Exception {
+        final Program program = Parser.parse(Tokenizer.tokenize(input));
+        final SymbolTable symbols = Typechecker.typecheckProgramExternalEntry(program);
+        return IRLowering.lower(program, symbols);
+    }
+
+    @Test
+    public void testWordVariablesInRegisters() throws Exception {
+        final IRFunction main = lower("void main() { int x = 1; x = x + 2; print(x); }").functions.get(0);
+        assertEquals(0, main.getSlots().size());
+        assertEquals(1, main.getBlocks().size());
+    }
+
+    @Test
+    public void testAddressTakenAndStructuresInSlots() throws Exception {
+        final IRFunction main =
+            lower("struct P { int x; int y; };" +
+                  "void main() { int x = 1; int* p = &x; P q = P(1, 2); print(*p + q.x); }").functions.get(0);
+        assertEquals(2, main.getSlots().size());
+        assertEquals(4, main.getSlots().get(0).size);
+        assertEquals(8, main.getSlots().get(1).size);
+    }
+
+    @Test
+    public void testScalarReplacement() throws Exception {
+        final Program program =
+            Parser.parse(Tokenizer.tokenize("struct P { int x; int y; };" +
+                                            "int f(P p) { p.y = p.x; return p.y; }" +
+                                            "void main() { P q = P(1, 2); P r = P(3, 4); int* p = &r.y;" +
+                                            "  q = P(q.y, q.x); print(f(q) + *p); }"));
+        final SymbolTable symbols = Typechecker.typecheckProgramExternalEntry(program);
+        final IRProgram ir = IRLowering.lower(program, symbols, true);
+        assertEquals(0, ir.functions.get(0).getSlots().size());
+        // only r has its address taken
+        assertEquals(1, ir.functions.get(1).getSlots().size());
+        assertEquals(8, ir.functions.get(1).getSlots().get(0).size);
+    }
+
+    @Test
+    public void testCodeAfterReturnDropped() throws Exception {
+        final IRFunction f =
+            lower("int f(int a) { if (a < 1) { return 0; } else { return 1; } }" +
+                  "void main() { print(f(2)); }").functions.get(0);
+        // entry, then, else; the join is unreachable
+        assertEquals(3, f.getBlocks().size());
+        for (final BasicBlock block : f.getBlocks()) {
+            assertTrue(block.isTerminated());
+        }
+    }
+}
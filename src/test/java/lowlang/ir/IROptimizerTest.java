@@ -0,0 +1,209 @@
+package lowlang.ir;
+
+import static lowlang.ir.IRLoweringTest.lower;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import org.junit.Test;
+
+public class IROptimizerTest {
+    public static IRFunction lowerFirst(final String input) throws Exception {
+        return lower(input).functions.get(0);
+    }
+
+    public static int count(final IRFunction function, final Class<?> kind) {
+        int result = 0;
+        for (final BasicBlock block : function.getBlocks()) {
+            for (final Instruction instruction : block.instructions) {
+                if (kind.isInstance(instruction)) {
+                    result++;
+                }
+            }
+            if (kind.isInstance(block.getTerminator())) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testDominatorsOfIfElse() throws Exception {
+        final IRFunction f =
+            lowerFirst("int f(int a) { int b = 0; if (a < 1) { b = 1; } else { b = 2; } return b; }" +
+                       "void main() { print(f(2)); }");
+        final Dominators dominators = Dominators.dominatorsOf(f);
+        final BasicBlock entry = f.getEntry();
+        final BasicBlock join = f.getBlocks().get(f.getBlocks().size() - 1);
+        assertEquals(entry, dominators.immediateDominator(join));
+        for (final BasicBlock block : f.getBlocks()) {
+            assertTrue(dominators.dominates(entry, block));
+        }
+        final BasicBlock ifTrue = ((Branch)entry.getTerminator()).ifTrue;
+        assertTrue(dominators.frontier(ifTrue).contains(join));
+        assertFalse(dominators.dominates(ifTrue, join));
+    }
+
+    @Test
+    public void testSSAPlacesPhiAtLoopHeader() throws Exception {
+        final IRFunction f =
+            lowerFirst("int f(int a) { int i = 0; while (i < a) { i = i + 1; } return i; }" +
+                       "void main() { print(f(2)); }");
+        assertFalse(SSA.isSSA(f));
+        SSA.construct(f);
+        assertTrue(SSA.isSSA(f));
+        assertEquals(1, count(f, Phi.class));
+        SSA.destruct(f);
+        assertEquals(0, count(f, Phi.class));
+    }
+
+    @Test
+    public void testConstantPropagationFoldsBranches() throws Exception {
+        final IRFunction f =
+            lowerFirst("int f() { int x = 2 * 3; if (x == 6) { return 1; } else { return 2; } }" +
+                       "void main() { print(f()); }");
+        SSA.construct(f);
+        assertTrue(SparseConditionalConstantPropagation.run(f) > 0);
+        assertEquals(0, count(f, Branch.class));
+        assertEquals(0, count(f, BinaryOperation.class));
+        assertEquals(1, count(f, Return.class));
+    }
+
+    @Test
+    public void testConstantPropagationThroughLoop() throws Exception {
+        // x is 1 on every path into the loop and around it
+        final IRFunction f =
+            lowerFirst("int f(int a) { int x = 1; while (a < 10) { a = a + x; x = 2 - x; } return x; }" +
+                       "void main() { print(f(2)); }");
+        SSA.construct(f);
+        SparseConditionalConstantPropagation.run(f);
+        final Return ret = (Return)f.getBlocks().get(f.getBlocks().size() - 1).getTerminator();
+        boolean foundConstant = false;
+        for (final BasicBlock block : f.getBlocks()) {
+            for (final Instruction instruction : block.instructions) {
+                if (instruction.equals(new Const(ret.values.get(0), 1))) {
+                    foundConstant = true;
+                }
+            }
+        }
+        assertTrue(foundConstant);
+    }
+
+    @Test
+    public void testValueNumberingRemovesRepeatedWork() throws Exception {
+        final IRFunction f =
+            lowerFirst("int f(int a, int b) { int c = a * b; if (a < b) { return a * b + c; } return b * a; }" +
+                       "void main() { print(f(2, 3)); }");
+        SSA.construct(f);
+        assertEquals(5, count(f, BinaryOperation.class));
+        GlobalValueNumbering.run(f);
+        // one multiply, the add, and the comparison
+        assertEquals(3, count(f, BinaryOperation.class));
+        assertEquals(0, count(f, Copy.class));
+    }
+
+    @Test
+    public void testValueNumberingReusesLoads() throws Exception {
+        final IRFunction f =
+            lowerFirst("int f(int* p) { return *p + *p; }" +
+                       "void main() { int x = 1; print(f(&x)); }");
+        SSA.construct(f);
+        assertEquals(2, count(f, Load.class));
+        GlobalValueNumbering.run(f);
+        assertEquals(1, count(f, Load.class));
+    }
+
+    @Test
+    public void testValueNumberingStopsAtStores() throws Exception {
+        final IRFunction f =
+            lowerFirst("int f(int* p, int* q) { int x = *p; *q = 3; return x + *p; }" +
+                       "void main() { int x = 1; print(f(&x, &x)); }");
+        SSA.construct(f);
+        GlobalValueNumbering.run(f);
+        assertEquals(2, count(f, Load.class));
+    }
+
+    @Test
+    public void testDeadCodeEliminationRemovesUnusedLoop() throws Exception {
+        final IRFunction f =
+            lowerFirst("int f(int a) { int i = 0; int unused = a * 7; while (i < a) { i = i + 1; } return a; }" +
+                       "void main() { print(f(2)); }");
+        SSA.construct(f);
+        assertTrue(AggressiveDeadCodeElimination.run(f) > 0);
+        assertEquals(0, count(f, Branch.class));
+        assertEquals(0, count(f, BinaryOperation.class));
+    }
+
+    @Test
+    public void testDeadCodeEliminationKeepsSideEffects() throws Exception {
+        final IRFunction f =
+            lowerFirst("int f(int a) { int i = 0; while (i < a) { print(i); i = i + 1; } return a; }" +
+                       "void main() { print(f(2)); }");
+        SSA.construct(f);
+        AggressiveDeadCodeElimination.run(f);
+        assertEquals(1, count(f, Branch.class));
+        assertEquals(1, count(f, Print.class));
+    }
+
+    // instructions of this kind in the function's entry block
+    public static int countInEntry(final IRFunction function, final Class<?> kind) {
+        int result = 0;
+        for (final Instruction instruction : function.getEntry().instructions) {
+            if (kind.isInstance(instruction)) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testLoopInvariantCodeMotion() throws Exception {
+        // the guard's load and k * 3 move into the entry, which precedes the loop
+        final IRFunction f =
+            lowerFirst("int f(int* p, int k) { int i = 0; int s = 0;" +
+                       "  while (i < *p + 1) { s = s + i * (k * 3); i = i + 1; } return s; }" +
+                       "void main() { int n = 3; print(f(&n, 2)); }");
+        SSA.construct(f);
+        assertEquals(0, countInEntry(f, Load.class));
+        assertEquals(0, countInEntry(f, BinaryOperation.class));
+        assertTrue(LoopInvariantCodeMotion.run(f) > 0);
+        assertEquals(1, countInEntry(f, Load.class));
+        // *p + 1 and k * 3
+        assertEquals(2, countInEntry(f, BinaryOperation.class));
+    }
+
+    @Test
+    public void testLoopInvariantCodeMotionKeepsAliasedLoads() throws Exception {
+        final IRFunction f =
+            lowerFirst("int f(int* p, int* q) { int i = 0; while (i < *p) { *q = *q - 1; i = i + 1; } return i; }" +
+                       "void main() { int n = 3; print(f(&n, &n)); }");
+        SSA.construct(f);
+        LoopInvariantCodeMotion.run(f);
+        assertEquals(0, countInEntry(f, Load.class));
+    }
+
+    // the body might never run, and x + x and x / k could trap
+    @Test
+    public void testLoopInvariantCodeMotionKeepsTrappingArithmeticInBody() throws Exception {
+        final IRFunction f =
+            lowerFirst("int f(int n, int x, int k) { int i = 0; int r = 0;" +
+                       "  while (i < n) { r = x + x; r = r + x / k; r = r + x * k; i = i + 1; } return r; }" +
+                       "void main() { print(f(0, 2147483647, 0)); }");
+        SSA.construct(f);
+        LoopInvariantCodeMotion.run(f);
+        // only x * k
+        assertEquals(1, countInEntry(f, BinaryOperation.class));
+    }
+
+    @Test
+    public void testOptimizeShrinksIR() throws Exception {
+        final IRFunction f =
+            lowerFirst("int f(int a) { int b = 2 * 3; int c = b + b; if (c < 5) { print(a); } return a * c + a * c; }" +
+                       "void main() { print(f(2)); }");
+        final int before = f.numInstructions();
+        IROptimizer.optimize(f);
+        assertEquals(0, count(f, Phi.class));
+        assertEquals(0, count(f, Print.class));
+        assertTrue(f.numInstructions() < before);
+    }
+}
@@ -0,0 +1,120 @@
+package lowlang.optimizer;
+
+import lowlang.tokenizer.Tokenizer;
+import lowlang.parser.*;
+import lowlang.typechecker.Typechecker;
+
+import java.util.Set;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+public class CallGraphTest {
+    public static Program typechecked(final String input) throws Exception {
+        final Program program = Parser.parse(Tokenizer.tokenize(input));
+        Typechecker.typecheckProgramExternalEntry(program);
+        return program;
+    }
+
+    public static Set<FunctionName> names(final String... names) {
+        final Set<FunctionName> result = new HashSet<FunctionName>();
+        for (final String name : names) {
+            result.add(new FunctionName(name));
+        }
+        return result;
+    }
+
+    public static List<FunctionName> functionNames(final Program program) {
+        final List<FunctionName> result = new ArrayList<FunctionName>();
+        for (final FunctionDefinition def : program.functionDefs) {
+            result.add(def.name);
+        }
+        return result;
+    }
+
+    public static final String LIBRARY =
+        "int used(int x) { return helper(x) + 1; }" +
+        "int helper(int x) { return x; }" +
+        "int unused(int x) { return helper(x); }" +
+        "int callback(int x) { return x * 2; }" +
+        "int alsoUnused() { return unused(1); }";
+
+    @Test
+    public void testDirectCalls() throws Exception {
+        final CallGraph graph = new CallGraph(typechecked(LIBRARY + "void main() { print(used(1)); }"));
+        assertEquals(names("helper"),
+                     new HashSet<FunctionName>(graph.directCallees(new FunctionName("used"))));
+        assertTrue(graph.isLeaf(new FunctionName("helper")));
+        assertFalse(graph.isLeaf(new FunctionName("used")));
+    }
+
+    @Test
+    public void testCallSitesCountEachCall() throws Exception {
+        final CallGraph graph =
+            new CallGraph(typechecked(LIBRARY + "void main() { print(used(1) + used(2)); print(used(3)); }"));
+        assertEquals(3, graph.numCallSites(new FunctionName("used")));
+        assertEquals(2, graph.numCallSites(new FunctionName("helper")));
+        assertEquals(0, graph.numCallSites(new FunctionName("callback")));
+    }
+
+    @Test
+    public void testReachableDirect() throws Exception {
+        final CallGraph graph = new CallGraph(typechecked(LIBRARY + "void main() { print(used(1)); }"));
+        assertEquals(names("main", "used", "helper"),
+                     new HashSet<FunctionName>(graph.reachableFrom(new FunctionName("main"))));
+    }
+
+    @Test
+    public void testAddressTakenIsReachable() throws Exception {
+        final CallGraph graph =
+            new CallGraph(typechecked(LIBRARY +
+                                      "void main() {" +
+                                      "  (int) => int f = &callback;" +
+                                      "  print(f(3));" +
+                                      "}"));
+        assertTrue(graph.makesIndirectCall(new FunctionName("main")));
+        assertFalse(graph.isLeaf(new FunctionName("main")));
+        assertEquals(names("main", "callback"),
+                     new HashSet<FunctionName>(graph.reachableFrom(new FunctionName("main"))));
+    }
+
+    @Test
+    public void testLocalShadowingFunctionIsNotACall() throws Exception {
+        final CallGraph graph =
+            new CallGraph(typechecked(LIBRARY +
+                                      "void main() {" +
+                                      "  (int) => int used = &callback;" +
+                                      "  print(used(3));" +
+                                      "}"));
+        assertEquals(names("main", "callback"),
+                     new HashSet<FunctionName>(graph.reachableFrom(new FunctionName("main"))));
+    }
+
+    @Test
+    public void testEliminateKeepsOrder() throws Exception {
+        final Program program = typechecked(LIBRARY +
+                                            "void main() {" +
+                                            "  (int) => int f = &callback;" +
+                                            "  print(used(f(1)));" +
+                                            "}");
+        assertEquals(Arrays.asList(new FunctionName("used"),
+                                   new FunctionName("helper"),
+                                   new FunctionName("callback"),
+                                   new FunctionName("main")),
+                     functionNames(UnreachableFunctionElimination.eliminate(program)));
+    }
+
+    @Test
+    public void testEliminateNothingUnreachable() throws Exception {
+        final Program program = typechecked("int foo() { return 1; }" +
+                                            "void main() { print(foo()); }");
+        assertSame(program, UnreachableFunctionElimination.eliminate(program));
+    }
+}
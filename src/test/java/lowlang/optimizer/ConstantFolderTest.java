@@ -0,0 +1,92 @@
+package lowlang.optimizer;
+
+import lowlang.parser.*;
+import lowlang.typechecker.Typechecker;
+import lowlang.typechecker.SymbolTable;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class ConstantFolderTest {
+    public static final String RECTANGLE =
+        "struct Rectangle { int length; int width; };";
+
+    // the result must typecheck again
+    public static Program folded(final String input) throws Exception {
+        final Program program = CallGraphTest.typechecked(input);
+        final Program result = new ConstantFolder(SymbolTable.fromProgram(program)).fold(program);
+        Typechecker.typecheckProgramExternalEntry(result);
+        return result;
+    }
+
+    public static void assertFolds(final String expected, final String input) throws Exception {
+        assertEquals(CallGraphTest.typechecked(expected), folded(input));
+    }
+
+    // the value main prints first
+    public static int firstPrinted(final String main) throws Exception {
+        final Stmt stmt = folded("void main() { " + main + " }").functionDefs.get(0).body.get(0);
+        return ((IntegerLiteralExp)((PrintStmt)stmt).exp).value;
+    }
+
+    @Test
+    public void testArithmetic() throws Exception {
+        assertFolds(RECTANGLE + "void main() { print(9); print(80); print(true); }",
+                    RECTANGLE + "void main() { print(2 * 4 + 1); print(sizeof(Rectangle) * 10); print(3 / 2 == 1); }");
+    }
+
+    @Test
+    public void testMultiplicationWraps() throws Exception {
+        assertEquals(0, firstPrinted("print(65536 * 65536);"));
+        assertEquals(-2, firstPrinted("print(2147483647 * 2);"));
+        assertEquals(-3, firstPrinted("print(0 - 7 / 2);"));
+    }
+
+    @Test
+    public void testTrapsLeftToRuntime() throws Exception {
+        assertFolds("void main() { print(1 / 0); print(2147483647 + 1); }",
+                    "void main() { print(1 / 0); print(2147483647 + 1); }");
+    }
+
+    @Test
+    public void testIdentities() throws Exception {
+        assertFolds("int f(int x) { return x; } int g(int x) { return 0; }" +
+                    "int h(int x) { return f(x) * 0; } void main() {}",
+                    "int f(int x) { return (0 + x + 0) * 1 / 1 - 0; } int g(int x) { return x * (1 - 1); }" +
+                    "int h(int x) { return f(x) * 0; } void main() {}");
+    }
+
+    @Test
+    public void testCasts() throws Exception {
+        assertFolds("void main() { int x = 5; print((int)x); print(true); print(1); }",
+                    "void main() { int x = 5; print((int)(bool)x); print((bool)(2 - 1)); print((int)(1 == 1)); }");
+    }
+
+    @Test
+    public void testConstantGuards() throws Exception {
+        assertFolds("void main() { int x = 1; { print(1); } { print(4); } while (x < x - x) { print(6); } print(x); }",
+                    "void main() {" +
+                    "  int x = 1;" +
+                    "  if (1 == 1) { print(1); } else { print(2); }" +
+                    "  if (2 < 1) { print(3); } else { print(4); }" +
+                    "  if (false) { print(5); }" +
+                    "  while (x < x - x + 0 * 1) { print(6); }" +
+                    "  while (1 < 0) { x = 2; }" +
+                    "  print(x);" +
+                    "}");
+    }
+
+    @Test
+    public void testCodeAfterReturningArmDropped() throws Exception {
+        assertFolds("int f(int x) { { return x; } } void main() {}",
+                    "int f(int x) { if (sizeof(int) == 4) { return x; } print(x); return 0; } void main() {}");
+    }
+
+    @Test
+    public void testCount() throws Exception {
+        final Program program = CallGraphTest.typechecked("void main() { if (1 < 2) { print(3 + 4); } }");
+        final ConstantFolder folder = new ConstantFolder(SymbolTable.fromProgram(program));
+        folder.fold(program);
+        assertEquals(3, folder.numFolded());
+    }
+}
@@ -0,0 +1,81 @@
+package lowlang.optimizer;
+
+import lowlang.parser.*;
+import lowlang.typechecker.Typechecker;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class DeadStoreEliminatorTest {
+    public static final String POINT =
+        "struct Point { int x; int y; };";
+
+    // the result must typecheck again
+    public static Program eliminated(final DeadStoreEliminator eliminator,
+                                     final String input) throws Exception {
+        final Program result = eliminator.eliminate(CallGraphTest.typechecked(input));
+        Typechecker.typecheckProgramExternalEntry(result);
+        return result;
+    }
+
+    public static void assertEliminates(final String expected, final String input) throws Exception {
+        assertEquals(CallGraphTest.typechecked(expected),
+                     eliminated(new DeadStoreEliminator(), input));
+    }
+
+    public static void assertUnchanged(final String input) throws Exception {
+        assertEliminates(input, input);
+    }
+
+    @Test
+    public void testUnusedVariables() throws Exception {
+        assertEliminates(POINT + "void main() { print(1); }",
+                         POINT + "void main() { int x = 1; int y = x * 2; Point p = Point(y, y); p.x = 3; x = 4; print(1); }");
+    }
+
+    @Test
+    public void testDeadStores() throws Exception {
+        assertEliminates("void main(int a) { int x = 1; print(x); x = 3; print(x); }",
+                         "void main(int a) { int x = 1; print(x); x = 2; x = 3; print(x); a = 4; x = 5; }");
+    }
+
+    @Test
+    public void testSideEffectsKept() throws Exception {
+        assertEliminates("int f() { print(1); return 1; }" +
+                         "void main(int a) { f(); a + 1; 1 / a; (int*)malloc(4); }",
+                         "int f() { print(1); return 1; }" +
+                         "void main(int a) { int x = f(); int y = a + 1; a = 1 / a; int* p = (int*)malloc(4); }");
+    }
+
+    @Test
+    public void testBranchesAndLoops() throws Exception {
+        assertUnchanged("void main(bool b) { int x = 1; if (b) { x = 2; } print(x); }");
+        assertUnchanged("void main() { int x = 0; int i = 0; while (i < 3) { print(x); x = i; i = i + 1; } }");
+        assertUnchanged("void main() { int x = 0; while (true) { if (x < 3) { x = x + 1; continue; } break; } }");
+        assertEliminates("void main(bool b) { int x = 1; if (b) { return; } print(x); }",
+                         "void main(bool b) { int x = 1; if (b) { x = 2; return; } print(x); }");
+        assertEliminates("void main() { int x = 0; while (x < 3) { x = x + 1; } }",
+                         "void main() { int x = 0; while (x < 3) { x = x + 1; int y = x; } }");
+    }
+
+    @Test
+    public void testShadowing() throws Exception {
+        assertEliminates("int f(int x) { int y = x; {} return y; } void main() {}",
+                         "int f(int x) { int y = x; { int y = 2; y = 3; } return y; } void main() {}");
+        assertUnchanged("int f(int x) { x = 1; { int x = 2; print(x); } return x; } void main() {}");
+    }
+
+    @Test
+    public void testAddressTakenKept() throws Exception {
+        assertUnchanged(POINT + "void main() { int x = 1; int* p = &x; x = 2; print(*p); }");
+        assertUnchanged(POINT + "void main() { Point q = Point(1, 2); int* p = &q.y; q.y = 3; print(*p); }");
+    }
+
+    @Test
+    public void testRemovingExposesMore() throws Exception {
+        final DeadStoreEliminator eliminator = new DeadStoreEliminator();
+        assertEquals(CallGraphTest.typechecked("void main() { print(0); }"),
+                     eliminated(eliminator, "void main() { int a = 1; int b = a; int c = b; print(0); }"));
+        assertEquals(3, eliminator.numRemoved());
+    }
+} // DeadStoreEliminatorTest
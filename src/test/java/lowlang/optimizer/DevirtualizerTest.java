@@ -0,0 +1,89 @@
+package lowlang.optimizer;
+
+import lowlang.parser.*;
+import lowlang.typechecker.Typechecker;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class DevirtualizerTest {
+    public static final String FUNCTIONS =
+        "int square(int x) { return x * x; }" +
+        "int twice(int x) { return x + x; }";
+
+    // the result must typecheck again
+    public static Program devirtualized(final Devirtualizer devirtualizer,
+                                        final String input) throws Exception {
+        final Program result = devirtualizer.devirtualize(CallGraphTest.typechecked(input));
+        Typechecker.typecheckProgramExternalEntry(result);
+        return result;
+    }
+
+    public static void assertDevirtualizes(final String expected, final String input) throws Exception {
+        assertEquals(CallGraphTest.typechecked(expected),
+                     devirtualized(new Devirtualizer(), input));
+    }
+
+    public static void assertUnchanged(final String input) throws Exception {
+        assertDevirtualizes(input, input);
+    }
+
+    @Test
+    public void testLocal() throws Exception {
+        assertDevirtualizes(FUNCTIONS + "void main() { (int) => int f = &square; (int) => int g = f; print(square(3)); }",
+                            FUNCTIONS + "void main() { (int) => int f = &square; (int) => int g = f; print(g(3)); }");
+    }
+
+    @Test
+    public void testCallbackParameter() throws Exception {
+        assertDevirtualizes(FUNCTIONS +
+                            "int apply((int) => int f, int x) { return twice(x); }" +
+                            "void main() { print(apply(&twice, 1)); print(apply(&twice, 2)); }",
+                            FUNCTIONS +
+                            "int apply((int) => int f, int x) { return f(x); }" +
+                            "void main() { print(apply(&twice, 1)); print(apply(&twice, 2)); }");
+    }
+
+    @Test
+    public void testVaryingPointers() throws Exception {
+        assertUnchanged(FUNCTIONS +
+                        "int apply((int) => int f, int x) { return f(x); }" +
+                        "void main() { print(apply(&twice, 1)); print(apply(&square, 2)); }");
+        assertUnchanged(FUNCTIONS +
+                        "void main(bool b) { (int) => int f = &square; if (b) { f = &twice; } print(f(3)); }");
+        assertUnchanged(FUNCTIONS +
+                        "void main() { (int) => int f = &square; ((int) => int)* p = &f; *p = &twice; print(f(3)); }");
+    }
+
+    // call could be reached through any pointer, so f isn't only &twice,
+    // even though g is only &call
+    @Test
+    public void testAddressTakenCallee() throws Exception {
+        assertDevirtualizes(FUNCTIONS +
+                            "int call((int) => int f) { return f(1); }" +
+                            "void main() { print(call(&twice));" +
+                            "  ((int) => int) => int g = &call; print(call(&square)); }",
+                            FUNCTIONS +
+                            "int call((int) => int f) { return f(1); }" +
+                            "void main() { print(call(&twice));" +
+                            "  ((int) => int) => int g = &call; print(g(&square)); }");
+    }
+
+    @Test
+    public void testShadowedName() throws Exception {
+        assertUnchanged(FUNCTIONS +
+                        "void main() { (int) => int f = &square; int square = 2; print(f(square)); }");
+    }
+
+    @Test
+    public void testReport() throws Exception {
+        final Devirtualizer devirtualizer = new Devirtualizer();
+        devirtualized(devirtualizer,
+                      FUNCTIONS +
+                      "int apply((int) => int f, int x) { return f(x); }" +
+                      "void main() { (int) => int g = &square; print(g(apply(&twice, 2))); }");
+        assertEquals(2, devirtualizer.numDevirtualized());
+        assertEquals(String.format("apply: f -> twice%nmain: g -> square%n2 call(s) devirtualized%n"),
+                     devirtualizer.reportToString());
+    }
+} // DevirtualizerTest
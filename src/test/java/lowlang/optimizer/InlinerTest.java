@@ -0,0 +1,137 @@
+package lowlang.optimizer;
+
+import lowlang.parser.*;
+import lowlang.typechecker.Typechecker;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class InlinerTest {
+    public static final String RECTANGLE =
+        "struct Rectangle { int length; int width; };" +
+        "int getPerimeter(Rectangle r) { return 2 * (r.length + r.width); }";
+
+    // the result must typecheck again
+    public static Inliner inlined(final String input) throws Exception {
+        final Inliner inliner = new Inliner();
+        Typechecker.typecheckProgramExternalEntry(inliner.inline(CallGraphTest.typechecked(input)));
+        return inliner;
+    }
+
+    @Test
+    public void testAccessorInlined() throws Exception {
+        final Inliner inliner =
+            inlined(RECTANGLE +
+                    "void main() {" +
+                    "  Rectangle r = Rectangle(2, 3);" +
+                    "  print(getPerimeter(r));" +
+                    "  print(getPerimeter(Rectangle(3, 4)));" +
+                    "}");
+        assertEquals(Arrays.asList("main <- getPerimeter", "main <- getPerimeter"),
+                     inliner.getReport());
+        assertTrue(inliner.reportToString().endsWith(String.format("2 call(s) inlined%n")));
+    }
+
+    @Test
+    public void testInlinedFunctionBecomesUnreachable() throws Exception {
+        final Program program =
+            new Inliner().inline(CallGraphTest.typechecked(RECTANGLE +
+                                                           "void main() { print(getPerimeter(Rectangle(2, 3))); }"));
+        Typechecker.typecheckProgramExternalEntry(program);
+        assertEquals(Arrays.asList(new FunctionName("main")),
+                     CallGraphTest.functionNames(UnreachableFunctionElimination.eliminate(program)));
+    }
+
+    @Test
+    public void testRecursiveNotInlined() throws Exception {
+        final Inliner inliner =
+            inlined("int fact(int n) { if (n < 2) { return 1; } return n * fact(n - 1); }" +
+                    "void main() { print(fact(5)); }");
+        assertEquals(0, inliner.numInlined());
+    }
+
+    @Test
+    public void testMutuallyRecursiveNotInlined() throws Exception {
+        final Inliner inliner =
+            inlined("bool isEven(int n) { if (n == 0) { return true; } return isOdd(n - 1); }" +
+                    "bool isOdd(int n) { if (n == 0) { return false; } return isEven(n - 1); }" +
+                    "void main() { print(isEven(4)); }");
+        assertEquals(0, inliner.numInlined());
+    }
+
+    @Test
+    public void testLargeNotInlined() throws Exception {
+        final Inliner inliner = new Inliner(1, 1, Inliner.DEFAULT_MAX_ROUNDS);
+        inliner.inline(CallGraphTest.typechecked(RECTANGLE +
+                                                 "void main() { print(getPerimeter(Rectangle(2, 3))); }"));
+        assertEquals(0, inliner.numInlined());
+    }
+
+    @Test
+    public void testEarlyReturnInlined() throws Exception {
+        final Inliner inliner =
+            inlined("int abs(int x) { if (x < 0) { return 0 - x; } return x; }" +
+                    "void main() { print(abs(0 - 5)); }");
+        assertEquals(1, inliner.numInlined());
+    }
+
+    @Test
+    public void testReturnInLoopNotInlined() throws Exception {
+        final Inliner inliner =
+            inlined("int find(int n) { int i = 0; while (true) { if (n < i) { return i; } i = i + 1; } return 0; }" +
+                    "void main() { print(find(5)); }");
+        assertEquals(0, inliner.numInlined());
+    }
+
+    @Test
+    public void testNestedCallsInlinedInLaterRounds() throws Exception {
+        final Inliner inliner =
+            inlined("int sq(int x) { return x * x; }" +
+                    "int twice(int x) { return sq(x) + sq(x); }" +
+                    "void main() { print(twice(3)); }");
+        assertEquals(Arrays.asList("twice <- sq", "twice <- sq", "main <- twice"),
+                     inliner.getReport().subList(0, 3));
+    }
+
+    @Test
+    public void testCallAfterSideEffectNotInlined() throws Exception {
+        // x is read before inc runs, so inc's body can't go first
+        final Inliner inliner =
+            inlined("int inc(int* p) { *p = *p + 1; return *p; }" +
+                    "void main() { int x = 0; print(x + inc(&x)); }");
+        assertEquals(0, inliner.numInlined());
+    }
+
+    @Test
+    public void testShadowedCalleeNotInlined() throws Exception {
+        // in one round, the copy of f would still call g, which main hides
+        final Inliner inliner = new Inliner(Inliner.DEFAULT_MAX_SIZE,
+                                            Inliner.DEFAULT_MAX_SINGLE_CALL_SIZE,
+                                            1);
+        inliner.inline(CallGraphTest.typechecked("int g() { return 1; }" +
+                                                 "int f() { return g(); }" +
+                                                 "void main() { int g = 2; print(f()); print(g); }"));
+        assertEquals(Arrays.asList("f <- g"), inliner.getReport());
+    }
+
+    // too big to inline everywhere, but small enough to inline if called once
+    public static final String MID_SIZE =
+        "int mid(int a) {" +
+        "  int b = a * 2 + 1; int c = b * b - a; int d = c / 3 + b;" +
+        "  if (d < 10) { d = d + a * 4; } else { d = d - b * 2; }" +
+        "  return d + c - b;" +
+        "}";
+
+    @Test
+    public void testTwoCallsFromOneCallerNotInlined() throws Exception {
+        final Program program = CallGraphTest.typechecked(MID_SIZE + "void main() {}");
+        final int size = NodeCounter.countNodes(program.functionDefs.get(0));
+        assertTrue(size > Inliner.DEFAULT_MAX_SIZE &&
+                   size <= Inliner.DEFAULT_MAX_SINGLE_CALL_SIZE);
+        assertEquals(1, inlined(MID_SIZE + "void main() { print(mid(1)); }").numInlined());
+        assertEquals(0, inlined(MID_SIZE + "void main() { print(mid(1)); print(mid(2)); }").numInlined());
+    }
+} // InlinerTest
@@ -0,0 +1,49 @@
+package lowlang.optimizer;
+
+import lowlang.parser.*;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import org.junit.Test;
+
+public class PurityTest {
+    public static final String POINT =
+        "struct Point { int x; int y; };" +
+        "int g(int x) { return x; }";
+
+    // what f returns, with x an int and p an int*
+    public static Exp returned(final String exp) throws Exception {
+        final Program program =
+            CallGraphTest.typechecked(POINT +
+                                      "int f(int x, int* p) { return " + exp + "; }" +
+                                      "void main() {}");
+        final FunctionDefinition f = program.functionDefs.get(1);
+        return ((ReturnStmt)f.body.get(0)).exp.get();
+    }
+
+    @Test
+    public void testNeverTraps() throws Exception {
+        assertTrue(Purity.isDiscardable(returned("x * 2")));
+        assertTrue(Purity.isDiscardable(returned("(int)(x < 3) * sizeof(Point)")));
+        assertTrue(Purity.isDiscardable(returned("Point(x, x * x).y")));
+        assertTrue(Purity.isPure(returned("Point(x, x * x).y")));
+    }
+
+    @Test
+    public void testTrapsButNoSideEffects() throws Exception {
+        assertFalse(Purity.isDiscardable(returned("x + 1")));
+        assertFalse(Purity.isDiscardable(returned("2 - x")));
+        assertFalse(Purity.isDiscardable(returned("x / x")));
+        assertFalse(Purity.isDiscardable(returned("*p")));
+        assertTrue(Purity.isPure(returned("x + 1")));
+        assertTrue(Purity.isPure(returned("*p / x")));
+    }
+
+    @Test
+    public void testSideEffects() throws Exception {
+        assertFalse(Purity.isPure(returned("g(x)")));
+        assertFalse(Purity.isPure(returned("x * g(1)")));
+        assertFalse(Purity.isPure(returned("*((int*)malloc(4))")));
+        assertFalse(Purity.isDiscardable(returned("Point(g(x), 1).x")));
+    }
+} // PurityTest
@@ -0,0 +1,60 @@
+package lowlang.typechecker;
+
+import lowlang.tokenizer.Tokenizer;
+import lowlang.parser.*;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class SymbolTableTest {
+    public static final String PROGRAM =
+        "struct Pair { int first; bool second; };" +
+        "struct Outer { Pair pair; int extra; };" +
+        "int foo(int x, bool y) { return x; }" +
+        "void main() {" +
+        "  Outer o = Outer(Pair(1, true), 2);" +
+        "  print(o.pair.second);" +
+        "  print(foo(o.extra, false));" +
+        "}";
+
+    public static Program typechecked(final String input) throws Exception {
+        final Program program = Parser.parse(Tokenizer.tokenize(input));
+        Typechecker.typecheckProgramExternalEntry(program);
+        return program;
+    }
+
+    @Test
+    public void testIdsFollowDeclarationOrder() throws Exception {
+        final SymbolTable symbols = SymbolTable.fromProgram(typechecked(PROGRAM));
+        assertEquals(0, symbols.structureId(new StructureName("Pair")));
+        assertEquals(1, symbols.structureId(new StructureName("Outer")));
+        assertEquals(1, symbols.fieldId(0, new FieldName("second")));
+        assertEquals(new BoolType(), symbols.fieldType(0, 1));
+        assertEquals(0, symbols.functionId(new FunctionName("foo")));
+        assertEquals(Arrays.asList(new IntType(), new BoolType()),
+                     symbols.parameterTypes(0));
+        assertEquals(SymbolTable.NOT_FOUND, symbols.functionId(new FunctionName("bar")));
+        assertEquals(SymbolTable.NOT_FOUND, symbols.fieldId(0, new FieldName("third")));
+    }
+
+    @Test
+    public void testTypecheckerStampsSameIds() throws Exception {
+        final Program program = Parser.parse(Tokenizer.tokenize(PROGRAM));
+        final SymbolTable fromTypechecker = Typechecker.typecheckProgramExternalEntry(program);
+        final SymbolTable rebuilt = SymbolTable.fromProgram(program);
+
+        // print(o.pair.second);
+        final FunctionDefinition main = program.functionDefs.get(1);
+        final FieldAccessExp access = (FieldAccessExp)((PrintStmt)main.body.get(1)).exp;
+        assertEquals(rebuilt.structureId(new StructureName("Pair")), access.structureId);
+        assertEquals(new FieldName("second"),
+                     fromTypechecker.fieldName(access.structureId, access.fieldId));
+
+        // foo(o.extra, false)
+        final CallLikeExp call = (CallLikeExp)((PrintStmt)main.body.get(2)).exp;
+        final DirectCallResolved resolved = (DirectCallResolved)call.resolution.get();
+        assertEquals(rebuilt.functionId(new FunctionName("foo")), resolved.functionId);
+    }
+}
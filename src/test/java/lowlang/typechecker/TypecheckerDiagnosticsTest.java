@@ -0,0 +1,140 @@
+package lowlang.typechecker;
+
+import lowlang.tokenizer.Tokenizer;
+import lowlang.tokenizer.TokenizerException;
+import lowlang.parser.*;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.junit.Test;
+
+public class TypecheckerDiagnosticsTest {
+    public static Diagnostics diagnosticsFor(final String program) throws TokenizerException, ParseException {
+        final Diagnostics diagnostics = new Diagnostics();
+        Typechecker.typecheckProgramForTesting(Parser.parse(Tokenizer.tokenize(program)),
+                                               diagnostics);
+        return diagnostics;
+    }
+
+    public static void assertErrorsIn(final String program,
+                                      final int numErrors,
+                                      final String... functions) throws TokenizerException, ParseException {
+        final Diagnostics diagnostics = diagnosticsFor(program);
+        assertEquals(diagnostics.toString(),
+                     numErrors,
+                     diagnostics.getDiagnostics().size());
+        final ArrayList<FunctionName> expected = new ArrayList<FunctionName>();
+        for (final String function : functions) {
+            expected.add(new FunctionName(function));
+        }
+        assertEquals(expected,
+                     new ArrayList<FunctionName>(diagnostics.functionsWithErrors()));
+    }
+
+    @Test
+    public void testNoErrors() throws TokenizerException, ParseException {
+        assertFalse(diagnosticsFor("void foo() { int x = 0; print(x); }").hasErrors());
+    }
+
+    @Test
+    public void testEveryBadFunctionReported() throws TokenizerException, ParseException {
+        assertErrorsIn("void foo() { int x = true; }" +
+                       "void bar() { int y = 0; }" +
+                       "void baz() { print(z); }" +
+                       "int qux() { return false; }",
+                       3,
+                       "foo", "baz", "qux");
+    }
+
+    @Test
+    public void testContinuesWithinFunction() throws TokenizerException, ParseException {
+        assertErrorsIn("void foo() {" +
+                       "  int x = true;" +
+                       "  bool y = 7;" +
+                       "  break;" +
+                       "}",
+                       3,
+                       "foo");
+    }
+
+    @Test
+    public void testFailedDeclarationStillInScope() throws TokenizerException, ParseException {
+        // only the initializer is wrong; later uses of x are fine
+        assertErrorsIn("void foo() {" +
+                       "  int x = true;" +
+                       "  int y = x + 1;" +
+                       "  print(x);" +
+                       "}",
+                       1,
+                       "foo");
+    }
+
+    @Test
+    public void testUnknownVariableDoesNotCascade() throws TokenizerException, ParseException {
+        assertErrorsIn("struct Foo { int x; };" +
+                       "void foo() {" +
+                       "  int y = (*z).x + 1;" +
+                       "  bool b = y == 2;" +
+                       "  print(y);" +
+                       "}",
+                       1,
+                       "foo");
+    }
+
+    @Test
+    public void testErrorInsideGuardStillChecksBranches() throws TokenizerException, ParseException {
+        assertErrorsIn("void foo() {" +
+                       "  if (nope) {" +
+                       "    int x = true;" +
+                       "  } else {" +
+                       "    print(false);" +
+                       "  }" +
+                       "}",
+                       2,
+                       "foo");
+    }
+
+    @Test
+    public void testDeadCodeReportedOnceAndStillChecked() throws TokenizerException, ParseException {
+        assertErrorsIn("int foo() {" +
+                       "  return 1;" +
+                       "  int x = true;" +
+                       "  int y = 2;" +
+                       "}",
+                       2,
+                       "foo");
+    }
+
+    @Test
+    public void testBadStructureFieldDoesNotCascade() throws TokenizerException, ParseException {
+        final Diagnostics diagnostics =
+            diagnosticsFor("struct Foo { Bar b; int x; };" +
+                           "void foo(Foo f) { print(f.x); int y = f.b; }");
+        assertEquals(diagnostics.toString(), 1, diagnostics.getDiagnostics().size());
+        assertFalse(diagnostics.getDiagnostics().get(0).function.isPresent());
+    }
+
+    @Test
+    public void testDuplicateFunctionsReported() throws TokenizerException, ParseException {
+        assertErrorsIn("void foo() {}" +
+                       "void foo() {}" +
+                       "void bar() { print(true + 1); }",
+                       2,
+                       "foo", "bar");
+    }
+
+    @Test
+    public void testMissingMain() throws TokenizerException, ParseException {
+        final Diagnostics diagnostics = new Diagnostics();
+        Typechecker.typecheckProgramExternalEntry(Parser.parse(Tokenizer.tokenize("void foo() {}")),
+                                                  diagnostics);
+        assertEquals(1, diagnostics.getDiagnostics().size());
+    }
+
+    @Test(expected = TypeErrorException.class)
+    public void testThrowIfErrors() throws TokenizerException, ParseException, TypeErrorException {
+        diagnosticsFor("void foo() { int x = true; }").throwIfErrors();
+    }
+}